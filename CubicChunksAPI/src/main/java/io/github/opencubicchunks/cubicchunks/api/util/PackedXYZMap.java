@@ -0,0 +1,403 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.api.util;
+
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Open addressing variant of {@link XYZMap}. Coordinates of all entries are packed into a single int array next to
+ * each other, and collisions are resolved by linear probing, so no node object is allocated per entry and lookups
+ * don't need to dereference the stored values.
+ * <p>
+ * Use {@link XYZMap#create(float, int)} to get the implementation selected by the {@code cubicchunks.packedXYZMap}
+ * system property.
+ *
+ * @param <T> class of the objects to be contained in this map
+ * @see XYZAddressable
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class PackedXYZMap<T extends XYZAddressable> extends XYZMap<T> {
+
+    /**
+     * A larger prime number used as seed for hash calculation.
+     */
+    private static final int HASH_SEED = 1183822147;
+
+    /**
+     * Coordinates of the entries, 3 ints (x, y, z) per bucket. Only valid for buckets with non-null value.
+     */
+    private int[] keys;
+
+    /**
+     * Values of the entries, null for empty buckets.
+     */
+    private Object[] values;
+
+    /**
+     * the current number of elements in this map
+     */
+    private int size;
+
+    /**
+     * the maximum permissible load of the backing array, after reaching it the array will be resized
+     */
+    private final float loadFactor;
+
+    /**
+     * the load threshold of the backing array, after reaching it the array will be resized
+     */
+    private int loadThreshold;
+
+    /**
+     * binary mask used to wrap indices
+     */
+    private int mask;
+
+    /**
+     * Creates a new PackedXYZMap with the given load factor and initial capacity. The map will automatically grow if
+     * the specified load is surpassed.
+     *
+     * @param loadFactor the load factor
+     * @param capacity   the initial capacity
+     */
+    public PackedXYZMap(float loadFactor, int capacity) {
+        super(loadFactor);
+        this.loadFactor = loadFactor;
+
+        int tCapacity = 2;
+        while (tCapacity < capacity) {
+            tCapacity <<= 1;
+        }
+        this.allocate(tCapacity);
+    }
+
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Computes the desired bucket index for the given coordinates, based on the map's current capacity.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @param z the z-coordinate
+     * @return the desired bucket index for the given coordinates
+     */
+    private int getIndex(int x, int y, int z) {
+        int hash = HASH_SEED;
+        hash += x;
+        hash *= HASH_SEED;
+        hash += y;
+        hash *= HASH_SEED;
+        hash += z;
+        hash *= HASH_SEED;
+        // the low bits of the product depend only on the low bits of the coordinates, mix in the high bits
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+
+    private boolean keyEquals(int index, int x, int y, int z) {
+        int keyIndex = index * 3;
+        return this.keys[keyIndex] == x && this.keys[keyIndex + 1] == y && this.keys[keyIndex + 2] == z;
+    }
+
+    @Override
+    public void clear() {
+        this.checkThreadedWrite();
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public T put(T value) {
+        this.checkThreadedWrite();
+        int x = value.getX();
+        int y = value.getY();
+        int z = value.getZ();
+
+        // find the closest empty bucket or the element to be replaced
+        int index = this.getIndex(x, y, z);
+        Object bucket;
+        while ((bucket = this.values[index]) != null) {
+            if (this.keyEquals(index, x, y, z)) {
+                this.values[index] = value;
+                return (T) bucket;
+            }
+            index = (index + 1) & this.mask;
+        }
+
+        int keyIndex = index * 3;
+        this.keys[keyIndex] = x;
+        this.keys[keyIndex + 1] = y;
+        this.keys[keyIndex + 2] = z;
+        this.values[index] = value;
+
+        if (++this.size > this.loadThreshold) {
+            this.grow();
+        }
+        return null;
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public T remove(int x, int y, int z) {
+        this.checkThreadedWrite();
+        int index = this.getIndex(x, y, z);
+        Object bucket;
+        while ((bucket = this.values[index]) != null) {
+            if (this.keyEquals(index, x, y, z)) {
+                this.collapseBucket(index, null);
+                return (T) bucket;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return null;
+    }
+
+    @Nullable
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int x, int y, int z) {
+        int index = this.getIndex(x, y, z);
+        Object bucket;
+        while ((bucket = this.values[index]) != null) {
+            if (this.keyEquals(index, x, y, z)) {
+                return (T) bucket;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean contains(int x, int y, int z) {
+        return this.get(x, y, z) != null;
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new int[capacity * 3];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        // at least one bucket has to stay empty, or lookups of missing keys would never terminate
+        this.loadThreshold = Math.min(capacity - 1, (int) (capacity * this.loadFactor));
+    }
+
+    /**
+     * Doubles the size of the backing arrays and redistributes all contained values accordingly.
+     */
+    private void grow() {
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.allocate(oldValues.length << 1);
+
+        for (int i = 0; i < oldValues.length; i++) {
+            Object value = oldValues[i];
+            if (value == null) {
+                continue;
+            }
+            int x = oldKeys[i * 3];
+            int y = oldKeys[i * 3 + 1];
+            int z = oldKeys[i * 3 + 2];
+            int index = this.getIndex(x, y, z);
+            while (this.values[index] != null) {
+                index = (index + 1) & this.mask;
+            }
+            int keyIndex = index * 3;
+            this.keys[keyIndex] = x;
+            this.keys[keyIndex + 1] = y;
+            this.keys[keyIndex + 2] = z;
+            this.values[index] = value;
+        }
+    }
+
+    /**
+     * Removes the value contained at the given index by shifting suitable values on its right to the left.
+     *
+     * @param hole the index of the bucket to be collapsed
+     * @param wrapped if not null, values that are moved from before {@code hole} (by wrapping around the end of the
+     * array) to at or after it are added to this list
+     */
+    private void collapseBucket(int hole, @Nullable List<Object> wrapped) {
+        assert this.values[hole] != null;
+        --this.size;
+
+        int start = hole;
+        int current = hole;
+        while (true) {
+            current = (current + 1) & this.mask;
+            Object value = this.values[current];
+            if (value == null) {
+                this.values[hole] = null;
+                return;
+            }
+            int keyIndex = current * 3;
+            int target = this.getIndex(this.keys[keyIndex], this.keys[keyIndex + 1], this.keys[keyIndex + 2]);
+
+            // move the value if its desired index is not cyclically in (hole, current]
+            boolean move = hole <= current
+                    ? target <= hole || target > current
+                    : target <= hole && target > current;
+            if (move) {
+                if (wrapped != null && current < start && hole >= start) {
+                    wrapped.add(value);
+                }
+                System.arraycopy(this.keys, keyIndex, this.keys, hole * 3, 3);
+                this.values[hole] = value;
+                hole = current;
+            }
+        }
+    }
+
+    // Interface: Iterable<T>
+    // ------------------------------------------------------------------------------------------
+
+    /**
+     * Returns an iterator over all values in this map. Iteration goes from the end of the backing array towards the
+     * start, so that removal through the iterator can't cause values to be skipped or returned twice.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            /**
+             * index of the bucket last returned by next, or the array length before the first call
+             */
+            private int index = PackedXYZMap.this.values.length;
+            /**
+             * index of the next non-empty bucket, only valid if nextValid is true
+             */
+            private int nextIndex;
+            private boolean nextValid;
+            /**
+             * true if the last value was returned from the backing array, false if it came from wrapped
+             */
+            private boolean fromArray;
+            @Nullable private T last;
+            /**
+             * values moved by removal from not yet visited buckets to already visited ones
+             */
+            @Nullable private List<Object> wrapped;
+            private int wrappedIndex;
+
+            @Override
+            public boolean hasNext() {
+                if (!this.nextValid) {
+                    int i = this.index - 1;
+                    while (i >= 0 && PackedXYZMap.this.values[i] == null) {
+                        i--;
+                    }
+                    this.nextIndex = i;
+                    this.nextValid = true;
+                }
+                return this.nextIndex >= 0 || (this.wrapped != null && this.wrappedIndex < this.wrapped.size());
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (this.nextIndex >= 0) {
+                    this.index = this.nextIndex;
+                    this.nextValid = false;
+                    this.fromArray = true;
+                    this.last = (T) PackedXYZMap.this.values[this.index];
+                } else {
+                    this.fromArray = false;
+                    this.last = (T) this.wrapped.get(this.wrappedIndex++);
+                }
+                return this.last;
+            }
+
+            @Override
+            public void remove() {
+                if (this.last == null) {
+                    throw new IllegalStateException();
+                }
+                PackedXYZMap.this.checkThreadedWrite();
+                if (this.fromArray) {
+                    if (this.wrapped == null) {
+                        this.wrapped = new ArrayList<>();
+                    }
+                    PackedXYZMap.this.collapseBucket(this.index, this.wrapped);
+                    // buckets before the current one may have changed
+                    this.nextValid = false;
+                } else {
+                    PackedXYZMap.this.remove(this.last);
+                }
+                this.last = null;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<T> randomWrappedIterator(int seed) {
+        return new Iterator<T>() {
+            private final Object[] buckets = PackedXYZMap.this.values;
+            private final int start = seed & (this.buckets.length - 1);
+            private int visited = 0;
+            @Nullable private Object next = this.seek();
+
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (this.next == null) {
+                    throw new NoSuchElementException();
+                }
+                Object value = this.next;
+                this.next = this.seek();
+                return (T) value;
+            }
+
+            @Nullable private Object seek() {
+                while (this.visited < this.buckets.length) {
+                    Object value = this.buckets[(this.start + this.visited++) & (this.buckets.length - 1)];
+                    if (value != null) {
+                        return value;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+}
@@ -50,6 +50,12 @@ public class XYZMap<T extends XYZAddressable> implements Iterable<T> {
 
     private static final boolean CHECK_THREADED_WRITES = "true".equalsIgnoreCase(System.getProperty("cubicchunks.debug.checkThreadedXYZMapWrites"));
 
+    /**
+     * If enabled, {@link #create(float, int)} returns an open addressing {@link PackedXYZMap} instead of the chained
+     * implementation.
+     */
+    public static final boolean USE_PACKED_MAP = "true".equalsIgnoreCase(System.getProperty("cubicchunks.packedXYZMap"));
+
     /**
      * A larger prime number used as seed for hash calculation.
      */
@@ -111,6 +117,33 @@ public class XYZMap<T extends XYZAddressable> implements Iterable<T> {
         this.refreshFields();
     }
 
+    /**
+     * Constructor for subclasses that provide their own storage. Allocates only a minimal bucket array.
+     *
+     * @param loadFactor the load factor
+     */
+    XYZMap(float loadFactor) {
+        if (loadFactor > 1.0) {
+            throw new IllegalArgumentException("You really dont want to be using a " + loadFactor + " load loadFactor with this hash table!");
+        }
+        this.loadFactor = loadFactor;
+        this.bucketsByHash = this.nodeArray(1);
+        this.refreshFields();
+    }
+
+    /**
+     * Creates a new XYZMap with the given load factor and initial capacity, using the implementation selected by the
+     * {@code cubicchunks.packedXYZMap} system property.
+     *
+     * @param loadFactor the load factor
+     * @param capacity   the initial capacity
+     * @param <T> class of the objects to be contained in the map
+     * @return the new map
+     */
+    public static <T extends XYZAddressable> XYZMap<T> create(float loadFactor, int capacity) {
+        return USE_PACKED_MAP ? new PackedXYZMap<>(loadFactor, capacity) : new XYZMap<>(loadFactor, capacity);
+    }
+
     @SuppressWarnings("unchecked")
     private Node<T>[] nodeArray(int size) {
         return (Node<T>[]) new Node[size];
@@ -367,7 +400,7 @@ public class XYZMap<T extends XYZAddressable> implements Iterable<T> {
         this.mask = this.bucketsByHash.length - 1;
     }
 
-    private void checkThreadedWrite() {
+    void checkThreadedWrite() {
         if (CHECK_THREADED_WRITES) {
             if (Thread.currentThread() != debugStartThreadRef) {
                 LOGGER.error("Invalid threaded write access", new RuntimeException("Detected XYZ map write access from unexpected thread!"));
@@ -437,7 +470,40 @@ public class XYZMap<T extends XYZAddressable> implements Iterable<T> {
      * @return An iterator that starts at randomized position based on seed
      **/
     public Iterator<T> randomWrappedIterator(int seed) {
-        throw new UnsupportedOperationException();
+        return new Iterator<T>() {
+            private final Node<T>[] buckets = XYZMap.this.bucketsByHash;
+            private final int start = seed & (this.buckets.length - 1);
+            private int visited = 0;
+            private Node<T> next = this.seek(null);
+
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Node<T> node = this.next;
+                this.next = this.seek(node);
+                return node.value;
+            }
+
+            private Node<T> seek(@Nullable Node<T> node) {
+                if (node != null && node.next != null) {
+                    return node.next;
+                }
+                while (this.visited < this.buckets.length) {
+                    Node<T> root = this.buckets[(this.start + this.visited++) & (this.buckets.length - 1)];
+                    if (root != null) {
+                        return root;
+                    }
+                }
+                return null;
+            }
+        };
     }
 
     private static final class Node<T extends XYZAddressable> {
@@ -194,8 +194,32 @@ public interface ICube extends XYZAddressable, ICapabilityProvider {
      */
     boolean containsBlockPos(BlockPos blockPos);
 
+    /**
+     * Retrieve the block storage of this cube, if it has one. A cube without storage is either all air, or consists of a
+     * single opaque block (for example stone far below the surface) that isn't stored block by block. Code that reads
+     * blocks through a storage should use {@link #getReadOnlyStorage()} instead, code that modifies the storage
+     * {@link #getStorageForWrite()}.
+     *
+     * @return the block storage, or {@code null} if this cube has none
+     */
     @Nullable ExtendedBlockStorage getStorage();
 
+    /**
+     * Retrieve the block storage of this cube, creating it first if the cube consists of a single block without
+     * storage. Changes to the returned storage are changes to this cube.
+     *
+     * @return the block storage, or {@code null} if this cube is all air and has none
+     */
+    @Nullable ExtendedBlockStorage getStorageForWrite();
+
+    /**
+     * Retrieve a storage with the blocks and light of this cube, without creating anything for this cube. For cubes
+     * without storage, this is a storage shared with other cubes with the same contents, it must never be modified.
+     *
+     * @return a storage with the contents of this cube, or {@code null} if this cube is all air and has no light data
+     */
+    @Nullable ExtendedBlockStorage getReadOnlyStorage();
+
     /**
      * Retrieve a map of positions to their respective tile entities
      *
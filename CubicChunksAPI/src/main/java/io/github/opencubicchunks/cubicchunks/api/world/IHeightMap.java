@@ -42,6 +42,22 @@ public interface IHeightMap {
      */
     void onOpacityChange(int localX, int blockY, int localZ, int opacity);
 
+    /**
+     * Sets the opacity of all blocks in a 16 block high section of a block column. The result is the same as calling
+     * {@link #onOpacityChange(int, int, int, int)} for each block from top to bottom, but the height only needs to be
+     * updated once.
+     *
+     * @param localX local block x-coordinate (0..15)
+     * @param localZ local block z-coordinate (0..15)
+     * @param minBlockY global y-coordinate of the lowest block of the section
+     * @param opacity new opacity of each block (0..255), starting with the one at minBlockY
+     */
+    default void onOpacityChange(int localX, int localZ, int minBlockY, int[] opacity) {
+        for (int y = opacity.length - 1; y >= 0; y--) {
+            onOpacityChange(localX, minBlockY + y, localZ, opacity[y]);
+        }
+    }
+
     /**
      * Returns true if the block at the given position is occluded by a known non-opaque block further up.
      *
@@ -49,6 +49,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
 
 import io.github.opencubicchunks.cubicchunks.api.worldgen.populator.ICubicPopulator;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.populator.PopulatorProfiling;
 import net.minecraftforge.fml.common.IWorldGenerator;
 import net.minecraftforge.fml.common.registry.GameRegistry;
 
@@ -82,7 +83,7 @@ public class CubeGeneratorsRegistry {
      */
     public static void generateWorld(World world, Random random, CubePos pos, Biome biome) {
         for (GeneratorWrapper wrapper : sortedGeneratorList) {
-            wrapper.populator.generate(world, random, pos, biome);
+            PopulatorProfiling.generate(wrapper.populator, world, random, pos, biome);
         }
     }
 
@@ -140,7 +141,7 @@ public class CubeGeneratorsRegistry {
     
     public static void populateVanillaCubic(World world, Random rand, ICube cube) {
         for (ICubicPopulator populator : customPopulatorsForFlatCubicGenerator) {
-            populator.generate(world, rand, cube.getCoords(), cube.getBiome(cube.getCoords().getCenterBlockPos()));
+            PopulatorProfiling.generate(populator, world, rand, cube.getCoords(), cube.getBiome(cube.getCoords().getCenterBlockPos()));
         }
     }
 }
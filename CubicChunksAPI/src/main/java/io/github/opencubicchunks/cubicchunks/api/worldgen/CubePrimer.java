@@ -128,6 +128,19 @@ public class CubePrimer implements AutoCloseable {
         }*/
     }
 
+    /**
+     * Returns the block state ids stored in this primer, indexed by {@code y << 8 | z << 4 | x}. This allows copying the
+     * primer into a cube without looking up the block state of every position.
+     * <p>
+     * Subclasses may store blocks elsewhere, so this returns null for them unless overridden.
+     *
+     * @return the block state ids, or null if not available. The returned array must not be modified.
+     */
+    @Nullable
+    public char[] getBlockStateIds() {
+        return getClass() == CubePrimer.class ? this.data : null;
+    }
+
     /**
      * Map cube local coordinates to an array index in the range [0, 4095].
      *
@@ -67,6 +67,18 @@ public interface ICubeGenerator {
      */
     CubePrimer generateCube(int cubeX, int cubeY, int cubeZ);
 
+    /**
+     * Whether {@link #generateCube(int, int, int)} may be called from threads other than the server thread, concurrently
+     * with itself and with any other method of this generator. Generators that return true get the terrain of cubes
+     * that will likely be needed soon generated ahead on worker threads. All other methods are still only called from
+     * the server thread.
+     *
+     * @return true if terrain generation is thread safe
+     */
+    default boolean isThreadSafeTerrainGeneration() {
+        return false;
+    }
+
     /**
      * Generate column-global information such as biome data
      *
@@ -0,0 +1,102 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.api.worldgen;
+
+import io.github.opencubicchunks.cubicchunks.api.util.IdAccess;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * A cube primer filled with a single block state, for cubes that are all air or all of one filler block. Until a
+ * different block is set, it doesn't store anything per block, and a cube created from it doesn't need to look at
+ * each block either.
+ * <p>
+ * Setting a block to a different state turns this into a regular primer with the uniform state as background.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class UniformCubePrimer extends CubePrimer {
+
+    private final IBlockState state;
+    @Nullable private char[] overrides;
+
+    /**
+     * @param state the block state at every position of this primer
+     */
+    public UniformCubePrimer(IBlockState state) {
+        super(null);
+        this.state = state;
+    }
+
+    /**
+     * @return the block state at every position, or null if some blocks have been set to a different state
+     */
+    @Nullable
+    public IBlockState getUniformState() {
+        return this.overrides == null ? this.state : null;
+    }
+
+    @Override
+    public IBlockState getBlockState(int x, int y, int z) {
+        if (this.overrides == null) {
+            return this.state;
+        }
+        @SuppressWarnings("deprecation")
+        IBlockState iblockstate = Block.BLOCK_STATE_IDS.getByValue(this.overrides[getBlockIndex(x, y, z)]);
+        return iblockstate == null ? DEFAULT_STATE : iblockstate;
+    }
+
+    @Override
+    public void setBlockState(int x, int y, int z, @Nonnull IBlockState state) {
+        if (this.overrides == null) {
+            if (state == this.state) {
+                return;
+            }
+            this.overrides = new char[4096];
+            Arrays.fill(this.overrides, (char) ((IdAccess) this.state).getId());
+        }
+        this.overrides[getBlockIndex(x, y, z)] = (char) ((IdAccess) state).getId();
+    }
+
+    /**
+     * @return the block state ids once some blocks have been set to a different state, null while this is uniform
+     */
+    @Nullable
+    @Override
+    public char[] getBlockStateIds() {
+        return this.overrides;
+    }
+
+    private static int getBlockIndex(int x, int y, int z) {
+        return y << 8 | z << 4 | x;
+    }
+}
@@ -60,6 +60,8 @@ public final class CubicPopulatorList implements ICubicPopulator {
     }
 
     @Override public void generate(World world, Random random, CubePos pos, Biome biome) {
-        list.forEach(p -> p.generate(world, random, pos, biome));
+        for (ICubicPopulator populator : list) {
+            PopulatorProfiling.generate(populator, world, random, pos, biome);
+        }
     }
 }
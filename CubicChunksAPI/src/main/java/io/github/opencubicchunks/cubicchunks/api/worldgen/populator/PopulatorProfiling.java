@@ -0,0 +1,86 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.api.worldgen.populator;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.Biome;
+
+import java.util.Random;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Lets cubic chunks measure populators. {@link CubicPopulatorList} and {@link
+ * io.github.opencubicchunks.cubicchunks.api.worldgen.CubeGeneratorsRegistry} run their populators through
+ * {@link #generate}, which calls the populator directly unless a profiler is installed.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public final class PopulatorProfiling {
+
+    @Nullable private static volatile Profiler profiler;
+
+    private PopulatorProfiling() {
+        throw new Error();
+    }
+
+    /**
+     * Runs a populator, measured by the current profiler if there is one.
+     *
+     * @see ICubicPopulator#generate(World, Random, CubePos, Biome)
+     */
+    public static void generate(ICubicPopulator populator, World world, Random random, CubePos pos, Biome biome) {
+        Profiler p = profiler;
+        if (p == null) {
+            populator.generate(world, random, pos, biome);
+        } else {
+            p.generate(populator, world, random, pos, biome);
+        }
+    }
+
+    /**
+     * @param profiler the profiler to run all populators through, or null to stop profiling
+     */
+    public static void setProfiler(@Nullable Profiler profiler) {
+        PopulatorProfiling.profiler = profiler;
+    }
+
+    @Nullable
+    public static Profiler getProfiler() {
+        return profiler;
+    }
+
+    public interface Profiler {
+
+        /**
+         * Runs the populator and records whatever the profiler measures. Must call
+         * {@link ICubicPopulator#generate(World, Random, CubePos, Biome)} exactly once.
+         */
+        void generate(ICubicPopulator populator, World world, Random random, CubePos pos, Biome biome);
+    }
+}
@@ -26,6 +26,7 @@ package io.github.opencubicchunks.cubicchunks.api.worldgen.structure.feature;
 
 import static io.github.opencubicchunks.cubicchunks.api.util.Coords.cubeToCenterBlock;
 
+import com.google.common.collect.Iterables;
 import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
 import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
 import io.github.opencubicchunks.cubicchunks.api.util.XYZMap;
@@ -65,9 +66,14 @@ public abstract class CubicFeatureGenerator implements ICubicFeatureGenerator {
     /**
      * Used to store a list of all structures that have been recursively generated. Used so that during recursive
      * generation, the structure generator can avoid generating structures that intersect ones that have already been
-     * placed.
+     * placed. Only modified through {@link #addStructureStart}, so that it stays in sync with {@link #structureIndex}.
      */
-    protected XYZMap<ICubicFeatureStart> structureMap = new XYZMap<>(0.5f, 1024);
+    private final XYZMap<ICubicFeatureStart> structureMap = new XYZMap<>(0.5f, 1024);
+
+    /**
+     * The same structures as {@link #structureMap}, by their bounding box. Used for everything that looks for structures at some position.
+     */
+    private final StructureStartIndex structureIndex = new StructureStartIndex();
 
     protected CubicFeatureGenerator(int spacingBitCount, int spacingBitCountY) {
         this.spacingBitCount = spacingBitCount;
@@ -87,7 +93,7 @@ public abstract class CubicFeatureGenerator implements ICubicFeatureGenerator {
             try {
                 if (this.canSpawnStructureAtCoords(world, rand, structureX, structureY, structureZ)) {
                     StructureStart start = this.getStructureStart(world, rand, structureX, structureY, structureZ);
-                    this.structureMap.put((ICubicFeatureStart) start);
+                    this.addStructureStart(start);
                     if (start.isSizeableStructure()) {
                         this.setStructureStart(structureX, structureY, structureZ, start);
                     }
@@ -110,17 +116,17 @@ public abstract class CubicFeatureGenerator implements ICubicFeatureGenerator {
         int centerY = cubeToCenterBlock(cubePos.getY());
         int centerZ = cubeToCenterBlock(cubePos.getZ());
         boolean generated = false;
-        for (ICubicFeatureStart cubicStructureStart : this.structureMap) {
-            StructureStart structStart = (StructureStart) cubicStructureStart;
+        StructureBoundingBox cubeBox =
+                new StructureBoundingBox(centerX, centerY, centerZ, centerX + ICube.SIZE - 1, centerY + ICube.SIZE - 1, centerZ + ICube.SIZE - 1);
+        for (StructureStart structStart : this.structureIndex.getIntersecting(cubeBox)) {
             // TODO: cubic chunks version of isValidForPostProcess and notifyPostProcess (mixin)
-            if (structStart.isSizeableStructure() && structStart.isValidForPostProcess(cubePos.chunkPos())
-                    && structStart.getBoundingBox().intersectsWith(
-                    new StructureBoundingBox(centerX, centerY, centerZ, centerX + ICube.SIZE - 1, centerY + ICube.SIZE - 1, centerZ + ICube.SIZE - 1))) {
+            if (structStart.isSizeableStructure() && structStart.isValidForPostProcess(cubePos.chunkPos())) {
                 structStart.generateStructure(world, rand,
                         new StructureBoundingBox(centerX, centerY, centerZ, centerX + ICube.SIZE - 1, centerY + ICube.SIZE - 1, centerZ + ICube.SIZE - 1));
                 structStart.notifyPostProcessAt(cubePos.chunkPos());
                 generated = true;
-                this.setStructureStart(structStart.getChunkPosX(), cubicStructureStart.getChunkPosY(), structStart.getChunkPosZ(), structStart);
+                this.setStructureStart(structStart.getChunkPosX(), ((ICubicFeatureStart) structStart).getChunkPosY(), structStart.getChunkPosZ(),
+                        structStart);
             }
         }
 
@@ -134,29 +140,22 @@ public abstract class CubicFeatureGenerator implements ICubicFeatureGenerator {
 
     @Nullable
     protected StructureStart getStructureAt(BlockPos pos) {
-        for (ICubicFeatureStart cubicStructureStart : this.structureMap) {
-            StructureStart start = (StructureStart) cubicStructureStart;
-
-            if (start.isSizeableStructure() && start.getBoundingBox().isVecInside(pos)) {
+        return this.structureIndex.findFirst(pos.getX(), pos.getY(), pos.getZ(), pos.getX(), pos.getY(), pos.getZ(), start -> {
+            if (start.isSizeableStructure()) {
                 for (StructureComponent component : start.getComponents()) {
                     if (component.getBoundingBox().isVecInside(pos)) {
-                        return start;
+                        return true;
                     }
                 }
             }
-        }
-        return null;
+            return false;
+        });
     }
 
     @Override public boolean isPositionInStructure(World world, BlockPos pos) {
         this.initializeStructureData(world);
-        for (ICubicFeatureStart cubicStart : this.structureMap) {
-            StructureStart start = (StructureStart) cubicStart;
-            if (start.isSizeableStructure() && start.getBoundingBox().isVecInside(pos)) {
-                return true;
-            }
-        }
-        return false;
+        return this.structureIndex.findFirst(pos.getX(), pos.getY(), pos.getZ(), pos.getX(), pos.getY(), pos.getZ(),
+                StructureStart::isSizeableStructure) != null;
     }
 
     protected void initializeStructureData(World world) {
@@ -181,7 +180,7 @@ public abstract class CubicFeatureGenerator implements ICubicFeatureGenerator {
                         StructureStart structurestart = MapGenStructureIO.getStructureStart(tag, world);
 
                         if (structurestart != null) {
-                            this.structureMap.put((ICubicFeatureStart) structurestart);
+                            this.addStructureStart(structurestart);
                         }
                     }
                 }
@@ -189,6 +188,18 @@ public abstract class CubicFeatureGenerator implements ICubicFeatureGenerator {
         }
     }
 
+    /**
+     * @return a read-only view of all structure starts known to this generator
+     */
+    protected Iterable<ICubicFeatureStart> getStructureStarts() {
+        return Iterables.unmodifiableIterable(this.structureMap);
+    }
+
+    private void addStructureStart(StructureStart start) {
+        this.structureMap.put((ICubicFeatureStart) start);
+        this.structureIndex.add(start);
+    }
+
     private void setStructureStart(int chunkX, int chunkY, int chunkZ, StructureStart start) {
         this.structureData.writeInstance(start.writeStructureComponentsToNBT(chunkX, chunkZ), chunkX, chunkY, chunkZ);
         this.structureData.markDirty();
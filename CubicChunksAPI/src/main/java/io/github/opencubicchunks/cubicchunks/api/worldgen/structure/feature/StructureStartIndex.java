@@ -0,0 +1,177 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.api.worldgen.structure.feature;
+
+import io.github.opencubicchunks.cubicchunks.api.util.XYZAddressable;
+import io.github.opencubicchunks.cubicchunks.api.util.XYZMap;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+import net.minecraft.world.gen.structure.StructureStart;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Grid of {@link StructureStart}s by their bounding box, so that finding the structures at some position doesn't need to
+ * check every structure ever generated in the world.
+ * <p>
+ * Each structure is added to every {@link #CELL_SIZE} blocks large cell its bounding box intersects, using the bounding
+ * box it has when it's added. Structures spanning too many cells are kept in a separate list that is always checked.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+class StructureStartIndex {
+
+    private static final int CELL_BITS = 8;
+    static final int CELL_SIZE = 1 << CELL_BITS;
+    private static final int MAX_CELLS_PER_START = 64;
+
+    private final XYZMap<Cell> cells = XYZMap.create(0.5f, 256);
+    private final List<Entry> largeStarts = new ArrayList<>();
+
+    void add(StructureStart start) {
+        StructureBoundingBox box = start.getBoundingBox();
+        if (box.minX > box.maxX || box.minY > box.maxY || box.minZ > box.maxZ) {
+            return; // structure without any components, it can't contain anything
+        }
+        Entry entry = new Entry(start, box.minX >> CELL_BITS, box.minY >> CELL_BITS, box.minZ >> CELL_BITS);
+        int maxCellX = box.maxX >> CELL_BITS;
+        int maxCellY = box.maxY >> CELL_BITS;
+        int maxCellZ = box.maxZ >> CELL_BITS;
+        long cellCount = (long) (maxCellX - entry.minCellX + 1) * (maxCellY - entry.minCellY + 1) * (maxCellZ - entry.minCellZ + 1);
+        if (cellCount > MAX_CELLS_PER_START) {
+            largeStarts.add(entry);
+            return;
+        }
+        for (int cellX = entry.minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellY = entry.minCellY; cellY <= maxCellY; cellY++) {
+                for (int cellZ = entry.minCellZ; cellZ <= maxCellZ; cellZ++) {
+                    Cell cell = cells.get(cellX, cellY, cellZ);
+                    if (cell == null) {
+                        cell = new Cell(cellX, cellY, cellZ);
+                        cells.put(cell);
+                    }
+                    cell.entries.add(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds a structure start whose bounding box intersects the given box and matches the given predicate.
+     *
+     * @return the first matching structure start, or null if there isn't one
+     */
+    @Nullable
+    StructureStart findFirst(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, Predicate<StructureStart> predicate) {
+        for (Entry entry : largeStarts) {
+            if (intersects(entry.start.getBoundingBox(), minX, minY, minZ, maxX, maxY, maxZ) && predicate.test(entry.start)) {
+                return entry.start;
+            }
+        }
+        int minCellX = minX >> CELL_BITS;
+        int minCellY = minY >> CELL_BITS;
+        int minCellZ = minZ >> CELL_BITS;
+        for (int cellX = minCellX; cellX <= maxX >> CELL_BITS; cellX++) {
+            for (int cellY = minCellY; cellY <= maxY >> CELL_BITS; cellY++) {
+                for (int cellZ = minCellZ; cellZ <= maxZ >> CELL_BITS; cellZ++) {
+                    Cell cell = cells.get(cellX, cellY, cellZ);
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Entry entry : cell.entries) {
+                        // a structure in more than one of the checked cells is only handled in the first one of them
+                        if (cellX != Math.max(entry.minCellX, minCellX)
+                                || cellY != Math.max(entry.minCellY, minCellY)
+                                || cellZ != Math.max(entry.minCellZ, minCellZ)) {
+                            continue;
+                        }
+                        if (intersects(entry.start.getBoundingBox(), minX, minY, minZ, maxX, maxY, maxZ) && predicate.test(entry.start)) {
+                            return entry.start;
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return all structure starts whose bounding box intersects the given box
+     */
+    List<StructureStart> getIntersecting(StructureBoundingBox box) {
+        List<StructureStart> starts = new ArrayList<>();
+        findFirst(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ, start -> {
+            starts.add(start);
+            return false;
+        });
+        return starts;
+    }
+
+    private static boolean intersects(StructureBoundingBox box, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return box.maxX >= minX && box.minX <= maxX && box.maxY >= minY && box.minY <= maxY && box.maxZ >= minZ && box.minZ <= maxZ;
+    }
+
+    private static final class Entry {
+
+        final StructureStart start;
+        final int minCellX, minCellY, minCellZ;
+
+        Entry(StructureStart start, int minCellX, int minCellY, int minCellZ) {
+            this.start = start;
+            this.minCellX = minCellX;
+            this.minCellY = minCellY;
+            this.minCellZ = minCellZ;
+        }
+    }
+
+    private static final class Cell implements XYZAddressable {
+
+        private final int x, y, z;
+        final List<Entry> entries = new ArrayList<>(1);
+
+        Cell(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        @Override public int getX() {
+            return x;
+        }
+
+        @Override public int getY() {
+            return y;
+        }
+
+        @Override public int getZ() {
+            return z;
+        }
+    }
+}
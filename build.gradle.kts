@@ -147,6 +147,9 @@ dependencies {
     testCompile("org.mockito:mockito-core:2.1.0-RC.2")
     testCompile("org.spongepowered:launchwrappertestsuite:1.0-SNAPSHOT")
 
+    // benchmarks run without a game instance, so the objects that can't be created there are mocked
+    jmh("org.mockito:mockito-core:2.1.0-RC.2")
+
     coreShadow("net.daporkchop:leveldb-mcpe-jni:0.0.9-SNAPSHOT") {
         isTransitive = false
     }
@@ -282,7 +285,10 @@ jmh {
     warmupBatchSize = 16
     warmupForks = 1
     warmupIterations = 10
-    profilers = listOf("perfasm")
+    // perfasm needs perf and hsdis, so it's only enabled on request: ./gradlew jmh -PjmhProfilers=perfasm
+    profilers = (project.findProperty("jmhProfilers") as String?)?.split(",") ?: listOf()
+    resultFormat = "JSON"
+    resultsFile = file("$buildDir/reports/jmh/results.json")
     jmhVersion = "1.17.1"
 }
 
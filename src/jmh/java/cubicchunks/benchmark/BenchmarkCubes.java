@@ -0,0 +1,163 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.github.opencubicchunks.cubicchunks.api.util.Coords;
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.world.IColumn;
+import io.github.opencubicchunks.cubicchunks.api.world.IHeightMap;
+import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
+import io.github.opencubicchunks.cubicchunks.core.lighting.LightingManager;
+import io.github.opencubicchunks.cubicchunks.core.world.EntityContainer;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.util.datafix.DataFixesManager;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProvider;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.common.IFMLSidedHandler;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Synthetic cubes for benchmarks. There is no game instance, so the world, columns and cubes are mocks that only
+ * provide what the serialization code needs, while the block storage is real.
+ */
+public final class BenchmarkCubes {
+
+    private static boolean initialized;
+
+    private BenchmarkCubes() {
+        throw new Error();
+    }
+
+    /**
+     * Registers the vanilla blocks and sets up the data fixer, which is otherwise done by FML.
+     */
+    public static synchronized void bootstrap() {
+        if (initialized) {
+            return;
+        }
+        Bootstrap.register();
+        IFMLSidedHandler sidedHandler = mock(IFMLSidedHandler.class);
+        when(sidedHandler.getDataFixer()).thenReturn(DataFixesManager.createFixer());
+        setField(FMLCommonHandler.class, FMLCommonHandler.instance(), "sidedDelegate", sidedHandler);
+        initialized = true;
+    }
+
+    public static World mockWorld(boolean hasSkyLight) {
+        World world = mock(World.class, withSettings().extraInterfaces(ICubicWorldInternal.class));
+        WorldProvider provider = mock(WorldProvider.class);
+        when(provider.hasSkyLight()).thenReturn(hasSkyLight);
+        setField(World.class, world, "provider", provider);
+        // creating a cube asks the lighting manager for its light update info
+        when(((ICubicWorldInternal) world).getLightingManager()).thenReturn(mock(LightingManager.class));
+        return world;
+    }
+
+    public static Chunk mockColumn(World world, int x, int z, IHeightMap heightMap) {
+        Chunk column = mock(Chunk.class, withSettings().extraInterfaces(IColumn.class));
+        when(column.getWorld()).thenReturn(world);
+        when(column.getHeightMap()).thenReturn(new int[Cube.SIZE * Cube.SIZE]);
+        when(((IColumn) column).getOpacityIndex()).thenReturn(heightMap);
+        setField(Chunk.class, column, "x", x);
+        setField(Chunk.class, column, "z", z);
+        return column;
+    }
+
+    /**
+     * A cube as seen by the code that saves or sends it.
+     */
+    public static Cube mockCube(Chunk column, int cubeY, ExtendedBlockStorage storage) {
+        Cube cube = mock(Cube.class);
+        World world = column.getWorld();
+        when(cube.getX()).thenReturn(column.x);
+        when(cube.getY()).thenReturn(cubeY);
+        when(cube.getZ()).thenReturn(column.z);
+        when(cube.getCoords()).thenReturn(new CubePos(column.x, cubeY, column.z));
+        when(cube.getWorld()).thenReturn(world);
+        when(cube.getColumn()).thenReturn(column);
+        when(cube.getStorage()).thenReturn(storage);
+        when(cube.isEmpty()).thenReturn(storage.isEmpty());
+        when(cube.getBiomeArray()).thenReturn(new byte[Coords.BIOMES_PER_CUBE]);
+        when(cube.getEntityContainer()).thenReturn(new EntityContainer());
+        when(cube.getTileEntityMap()).thenReturn(Collections.emptyMap());
+        cube.edgeNeedSkyLightUpdate = new boolean[6];
+        return cube;
+    }
+
+    private static void setField(Class<?> owner, Object target, String name, Object value) {
+        try {
+            Field field = owner.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Underground terrain: stone with some dirt, gravel and ores, with air above {@code airAboveY} (cube-local).
+     */
+    public static ExtendedBlockStorage terrain(Random random, int cubeY, int airAboveY, boolean hasSkyLight) {
+        IBlockState[] ores = {
+                Blocks.COAL_ORE.getDefaultState(), Blocks.IRON_ORE.getDefaultState(),
+                Blocks.GOLD_ORE.getDefaultState(), Blocks.DIAMOND_ORE.getDefaultState()
+        };
+        ExtendedBlockStorage ebs = new ExtendedBlockStorage(Coords.cubeToMinBlock(cubeY), hasSkyLight);
+        for (int y = 0; y < Cube.SIZE; y++) {
+            for (int z = 0; z < Cube.SIZE; z++) {
+                for (int x = 0; x < Cube.SIZE; x++) {
+                    IBlockState state;
+                    if (y > airAboveY) {
+                        state = Blocks.AIR.getDefaultState();
+                    } else if (random.nextInt(40) == 0) {
+                        state = ores[random.nextInt(ores.length)];
+                    } else if (random.nextInt(10) == 0) {
+                        state = random.nextBoolean() ? Blocks.DIRT.getDefaultState() : Blocks.GRAVEL.getDefaultState();
+                    } else {
+                        state = Blocks.STONE.getDefaultState();
+                    }
+                    ebs.set(x, y, z, state);
+                    ebs.setBlockLight(x, y, z, y > airAboveY ? random.nextInt(16) : 0);
+                    if (hasSkyLight) {
+                        ebs.setSkyLight(x, y, z, y > airAboveY ? 15 : 0);
+                    }
+                }
+            }
+        }
+        return ebs;
+    }
+}
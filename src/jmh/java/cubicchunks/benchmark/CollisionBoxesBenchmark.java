@@ -0,0 +1,139 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.benchmark;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.core.world.BlockCollisionBoxes;
+import io.github.opencubicchunks.cubicchunks.core.world.ICubeProviderInternal;
+import io.github.opencubicchunks.cubicchunks.core.world.ServerHeightMap;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+
+/**
+ * Block collision boxes for a crowd of mob sized entities standing on terrain, like in a mob farm.
+ */
+@State(Scope.Thread)
+public class CollisionBoxesBenchmark {
+
+    private static final int CUBES = 4;
+
+    @Param({"256"})
+    public int entities;
+
+    private World world;
+    private ICubeProviderInternal cubes;
+    private AxisAlignedBB[] boxes;
+    private final List<AxisAlignedBB> collisions = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        BenchmarkCubes.bootstrap();
+        Random random = new Random(42);
+        this.world = BenchmarkCubes.mockWorld(true);
+        Cube[][][] loaded = new Cube[CUBES][CUBES][CUBES];
+        for (int x = 0; x < CUBES; x++) {
+            for (int z = 0; z < CUBES; z++) {
+                Chunk column = BenchmarkCubes.mockColumn(this.world, x, z, new ServerHeightMap(new int[Cube.SIZE * Cube.SIZE]));
+                for (int y = 0; y < CUBES; y++) {
+                    // terrain surface in the middle of cube 1, everything above it is empty
+                    ExtendedBlockStorage storage = y <= 1
+                            ? BenchmarkCubes.terrain(random, y, y == 1 ? 7 : Cube.SIZE, true)
+                            : new ExtendedBlockStorage(y * Cube.SIZE, true);
+                    loaded[x][y][z] = BenchmarkCubes.mockCube(column, y, storage);
+                }
+            }
+        }
+        this.cubes = new CubeArray(loaded);
+
+        this.boxes = new AxisAlignedBB[this.entities];
+        for (int i = 0; i < this.entities; i++) {
+            double x = 1 + random.nextDouble() * (CUBES * Cube.SIZE - 2);
+            double z = 1 + random.nextDouble() * (CUBES * Cube.SIZE - 2);
+            double y = Cube.SIZE + 8 + random.nextDouble() * 2;
+            this.boxes[i] = new AxisAlignedBB(x - 0.3, y, z - 0.3, x + 0.3, y + 1.8, z + 0.3);
+        }
+    }
+
+    @Benchmark
+    public int collisionBoxes() {
+        int total = 0;
+        for (AxisAlignedBB box : this.boxes) {
+            this.collisions.clear();
+            BlockCollisionBoxes.collect(this.world, this.cubes, null, box, false, 0, CUBES * Cube.SIZE, this.collisions);
+            total += this.collisions.size();
+        }
+        return total;
+    }
+
+    private static final class CubeArray implements ICubeProviderInternal {
+
+        private final Cube[][][] cubes;
+
+        CubeArray(Cube[][][] cubes) {
+            this.cubes = cubes;
+        }
+
+        @Nullable @Override public Cube getLoadedCube(int cubeX, int cubeY, int cubeZ) {
+            if (cubeX < 0 || cubeY < 0 || cubeZ < 0 || cubeX >= CUBES || cubeY >= CUBES || cubeZ >= CUBES) {
+                return null;
+            }
+            return this.cubes[cubeX][cubeY][cubeZ];
+        }
+
+        @Nullable @Override public Cube getLoadedCube(CubePos coords) {
+            return getLoadedCube(coords.getX(), coords.getY(), coords.getZ());
+        }
+
+        @Override public Cube getCube(int cubeX, int cubeY, int cubeZ) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public Cube getCube(CubePos coords) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Nullable @Override public Chunk getLoadedColumn(int x, int z) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public Chunk provideColumn(int x, int z) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.benchmark;
+
+import io.github.opencubicchunks.cubicchunks.core.server.chunkio.BinaryCubeCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTSizeTracker;
+import net.minecraft.nbt.NBTTagCompound;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the block storage part of the NBT cube format with {@link BinaryCubeCodec}, for encode and decode time.
+ * The encoded sizes are printed after each trial.
+ */
+@State(Scope.Thread)
+public class CubeFormatBenchmark {
+
+    private static final int BLOCKS = 4096;
+
+    /**
+     * air: a single state, terrain: a few states in layers, noise: 200 random states
+     */
+    @Param({"air", "terrain", "noise"})
+    public String content;
+
+    private Integer[] states;
+    private int[] blocks;
+    private byte[] blockLight;
+    private byte[] skyLight;
+
+    private byte[] nbtData;
+    private byte[] binaryData;
+    private final Integer[] decoded = new Integer[BLOCKS];
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        this.states = new Integer[4096];
+        for (int i = 0; i < this.states.length; i++) {
+            this.states[i] = new Integer(i);
+        }
+        this.blocks = new int[BLOCKS];
+        this.blockLight = new byte[BLOCKS / 2];
+        this.skyLight = new byte[BLOCKS / 2];
+        for (int i = 0; i < BLOCKS; i++) {
+            int y = i >> 8;
+            switch (this.content) {
+                case "air":
+                    this.blocks[i] = 0;
+                    break;
+                case "terrain":
+                    this.blocks[i] = y > 10 ? 0 : y > 7 ? 3 << 4 : random.nextInt(50) == 0 ? (14 + random.nextInt(3)) << 4 : 1 << 4;
+                    break;
+                default:
+                    this.blocks[i] = random.nextInt(200) << 4;
+            }
+        }
+        if (!"air".equals(this.content)) {
+            random.nextBytes(this.blockLight);
+            random.nextBytes(this.skyLight);
+        }
+        this.nbtData = this.encodeNbt();
+        this.binaryData = this.encodeBinary();
+    }
+
+    @TearDown
+    public void printSizes() {
+        System.out.printf("%n%s: NBT %d bytes, binary %d bytes%n", this.content, this.nbtData.length, this.binaryData.length);
+    }
+
+    @Benchmark
+    public byte[] encodeNbt() throws IOException {
+        byte[] abyte = new byte[BLOCKS];
+        byte[] data = new byte[BLOCKS / 2];
+        for (int i = 0; i < BLOCKS; i++) {
+            int id = this.blocks[i];
+            abyte[i] = (byte) (id >> 4 & 0xFF);
+            data[i >> 1] |= (id & 0xF) << ((i & 1) << 2);
+        }
+        NBTTagCompound section = new NBTTagCompound();
+        section.setByteArray("Blocks", abyte);
+        section.setByteArray("Data", data);
+        section.setByteArray("BlockLight", this.blockLight);
+        section.setByteArray("SkyLight", this.skyLight);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BLOCKS * 3);
+        CompressedStreamTools.write(section, new DataOutputStream(out));
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Integer[] decodeNbt() throws IOException {
+        NBTTagCompound section = CompressedStreamTools.read(new DataInputStream(new ByteArrayInputStream(this.nbtData)), NBTSizeTracker.INFINITE);
+        byte[] abyte = section.getByteArray("Blocks");
+        byte[] data = section.getByteArray("Data");
+        section.getByteArray("BlockLight");
+        section.getByteArray("SkyLight");
+        for (int i = 0; i < BLOCKS; i++) {
+            int id = (abyte[i] & 0xFF) << 4 | data[i >> 1] >> ((i & 1) << 2) & 0xF;
+            this.decoded[i] = this.states[id];
+        }
+        return this.decoded;
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        ByteBuf buf = Unpooled.buffer(BLOCKS * 3);
+        BinaryCubeCodec.writeBlocks(buf, i -> this.states[this.blocks[i]], Integer::intValue);
+        BinaryCubeCodec.writeLight(buf, this.blockLight);
+        BinaryCubeCodec.writeLight(buf, this.skyLight);
+        byte[] arr = new byte[buf.readableBytes()];
+        buf.readBytes(arr);
+        return arr;
+    }
+
+    @Benchmark
+    public Integer[] decodeBinary() {
+        ByteBuf buf = Unpooled.wrappedBuffer(this.binaryData);
+        BinaryCubeCodec.readBlocks(buf, id -> this.states[id], (state, i) -> this.decoded[i] = state, null);
+        BinaryCubeCodec.readLight(buf);
+        BinaryCubeCodec.readLight(buf);
+        return this.decoded;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.benchmark;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.core.visibility.CuboidalCubeSelector;
+import net.minecraft.util.math.ChunkPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Finding the cubes and columns to load and unload when a player moves to the next cube.
+ */
+@State(Scope.Thread)
+public class CuboidalCubeSelectorBenchmark {
+
+    @Param({"8", "16", "32"})
+    public int horizontalViewDistance;
+
+    @Param({"8", "16"})
+    public int verticalViewDistance;
+
+    /**
+     * Direction of the movement: x moves along one axis, xyz diagonally.
+     */
+    @Param({"x", "xyz"})
+    public String direction;
+
+    private final CuboidalCubeSelector selector = new CuboidalCubeSelector();
+    private final Set<CubePos> cubesToRemove = new HashSet<>();
+    private final Set<CubePos> cubesToLoad = new HashSet<>();
+    private final Set<ChunkPos> columnsToRemove = new HashSet<>();
+    private final Set<ChunkPos> columnsToLoad = new HashSet<>();
+    private CubePos oldPos;
+    private CubePos newPos;
+
+    @Setup
+    public void setup() {
+        this.oldPos = new CubePos(0, 4, 0);
+        this.newPos = "x".equals(this.direction) ? new CubePos(1, 4, 0) : new CubePos(1, 5, 1);
+    }
+
+    @Benchmark
+    public int findChanged() {
+        this.cubesToRemove.clear();
+        this.cubesToLoad.clear();
+        this.columnsToRemove.clear();
+        this.columnsToLoad.clear();
+        this.selector.findChanged(this.oldPos, this.newPos, this.horizontalViewDistance, this.verticalViewDistance,
+                this.cubesToRemove, this.cubesToLoad, this.columnsToRemove, this.columnsToLoad);
+        return this.cubesToRemove.size() + this.cubesToLoad.size() + this.columnsToRemove.size() + this.columnsToLoad.size();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.benchmark;
+
+import io.github.opencubicchunks.cubicchunks.core.lighting.ILightBlockAccess;
+import io.github.opencubicchunks.cubicchunks.core.lighting.LightPropagator;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.EnumSkyBlock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Placing and removing light sources in a synthetic block volume, which runs both the light decrease and the light
+ * spreading part of {@link LightPropagator#propagateLight}.
+ * <p>
+ * Apart from the positions passed to the update callback, this shouldn't allocate anything, which can be checked by
+ * running it with {@code -PjmhProfilers=gc}.
+ */
+@State(Scope.Thread)
+public class LightPropagatorBenchmark {
+
+    private static final int SIZE = 64;
+
+    @Param({"1", "16"})
+    public int sources;
+
+    /**
+     * Percentage of opaque blocks in the volume.
+     */
+    @Param({"0", "30"})
+    public int opaquePercent;
+
+    private final LightPropagator propagator = new LightPropagator();
+    private BlockAccess blocks;
+    private List<BlockPos> sourcePositions;
+    private int updates;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        this.blocks = new BlockAccess();
+        for (int i = 0; i < this.blocks.opacity.length; i++) {
+            this.blocks.opacity[i] = (byte) (random.nextInt(100) < this.opaquePercent ? 255 : 0);
+        }
+        this.sourcePositions = new ArrayList<>();
+        for (int i = 0; i < this.sources; i++) {
+            BlockPos pos = new BlockPos(random.nextInt(9) - 4, random.nextInt(9) - 4, random.nextInt(9) - 4);
+            this.blocks.opacity[index(pos)] = 0;
+            this.blocks.source[index(pos)] = true;
+            this.sourcePositions.add(pos);
+        }
+    }
+
+    @Benchmark
+    public int placeAndRemoveLight() {
+        this.updates = 0;
+        this.blocks.emitting = true;
+        this.propagator.propagateLight(BlockPos.ORIGIN, this.sourcePositions, this.blocks, EnumSkyBlock.BLOCK, pos -> this.updates++);
+        this.blocks.emitting = false;
+        this.propagator.propagateLight(BlockPos.ORIGIN, this.sourcePositions, this.blocks, EnumSkyBlock.BLOCK, pos -> this.updates++);
+        return this.updates;
+    }
+
+    private static boolean inVolume(int x, int y, int z) {
+        int half = SIZE / 2;
+        return x >= -half && x < half
+                && y >= -half && y < half
+                && z >= -half && z < half;
+    }
+
+    private static int index(BlockPos pos) {
+        return index(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    private static int index(int x, int y, int z) {
+        int half = SIZE / 2;
+        return ((y + half) * SIZE + z + half) * SIZE + x + half;
+    }
+
+    /**
+     * A volume of {@link #SIZE} blocks around the origin, everything outside of it behaves like an unloaded cube.
+     */
+    private static final class BlockAccess implements ILightBlockAccess {
+
+        final byte[] light = new byte[SIZE * SIZE * SIZE];
+        final byte[] opacity = new byte[SIZE * SIZE * SIZE];
+        final boolean[] source = new boolean[SIZE * SIZE * SIZE];
+        boolean emitting;
+
+        @Override public int getBlockLightOpacity(int x, int y, int z) {
+            return inVolume(x, y, z) ? this.opacity[index(x, y, z)] & 0xFF : 255;
+        }
+
+        @Override public int getLightFor(EnumSkyBlock lightType, int x, int y, int z) {
+            return inVolume(x, y, z) ? this.light[index(x, y, z)] : 0;
+        }
+
+        @Override public boolean setLightFor(EnumSkyBlock lightType, int x, int y, int z, int val) {
+            if (!inVolume(x, y, z)) {
+                return false;
+            }
+            this.light[index(x, y, z)] = (byte) val;
+            return true;
+        }
+
+        @Override public boolean canSeeSky(int x, int y, int z) {
+            return false;
+        }
+
+        @Override public int getEmittedLight(int x, int y, int z, EnumSkyBlock type) {
+            return this.emitting && inVolume(x, y, z) && this.source[index(x, y, z)] ? 15 : 0;
+        }
+
+        @Override public void markEdgeNeedLightUpdate(int x, int y, int z, EnumSkyBlock type) {
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.benchmark;
+
+import io.github.opencubicchunks.cubicchunks.core.util.WatcherPriorityQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Reordering of the PlayerCubeMap generation queue after players move, with 200 players and 100k pending watchers.
+ * Compares sorting the whole queue with re-bucketing only the watchers in view of the moved players.
+ */
+@State(Scope.Thread)
+public class WatcherPriorityQueueBenchmark {
+
+    private static final int PLAYERS = 200;
+    private static final int SIZE_XZ = 100;
+    private static final int SIZE_Y = 10;
+    private static final int VIEW_DISTANCE = 8;
+
+    /**
+     * Amount of players that move into a new cube before each reordering.
+     */
+    @Param({"1", "10", "200"})
+    public int movedPlayers;
+
+    private Player[] players;
+    // all 100k watchers, indexed by position
+    private Watcher[] watchers;
+    private WatchersSortingList<Watcher> list;
+    private WatcherPriorityQueue<Watcher> queue;
+    private int direction = 1;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        this.players = new Player[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            this.players[i] = new Player(random.nextInt(SIZE_XZ), random.nextInt(SIZE_Y), random.nextInt(SIZE_XZ));
+        }
+        this.watchers = new Watcher[SIZE_XZ * SIZE_Y * SIZE_XZ];
+        this.list = new WatchersSortingList<>(Comparator.comparingDouble(Watcher::getClosestPlayerDistance));
+        this.queue = new WatcherPriorityQueue<>(w -> (int) Math.sqrt(w.getClosestPlayerDistance()) >> 4, 255);
+        for (int x = 0; x < SIZE_XZ; x++) {
+            for (int y = 0; y < SIZE_Y; y++) {
+                for (int z = 0; z < SIZE_XZ; z++) {
+                    Watcher watcher = new Watcher(x, y, z);
+                    this.watchers[index(x, y, z)] = watcher;
+                    this.list.appendToEnd(watcher);
+                    this.queue.appendToEnd(watcher);
+                }
+            }
+        }
+        this.list.sort();
+    }
+
+    @Benchmark
+    public WatchersSortingList<Watcher> sortAll() {
+        movePlayers();
+        this.list.sort();
+        return this.list;
+    }
+
+    @Benchmark
+    public WatcherPriorityQueue<Watcher> rebucketMoved() {
+        movePlayers();
+        for (int i = 0; i < this.movedPlayers; i++) {
+            Player player = this.players[i];
+            int minX = Math.max(0, player.x - VIEW_DISTANCE - 1), maxX = Math.min(SIZE_XZ - 1, player.x + VIEW_DISTANCE + 1);
+            int minY = Math.max(0, player.y - VIEW_DISTANCE), maxY = Math.min(SIZE_Y - 1, player.y + VIEW_DISTANCE);
+            int minZ = Math.max(0, player.z - VIEW_DISTANCE), maxZ = Math.min(SIZE_XZ - 1, player.z + VIEW_DISTANCE);
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    for (int z = minZ; z <= maxZ; z++) {
+                        this.queue.markDirty(this.watchers[index(x, y, z)]);
+                    }
+                }
+            }
+        }
+        this.queue.updateDirtyPriorities();
+        return this.queue;
+    }
+
+    private void movePlayers() {
+        // move back and forth so that players stay in the same area
+        for (int i = 0; i < this.movedPlayers; i++) {
+            this.players[i].x += this.direction;
+        }
+        this.direction = -this.direction;
+    }
+
+    private static int index(int x, int y, int z) {
+        return (x * SIZE_Y + y) * SIZE_XZ + z;
+    }
+
+    static final class Player {
+        int x, y, z;
+
+        Player(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    final class Watcher {
+        final int x, y, z;
+        // players that have this watcher in view distance when the benchmark starts
+        final Player[] watchingPlayers;
+
+        Watcher(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            int count = 0;
+            Player[] inView = new Player[PLAYERS];
+            for (Player player : players) {
+                if (Math.abs(player.x - x) <= VIEW_DISTANCE && Math.abs(player.y - y) <= VIEW_DISTANCE
+                        && Math.abs(player.z - z) <= VIEW_DISTANCE) {
+                    inView[count++] = player;
+                }
+            }
+            this.watchingPlayers = Arrays.copyOf(inView, count);
+        }
+
+        // same as CubeWatcher.getClosestPlayerDistance, squared distance in blocks
+        double getClosestPlayerDistance() {
+            double min = Double.MAX_VALUE;
+            for (Player player : this.watchingPlayers) {
+                double dx = (player.x - this.x) * 16.0;
+                double dy = (player.y - this.y) * 16.0;
+                double dz = (player.z - this.z) * 16.0;
+                double dist = dx * dx + dy * dy + dz * dz;
+                if (dist < min) {
+                    min = dist;
+                }
+            }
+            return min;
+        }
+    }
+}
@@ -22,7 +22,7 @@
  *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  *  THE SOFTWARE.
  */
-package io.github.opencubicchunks.cubicchunks.core.util;
+package cubicchunks.benchmark;
 
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
@@ -38,6 +38,8 @@ import javax.annotation.Nonnull;
  * Helper class to delay removing of an elements. Created and used to reduce CPU
  * load during removing elements from this list on event of player movement as
  * replacement of {@code ArrayList}.
+ * <p>
+ * No longer used by PlayerCubeMap, only kept as the baseline for {@link WatcherPriorityQueueBenchmark}.
  */
 @SuppressWarnings({"unchecked"})
 public class WatchersSortingList<T> implements Iterable<T> {
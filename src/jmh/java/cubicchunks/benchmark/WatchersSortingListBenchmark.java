@@ -0,0 +1,85 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Sorting of the watcher queues, with a fraction of the entries changing priority between sorts like when players
+ * move.
+ */
+@State(Scope.Thread)
+public class WatchersSortingListBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    /**
+     * Percentage of entries that get a new priority before each sort.
+     */
+    @Param({"1", "10", "100"})
+    public int changedPercent;
+
+    private WatchersSortingList<Entry> list;
+    private Entry[] entries;
+    private Random random;
+
+    @Setup
+    public void setup() {
+        this.random = new Random(42);
+        this.list = new WatchersSortingList<>(Comparator.comparingInt(e -> e.priority));
+        this.entries = new Entry[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.entries[i] = new Entry(this.random.nextInt(1 << 16));
+            this.list.appendToEnd(this.entries[i]);
+        }
+        this.list.sort();
+    }
+
+    @Benchmark
+    public WatchersSortingList<Entry> sort() {
+        int changed = (int) ((long) this.size * this.changedPercent / 100);
+        for (int i = 0; i < changed; i++) {
+            this.entries[this.random.nextInt(this.size)].priority = this.random.nextInt(1 << 16);
+        }
+        this.list.sort();
+        return this.list;
+    }
+
+    static final class Entry {
+        int priority;
+
+        Entry(int priority) {
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks.benchmark;
+
+import io.github.opencubicchunks.cubicchunks.api.util.PackedXYZMap;
+import io.github.opencubicchunks.cubicchunks.api.util.XYZAddressable;
+import io.github.opencubicchunks.cubicchunks.api.util.XYZMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+/**
+ * Compares the chained {@link XYZMap} with the open addressing {@link PackedXYZMap} on maps the size of large
+ * servers.
+ */
+@State(Scope.Thread)
+public class XYZMapBenchmark {
+
+    @Param({"100000", "500000", "1000000", "2000000"})
+    public int size;
+
+    @Param({"chained", "packed"})
+    public String implementation;
+
+    private XYZMap<Entry> map;
+    private Entry[] entries;
+    private int[] missing;
+    private int index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        this.map = "packed".equals(this.implementation) ? new PackedXYZMap<>(0.7f, 8000) : new XYZMap<>(0.7f, 8000);
+        this.entries = new Entry[this.size];
+        // roughly cube shaped loaded area, the way cubes are loaded around players
+        int side = (int) Math.ceil(Math.cbrt(this.size));
+        for (int i = 0; i < this.size; i++) {
+            Entry e = new Entry(i % side - side / 2, (i / side) % side - side / 2, i / (side * side) - side / 2);
+            this.entries[i] = e;
+            this.map.put(e);
+        }
+        // shuffle so that lookups don't follow insertion order
+        for (int i = this.entries.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Entry tmp = this.entries[i];
+            this.entries[i] = this.entries[j];
+            this.entries[j] = tmp;
+        }
+        this.missing = new int[4096 * 3];
+        for (int i = 0; i < this.missing.length; i++) {
+            this.missing[i] = side + random.nextInt(side);
+        }
+    }
+
+    @Benchmark
+    public Entry getHit() {
+        Entry e = this.entries[this.index++ % this.entries.length];
+        return this.map.get(e.x, e.y, e.z);
+    }
+
+    @Benchmark
+    public Entry getMiss() {
+        int i = (this.index++ % 4096) * 3;
+        return this.map.get(this.missing[i], this.missing[i + 1], this.missing[i + 2]);
+    }
+
+    @Benchmark
+    public Entry removeAndPut() {
+        Entry e = this.entries[this.index++ % this.entries.length];
+        this.map.remove(e);
+        return this.map.put(e);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Entry e : this.map) {
+            bh.consume(e);
+        }
+    }
+
+    public static final class Entry implements XYZAddressable {
+
+        private final int x, y, z;
+
+        Entry(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        @Override public int getX() {
+            return x;
+        }
+
+        @Override public int getY() {
+            return y;
+        }
+
+        @Override public int getZ() {
+            return z;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.network;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import cubicchunks.benchmark.BenchmarkCubes;
+import io.github.opencubicchunks.cubicchunks.api.world.IColumn;
+import io.github.opencubicchunks.cubicchunks.core.world.ClientHeightMap;
+import io.github.opencubicchunks.cubicchunks.core.world.ServerHeightMap;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Encoding and decoding of the cube data sent to clients, for a column worth of cubes.
+ */
+@State(Scope.Thread)
+public class WorldEncoderBenchmark {
+
+    @Param({"1", "16"})
+    public int cubeCount;
+
+    @Param({"true", "false"})
+    public boolean sendHeightMaps;
+
+    private List<Cube> serverCubes;
+    private List<Cube> clientCubes;
+    private PacketBuffer buffer;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        BenchmarkCubes.bootstrap();
+        Random random = new Random(42);
+        World world = BenchmarkCubes.mockWorld(true);
+        Chunk serverColumn = BenchmarkCubes.mockColumn(world, 0, 0, new ServerHeightMap(new int[Cube.SIZE * Cube.SIZE]));
+        Chunk clientColumn = BenchmarkCubes.mockColumn(world, 0, 0, null);
+        when(((IColumn) clientColumn).getOpacityIndex())
+                .thenReturn(new ClientHeightMap(clientColumn, new int[Cube.SIZE * Cube.SIZE]));
+
+        this.serverCubes = new ArrayList<>();
+        this.clientCubes = new ArrayList<>();
+        for (int y = 0; y < this.cubeCount; y++) {
+            ExtendedBlockStorage storage = BenchmarkCubes.terrain(random, y, y == this.cubeCount - 1 ? 8 : 15, true);
+            this.serverCubes.add(BenchmarkCubes.mockCube(serverColumn, y, storage));
+            this.clientCubes.add(mockClientCube(clientColumn, world));
+        }
+        this.buffer = new PacketBuffer(Unpooled.buffer(WorldEncoder.getEncodedSize(this.serverCubes, this.sendHeightMaps)));
+        this.encodeCubes();
+        this.encoded = new byte[this.buffer.readableBytes()];
+        this.buffer.readBytes(this.encoded);
+    }
+
+    /**
+     * The client creates the cubes before decoding, so the storage set by the decoder has to be kept.
+     */
+    private static Cube mockClientCube(Chunk column, World world) {
+        Cube cube = mock(Cube.class);
+        ExtendedBlockStorage[] storage = new ExtendedBlockStorage[1];
+        when(cube.getWorld()).thenReturn(world);
+        when(cube.getColumn()).thenReturn(column);
+        doAnswer(invocation -> storage[0] = (ExtendedBlockStorage) invocation.getArguments()[0]).when(cube).setStorage(any());
+        when(cube.getStorage()).thenAnswer(invocation -> storage[0]);
+        return cube;
+    }
+
+    @Benchmark
+    public PacketBuffer encodeCubes() {
+        this.buffer.clear();
+        WorldEncoder.encodeCubes(this.buffer, this.serverCubes, this.sendHeightMaps);
+        return this.buffer;
+    }
+
+    @Benchmark
+    public List<Cube> decodeCube() {
+        WorldEncoder.decodeCube(new PacketBuffer(Unpooled.wrappedBuffer(this.encoded)), this.clientCubes);
+        return this.clientCubes;
+    }
+}
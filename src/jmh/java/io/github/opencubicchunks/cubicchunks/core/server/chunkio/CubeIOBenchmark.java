@@ -0,0 +1,93 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server.chunkio;
+
+import cubicchunks.benchmark.BenchmarkCubes;
+import io.github.opencubicchunks.cubicchunks.core.world.ServerHeightMap;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTSizeTracker;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Saving a cube to the bytes stored in the database and reading its blocks back, in both cube formats. Creating the
+ * cube object itself needs a real world, so reading stops at the block storage.
+ */
+@State(Scope.Thread)
+public class CubeIOBenchmark {
+
+    @Param({"nbt", "binary"})
+    public String format;
+
+    /**
+     * Height (cube-local) above which the cube is air, 15 for a cube full of terrain.
+     */
+    @Param({"-1", "8", "15"})
+    public int airAboveY;
+
+    private Cube cube;
+    private byte[] saved;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkCubes.bootstrap();
+        World world = BenchmarkCubes.mockWorld(true);
+        Chunk column = BenchmarkCubes.mockColumn(world, 0, 0, new ServerHeightMap(new int[Cube.SIZE * Cube.SIZE]));
+        ExtendedBlockStorage storage = BenchmarkCubes.terrain(new Random(42), 0, this.airAboveY, true);
+        this.cube = BenchmarkCubes.mockCube(column, 0, storage);
+        this.saved = this.write();
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        if ("binary".equals(this.format)) {
+            NBTTagCompound nbt = IONbtWriter.write(this.cube, false);
+            return BinaryCubeCodec.writeRecord(BinaryCubeCodec.encodeStorage(this.cube.getStorage(), true), nbt);
+        }
+        return LeveldbCubeIO.writeUncompressedNbtBytes(IONbtWriter.write(this.cube));
+    }
+
+    @Benchmark
+    public ExtendedBlockStorage read() throws IOException {
+        if ("binary".equals(this.format)) {
+            return BinaryCubeCodec.readRecord(this.saved, 0).blocks;
+        }
+        NBTTagCompound nbt = CompressedStreamTools.read(new ByteBufInputStream(Unpooled.wrappedBuffer(this.saved)), NBTSizeTracker.INFINITE);
+        return IONbtReader.readBlocks(nbt.getCompoundTag("Level"), 0, true);
+    }
+}
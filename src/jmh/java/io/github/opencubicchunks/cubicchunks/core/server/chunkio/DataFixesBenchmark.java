@@ -0,0 +1,105 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server.chunkio;
+
+import cubicchunks.benchmark.BenchmarkCubes;
+import io.github.opencubicchunks.cubicchunks.core.world.ServerHeightMap;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTSizeTracker;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.util.datafix.FixTypes;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Loading an up to date cube record in the NBT format, with the data fixer always run and with the check that skips it.
+ */
+@State(Scope.Thread)
+public class DataFixesBenchmark {
+
+    @Param({"fixer", "fastPath"})
+    public String mode;
+
+    /**
+     * Number of entities and of tile entities in the cube, each of them is walked by the fixer.
+     */
+    @Param({"0", "16", "256"})
+    public int entities;
+
+    private byte[] saved;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkCubes.bootstrap();
+        World world = BenchmarkCubes.mockWorld(true);
+        Chunk column = BenchmarkCubes.mockColumn(world, 0, 0, new ServerHeightMap(new int[Cube.SIZE * Cube.SIZE]));
+        ExtendedBlockStorage storage = BenchmarkCubes.terrain(new Random(42), 0, 8, true);
+        NBTTagCompound nbt = IONbtWriter.write(BenchmarkCubes.mockCube(column, 0, storage));
+
+        NBTTagList entityList = new NBTTagList();
+        NBTTagList tileEntityList = new NBTTagList();
+        for (int i = 0; i < this.entities; i++) {
+            NBTTagCompound entity = new NBTTagCompound();
+            entity.setString("id", "minecraft:zombie");
+            entity.setTag("ArmorItems", new NBTTagList());
+            entity.setTag("HandItems", new NBTTagList());
+            entityList.appendTag(entity);
+
+            NBTTagCompound tileEntity = new NBTTagCompound();
+            tileEntity.setString("id", "minecraft:chest");
+            tileEntity.setInteger("x", i & 15);
+            tileEntity.setInteger("y", 0);
+            tileEntity.setInteger("z", i >> 4 & 15);
+            tileEntity.setTag("Items", new NBTTagList());
+            tileEntityList.appendTag(tileEntity);
+        }
+        nbt.getCompoundTag("Level").setTag("Entities", entityList);
+        nbt.getCompoundTag("Level").setTag("TileEntities", tileEntityList);
+        this.saved = LeveldbCubeIO.writeUncompressedNbtBytes(nbt);
+    }
+
+    @Benchmark
+    public NBTTagCompound load() throws IOException {
+        NBTTagCompound nbt = CompressedStreamTools.read(new ByteBufInputStream(Unpooled.wrappedBuffer(this.saved)), NBTSizeTracker.INFINITE);
+        if ("fixer".equals(this.mode)) {
+            return FMLCommonHandler.instance().getDataFixer().process(FixTypes.CHUNK, nbt);
+        }
+        return DataFixes.fixChunk(nbt);
+    }
+}
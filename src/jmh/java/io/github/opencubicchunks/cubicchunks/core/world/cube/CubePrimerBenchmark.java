@@ -0,0 +1,109 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.world.cube;
+
+import cubicchunks.benchmark.BenchmarkCubes;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.core.world.ServerHeightMap;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Creating a cube from a generated primer, copying the block state ids in bulk compared to looking up each block.
+ */
+@State(Scope.Thread)
+public class CubePrimerBenchmark {
+
+    /**
+     * Cube-local y above which the primer is air. -1 is a cube in the sky, 15 is fully underground.
+     */
+    @Param({"-1", "8", "15"})
+    public int airAboveY;
+
+    private Chunk column;
+    private CubePrimer primer;
+    private CubePrimer perBlockPrimer;
+
+    @Setup
+    public void setup() {
+        BenchmarkCubes.bootstrap();
+        World world = BenchmarkCubes.mockWorld(true);
+        this.column = BenchmarkCubes.mockColumn(world, 0, 0, new ServerHeightMap(new int[Cube.SIZE * Cube.SIZE]));
+
+        this.primer = new CubePrimer();
+        this.perBlockPrimer = new PerBlockPrimer();
+        fillTerrain(new Random(42), this.airAboveY, this.primer);
+        fillTerrain(new Random(42), this.airAboveY, this.perBlockPrimer);
+    }
+
+    private static void fillTerrain(Random random, int airAboveY, CubePrimer primer) {
+        IBlockState[] ores = {
+                Blocks.COAL_ORE.getDefaultState(), Blocks.IRON_ORE.getDefaultState(),
+                Blocks.GOLD_ORE.getDefaultState(), Blocks.DIAMOND_ORE.getDefaultState()
+        };
+        for (int y = 0; y <= airAboveY; y++) {
+            for (int z = 0; z < Cube.SIZE; z++) {
+                for (int x = 0; x < Cube.SIZE; x++) {
+                    IBlockState state;
+                    if (y == airAboveY) {
+                        state = Blocks.GRASS.getDefaultState();
+                    } else if (random.nextInt(40) == 0) {
+                        state = ores[random.nextInt(ores.length)];
+                    } else if (random.nextInt(10) == 0) {
+                        state = random.nextBoolean() ? Blocks.DIRT.getDefaultState() : Blocks.GRAVEL.getDefaultState();
+                    } else {
+                        state = Blocks.STONE.getDefaultState();
+                    }
+                    primer.setBlockState(x, y, z, state);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Cube bulkCopy() {
+        return new Cube(this.column, 0, this.primer);
+    }
+
+    @Benchmark
+    public Cube perBlockCopy() {
+        return new Cube(this.column, 0, this.perBlockPrimer);
+    }
+
+    /**
+     * Subclasses don't expose their block state ids, so the cube falls back to looking up each block.
+     */
+    private static class PerBlockPrimer extends CubePrimer {
+    }
+}
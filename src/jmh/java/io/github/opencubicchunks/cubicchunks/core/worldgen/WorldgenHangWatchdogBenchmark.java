@@ -0,0 +1,78 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.worldgen;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.WeakHashMap;
+
+/**
+ * Overhead of the hang watchdog bookkeeping done around every generated cube, compared to the previous implementation
+ * that synchronized on a global {@link WeakHashMap}. Run with several threads to also see the contention.
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+public class WorldgenHangWatchdogBenchmark {
+
+    private final WeakHashMap<Thread, SynchronizedEntry> entries = new WeakHashMap<>();
+
+    @Benchmark
+    public void watchdog() {
+        WorldgenHangWatchdog.startWorldGen();
+        WorldgenHangWatchdog.endWorldGen();
+    }
+
+    @Benchmark
+    public void synchronizedWeakHashMap() {
+        synchronized (entries) {
+            entries.compute(Thread.currentThread(), (t, old) -> {
+                if (old == null) {
+                    return new SynchronizedEntry();
+                }
+                old.count++;
+                return old;
+            });
+        }
+        synchronized (entries) {
+            SynchronizedEntry e = entries.get(Thread.currentThread());
+            if (e != null) {
+                if (e.count <= 0) {
+                    entries.remove(Thread.currentThread());
+                } else {
+                    e.count--;
+                }
+            }
+        }
+    }
+
+    private static class SynchronizedEntry {
+
+        long startTime = System.nanoTime();
+        int count;
+    }
+}
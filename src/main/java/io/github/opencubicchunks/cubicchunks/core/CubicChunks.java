@@ -32,6 +32,9 @@ import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldSettings;
 import io.github.opencubicchunks.cubicchunks.core.asm.mixin.core.common.IIntegratedServer;
 import io.github.opencubicchunks.cubicchunks.core.client.ClientEventHandler;
 import io.github.opencubicchunks.cubicchunks.core.network.PacketDispatcher;
+import io.github.opencubicchunks.cubicchunks.core.server.CommandPregenerate;
+import io.github.opencubicchunks.cubicchunks.core.server.CommandProfilePopulators;
+import io.github.opencubicchunks.cubicchunks.core.server.CommandUpgradeRecords;
 import io.github.opencubicchunks.cubicchunks.core.util.CompatHandler;
 import io.github.opencubicchunks.cubicchunks.core.util.SideUtils;
 import io.github.opencubicchunks.cubicchunks.core.world.type.VanillaCubicWorldType;
@@ -155,6 +158,13 @@ public class CubicChunks {
         );
     }
     
+    @EventHandler
+    public void onServerStarting(FMLServerStartingEvent event) {
+        event.registerServerCommand(new CommandUpgradeRecords());
+        event.registerServerCommand(new CommandPregenerate());
+        event.registerServerCommand(new CommandProfilePopulators());
+    }
+
     @SubscribeEvent
     public static void registerRegistries(RegistryEvent.NewRegistry evt) {
         VanillaCompatibilityGeneratorProviderBase.init();
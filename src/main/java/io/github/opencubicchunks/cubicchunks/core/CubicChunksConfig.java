@@ -53,10 +53,62 @@ public class CubicChunksConfig {
     @Config.LangKey("cubicchunks.config.chunk_gc_interval")
     public static int chunkGCInterval = 20 * 10;
 
+    @Config.Comment("The amount of ticks a chunk has to stay unused before the chunk garbage collector unloads it. Higher value avoids "
+            + "loading chunks again when players come back soon, but increases memory usage.")
+    @Config.LangKey("cubicchunks.config.chunk_gc_unused_ticks")
+    @Config.RangeInt(min = 0)
+    public static int chunkGCUnusedTicks = 0;
+
+    @Config.Comment("The maximum number of cubes and columns the chunk garbage collector will unload in one tick.")
+    @Config.LangKey("cubicchunks.config.chunk_gc_max_unloads_per_tick")
+    public static int chunkGCMaxUnloadsPerTick = 4096;
+
+    @Config.Comment("The maximum time in milliseconds the chunk garbage collector will spend unloading chunks in one tick.")
+    @Config.LangKey("cubicchunks.config.chunk_gc_max_time_per_tick")
+    public static int chunkGCMaxTimePerTick = 5;
+
+    @Config.Comment("The maximum time in milliseconds spent on the server thread finishing cubes and columns loaded in the background, "
+            + "in one server tick, for all worlds together. Loads that don't fit are finished in the next tick. At least one load is finished "
+            + "every tick.")
+    @Config.LangKey("cubicchunks.config.async_load_max_time_per_tick")
+    @Config.RangeInt(min = 1)
+    public static int asyncLoadMaxTimePerTick = 10;
+
+    @Config.Comment("The maximum time in milliseconds spent on generating and populating cubes players are waiting for, in one world "
+            + "tick. Cubes that don't fit are done in the next tick. Ignored when vanilla world generators are used.")
+    @Config.LangKey("cubicchunks.config.population_max_time_per_tick")
+    @Config.RangeInt(min = 1)
+    public static int populationMaxTimePerTick = 20;
+
+    @Config.Comment("The maximum time in milliseconds spent on requesting and unloading cubes for pre-generation in one world tick. "
+            + "Generating them is limited by populationMaxTimePerTick.")
+    @Config.LangKey("cubicchunks.config.pregeneration_max_time_per_tick")
+    @Config.RangeInt(min = 1)
+    public static int pregenerationMaxTimePerTick = 5;
+
+    @Config.Comment("The maximum number of cubes requested by pre-generation that may be generating at the same time. Higher values "
+            + "use more memory.")
+    @Config.LangKey("cubicchunks.config.pregeneration_max_in_flight")
+    @Config.RangeInt(min = 1)
+    public static int pregenerationMaxInFlight = 256;
+
+    @Config.Comment("The time in milliseconds a single world generation call may take before the world generation hang watchdog starts "
+            + "collecting stack traces of it. Generation taking longer than that is logged with the most common stack frames when it "
+            + "finishes. Generation taking longer than 10 seconds stops the server.")
+    @Config.LangKey("cubicchunks.config.worldgen_watchdog_sample_threshold")
+    @Config.RangeInt(min = 1)
+    public static int worldGenWatchdogSampleThreshold = 1000;
+
     @Config.Comment("Eliminates a few data copies in compatibility generator. May break some mods." +
-            " Disable if you experience issues in modded dimensions or world types")
+            " Experimental, only enable it if modded dimensions and world types still generate correctly")
     @Config.LangKey("cubicchunks.config.optimized_compatibility_generator")
-    public static boolean optimizedCompatibilityGenerator = true;
+    public static boolean optimizedCompatibilityGenerator = false;
+
+    @Config.Comment("The number of vanilla chunks the compatibility generator keeps until all of their cubes are generated. Chunks are "
+            + "generated again if they are evicted before that, so this should be at least the number of columns generated at the same time.")
+    @Config.LangKey("cubicchunks.config.compatibility_generator_chunk_cache_size")
+    @Config.RangeInt(min = 1)
+    public static int compatibilityGeneratorChunkCacheSize = 64;
 
 
     @Config.LangKey("cubicchunks.config.force_cc")
@@ -22,4 +22,25 @@ public class LeveldbConfig {
 
     @Config.RequiresMcRestart
     public static boolean readOnly = false;
+
+    @Config.Comment("Save cubes in a compact binary format instead of NBT. Cubes saved in either format can always be read,\n" +
+            "existing cubes are converted when they are saved again.")
+    public static boolean binaryCubeFormat = true;
+
+    @Config.Comment("When saved cubes and columns are synced to disk. Syncing less often makes saving much faster on slow disks,\n" +
+            "at the cost of losing the most recent saves if the computer crashes (a crash of only the game loses nothing).\n" +
+            "SYNC_EVERY_BATCH - after every batch of cubes or columns, the safest and slowest option (default)\n" +
+            "SYNC_EVERY_N_MS - in the background, at most syncIntervalMs after a write\n" +
+            "SYNC_ON_FLUSH - only when the world is saved and closed")
+    public static SyncPolicy syncPolicy = SyncPolicy.SYNC_EVERY_BATCH;
+
+    @Config.Comment("The time between syncs to disk in milliseconds, when syncPolicy is SYNC_EVERY_N_MS")
+    @Config.RangeInt(min = 1)
+    public static int syncIntervalMs = 1000;
+
+    public enum SyncPolicy {
+        SYNC_EVERY_BATCH,
+        SYNC_EVERY_N_MS,
+        SYNC_ON_FLUSH
+    }
 }
@@ -131,19 +131,33 @@ public abstract class MixinChunk_Cubes implements IColumnInternal {
 
     // TODO: make it go through cube raw access methods
     // TODO: make cube an interface, use the implementation only here
-    @Nullable
-    private ExtendedBlockStorage getEBS_CubicChunks(int index) {
-        if (!isColumn) {
-            return storageArrays[index];
-        }
+    private Cube getCube_CubicChunks(int index) {
         if (cachedCube != null && cachedCube.getY() == index) {
-            return cachedCube.getStorage();
+            return cachedCube;
         }
         Cube cube = getWorld().getCubeCache().getCube(this.x, index, this.z);
         if (!(cube instanceof BlankCube)) {
             cachedCube = cube;
         }
-        return cube.getStorage();
+        return cube;
+    }
+
+    // for methods that may modify the storage: creates the storage of uniform cubes
+    @Nullable
+    private ExtendedBlockStorage getEBS_CubicChunks(int index) {
+        if (!isColumn) {
+            return storageArrays[index];
+        }
+        return getCube_CubicChunks(index).getStorageForWrite();
+    }
+
+    // for methods that only read: uniform cubes have no storage, but their shared read-only storage has the right values
+    @Nullable
+    private ExtendedBlockStorage getEBSForRead_CubicChunks(int index) {
+        if (!isColumn) {
+            return storageArrays[index];
+        }
+        return getCube_CubicChunks(index).getReadOnlyStorage();
     }
 
     // setEBS is unlikely to be used extremely frequently, no caching
@@ -379,7 +393,7 @@ public abstract class MixinChunk_Cubes implements IColumnInternal {
                     target = "Lnet/minecraft/world/chunk/Chunk;storageArrays:[Lnet/minecraft/world/chunk/storage/ExtendedBlockStorage;"
             ))
     private ExtendedBlockStorage getBlockState_getMaxHeight(ExtendedBlockStorage[] ebs, int y) {
-        return getEBS_CubicChunks(y);
+        return getEBSForRead_CubicChunks(y);
     }
 
     // ==============================================
@@ -445,7 +459,7 @@ public abstract class MixinChunk_Cubes implements IColumnInternal {
             args = "array=get"
     ))
     private ExtendedBlockStorage getLightFor_CubicChunks_EBSGetRedirect(ExtendedBlockStorage[] array, int index) {
-        return getEBS_CubicChunks(index);
+        return getEBSForRead_CubicChunks(index);
     }
 
     // ==============================================
@@ -489,7 +503,7 @@ public abstract class MixinChunk_Cubes implements IColumnInternal {
             args = "array=get"
     ))
     private ExtendedBlockStorage getLightSubtracted_CubicChunks_EBSGetRedirect(ExtendedBlockStorage[] array, int index) {
-        return getEBS_CubicChunks(index);
+        return getEBSForRead_CubicChunks(index);
     }
 
     // ==============================================
@@ -809,7 +823,7 @@ public abstract class MixinChunk_Cubes implements IColumnInternal {
         }
 
         for (int i = startY; i <= endY; i += Cube.SIZE) {
-            ExtendedBlockStorage extendedblockstorage = getEBS_CubicChunks(blockToCube(i));
+            ExtendedBlockStorage extendedblockstorage = getEBSForRead_CubicChunks(blockToCube(i));
 
             if (extendedblockstorage != NULL_BLOCK_STORAGE && !extendedblockstorage.isEmpty()) {
                 return false;
@@ -47,9 +47,10 @@ public class FullBlockStateImplementation extends StateImplementation {
     @Override
     public void addCollisionBoxToList(World worldIn, BlockPos pos, AxisAlignedBB entityBox, List<AxisAlignedBB> collidingBoxes,
             @Nullable Entity entityIn, boolean isActualState) {
-        int x1 = pos.getX();
-        int y1 = pos.getY();
-        int z1 = pos.getZ();
+        addCollisionBox(pos.getX(), pos.getY(), pos.getZ(), entityBox, collidingBoxes);
+    }
+
+    public static void addCollisionBox(int x1, int y1, int z1, AxisAlignedBB entityBox, List<AxisAlignedBB> collidingBoxes) {
         int x2 = x1 + 1;
         int y2 = y1 + 1;
         int z2 = z1 + 1;
@@ -31,6 +31,7 @@ import io.github.opencubicchunks.cubicchunks.core.asm.mixin.core.client.IGuiOpti
 import io.github.opencubicchunks.cubicchunks.core.asm.mixin.core.client.IGuiScreen;
 import io.github.opencubicchunks.cubicchunks.core.asm.mixin.selectable.client.IGuiVideoSettings;
 import io.github.opencubicchunks.cubicchunks.core.server.ICubicPlayerList;
+import io.github.opencubicchunks.cubicchunks.core.server.chunkio.async.forge.AsyncWorldIOExecutor;
 import io.github.opencubicchunks.cubicchunks.core.CubicChunks;
 import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
 import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorldType;
@@ -49,6 +50,7 @@ import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.WorldType;
 import net.minecraftforge.client.event.GuiScreenEvent;
 import net.minecraftforge.client.event.GuiScreenEvent.InitGuiEvent;
+import net.minecraftforge.client.event.RenderGameOverlayEvent;
 import net.minecraftforge.fml.client.FMLClientHandler;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.Mod;
@@ -91,6 +93,18 @@ public class ClientEventHandler {
         }
     }
 
+    @SubscribeEvent
+    public void onDebugOverlay(RenderGameOverlayEvent.Text event) {
+        Minecraft mc = Minecraft.getMinecraft();
+        if (!mc.gameSettings.showDebugInfo || !mc.isIntegratedServerRunning()) {
+            return;
+        }
+        event.getLeft().add(String.format("CC async loads: %d finishing, %.2f ms last tick, %.3f ms each",
+                AsyncWorldIOExecutor.getFinishedLoadCount(),
+                AsyncWorldIOExecutor.getLastTickSyncTime() / 1e6,
+                AsyncWorldIOExecutor.getAverageSyncTime() / 1e6));
+    }
+
     @SubscribeEvent
     public void initGuiEvent(InitGuiEvent.Post event) {
 
@@ -53,7 +53,7 @@ public class CubeProviderClient extends ChunkProviderClient implements ICubeProv
 
     @Nonnull private ICubicWorldInternal.Client world;
     @Nonnull private Cube blankCube;
-    @Nonnull private XYZMap<Cube> cubeMap = new XYZMap<>(0.7f, 8000);
+    @Nonnull private XYZMap<Cube> cubeMap = XYZMap.create(0.7f, 8000);
 
     public CubeProviderClient(ICubicWorldInternal.Client world) {
         super((World) world);
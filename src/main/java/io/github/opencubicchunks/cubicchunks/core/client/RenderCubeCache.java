@@ -29,6 +29,7 @@ import static io.github.opencubicchunks.cubicchunks.api.util.Coords.blockToLocal
 import io.github.opencubicchunks.cubicchunks.api.util.Coords;
 import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.UniformCubeStorage;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.init.Blocks;
@@ -84,7 +85,8 @@ public class RenderCubeCache extends ChunkCache {
                     teMap = cube.getTileEntityMap();
 
                     if (ebs == null) {
-                        ebs = nullStorage;
+                        UniformCubeStorage uniform = cube.getUniformStorage();
+                        ebs = uniform == null ? nullStorage : uniform.getReadOnlyStorage();
                     }
                     cubeArrays[currentCubeX - chunkX][currentCubeY - cubeY][currentCubeZ - chunkZ] = ebs;
                     tileEntities[currentCubeX - chunkX][currentCubeY - cubeY][currentCubeZ - chunkZ] = teMap;
@@ -40,6 +40,7 @@ import io.github.opencubicchunks.cubicchunks.api.world.IColumn;
 import io.github.opencubicchunks.cubicchunks.core.world.ICubeProviderInternal;
 import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.UniformCubeStorage;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenCustomHashMap;
 import it.unimi.dsi.fastutil.ints.IntHash;
@@ -137,6 +138,20 @@ public class FirstLightProcessor {
 
         ExtendedBlockStorage ebs = cube.getStorage();
 
+        // all light in a uniform cube is 0, which is already right unless the sky reaches the top of the cube somewhere
+        if (cube.getUniformBlock() != null) {
+            if (isAllOccluded(opacityIndex, cubeMinY + Cube.SIZE - 1)) {
+                return;
+            }
+            ebs = cube.getStorageForWrite();
+        }
+
+        // an empty cube that is open to the sky everywhere doesn't need storage, there is nothing in it that could differ
+        if (ebs == null && !isAnyOccluded(opacityIndex, cubeMinY)) {
+            cube.setUniformStorage(UniformCubeStorage.SKY_LIT_AIR);
+            return;
+        }
+
         for (int localX = 0; localX < Cube.SIZE; ++localX) {
             for (int localZ = 0; localZ < Cube.SIZE; ++localZ) {
                 for (int localY = Cube.SIZE - 1; localY >= 0; --localY) {
@@ -154,6 +169,28 @@ public class FirstLightProcessor {
         }
     }
 
+    private static boolean isAllOccluded(IHeightMap opacityIndex, int blockY) {
+        for (int localX = 0; localX < Cube.SIZE; ++localX) {
+            for (int localZ = 0; localZ < Cube.SIZE; ++localZ) {
+                if (!opacityIndex.isOccluded(localX, blockY, localZ)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAnyOccluded(IHeightMap opacityIndex, int blockY) {
+        for (int localX = 0; localX < Cube.SIZE; ++localX) {
+            for (int localZ = 0; localZ < Cube.SIZE; ++localZ) {
+                if (opacityIndex.isOccluded(localX, blockY, localZ)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Diffuses skylight in the given cube and all cubes affected by this update.
      *
@@ -31,13 +31,35 @@ import net.minecraft.world.EnumSkyBlock;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 
+/**
+ * Block access used by {@link LightPropagator}. Implementations only need to provide the methods taking primitive
+ * coordinates, the {@link BlockPos} versions delegate to them.
+ */
 @MethodsReturnNonnullByDefault
 @ParametersAreNonnullByDefault
 public interface ILightBlockAccess {
 
-    int getBlockLightOpacity(BlockPos pos);
+    int getBlockLightOpacity(int blockX, int blockY, int blockZ);
+
+    default int getBlockLightOpacity(BlockPos pos) {
+        return getBlockLightOpacity(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    int getLightFor(EnumSkyBlock lightType, int blockX, int blockY, int blockZ);
+
+    default int getLightFor(EnumSkyBlock lightType, BlockPos pos) {
+        return getLightFor(lightType, pos.getX(), pos.getY(), pos.getZ());
+    }
 
-    int getLightFor(EnumSkyBlock lightType, BlockPos pos);
+    /**
+     * @param lightType type pf light
+     * @param blockX block x position
+     * @param blockY block y position
+     * @param blockZ block z position
+     * @param val light value to set (0-15 range_
+     * @return success (if cube is loaded)
+     */
+    boolean setLightFor(EnumSkyBlock lightType, int blockX, int blockY, int blockZ, int val);
 
     /**
      * @param lightType type pf light
@@ -45,7 +67,9 @@ public interface ILightBlockAccess {
      * @param val light value to set (0-15 range_
      * @return success (if cube is loaded)
      */
-    boolean setLightFor(EnumSkyBlock lightType, BlockPos pos, int val);
+    default boolean setLightFor(EnumSkyBlock lightType, BlockPos pos, int val) {
+        return setLightFor(lightType, pos.getX(), pos.getY(), pos.getZ(), val);
+    }
 
     /**
      * Faster version of world.getRawLight that works for skylight
@@ -85,22 +109,37 @@ public interface ILightBlockAccess {
         return maxValue;
     }
 
-    boolean canSeeSky(BlockPos pos);
+    boolean canSeeSky(int blockX, int blockY, int blockZ);
 
-    int getEmittedLight(BlockPos pos, EnumSkyBlock type);
+    default boolean canSeeSky(BlockPos pos) {
+        return canSeeSky(pos.getX(), pos.getY(), pos.getZ());
+    }
 
-    default int getLightFromNeighbors(EnumSkyBlock type, BlockPos pos) {
-        //TODO: use MutableBlockPos?
+    int getEmittedLight(int blockX, int blockY, int blockZ, EnumSkyBlock type);
+
+    default int getEmittedLight(BlockPos pos, EnumSkyBlock type) {
+        return getEmittedLight(pos.getX(), pos.getY(), pos.getZ(), type);
+    }
+
+    default int getLightFromNeighbors(EnumSkyBlock type, int blockX, int blockY, int blockZ) {
         int max = 0;
         for (EnumFacing direction : EnumFacing.VALUES) {
-            int light = getLightFor(type, pos.offset(direction));
+            int light = getLightFor(type, blockX + direction.getXOffset(), blockY + direction.getYOffset(), blockZ + direction.getZOffset());
             if (light > max) {
                 max = light;
             }
         }
-        int decrease = Math.max(1, getBlockLightOpacity(pos));
+        int decrease = Math.max(1, getBlockLightOpacity(blockX, blockY, blockZ));
         return Math.max(0, max - decrease);
     }
 
-    void markEdgeNeedLightUpdate(BlockPos offset, EnumSkyBlock type);
+    default int getLightFromNeighbors(EnumSkyBlock type, BlockPos pos) {
+        return getLightFromNeighbors(type, pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    void markEdgeNeedLightUpdate(int blockX, int blockY, int blockZ, EnumSkyBlock type);
+
+    default void markEdgeNeedLightUpdate(BlockPos pos, EnumSkyBlock type) {
+        markEdgeNeedLightUpdate(pos.getX(), pos.getY(), pos.getZ(), type);
+    }
 }
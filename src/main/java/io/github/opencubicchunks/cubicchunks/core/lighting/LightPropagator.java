@@ -71,7 +71,8 @@ public class LightPropagator {
      * @param coords contains all coords that need updating
      * @param blocks block access object. Must contain all blocks within radius of 17 blocks from all coords
      * @param type light type to update
-     * @param setLightCallback this will be called for each position where light value is changed
+     * @param setLightCallback this will be called for each position where light value is changed. This is the only
+     * place where a {@link BlockPos} is created while walking through the blocks, so the callback may keep it
      */
      public void propagateLight(BlockPos centerPos, Iterable<BlockPos> coords, ILightBlockAccess blocks, EnumSkyBlock type,
             Consumer<BlockPos> setLightCallback) {
@@ -81,22 +82,24 @@ public class LightPropagator {
         internalRelightQueue.begin(centerPos);
         try {
             // first add all decreased light values to the queue
-            coords.forEach(pos -> {
+            for (BlockPos pos : coords) {
                 int emitted = blocks.getEmittedLight(pos, type);
                 if (blocks.getLightFor(type, pos) > emitted) {
                     //add the emitted value even if it's not used here - it will be used when relighting that area
                     internalRelightQueue.put(pos, emitted, LightUpdateQueue.MAX_DISTANCE);
                 }
-            });
+            }
             // follow decreasing light values until it stops decreasing,
             // setting each encountered value to 0 for easy spreading
             while (internalRelightQueue.next()) {
-                BlockPos pos = internalRelightQueue.getPos();
+                int x = internalRelightQueue.getX();
+                int y = internalRelightQueue.getY();
+                int z = internalRelightQueue.getZ();
                 int distance = internalRelightQueue.getDistance();
 
-                int currentValue = blocks.getLightFor(type, pos);
+                int currentValue = blocks.getLightFor(type, x, y, z);
                 // note: min value is 0
-                int lightFromNeighbors = getExpectedLight(blocks, type, pos);
+                int lightFromNeighbors = getExpectedLight(blocks, type, x, y, z);
                 // if this is true, this blocks currently spreads light out, and has no light coming in from neighbors
                 // lightFromNeighbors == currentValue-1 means that some neighbor has the same light value, or that
                 // currentValue == 1 and all surrounding blocks have light 0
@@ -105,11 +108,11 @@ public class LightPropagator {
                 // this would mean that the current block is in the light area from other block, no need to update that
                 if (lightFromNeighbors <= currentValue - 1) {
                     // set it to 0 and add neighbors to the queue
-                    if (!blocks.setLightFor(type, pos, 0)) {
-                        this.markNeighborEdgeNeedLightUpdate(pos, blocks, type);
+                    if (!blocks.setLightFor(type, x, y, z, 0)) {
+                        this.markNeighborEdgeNeedLightUpdate(x, y, z, blocks, type);
                         continue;
                     }
-                    setLightCallback.accept(pos);
+                    setLightCallback.accept(new BlockPos(x, y, z));
                     // if no distance left - stop spreading, so that it won't run into problems when updating too much
                     if (distance <= LightUpdateQueue.MIN_DISTANCE) {
                         continue;
@@ -117,10 +120,12 @@ public class LightPropagator {
                     // add all neighbors even those already checked - the check above will fail for them
                     // because currentValue-1 == -1 (already checked are set to 0)
                     // and min. possible lightFromNeighbors is 0
-                    for (EnumFacing direction : EnumFacing.values()) {
-                        BlockPos offset = pos.offset(direction);
+                    for (EnumFacing direction : EnumFacing.VALUES) {
+                        int offX = x + direction.getXOffset();
+                        int offY = y + direction.getYOffset();
+                        int offZ = z + direction.getZOffset();
                         //add the emitted value even if it's not used here - it will be used when relighting that area
-                        internalRelightQueue.put(offset, blocks.getEmittedLight(offset, type), distance - 1);
+                        internalRelightQueue.put(offX, offY, offZ, blocks.getEmittedLight(offX, offY, offZ, type), distance - 1);
                     }
                 }
             }
@@ -128,7 +133,7 @@ public class LightPropagator {
             internalRelightQueue.resetIndex();
 
             // then handle everything
-            coords.forEach(pos -> {
+            for (BlockPos pos : coords) {
                 int emitted = blocks.getEmittedLight(pos, type);
                 // blocks where light decreased are already added (previous run over the queue)
                 if (emitted > blocks.getLightFor(type, pos)) {
@@ -140,27 +145,31 @@ public class LightPropagator {
                     if (blocks.setLightFor(type, pos, emitted)) {
                         setLightCallback.accept(pos);
                     } else {
-                        this.markNeighborEdgeNeedLightUpdate(pos, blocks, type);
+                        this.markNeighborEdgeNeedLightUpdate(pos.getX(), pos.getY(), pos.getZ(), blocks, type);
                     }
                 }
-            });
+            }
             // spread out light values
             while (internalRelightQueue.next()) {
-                BlockPos pos = internalRelightQueue.getPos();
+                int x = internalRelightQueue.getX();
+                int y = internalRelightQueue.getY();
+                int z = internalRelightQueue.getZ();
                 int distance = internalRelightQueue.isBeforeReset() ? LightUpdateQueue.MAX_DISTANCE : internalRelightQueue.getDistance();
 
-                for (EnumFacing direction : EnumFacing.values()) {
-                    BlockPos nextPos = pos.offset(direction);
-                    int newLight = getExpectedLight(blocks, type, nextPos);
-                    if (newLight <= blocks.getLightFor(type, nextPos)) {
+                for (EnumFacing direction : EnumFacing.VALUES) {
+                    int nextX = x + direction.getXOffset();
+                    int nextY = y + direction.getYOffset();
+                    int nextZ = z + direction.getZOffset();
+                    int newLight = getExpectedLight(blocks, type, nextX, nextY, nextZ);
+                    if (newLight <= blocks.getLightFor(type, nextX, nextY, nextZ)) {
                         // can't go further, the next block already has the same or higher light value
                         continue;
                     }
-                    if (blocks.setLightFor(type, nextPos, newLight)) {
-                        setLightCallback.accept(nextPos);
+                    if (blocks.setLightFor(type, nextX, nextY, nextZ, newLight)) {
+                        setLightCallback.accept(new BlockPos(nextX, nextY, nextZ));
                     } else {
                         // If cube is not loaded we will notify neighbors so cube will update light when it loads.
-                        blocks.markEdgeNeedLightUpdate(pos, type);
+                        blocks.markEdgeNeedLightUpdate(x, y, z, type);
                         continue;
                     }
 
@@ -168,7 +177,7 @@ public class LightPropagator {
                     if (distance - 1 <= LightUpdateQueue.MIN_DISTANCE) {
                         continue;
                     }
-                    internalRelightQueue.put(nextPos, newLight, distance - 1);
+                    internalRelightQueue.put(nextX, nextY, nextZ, newLight, distance - 1);
                 }
             }
         } catch (Throwable t) {
@@ -186,15 +195,14 @@ public class LightPropagator {
         }
     }
 
-    private int getExpectedLight(ILightBlockAccess blocks, EnumSkyBlock type, BlockPos pos) {
-        return Math.max(blocks.getEmittedLight(pos, type), blocks.getLightFromNeighbors(type, pos));
+    private int getExpectedLight(ILightBlockAccess blocks, EnumSkyBlock type, int blockX, int blockY, int blockZ) {
+        return Math.max(blocks.getEmittedLight(blockX, blockY, blockZ, type), blocks.getLightFromNeighbors(type, blockX, blockY, blockZ));
     }
     
-    private void markNeighborEdgeNeedLightUpdate(BlockPos pos, ILightBlockAccess blocks, EnumSkyBlock type) {
+    private void markNeighborEdgeNeedLightUpdate(int blockX, int blockY, int blockZ, ILightBlockAccess blocks, EnumSkyBlock type) {
         // If cube is not loaded we will notify neighbors so cube will update light when it loads.
-        for (EnumFacing direction : EnumFacing.values()) {
-            BlockPos offset = pos.offset(direction);
-            blocks.markEdgeNeedLightUpdate(offset, type);
+        for (EnumFacing direction : EnumFacing.VALUES) {
+            blocks.markEdgeNeedLightUpdate(blockX + direction.getXOffset(), blockY + direction.getYOffset(), blockZ + direction.getZOffset(), type);
         }
     }
 }
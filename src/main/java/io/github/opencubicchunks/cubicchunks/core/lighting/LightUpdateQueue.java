@@ -38,9 +38,10 @@ import javax.annotation.ParametersAreNonnullByDefault;
 class LightUpdateQueue {
 
     /**
-     * Enables additional error checks. Can be disable if performance becomes an issue.
+     * Enables additional error checks. Disabled by default because {@link #put(int, int, int, int, int)} is called for
+     * every block light spreads into, enable with {@code -Dcubicchunks.light_queue_debug=true}.
      */
-    private static final boolean DEBUG = true;
+    private static final boolean DEBUG = "true".equalsIgnoreCase(System.getProperty("cubicchunks.light_queue_debug", "false"));
 
     // there is some redundant arithmetic, but it's there so the pattern is easily visible
     private static final int QUEUE_PART_SIZE = 64 * 1024;
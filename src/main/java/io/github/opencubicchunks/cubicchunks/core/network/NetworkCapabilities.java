@@ -0,0 +1,79 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.network;
+
+import io.github.opencubicchunks.cubicchunks.core.world.ServerHeightMap;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.entity.player.EntityPlayerMP;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Optional protocol features. The server offers the ones it supports in {@link PacketCubicWorldData}, and the client
+ * answers with the ones it accepts in {@link PacketClientCapabilities}. Until the answer arrives, and for clients that
+ * don't know about capabilities, none are used.
+ */
+@MethodsReturnNonnullByDefault
+@ParametersAreNonnullByDefault
+public final class NetworkCapabilities {
+
+    /**
+     * Cube heightmaps are left out of {@link PacketCubes} and heightmap updates aren't sent, the client computes
+     * them from the block data instead.
+     */
+    public static final int SKIP_HEIGHTMAPS = 1;
+
+    /**
+     * Capabilities this version understands as a client.
+     */
+    static final int CLIENT_SUPPORTED = SKIP_HEIGHTMAPS;
+
+    // only accessed from the server thread
+    private static final Map<EntityPlayerMP, Integer> accepted = new WeakHashMap<>();
+
+    private NetworkCapabilities() {
+        throw new Error();
+    }
+
+    /**
+     * @return capabilities offered by this server
+     */
+    static int getServerSupported() {
+        // sending heightmaps only makes sense when the server actually tracks them
+        return ServerHeightMap.isAuthoritative() ? 0 : SKIP_HEIGHTMAPS;
+    }
+
+    static void setAccepted(EntityPlayerMP player, int capabilities) {
+        accepted.put(player, capabilities & getServerSupported());
+    }
+
+    public static boolean has(EntityPlayerMP player, int capability) {
+        Integer capabilities = accepted.get(player);
+        return capabilities != null && (capabilities & capability) != 0;
+    }
+}
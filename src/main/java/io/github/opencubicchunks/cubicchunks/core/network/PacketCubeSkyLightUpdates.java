@@ -33,6 +33,7 @@ import io.github.opencubicchunks.cubicchunks.core.client.CubeProviderClient;
 import io.github.opencubicchunks.cubicchunks.core.lighting.LightingManager;
 import io.github.opencubicchunks.cubicchunks.core.util.AddressTools;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.UniformCubeStorage;
 import io.netty.buffer.ByteBuf;
 import net.minecraft.client.multiplayer.WorldClient;
 import net.minecraft.entity.player.EntityPlayer;
@@ -58,7 +59,7 @@ public class PacketCubeSkyLightUpdates implements IMessage {
     }
 
     public PacketCubeSkyLightUpdates(Cube cube, TShortList updates) {
-        if (cube.getStorage() == null) {
+        if (cube.getStorage() == null && cube.getUniformStorage() == null) {
             // no light
             this.isFullRelight = true;
             this.data = null;
@@ -71,7 +72,7 @@ public class PacketCubeSkyLightUpdates implements IMessage {
             int localX = AddressTools.getLocalX(packed);
             int localY = AddressTools.getLocalY(packed);
             int localZ = AddressTools.getLocalZ(packed);
-            int value = cube.getStorage().getSkyLight(localX, localY, localZ);
+            int value = getSkyLight(cube, localX, localY, localZ);
             byte byte1 = (byte) (Bits.packUnsignedToInt(localX, 4, 0) | Bits.packUnsignedToInt(localY, 4, 4));
             byte byte2 = (byte) (Bits.packUnsignedToInt(localZ, 4, 0) | Bits.packUnsignedToInt(value, 4, 4));
             this.data[i * 2] = byte1;
@@ -81,15 +82,30 @@ public class PacketCubeSkyLightUpdates implements IMessage {
 
     public PacketCubeSkyLightUpdates(Cube cube) {
         this.isFullRelight = true;
-        if (cube.getStorage() == null) {
+        UniformCubeStorage uniform = cube.getUniformStorage();
+        if (cube.getStorage() == null && uniform == null) {
             // no light
             this.data = null;
             return;
         }
         this.cube = cube.getCoords();
+        if (uniform != null) {
+            this.data = new byte[Cube.SIZE * Cube.SIZE * Cube.SIZE / 2];
+            Arrays.fill(this.data, (byte) (uniform.getSkyLight() << 4 | uniform.getSkyLight()));
+            return;
+        }
         this.data = Arrays.copyOf(cube.getStorage().getSkyLight().getData(), Cube.SIZE * Cube.SIZE * Cube.SIZE / 2);
     }
 
+    private static int getSkyLight(Cube cube, int localX, int localY, int localZ) {
+        ExtendedBlockStorage storage = cube.getStorage();
+        if (storage == null) {
+            //noinspection ConstantConditions
+            return cube.getUniformStorage().getSkyLight();
+        }
+        return storage.getSkyLight(localX, localY, localZ);
+    }
+
     @Override
     public void fromBytes(ByteBuf buf) {
         this.cube = new CubePos(buf.readInt(), buf.readInt(), buf.readInt());
@@ -61,15 +61,15 @@ public class PacketCubes implements IMessage {
     public PacketCubes() {
     }
 
-    public PacketCubes(List<Cube> cubes) {
+    public PacketCubes(List<Cube> cubes, boolean sendHeightMaps) {
         this.cubePos = new CubePos[cubes.size()];
         for (int i = 0; i < cubes.size(); i++) {
             cubePos[i] = cubes.get(i).getCoords();
         }
-        this.data = new byte[WorldEncoder.getEncodedSize(cubes)];
+        this.data = new byte[WorldEncoder.getEncodedSize(cubes, sendHeightMaps)];
         PacketBuffer out = new PacketBuffer(WorldEncoder.createByteBufForWrite(this.data));
 
-        WorldEncoder.encodeCubes(out, cubes);
+        WorldEncoder.encodeCubes(out, cubes, sendHeightMaps);
 
         this.tileEntityTags = new ArrayList<>();
 
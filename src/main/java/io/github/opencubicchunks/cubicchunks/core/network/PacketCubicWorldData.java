@@ -52,6 +52,7 @@ public class PacketCubicWorldData implements IMessage {
     private int maxHeight;
     private int minGenerationHeight;
     private int maxGenerationHeight;
+    private int capabilities;
 
     public PacketCubicWorldData() {
     }
@@ -72,6 +73,7 @@ public class PacketCubicWorldData implements IMessage {
                 this.minGenerationHeight = 0;
                 this.maxGenerationHeight = 256;
             }
+            this.capabilities = NetworkCapabilities.getServerSupported();
         }
     }
 
@@ -82,6 +84,8 @@ public class PacketCubicWorldData implements IMessage {
         this.maxHeight = buf.readInt();
         this.minGenerationHeight = buf.readInt();
         this.maxGenerationHeight = buf.readInt();
+        // older servers don't send capabilities
+        this.capabilities = buf.isReadable() ? buf.readInt() : 0;
     }
 
     @Override
@@ -91,6 +95,7 @@ public class PacketCubicWorldData implements IMessage {
         buf.writeInt(this.maxHeight);
         buf.writeInt(this.minGenerationHeight);
         buf.writeInt(this.maxGenerationHeight);
+        buf.writeInt(this.capabilities);
     }
 
     public boolean isCubicWorld() {
@@ -113,6 +118,10 @@ public class PacketCubicWorldData implements IMessage {
         return maxGenerationHeight;
     }
 
+    public int getCapabilities() {
+        return capabilities;
+    }
+
     public static class Handler extends AbstractClientMessageHandler<PacketCubicWorldData> {
 
         @Nullable @Override
@@ -132,6 +141,10 @@ public class PacketCubicWorldData implements IMessage {
                     Minecraft.getMinecraft().renderGlobal.setWorldAndLoadRenderers((WorldClient) world);
                 }
             }
+            int accepted = message.getCapabilities() & NetworkCapabilities.CLIENT_SUPPORTED;
+            if (accepted != 0) {
+                PacketDispatcher.sendToServer(new PacketClientCapabilities(accepted));
+            }
 
         }
     }
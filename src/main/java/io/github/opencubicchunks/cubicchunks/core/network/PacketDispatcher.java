@@ -68,6 +68,7 @@ public class PacketDispatcher {
         registerMessage(PacketCubicWorldData.Handler.class, PacketCubicWorldData.class);
         registerMessage(PacketHeightMapUpdate.Handler.class, PacketHeightMapUpdate.class);
         registerMessage(PacketCubeSkyLightUpdates.Handler.class, PacketCubeSkyLightUpdates.class);
+        registerMessage(PacketClientCapabilities.Handler.class, PacketClientCapabilities.class);
 
     }
 
@@ -90,4 +91,14 @@ public class PacketDispatcher {
     public static void sendTo(IMessage message, EntityPlayerMP player) {
         PacketDispatcher.dispatcher.sendTo(message, player);
     }
+
+    /**
+     * Send this message to the server.
+     * See {@link SimpleNetworkWrapper#sendToServer(IMessage)}
+     *
+     * @param message message to send
+     */
+    public static void sendToServer(IMessage message) {
+        PacketDispatcher.dispatcher.sendToServer(message);
+    }
 }
@@ -28,10 +28,14 @@ import io.github.opencubicchunks.cubicchunks.api.util.Coords;
 import io.github.opencubicchunks.cubicchunks.core.world.ClientHeightMap;
 import io.github.opencubicchunks.cubicchunks.core.world.ServerHeightMap;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.UniformCubeStorage;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.network.PacketBuffer;
+import net.minecraft.world.chunk.BlockStateContainer;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
@@ -45,24 +49,52 @@ import javax.annotation.ParametersAreNonnullByDefault;
 @ParametersAreNonnullByDefault
 class WorldEncoder {
 
-    static void encodeCubes(PacketBuffer out, Collection<Cube> cubes) {
+    private static final int FLAG_EMPTY = 1;
+    private static final int FLAG_HAS_STORAGE = 1 << 1;
+    private static final int FLAG_HAS_BIOMES = 1 << 2;
+    /**
+     * The heightmap isn't sent for this cube, only set if the client accepted {@link NetworkCapabilities#SKIP_HEIGHTMAPS}
+     */
+    private static final int FLAG_NO_HEIGHTMAP = 1 << 3;
+    /**
+     * The cube is uniform air, only its light values are sent, see {@link UniformCubeStorage}
+     */
+    private static final int FLAG_UNIFORM = 1 << 4;
+    /**
+     * The cube is all one block and has no storage, only the block is sent, see {@link Cube#getUniformBlock()}
+     */
+    private static final int FLAG_UNIFORM_BLOCK = 1 << 5;
+
+    /**
+     * @param sendHeightMaps whether to send the heightmaps of non-empty cubes, if not, the client computes them
+     */
+    static void encodeCubes(PacketBuffer out, Collection<Cube> cubes, boolean sendHeightMaps) {
         // write first all the flags, then all the block data, then all the light data etc for better compression
 
         // 1. emptiness
         cubes.forEach(cube -> {
             byte flags = 0;
             if(cube.isEmpty())
-                flags |= 1;
+                flags |= FLAG_EMPTY;
             if(cube.getStorage() != null)
-                flags |= 2;
+                flags |= FLAG_HAS_STORAGE;
             if(cube.getBiomeArray() != null)
-                flags |= 4;
+                flags |= FLAG_HAS_BIOMES;
+            if(!sendHeightMaps)
+                flags |= FLAG_NO_HEIGHTMAP;
+            if(cube.getUniformStorage() != null)
+                flags |= FLAG_UNIFORM;
+            if(cube.getUniformBlock() != null)
+                flags |= FLAG_UNIFORM_BLOCK;
             out.writeByte(flags);
         });
 
         // 2. block IDs and metadata
         cubes.forEach(cube -> {
-            if (!cube.isEmpty()) {
+            IBlockState uniformBlock = cube.getUniformBlock();
+            if (uniformBlock != null) {
+                out.writeVarInt(Block.BLOCK_STATE_IDS.get(uniformBlock));
+            } else if (!cube.isEmpty()) {
                 //noinspection ConstantConditions
                 cube.getStorage().getData().write(out);
             }
@@ -72,6 +104,9 @@ class WorldEncoder {
         cubes.forEach(cube -> {
             if (cube.getStorage() != null) {
                 out.writeBytes(cube.getStorage().getBlockLight().getData());
+            } else if (cube.getUniformStorage() != null) {
+                // block and sky light of uniform cubes both fit in one byte
+                out.writeByte(cube.getUniformStorage().pack());
             }
         });
 
@@ -87,7 +122,7 @@ class WorldEncoder {
         // trying to keep track of when it changes would be complex, so send
         // it wil all cubes
         cubes.forEach(cube -> {
-            if (!cube.isEmpty()) {
+            if (sendHeightMaps && !cube.isEmpty()) {
                 byte[] heightmaps = ((ServerHeightMap) cube.getColumn().getOpacityIndex()).getDataForClient();
                 assert heightmaps.length == Cube.SIZE * Cube.SIZE * Integer.BYTES;
                 out.writeBytes(heightmaps);
@@ -118,12 +153,18 @@ class WorldEncoder {
         boolean[] isEmpty = new boolean[cubes.size()];
         boolean[] hasStorage = new boolean[cubes.size()];
         boolean[] hasCustomBiomeMap = new boolean[cubes.size()];
+        boolean[] hasHeightMap = new boolean[cubes.size()];
+        boolean[] isUniform = new boolean[cubes.size()];
+        boolean[] isUniformBlock = new boolean[cubes.size()];
 
         for (int i = 0; i < cubes.size(); i++) {
             byte flags = in.readByte();
-            isEmpty[i] = (flags & 1) != 0 || cubes.get(i) == null;
-            hasStorage[i] = (flags & 2) != 0 && cubes.get(i) != null;
-            hasCustomBiomeMap[i] = (flags & 4) != 0 && cubes.get(i) != null;
+            isEmpty[i] = (flags & FLAG_EMPTY) != 0 || cubes.get(i) == null;
+            hasStorage[i] = (flags & FLAG_HAS_STORAGE) != 0 && cubes.get(i) != null;
+            hasCustomBiomeMap[i] = (flags & FLAG_HAS_BIOMES) != 0 && cubes.get(i) != null;
+            hasHeightMap[i] = (flags & FLAG_NO_HEIGHTMAP) == 0 && !isEmpty[i];
+            isUniform[i] = (flags & FLAG_UNIFORM) != 0;
+            isUniformBlock[i] = (flags & FLAG_UNIFORM_BLOCK) != 0;
         }
 
         for (int i = 0; i < cubes.size(); i++) {
@@ -137,7 +178,20 @@ class WorldEncoder {
 
         // 2. Block IDs and metadata
         for (int i = 0; i < cubes.size(); i++) {
-            if (!isEmpty[i]) {
+            if (isUniformBlock[i]) {
+                // the client always creates the storage, everything that renders blocks reads them from it
+                IBlockState state = Block.BLOCK_STATE_IDS.getByValue(in.readVarInt());
+                Cube cube = cubes.get(i);
+                if (cube != null) {
+                    ExtendedBlockStorage storage = new ExtendedBlockStorage(Coords.cubeToMinBlock(cube.getY()),
+                            cube.getWorld().provider.hasSkyLight());
+                    BlockStateContainer data = storage.getData();
+                    for (int j = 0; state != null && j < Cube.SIZE * Cube.SIZE * Cube.SIZE; j++) {
+                        data.set(j & 15, j >> 8 & 15, j >> 4 & 15, state);
+                    }
+                    cube.setStorage(storage);
+                }
+            } else if (!isEmpty[i]) {
                 //noinspection ConstantConditions
                 cubes.get(i).getStorage().getData().read(in);
             }
@@ -149,6 +203,11 @@ class WorldEncoder {
                 //noinspection ConstantConditions
                 byte[] data = cubes.get(i).getStorage().getBlockLight().getData();
                 in.readBytes(data);
+            } else if (isUniform[i]) {
+                UniformCubeStorage uniform = UniformCubeStorage.unpack(in.readUnsignedByte());
+                if (cubes.get(i) != null) {
+                    cubes.get(i).setUniformStorage(uniform);
+                }
             }
         }
 
@@ -165,10 +224,15 @@ class WorldEncoder {
         for (int i = 0; i < cubes.size(); i++) {
             if (!isEmpty[i]) {
                 Cube cube = cubes.get(i);
-                byte[] heightmaps = new byte[Cube.SIZE * Cube.SIZE * Integer.BYTES];
-                in.readBytes(heightmaps);
                 ClientHeightMap coi = ((ClientHeightMap) cube.getColumn().getOpacityIndex());
-                coi.setData(heightmaps);
+                if (hasHeightMap[i]) {
+                    byte[] heightmaps = new byte[Cube.SIZE * Cube.SIZE * Integer.BYTES];
+                    in.readBytes(heightmaps);
+                    coi.setData(heightmaps);
+                } else {
+                    //noinspection ConstantConditions
+                    coi.updateFromCube(cube.getY(), cube.getStorage());
+                }
 
                 //noinspection ConstantConditions
                 cube.getStorage().recalculateRefCounts();
@@ -190,15 +254,18 @@ class WorldEncoder {
         return column.getBiomeArray().length;
     }
 
-    static int getEncodedSize(Collection<Cube> cubes) {
+    static int getEncodedSize(Collection<Cube> cubes, boolean sendHeightMaps) {
         int size = 0;
 
-        // 1. isEmpty, hasStorage and hasBiomeArray flags packed in one byte
+        // 1. isEmpty, hasStorage, hasBiomeArray and noHeightMap flags packed in one byte
         size += cubes.size();
 
         // 2. block IDs and metadata
         for (Cube cube : cubes) {
-            if (!cube.isEmpty()) {
+            IBlockState uniformBlock = cube.getUniformBlock();
+            if (uniformBlock != null) {
+                size += PacketBuffer.getVarIntSize(Block.BLOCK_STATE_IDS.get(uniformBlock));
+            } else if (!cube.isEmpty()) {
                 //noinspection ConstantConditions
                 size += cube.getStorage().getData().getSerializedSize();
             }
@@ -207,11 +274,19 @@ class WorldEncoder {
                 if (cube.getWorld().provider.hasSkyLight()) {
                     size += cube.getStorage().getSkyLight().getData().length;
                 }
+            } else if (cube.getUniformStorage() != null) {
+                size += 1;
             }
         }
 
-        // heightmaps
-        size += 256 * Integer.BYTES * cubes.size();
+        // heightmaps, only sent for non-empty cubes
+        if (sendHeightMaps) {
+            for (Cube cube : cubes) {
+                if (!cube.isEmpty()) {
+                    size += Cube.SIZE * Cube.SIZE * Integer.BYTES;
+                }
+            }
+        }
         // biomes
         for (Cube cube : cubes) {
             byte[] biomeArray = cube.getBiomeArray();
@@ -34,9 +34,16 @@ import net.minecraft.world.chunk.Chunk;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Chunk Garbage Collector, automatically unloads unused chunks.
+ * <p>
+ * Cubes and columns are queued for unloading by {@link CubeProviderServer} when nothing holds them loaded anymore. Every
+ * {@link CubicChunksConfig#chunkGCInterval} ticks, the ones that have been unused for
+ * {@link CubicChunksConfig#chunkGCUnusedTicks} ticks are unloaded. Each tick only does a limited amount of work, so a
+ * large number of cubes becoming unused at once doesn't cause a lag spike. An unloading pass that doesn't fit is
+ * continued in the next tick.
  */
 @MethodsReturnNonnullByDefault
 @ParametersAreNonnullByDefault
@@ -45,6 +52,7 @@ public class ChunkGc {
     private final CubeProviderServer cubeCache;
 
     private int tick = 0;
+    private boolean passUnfinished;
 
     public ChunkGc(CubeProviderServer cubeCache) {
         this.cubeCache = cubeCache;
@@ -53,9 +61,11 @@ public class ChunkGc {
     public void tick() {
         cubeCache.world.profiler.startSection("chunkGc");
         tick++;
-        if (tick > CubicChunksConfig.chunkGCInterval) {
+        if (passUnfinished || tick > CubicChunksConfig.chunkGCInterval) {
             tick = 0;
-            chunkGc();
+            long queuedBefore = cubeCache.world.getTotalWorldTime() - CubicChunksConfig.chunkGCUnusedTicks;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CubicChunksConfig.chunkGCMaxTimePerTick);
+            passUnfinished = !unloadQueued(queuedBefore, CubicChunksConfig.chunkGCMaxUnloadsPerTick, deadline);
         }
         if (CubicChunks.DEBUG_ENABLED) {
             verifyColumnConsistency();
@@ -97,19 +107,46 @@ public class ChunkGc {
         }
     }
 
+    /**
+     * Unloads everything in the unload queue that can be unloaded right now, without waiting for
+     * {@link CubicChunksConfig#chunkGCUnusedTicks} and ignoring the per-tick limits.
+     */
     public void chunkGc() {
-        Iterator<Cube> cubeIt = cubeCache.cubesIterator();
-        while (cubeIt.hasNext()) {
-            if (cubeCache.tryUnloadCube(cubeIt.next())) {
-                cubeIt.remove();
+        unloadQueued(Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return false if the unload count or time limit was reached before everything that could be unloaded was
+     */
+    private boolean unloadQueued(long queuedBefore, int maxUnloads, long deadline) {
+        int unloaded = 0;
+        // cubes that can't be unloaded yet are queued again, only look at what's in the queue right now
+        // so that they aren't checked again in the same pass
+        for (int i = cubeCache.getCubeUnloadQueueSize(); i > 0 && unloaded < maxUnloads; i--) {
+            Cube cube = cubeCache.pollCubeUnload(queuedBefore);
+            if (cube == null) {
+                break;
+            }
+            if (cubeCache.tryUnloadCube(cube)) {
+                unloaded++;
+            }
+            if (System.nanoTime() > deadline) {
+                return false;
             }
         }
 
-        Iterator<Chunk> columnIt = cubeCache.columnsIterator();
-        while (columnIt.hasNext()) {
-            if (cubeCache.tryUnloadColumn(columnIt.next())) {
-                columnIt.remove();
+        for (int i = cubeCache.getColumnUnloadQueueSize(); i > 0 && unloaded < maxUnloads; i--) {
+            Chunk column = cubeCache.pollColumnUnload(queuedBefore);
+            if (column == null) {
+                break;
+            }
+            if (cubeCache.tryUnloadColumn(column)) {
+                unloaded++;
+            }
+            if (System.nanoTime() > deadline) {
+                return false;
             }
         }
+        return unloaded < maxUnloads;
     }
 }
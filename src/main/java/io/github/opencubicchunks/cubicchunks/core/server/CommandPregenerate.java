@@ -0,0 +1,134 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server;
+
+import io.github.opencubicchunks.cubicchunks.api.util.Coords;
+import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorld;
+import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.DimensionManager;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Starts, stops and reports pre-generation of an area, see {@link WorldPregenerator}. Coordinates are block
+ * coordinates, the horizontal radius is in blocks.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class CommandPregenerate extends CommandBase {
+
+    @Override public String getName() {
+        return "cubicchunks_pregen";
+    }
+
+    @Override public String getUsage(ICommandSender sender) {
+        return "/cubicchunks_pregen start <x> <z> <radius> <minY> <maxY> [dimension] | stop [dimension] | status [dimension]";
+    }
+
+    @Override public int getRequiredPermissionLevel() {
+        return 4;
+    }
+
+    @Override public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+        if (args.length == 0) {
+            throw new WrongUsageException(this.getUsage(sender));
+        }
+        switch (args[0]) {
+            case "start": {
+                if (args.length != 6 && args.length != 7) {
+                    throw new WrongUsageException(this.getUsage(sender));
+                }
+                BlockPos pos = sender.getPosition();
+                int x = (int) Math.floor(parseDouble(pos.getX(), args[1], false));
+                int z = (int) Math.floor(parseDouble(pos.getZ(), args[2], false));
+                int radius = parseInt(args[3], 0);
+                int minY = parseInt(args[4]);
+                int maxY = parseInt(args[5], minY);
+                int dimension = getDimension(sender, args, 6);
+                WorldPregenerator pregenerator = getCubeCache(dimension).startPregeneration(
+                        Coords.blockToCube(x), Coords.blockToCube(z), (radius + Cube.SIZE - 1) / Cube.SIZE,
+                        Coords.blockToCube(minY), Coords.blockToCube(maxY));
+                sender.sendMessage(new TextComponentString("Pre-generating " + pregenerator.getTotalCubes() + " cubes in DIM" + dimension));
+                break;
+            }
+            case "stop": {
+                int dimension = getDimension(sender, args, 1);
+                if (!getCubeCache(dimension).stopPregeneration()) {
+                    throw new CommandException("DIM" + dimension + " is not being pre-generated");
+                }
+                sender.sendMessage(new TextComponentString("Stopped pre-generating DIM" + dimension));
+                break;
+            }
+            case "status": {
+                int dimension = getDimension(sender, args, 1);
+                WorldPregenerator pregenerator = getCubeCache(dimension).getPregenerator();
+                if (pregenerator == null) {
+                    throw new CommandException("DIM" + dimension + " is not being pre-generated");
+                }
+                sender.sendMessage(new TextComponentString("DIM" + dimension + ": " + pregenerator.getStatus()
+                        + ", " + pregenerator.getInFlight() + " cubes in progress"));
+                break;
+            }
+            default:
+                throw new WrongUsageException(this.getUsage(sender));
+        }
+    }
+
+    @Override public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, @Nullable BlockPos targetPos) {
+        if (args.length == 1) {
+            return getListOfStringsMatchingLastWord(args, "start", "stop", "status");
+        }
+        return Collections.emptyList();
+    }
+
+    private static int getDimension(ICommandSender sender, String[] args, int index) throws CommandException {
+        if (args.length > index + 1) {
+            throw new WrongUsageException("Too many arguments");
+        }
+        return args.length == index ? sender.getEntityWorld().provider.getDimension() : parseInt(args[index]);
+    }
+
+    private static CubeProviderServer getCubeCache(int dimension) throws CommandException {
+        WorldServer world = DimensionManager.getWorld(dimension);
+        if (world == null || !((ICubicWorld) world).isCubicWorld()) {
+            throw new CommandException("DIM" + dimension + " is not a loaded cubic chunks dimension");
+        }
+        return ((ICubicWorldInternal.Server) world).getCubeCache();
+    }
+}
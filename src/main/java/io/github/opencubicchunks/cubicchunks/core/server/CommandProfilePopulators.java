@@ -0,0 +1,136 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server;
+
+import io.github.opencubicchunks.cubicchunks.core.CubicChunks;
+import io.github.opencubicchunks.cubicchunks.core.worldgen.PopulatorProfiler;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentString;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Starts and stops profiling of populators and cube generator population, see {@link PopulatorProfiler}, and shows
+ * or saves the results. Results of the last profiling run are kept after stopping it.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class CommandProfilePopulators extends CommandBase {
+
+    private static final int DEFAULT_REPORT_ENTRIES = 10;
+
+    @Override public String getName() {
+        return "cubicchunks_popprofile";
+    }
+
+    @Override public String getUsage(ICommandSender sender) {
+        return "/cubicchunks_popprofile start | stop | report [entries] | dump";
+    }
+
+    @Override public int getRequiredPermissionLevel() {
+        return 4;
+    }
+
+    @Override public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+        if (args.length == 0) {
+            throw new WrongUsageException(this.getUsage(sender));
+        }
+        switch (args[0]) {
+            case "start": {
+                if (PopulatorProfiler.start() == null) {
+                    throw new CommandException("Populators are already being profiled");
+                }
+                sender.sendMessage(new TextComponentString("Started profiling populators"));
+                break;
+            }
+            case "stop": {
+                PopulatorProfiler profiler = PopulatorProfiler.stop();
+                if (profiler == null) {
+                    throw new CommandException("Populators are not being profiled");
+                }
+                sender.sendMessage(new TextComponentString("Stopped profiling populators after "
+                        + TimeUnit.NANOSECONDS.toSeconds(profiler.getElapsedNanos()) + " seconds"));
+                break;
+            }
+            case "report": {
+                int entries = args.length > 1 ? parseInt(args[1], 1) : DEFAULT_REPORT_ENTRIES;
+                PopulatorProfiler profiler = getProfiler();
+                sender.sendMessage(new TextComponentString("Populators by self time, over "
+                        + TimeUnit.NANOSECONDS.toSeconds(profiler.getElapsedNanos()) + " seconds:"));
+                for (String line : profiler.getTopEntries(entries)) {
+                    sender.sendMessage(new TextComponentString(line));
+                }
+                break;
+            }
+            case "dump": {
+                PopulatorProfiler profiler = getProfiler();
+                File file = server.getFile("cubicchunks-populators-" + new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date()) + ".csv");
+                try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                    profiler.writeCsv(out);
+                } catch (IOException e) {
+                    CubicChunks.LOGGER.error("Couldn't write populator profiling results to " + file, e);
+                    throw new CommandException("Couldn't write " + file + ": " + e);
+                }
+                sender.sendMessage(new TextComponentString("Populator profiling results written to " + file));
+                break;
+            }
+            default:
+                throw new WrongUsageException(this.getUsage(sender));
+        }
+    }
+
+    @Override public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, @Nullable BlockPos targetPos) {
+        if (args.length == 1) {
+            return getListOfStringsMatchingLastWord(args, "start", "stop", "report", "dump");
+        }
+        return Collections.emptyList();
+    }
+
+    private static PopulatorProfiler getProfiler() throws CommandException {
+        PopulatorProfiler profiler = PopulatorProfiler.getLatest();
+        if (profiler == null) {
+            throw new CommandException("Populators haven't been profiled yet, use /cubicchunks_popprofile start");
+        }
+        return profiler;
+    }
+}
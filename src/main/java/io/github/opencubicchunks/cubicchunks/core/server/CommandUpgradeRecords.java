@@ -0,0 +1,86 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server;
+
+import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorld;
+import io.github.opencubicchunks.cubicchunks.core.LeveldbConfig;
+import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
+import io.github.opencubicchunks.cubicchunks.core.server.chunkio.ICubeIO;
+import io.github.opencubicchunks.cubicchunks.core.server.chunkio.LeveldbCubeIO;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.DimensionManager;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Rewrites all saved columns and cubes of a dimension that are older than the current data version, so that they don't
+ * need to go through the data fixer every time they are loaded. Only supported for LevelDB saves.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class CommandUpgradeRecords extends CommandBase {
+
+    @Override public String getName() {
+        return "cubicchunks_upgrade";
+    }
+
+    @Override public String getUsage(ICommandSender sender) {
+        return "/cubicchunks_upgrade [dimension]";
+    }
+
+    @Override public int getRequiredPermissionLevel() {
+        return 4;
+    }
+
+    @Override public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+        if (args.length > 1) {
+            throw new WrongUsageException(this.getUsage(sender));
+        }
+        int dimension = args.length == 0 ? sender.getEntityWorld().provider.getDimension() : parseInt(args[0]);
+        WorldServer world = DimensionManager.getWorld(dimension);
+        if (world == null || !((ICubicWorld) world).isCubicWorld()) {
+            throw new CommandException("DIM" + dimension + " is not a loaded cubic chunks dimension");
+        }
+        ICubeIO cubeIO = ((ICubicWorldInternal.Server) world).getCubeCache().getCubeIO();
+        if (!(cubeIO instanceof LeveldbCubeIO) || LeveldbConfig.readOnly) {
+            throw new CommandException("Upgrading saved data is only supported for writable LevelDB saves");
+        }
+        boolean started = ((LeveldbCubeIO) cubeIO).startRecordUpgrade(upgraded -> server.addScheduledTask(() ->
+                sender.sendMessage(new TextComponentString(upgraded < 0
+                        ? "Upgrade of DIM" + dimension + " didn't finish, see the log for details"
+                        : "Upgraded " + upgraded + " records of DIM" + dimension))));
+        if (!started) {
+            throw new CommandException("DIM" + dimension + " is already being upgraded");
+        }
+        sender.sendMessage(new TextComponentString("Upgrading saved data of DIM" + dimension + " in the background"));
+    }
+}
@@ -24,6 +24,7 @@
  */
 package io.github.opencubicchunks.cubicchunks.core.server;
 
+import io.github.opencubicchunks.cubicchunks.core.CubicChunks;
 import io.github.opencubicchunks.cubicchunks.core.CubicChunksConfig;
 import io.github.opencubicchunks.cubicchunks.core.LeveldbConfig;
 import io.github.opencubicchunks.cubicchunks.core.lighting.LightingManager;
@@ -31,6 +32,8 @@ import io.github.opencubicchunks.cubicchunks.core.server.chunkio.ICubeIO;
 import io.github.opencubicchunks.cubicchunks.core.server.chunkio.LeveldbCubeIO;
 import io.github.opencubicchunks.cubicchunks.core.server.chunkio.RegionCubeIO;
 import io.github.opencubicchunks.cubicchunks.core.server.chunkio.async.forge.AsyncWorldIOExecutor;
+import io.github.opencubicchunks.cubicchunks.core.worldgen.AsyncTerrainGenerator;
+import io.github.opencubicchunks.cubicchunks.core.worldgen.PopulatorProfiler;
 import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
 import io.github.opencubicchunks.cubicchunks.api.world.ICube;
 import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
@@ -40,9 +43,11 @@ import io.github.opencubicchunks.cubicchunks.api.util.Box;
 import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
 import io.github.opencubicchunks.cubicchunks.api.util.XYZMap;
 import io.github.opencubicchunks.cubicchunks.core.world.ICubeProviderInternal;
+import io.github.opencubicchunks.cubicchunks.core.world.WorldSavedCubicChunksData;
 import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
 import io.github.opencubicchunks.cubicchunks.api.world.IColumn;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import it.unimi.dsi.fastutil.objects.Object2LongLinkedOpenHashMap;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.entity.EnumCreatureType;
 import net.minecraft.profiler.Profiler;
@@ -61,6 +66,7 @@ import java.io.UncheckedIOException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
@@ -85,10 +91,18 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
     @Nonnull private WorldServer worldServer;
     @Nonnull private ICubeIO cubeIO;
 
-    // TODO: Use a better hash map!
-    @Nonnull private XYZMap<Cube> cubeMap = new XYZMap<>(0.7f, 8000);
+    @Nonnull private XYZMap<Cube> cubeMap = XYZMap.create(0.7f, 8000);
+
+    // Cubes and columns that nothing holds loaded anymore, mapped to the world time at which they became unused.
+    // Iteration order is the order in which they were queued, so ChunkGc only ever has to look at the head.
+    @Nonnull private final Object2LongLinkedOpenHashMap<Cube> cubeUnloadQueue = new Object2LongLinkedOpenHashMap<>();
+    @Nonnull private final Object2LongLinkedOpenHashMap<Chunk> columnUnloadQueue = new Object2LongLinkedOpenHashMap<>();
 
     @Nonnull private ICubeGenerator cubeGen;
+    @Nonnull private AsyncTerrainGenerator terrainGen;
+    @Nonnull private PopulationScheduler populationScheduler = new PopulationScheduler(new PopulationAccess());
+    @Nullable private WorldPregenerator pregenerator;
+    private boolean pregenerationResumed;
     @Nonnull private Profiler profiler;
 
     public CubeProviderServer(WorldServer worldServer, ICubeGenerator cubeGen) {
@@ -97,6 +111,7 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
                 worldServer.provider.createChunkGenerator()); // let's create the chunk generator, for now the vanilla one may be enough
 
         this.cubeGen = cubeGen;
+        this.terrainGen = new AsyncTerrainGenerator(cubeGen);
         this.worldServer = worldServer;
         this.profiler = worldServer.profiler;
         try {
@@ -157,10 +172,22 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
         }
 
         // TODO here too
-        asyncGetColumn(columnX, columnZ, Requirement.LIGHT, col -> runnable.run());
+        asyncGetColumn(columnX, columnZ, Requirement.LIGHT, runnable, col -> runnable.run());
         return null;
     }
 
+    /**
+     * Drops a runnable passed to {@link #loadChunk(int, int, Runnable)} that hasn't been run yet, it won't be run
+     * anymore. The load itself is cancelled once nothing else waits for it.
+     *
+     * @param columnX Column x position
+     * @param columnZ Column z position
+     * @param runnable the same runnable instance that was passed to {@link #loadChunk(int, int, Runnable)}
+     */
+    void dropLoadChunk(int columnX, int columnZ, Runnable runnable) {
+        dropAsyncGetColumn(new ChunkPos(columnX, columnZ), runnable);
+    }
+
     /**
      * If this Column is already loaded - returns it.
      * Loads from disk if possible, otherwise generates new Column.
@@ -205,6 +232,13 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
         while (watchersIterator.hasNext()) {
             watchersIterator.next().tickCubeServer(tickFaster, rand);
         }
+        terrainGen.tick(this.worldServer.getTotalWorldTime());
+        profiler.startSection("population");
+        long populationDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CubicChunksConfig.populationMaxTimePerTick);
+        populationScheduler.tick(() -> System.nanoTime() > populationDeadline);
+        profiler.endStartSection("pregeneration");
+        tickPregeneration();
+        profiler.endSection();
         profiler.endSection();
         return false;
     }
@@ -212,7 +246,8 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
     @Override
     public String makeString() {
         return "CubeProviderServer: " + this.loadedChunks.size() + " columns, "
-                + this.cubeMap.getSize() + " cubes";
+                + this.cubeMap.getSize() + " cubes, "
+                + this.columnUnloadQueue.size() + "/" + this.cubeUnloadQueue.size() + " columns/cubes queued for unload";
     }
 
     @Override
@@ -275,21 +310,65 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
      * @see #getCube(int, int, int, Requirement) for the synchronous equivalent to this method
      */
     public void asyncGetCube(int cubeX, int cubeY, int cubeZ, Requirement req, Consumer<Cube> callback) {
+        asyncGetCube(cubeX, cubeY, cubeZ, req, callback, callback);
+    }
+
+    /**
+     * @param owner identifies the request for {@link #dropAsyncGetCube(CubePos, Object)}
+     */
+    private void asyncGetCube(int cubeX, int cubeY, int cubeZ, Requirement req, Object owner, Consumer<Cube> callback) {
         Cube cube = getLoadedCube(cubeX, cubeY, cubeZ);
         if (req == Requirement.GET_CACHED || (cube != null && req.compareTo(Requirement.GENERATE) <= 0)) {
             callback.accept(cube);
             return;
         }
+        if (req.compareTo(Requirement.POPULATE) >= 0 && !CubicChunksConfig.useVanillaChunkWorldGenerators) {
+            if (cube != null && cube.isFullyPopulated()) {
+                // only lighting is left
+                callback.accept(getCube(cubeX, cubeY, cubeZ, req));
+            } else {
+                // loads, generates and populates everything needed over multiple ticks
+                populationScheduler.request(new CubePos(cubeX, cubeY, cubeZ), owner,
+                        () -> callback.accept(getCube(cubeX, cubeY, cubeZ, req)));
+            }
+            return;
+        }
 
         if (cube == null) {
-            AsyncWorldIOExecutor.queueCubeLoad(worldServer, cubeIO, this, cubeX, cubeY, cubeZ, loaded -> {
+            AsyncWorldIOExecutor.queueCubeLoad(worldServer, cubeIO, this, cubeX, cubeY, cubeZ, new LoadCallback<>(owner, loaded -> {
                 Chunk col = getLoadedColumn(cubeX, cubeZ);
                 if (col != null) {
                     onCubeLoaded(loaded, col);
                     loaded = postCubeLoadAttempt(cubeX, cubeY, cubeZ, loaded, col, req);
                 }
+                if (loaded == null) {
+                    // not saved yet, so it will most likely be generated soon
+                    terrainGen.prefetch(new CubePos(cubeX, cubeY, cubeZ), worldServer.getTotalWorldTime());
+                }
                 callback.accept(loaded);
-            });
+            }));
+        } else {
+            // already loaded, only the remaining work is left
+            callback.accept(getCube(cubeX, cubeY, cubeZ, req));
+        }
+    }
+
+    /**
+     * Drops a callback passed to {@link #asyncGetCube} that hasn't been called yet, it won't be called anymore. The load,
+     * or the population work, is cancelled once nothing else waits for it.
+     *
+     * @param cubeX Cube x position
+     * @param cubeY Cube y position
+     * @param cubeZ Cube z position
+     * @param callback the same callback instance that was passed to {@link #asyncGetCube}
+     */
+    public void dropAsyncGetCube(int cubeX, int cubeY, int cubeZ, Consumer<Cube> callback) {
+        dropAsyncGetCube(new CubePos(cubeX, cubeY, cubeZ), callback);
+    }
+
+    private void dropAsyncGetCube(CubePos pos, Object owner) {
+        if (!populationScheduler.cancel(pos, owner)) {
+            AsyncWorldIOExecutor.dropQueuedCubeLoad(worldServer, pos.getX(), pos.getY(), pos.getZ(), new LoadCallback<>(owner, cube -> {}));
         }
     }
 
@@ -310,6 +389,7 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
         if (cube == null) {
             // a little hack to fix StackOverflowError when loading TileEntities, as Cube methods are now redirected into IColumn
             // Column needs cube to be loaded to add TileEntity, so make CubeProvider contain it already
+            PopulatorProfiler.onCubeLoad();
             cube = AsyncWorldIOExecutor.syncCubeLoad(worldServer, cubeIO, this, cubeX, cubeY, cubeZ);
             onCubeLoaded(cube, column);
         }
@@ -337,6 +417,10 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
             if (!((IColumn) column).getLoadedCubes().contains(cube)) {
                 ((IColumn) column).addCube(cube);
                 cube.onLoad(); // init the Cube
+                if (cube.getTickets().canUnload()) {
+                    // loaded without anything holding it, if nothing claims it the cube should go away again
+                    queueCubeUnload(cube);
+                }
             }
         }
     }
@@ -406,7 +490,7 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
      */
     private Cube generateCube(int cubeX, int cubeY, int cubeZ, Chunk column) {
         Cube cube;
-        try (CubePrimer primer = cubeGen.generateCube(cubeX, cubeY, cubeZ)) {
+        try (CubePrimer primer = terrainGen.generateCube(cubeX, cubeY, cubeZ)) {
             cube = new Cube(column, cubeY, primer);
         }
 
@@ -458,7 +542,7 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
             });
             // a check for populators that populate more than one cube (vanilla compatibility generator)
             if (!fullPopulationCube.isPopulated()) {
-                cubeGen.populate(fullPopulationCube);
+                PopulatorProfiler.populate(cubeGen, fullPopulationCube);
                 fullPopulationCube.setPopulated(true);
             }
         });
@@ -514,16 +598,39 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
      * @see CubeProviderServer#getColumn(int, int, Requirement) for the synchronous variant of this method
      */
     public void asyncGetColumn(int columnX, int columnZ, Requirement req, Consumer<Chunk> callback) {
+        asyncGetColumn(columnX, columnZ, req, callback, callback);
+    }
+
+    /**
+     * @param owner identifies the request for {@link #dropAsyncGetColumn(ChunkPos, Object)}
+     */
+    private void asyncGetColumn(int columnX, int columnZ, Requirement req, Object owner, Consumer<Chunk> callback) {
         Chunk column = getLoadedColumn(columnX, columnZ);
         if (column != null || req == Requirement.GET_CACHED) {
             callback.accept(column);
             return;
         }
 
-        AsyncWorldIOExecutor.queueColumnLoad(worldServer, cubeIO, columnX, columnZ, col -> {
+        AsyncWorldIOExecutor.queueColumnLoad(worldServer, cubeIO, columnX, columnZ, new LoadCallback<>(owner, col -> {
             col = postProcessColumn(columnX, columnZ, col, req);
             callback.accept(col);
-        });
+        }));
+    }
+
+    /**
+     * Drops a callback passed to {@link #asyncGetColumn} that hasn't been called yet, it won't be called anymore. The
+     * load itself is cancelled once nothing else waits for it.
+     *
+     * @param columnX Column x position
+     * @param columnZ Column z position
+     * @param callback the same callback instance that was passed to {@link #asyncGetColumn}
+     */
+    public void dropAsyncGetColumn(int columnX, int columnZ, Consumer<Chunk> callback) {
+        dropAsyncGetColumn(new ChunkPos(columnX, columnZ), callback);
+    }
+
+    private void dropAsyncGetColumn(ChunkPos pos, Object owner) {
+        AsyncWorldIOExecutor.dropQueuedColumnLoad(worldServer, pos.x, pos.z, new LoadCallback<>(owner, column -> {}));
     }
 
     @Nullable @Override
@@ -562,6 +669,7 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
             loadedChunks.put(ChunkPos.asLong(columnX, columnZ), (Chunk) column);
             column.setLastSaveTime(this.worldServer.getTotalWorldTime()); // the column was just loaded
             column.onLoad();
+            queueColumnUnload(column);
             return column;
         } else if (req == Requirement.LOAD) {
             return null;
@@ -573,6 +681,7 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
         loadedChunks.put(ChunkPos.asLong(columnX, columnZ), (Chunk) column);
         column.setLastSaveTime(this.worldServer.getTotalWorldTime()); // the column was just generated
         column.onLoad();
+        queueColumnUnload(column);
         return column;
     }
 
@@ -614,12 +723,81 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
         return loadedChunks.values().iterator();
     }
 
+    /**
+     * Marks a loaded cube as no longer used. Unless it gets a ticket again, it will be unloaded by {@link ChunkGc} once
+     * it has been unused for {@link CubicChunksConfig#chunkGCUnusedTicks} ticks.
+     *
+     * @param cube the cube
+     */
+    public void queueCubeUnload(Cube cube) {
+        if (!cubeUnloadQueue.containsKey(cube)) {
+            cubeUnloadQueue.put(cube, worldServer.getTotalWorldTime());
+        }
+    }
+
+    /**
+     * Removes a cube from the unload queue, because something started using it again.
+     *
+     * @param cube the cube
+     */
+    public void cancelCubeUnload(Cube cube) {
+        cubeUnloadQueue.removeLong(cube);
+    }
+
+    private void queueColumnUnload(Chunk column) {
+        if (!columnUnloadQueue.containsKey(column)) {
+            columnUnloadQueue.put(column, worldServer.getTotalWorldTime());
+        }
+    }
+
+    /**
+     * Removes and returns the cube that has been in the unload queue for the longest time, if it was queued at or
+     * before the given world time.
+     */
+    @Nullable
+    Cube pollCubeUnload(long queuedBefore) {
+        if (cubeUnloadQueue.isEmpty()) {
+            return null;
+        }
+        Cube cube = cubeUnloadQueue.firstKey();
+        if (cubeUnloadQueue.getLong(cube) > queuedBefore) {
+            return null;
+        }
+        cubeUnloadQueue.removeLong(cube);
+        return cube;
+    }
+
+    @Nullable
+    Chunk pollColumnUnload(long queuedBefore) {
+        if (columnUnloadQueue.isEmpty()) {
+            return null;
+        }
+        Chunk column = columnUnloadQueue.firstKey();
+        if (columnUnloadQueue.getLong(column) > queuedBefore) {
+            return null;
+        }
+        columnUnloadQueue.removeLong(column);
+        return column;
+    }
+
+    public int getCubeUnloadQueueSize() {
+        return cubeUnloadQueue.size();
+    }
+
+    public int getColumnUnloadQueueSize() {
+        return columnUnloadQueue.size();
+    }
+
     boolean tryUnloadCube(Cube cube) {
+        if (cubeMap.get(cube.getX(), cube.getY(), cube.getZ()) != cube) {
+            return false; // already unloaded
+        }
         if (ForgeChunkManager.getPersistentChunksFor(world).containsKey(cube.getColumn().getPos())) {
-            return false; // it will be unloaded later by ChunkGC
+            queueCubeUnload(cube); // check again later
+            return false;
         }
         if (!cube.getTickets().canUnload()) {
-            return false; // There are tickets
+            return false; // There are tickets, it will be queued again when the last one is removed
         }
 
         // unload the Cube!
@@ -629,23 +807,33 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
             this.cubeIO.saveCube(cube);
         }
 
-        if (cube.getColumn().removeCube(cube.getY()) == null) {
+        IColumn column = cube.getColumn();
+        if (column.removeCube(cube.getY()) == null) {
             throw new RuntimeException();
         }
+        cubeMap.remove(cube.getX(), cube.getY(), cube.getZ());
+        if (!column.hasLoadedCubes()) {
+            queueColumnUnload((Chunk) column);
+        }
         return true;
     }
 
     boolean tryUnloadColumn(Chunk column) {
-        if (ForgeChunkManager.getPersistentChunksFor(world).containsKey(column.getPos())) {
-            return false; // it will be unloaded later by ChunkGC
+        if (loadedChunks.get(ChunkPos.asLong(column.x, column.z)) != column) {
+            return false; // already unloaded
         }
         if (((IColumn) column).hasLoadedCubes()) {
-            return false; // It has loaded Cubes in it
+            return false; // It has loaded Cubes in it, it will be queued again when the last one is unloaded
             // (Cubes are to Columns, as tickets are to Cubes... in a way)
         }
+        if (ForgeChunkManager.getPersistentChunksFor(world).containsKey(column.getPos())) {
+            queueColumnUnload(column); // check again later
+            return false;
+        }
         // ask async loader if there are currently any cubes being loaded for this column
         // this should prevent hard to debug issues with columns being unloaded while cubes have reference to them
         if (!AsyncWorldIOExecutor.canDropColumn(worldServer, column.x, column.z)) {
+            queueColumnUnload(column);
             return false;
         }
         column.unloadQueued = true;
@@ -656,9 +844,102 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
         if (column.needsSaving(true)) { // save the Column, if it needs saving
             this.cubeIO.saveColumn(column);
         }
+        loadedChunks.remove(ChunkPos.asLong(column.x, column.z));
         return true;
     }
 
+    /**
+     * Starts pre-generating an area, replacing the current pre-generation if there is one. The area is saved, and
+     * pre-generation continues after a restart until it's done.
+     *
+     * @param centerX X coordinate of the center column
+     * @param centerZ Z coordinate of the center column
+     * @param radius horizontal radius in cubes
+     * @param minY the lowest cube Y coordinate to generate
+     * @param maxY the highest cube Y coordinate to generate
+     * @return the new pregenerator
+     */
+    public WorldPregenerator startPregeneration(int centerX, int centerZ, int radius, int minY, int maxY) {
+        stopPregeneration();
+        WorldSavedCubicChunksData data = getSavedData();
+        data.pregenerating = true;
+        data.pregenCenterX = centerX;
+        data.pregenCenterZ = centerZ;
+        data.pregenRadius = radius;
+        data.pregenMinY = minY;
+        data.pregenMaxY = maxY;
+        data.pregenCursor = 0;
+        data.markDirty();
+        pregenerationResumed = true;
+        pregenerator = createPregenerator(data);
+        return pregenerator;
+    }
+
+    /**
+     * @return true if pre-generation was running
+     */
+    public boolean stopPregeneration() {
+        if (pregenerator == null) {
+            return false;
+        }
+        pregenerator.stop();
+        pregenerator = null;
+        WorldSavedCubicChunksData data = getSavedData();
+        data.pregenerating = false;
+        data.markDirty();
+        return true;
+    }
+
+    @Nullable public WorldPregenerator getPregenerator() {
+        return pregenerator;
+    }
+
+    private void tickPregeneration() {
+        if (!pregenerationResumed) {
+            pregenerationResumed = true;
+            WorldSavedCubicChunksData data = getSavedData();
+            if (data.pregenerating) {
+                pregenerator = createPregenerator(data);
+                CubicChunks.LOGGER.info("Resuming pre-generation of DIM{} from column {}", worldServer.provider.getDimension(), data.pregenCursor);
+            }
+        }
+        if (pregenerator == null) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CubicChunksConfig.pregenerationMaxTimePerTick);
+        pregenerator.tick(() -> System.nanoTime() > deadline, CubicChunksConfig.pregenerationMaxInFlight);
+
+        WorldSavedCubicChunksData data = getSavedData();
+        if (pregenerator.isFinished()) {
+            pregenerator = null;
+            data.pregenerating = false;
+            data.markDirty();
+        } else if (data.pregenCursor != pregenerator.getCursor()) {
+            data.pregenCursor = pregenerator.getCursor();
+            data.markDirty();
+        }
+    }
+
+    private WorldPregenerator createPregenerator(WorldSavedCubicChunksData data) {
+        return new WorldPregenerator("DIM" + worldServer.provider.getDimension(), new PregenerationHost(),
+                data.pregenCenterX, data.pregenCenterZ, data.pregenRadius, data.pregenMinY, data.pregenMaxY, data.pregenCursor);
+    }
+
+    private WorldSavedCubicChunksData getSavedData() {
+        return (WorldSavedCubicChunksData) worldServer.getPerWorldStorage().getOrLoadData(WorldSavedCubicChunksData.class, "cubicChunksData");
+    }
+
+    /**
+     * @return true if population requested with {@link #asyncGetCube} is waiting for this cube to be loaded or generated
+     */
+    public boolean isPopulationWaitingFor(CubePos pos) {
+        return populationScheduler.isWaitingFor(pos);
+    }
+
+    public int getPendingPopulationCount() {
+        return populationScheduler.getPendingCount();
+    }
+
     public ICubeGenerator getCubeGenerator() {
         return cubeGen;
     }
@@ -666,4 +947,100 @@ public class CubeProviderServer extends ChunkProviderServer implements ICubeProv
     public int getLoadedCubeCount() {
         return cubeMap.getSize();
     }
+
+    /**
+     * Callback queued in {@link AsyncWorldIOExecutor} for a caller of {@link #asyncGetCube} or {@link #asyncGetColumn}.
+     * It's equal to any other one for the same owner, so that {@link #dropAsyncGetCube} and {@link #dropAsyncGetColumn}
+     * can find it.
+     */
+    private static final class LoadCallback<T> implements Consumer<T> {
+
+        private final Object owner;
+        private final Consumer<T> action;
+
+        LoadCallback(Object owner, Consumer<T> action) {
+            this.owner = owner;
+            this.action = action;
+        }
+
+        @Override public void accept(T t) {
+            action.accept(t);
+        }
+
+        @Override public boolean equals(Object o) {
+            return o instanceof LoadCallback && ((LoadCallback<?>) o).owner == owner;
+        }
+
+        @Override public int hashCode() {
+            return System.identityHashCode(owner);
+        }
+    }
+
+    private class PopulationAccess implements PopulationScheduler.CubeAccess {
+
+        @Override public boolean isLoaded(CubePos pos) {
+            return getLoadedCube(pos) != null;
+        }
+
+        @Override public boolean isPopulated(CubePos pos) {
+            return requireLoaded(pos).isPopulated();
+        }
+
+        @Override public boolean isFullyPopulated(CubePos pos) {
+            return requireLoaded(pos).isFullyPopulated();
+        }
+
+        @Override public void load(CubePos pos, Runnable onDone) {
+            asyncGetCube(pos.getX(), pos.getY(), pos.getZ(), Requirement.LOAD, onDone, cube -> onDone.run());
+        }
+
+        @Override public void cancelLoad(CubePos pos, Runnable onDone) {
+            dropAsyncGetCube(pos, onDone);
+        }
+
+        @Override public void generate(CubePos pos) {
+            getCube(pos.getX(), pos.getY(), pos.getZ(), Requirement.GENERATE);
+        }
+
+        @Override public Box getFullPopulationRequirements(CubePos pos) {
+            return cubeGen.getFullPopulationRequirements(requireLoaded(pos));
+        }
+
+        @Override public Box getPopulationPregenerationRequirements(CubePos pos) {
+            return cubeGen.getPopulationPregenerationRequirements(requireLoaded(pos));
+        }
+
+        @Override public void populate(CubePos pos) {
+            Cube cube = requireLoaded(pos);
+            PopulatorProfiler.populate(cubeGen, cube);
+            cube.setPopulated(true);
+        }
+
+        @Override public void setFullyPopulated(CubePos pos) {
+            requireLoaded(pos).setFullyPopulated(true);
+        }
+
+        private Cube requireLoaded(CubePos pos) {
+            Cube cube = getLoadedCube(pos);
+            if (cube == null) {
+                throw new IllegalStateException("Cube " + pos + " is not loaded");
+            }
+            return cube;
+        }
+    }
+
+    private class PregenerationHost implements WorldPregenerator.Host {
+
+        @Override public void requestCube(int cubeX, int cubeY, int cubeZ, Runnable onDone) {
+            asyncGetCube(cubeX, cubeY, cubeZ, Requirement.LIGHT, cube -> onDone.run());
+        }
+
+        @Override public void unloadCube(int cubeX, int cubeY, int cubeZ) {
+            Cube cube = getLoadedCube(cubeX, cubeY, cubeZ);
+            if (cube != null && tryUnloadCube(cube)) {
+                // don't keep it around in the unload queue
+                cancelCubeUnload(cube);
+            }
+        }
+    }
 }
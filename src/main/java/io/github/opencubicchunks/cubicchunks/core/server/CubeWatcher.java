@@ -38,7 +38,6 @@ import io.github.opencubicchunks.cubicchunks.core.lighting.LightingManager;
 import io.github.opencubicchunks.cubicchunks.core.network.PacketCubeBlockChange;
 import io.github.opencubicchunks.cubicchunks.core.network.PacketDispatcher;
 import io.github.opencubicchunks.cubicchunks.core.network.PacketUnloadCube;
-import io.github.opencubicchunks.cubicchunks.core.server.chunkio.async.forge.AsyncWorldIOExecutor;
 import io.github.opencubicchunks.cubicchunks.core.util.AddressTools;
 import io.github.opencubicchunks.cubicchunks.core.util.ticket.ITicket;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
@@ -127,9 +126,7 @@ public class CubeWatcher implements ITicket, ICubeWatcher {
 
             if (this.players.isEmpty()) {
                 if (loading) {
-                    AsyncWorldIOExecutor.dropQueuedCubeLoad(this.playerCubeMap.getWorldServer(),
-                            cubePos.getX(), cubePos.getY(), cubePos.getZ(),
-                            c -> this.cube = c);
+                    this.cubeCache.dropAsyncGetCube(cubePos.getX(), cubePos.getY(), cubePos.getZ(), consumer);
                 }
                 invalid = true;
                 playerCubeMap.removeEntry(this);
@@ -146,6 +143,10 @@ public class CubeWatcher implements ITicket, ICubeWatcher {
         MinecraftForge.EVENT_BUS.post(new CubeUnWatchEvent(cube, cubePos, this, player));
 
         if (this.players.isEmpty()) {
+            if (loading) {
+                // still waiting for population
+                this.cubeCache.dropAsyncGetCube(cubePos.getX(), cubePos.getY(), cubePos.getZ(), consumer);
+            }
             invalid = true;
             playerCubeMap.removeEntry(this);
         }
@@ -164,7 +165,15 @@ public class CubeWatcher implements ITicket, ICubeWatcher {
         int cubeZ = cubePos.getZ();
 
         playerCubeMap.getWorldServer().profiler.startSection("getCube");
-        if (canGenerate) {
+        if (canGenerate && (this.cube == null || !this.cube.isFullyPopulated())) {
+            // population is spread over multiple ticks, the consumer is called once the cube is done
+            this.loading = true;
+            this.cubeCache.asyncGetCube(cubeX, cubeY, cubeZ, ICubeProviderServer.Requirement.LIGHT, consumer);
+            if (this.loading) {
+                playerCubeMap.getWorldServer().profiler.endSection();
+                return false;
+            }
+        } else if (canGenerate) {
             this.cube = this.cubeCache.getCube(cubeX, cubeY, cubeZ, ICubeProviderServer.Requirement.LIGHT);
         } else {
             this.cube = this.cubeCache.getCube(cubeX, cubeY, cubeZ, ICubeProviderServer.Requirement.LOAD);
@@ -30,7 +30,6 @@ import static net.minecraft.util.math.MathHelper.clamp;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
@@ -47,9 +46,10 @@ import io.github.opencubicchunks.cubicchunks.core.CubicChunksConfig;
 import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
 import io.github.opencubicchunks.cubicchunks.core.entity.ICubicEntityTracker;
 import io.github.opencubicchunks.cubicchunks.core.lighting.LightingManager;
+import io.github.opencubicchunks.cubicchunks.core.network.NetworkCapabilities;
 import io.github.opencubicchunks.cubicchunks.core.network.PacketCubes;
 import io.github.opencubicchunks.cubicchunks.core.network.PacketDispatcher;
-import io.github.opencubicchunks.cubicchunks.core.util.WatchersSortingList;
+import io.github.opencubicchunks.cubicchunks.core.util.WatcherPriorityQueue;
 import io.github.opencubicchunks.cubicchunks.core.visibility.CubeSelector;
 import io.github.opencubicchunks.cubicchunks.core.visibility.CuboidalCubeSelector;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
@@ -72,13 +72,13 @@ import net.minecraftforge.common.MinecraftForge;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.ToIntFunction;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -98,22 +98,20 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
             (!player.isSpectator() || player.getServerWorld().getGameRules().getBoolean("spectatorsGenerateChunks"));
 
     /**
-     * Comparator that specifies order in which cubes will be generated and sent to clients
+     * Highest priority of queued watchers, all watchers further than this many cubes from the closest player have the
+     * same priority
      */
-    private static final Comparator<CubeWatcher> CUBE_ORDER = (watcher1, watcher2) ->
-            ComparisonChain.start().compare(
-                    watcher1.getClosestPlayerDistance(),
-                    watcher2.getClosestPlayerDistance()
-            ).result();
+    private static final int MAX_PRIORITY = 255;
 
     /**
-     * Comparator that specifies order in which columns will be generated and sent to clients
+     * Priority that specifies order in which cubes will be generated and sent to clients
      */
-    private static final Comparator<ColumnWatcher> COLUMN_ORDER = (watcher1, watcher2) ->
-            ComparisonChain.start().compare(
-                    watcher1.getClosestPlayerDistance(),
-                    watcher2.getClosestPlayerDistance()
-            ).result();
+    private static final ToIntFunction<CubeWatcher> CUBE_PRIORITY = watcher -> distanceRing(watcher.getClosestPlayerDistance());
+
+    /**
+     * Priority that specifies order in which columns will be generated and sent to clients
+     */
+    private static final ToIntFunction<ColumnWatcher> COLUMN_PRIORITY = watcher -> distanceRing(watcher.getClosestPlayerDistance());
 
     /**
      * Cube selector is used to find which cube positions need to be loaded/unloaded
@@ -130,7 +128,7 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
      * Mapping of Cube positions to CubeWatchers (Cube equivalent of PlayerManager.PlayerInstance).
      * Contains cube positions of all cubes loaded by players.
      */
-    private final XYZMap<CubeWatcher> cubeWatchers = new XYZMap<>(0.7f, 25 * 25 * 25);
+    private final XYZMap<CubeWatcher> cubeWatchers = XYZMap.create(0.7f, 25 * 25 * 25);
 
     /**
      * Mapping of Column positions to ColumnWatchers.
@@ -157,7 +155,7 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
      * Note that this is not the same as cubesToGenerate list.
      * Cube can be loaded while not being fully generated yet (not in the last GeneratorStageRegistry stage).
      */
-    private final WatchersSortingList<CubeWatcher> cubesToSendToClients = new WatchersSortingList<CubeWatcher>(CUBE_ORDER);
+    private final WatcherPriorityQueue<CubeWatcher> cubesToSendToClients = new WatcherPriorityQueue<>(CUBE_PRIORITY, MAX_PRIORITY);
 
     /**
      * Contains all CubeWatchers that still need to be loaded/generated.
@@ -165,7 +163,7 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
      * Technically it can generate it, using the world's IGeneratorPipeline,
      * but spectator players can't generate chunks if spectatorsGenerateChunks gamerule is set.
      */
-    private final WatchersSortingList<CubeWatcher> cubesToGenerate = new WatchersSortingList<CubeWatcher>(CUBE_ORDER);
+    private final WatcherPriorityQueue<CubeWatcher> cubesToGenerate = new WatcherPriorityQueue<>(CUBE_PRIORITY, MAX_PRIORITY);
 
     /**
      * Contains all ColumnWatchers that need to be sent to clients,
@@ -174,13 +172,13 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
      * Note that this is not the same as columnsToGenerate list.
      * Columns can be loaded while not being fully generated yet
      */
-    private final WatchersSortingList<ColumnWatcher> columnsToSendToClients = new WatchersSortingList<ColumnWatcher>(COLUMN_ORDER);
+    private final WatcherPriorityQueue<ColumnWatcher> columnsToSendToClients = new WatcherPriorityQueue<>(COLUMN_PRIORITY, MAX_PRIORITY);
 
     /**
      * Contains all ColumnWatchers that still need to be loaded/generated.
      * ColumnWatcher constructor attempts to load column from disk, but it won't generate it.
      */
-    private final WatchersSortingList<ColumnWatcher> columnsToGenerate = new WatchersSortingList<ColumnWatcher>(COLUMN_ORDER);
+    private final WatcherPriorityQueue<ColumnWatcher> columnsToGenerate = new WatcherPriorityQueue<>(COLUMN_PRIORITY, MAX_PRIORITY);
 
     private int horizontalViewDistance;
     private int verticalViewDistance;
@@ -190,8 +188,11 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
      */
     private long previousWorldTime = 0;
 
-    private boolean toGenerateNeedSort = true;
-    private boolean toSendToClientNeedSort = true;
+    /**
+     * Set when priorities of all queued watchers may have changed, players that move only update the watchers around them
+     */
+    private boolean toGenerateNeedPriorityUpdate = true;
+    private boolean toSendToClientNeedPriorityUpdate = true;
 
     private final CubeProviderServer cubeCache;
 
@@ -321,19 +322,26 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
         this.columnWatchersToUpdate.forEach(ColumnWatcher::update);
         this.columnWatchersToUpdate.clear();
 
-        getWorldServer().profiler.endStartSection("sortToGenerate");
-        //sort toLoadPending if needed, but at most every 4 ticks
-        if (this.toGenerateNeedSort && currentTime % 4L == 0L) {
-            this.toGenerateNeedSort = false;
-            this.cubesToGenerate.sort();
-            this.columnsToGenerate.sort();
+        getWorldServer().profiler.endStartSection("prioritizeToGenerate");
+        //update priorities of all of toLoadPending if needed, but at most every 4 ticks
+        if (this.toGenerateNeedPriorityUpdate && currentTime % 4L == 0L) {
+            this.toGenerateNeedPriorityUpdate = false;
+            this.cubesToGenerate.updateAllPriorities();
+            this.columnsToGenerate.updateAllPriorities();
+        } else {
+            // watchers around players who moved, each one is updated only once even when many players moved
+            this.cubesToGenerate.updateDirtyPriorities();
+            this.columnsToGenerate.updateDirtyPriorities();
         }
-        getWorldServer().profiler.endStartSection("sortToSend");
-        //sort cubesToSendToClients every other 4 ticks
-        if (this.toSendToClientNeedSort && currentTime % 4L == 2L) {
-            this.toSendToClientNeedSort = false;
-            this.cubesToSendToClients.sort();
-            this.columnsToSendToClients.sort();
+        getWorldServer().profiler.endStartSection("prioritizeToSend");
+        //update priorities of cubesToSendToClients every other 4 ticks
+        if (this.toSendToClientNeedPriorityUpdate && currentTime % 4L == 2L) {
+            this.toSendToClientNeedPriorityUpdate = false;
+            this.cubesToSendToClients.updateAllPriorities();
+            this.columnsToSendToClients.updateAllPriorities();
+        } else {
+            this.cubesToSendToClients.updateDirtyPriorities();
+            this.columnsToSendToClients.updateDirtyPriorities();
         }
 
         getWorldServer().profiler.endStartSection("generate");
@@ -434,7 +442,8 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
         getWorldServer().profiler.endStartSection("sendCubes");//unload
         for (EntityPlayerMP player : cubesToSend.keySet()) {
             Collection<Cube> cubes = cubesToSend.get(player);
-            PacketCubes packet = new PacketCubes(new ArrayList<>(cubes));
+            PacketCubes packet = new PacketCubes(new ArrayList<>(cubes),
+                    !NetworkCapabilities.has(player, NetworkCapabilities.SKIP_HEIGHTMAPS));
             PacketDispatcher.sendTo(packet, player);
             //Sending entities per cube.
             for (Cube cube : cubes) {
@@ -564,7 +573,7 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
             cubeWatcher.addPlayer(player);
         });
         this.players.put(player.getEntityId(), playerWrapper);
-        this.setNeedSort();
+        this.setNeedPriorityUpdate();
     }
 
     // CHECKED: 1.10.2-12.18.1.2092
@@ -602,7 +611,7 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
                 .filter(watcher->watcher.containsPlayer(player))
                 .forEach(watcher->watcher.removePlayer(player));
         this.players.remove(player.getEntityId());
-        this.setNeedSort();
+        this.setNeedPriorityUpdate();
     }
 
     // CHECKED: 1.10.2-12.18.1.2092
@@ -626,7 +635,6 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
 
         this.updatePlayer(playerWrapper, playerWrapper.getManagedCubePos(), CubePos.fromEntity(player));
         playerWrapper.updateManagedPos();
-        this.setNeedSort();
 
         // With ChunkGc being separate from PlayerCubeMap, there are 2 issues:
         // Problem 0: Sometimes, a chunk can be generated after CubeWatcher's chunk load callback returns with a null
@@ -685,10 +693,36 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
                 columnWatcher.removePlayer(entry.playerEntity);
             }
         });
-        getWorldServer().profiler.endSection();//removeColumns
+        getWorldServer().profiler.endStartSection("updatePriorities");
+        // only watchers this player can see or just stopped seeing can have a different closest player distance
+        this.cubeSelector.forAllVisibleFrom(newPos, horizontalViewDistance, verticalViewDistance, this::markCubePriorityDirty);
+        cubesToRemove.forEach(this::markCubePriorityDirty);
+        for (int dx = -horizontalViewDistance; dx <= horizontalViewDistance; dx++) {
+            for (int dz = -horizontalViewDistance; dz <= horizontalViewDistance; dz++) {
+                markColumnPriorityDirty(new ChunkPos(newPos.getX() + dx, newPos.getZ() + dz));
+            }
+        }
+        columnsToRemove.forEach(this::markColumnPriorityDirty);
+        getWorldServer().profiler.endSection();//updatePriorities
         getWorldServer().profiler.endSection();//updateMovedPlayer
     }
 
+    private void markCubePriorityDirty(CubePos pos) {
+        CubeWatcher cubeWatcher = this.getCubeWatcher(pos);
+        if (cubeWatcher != null) {
+            this.cubesToGenerate.markDirty(cubeWatcher);
+            this.cubesToSendToClients.markDirty(cubeWatcher);
+        }
+    }
+
+    private void markColumnPriorityDirty(ChunkPos pos) {
+        ColumnWatcher columnWatcher = this.getColumnWatcher(pos);
+        if (columnWatcher != null) {
+            this.columnsToGenerate.markDirty(columnWatcher);
+            this.columnsToSendToClients.markDirty(columnWatcher);
+        }
+    }
+
     // CHECKED: 1.10.2-12.18.1.2092
     @Override
     public boolean isPlayerWatchingChunk(EntityPlayerMP player, int cubeX, int cubeZ) {
@@ -786,12 +820,19 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
 
         this.horizontalViewDistance = newHorizontalViewDistance;
         this.verticalViewDistance = newVerticalViewDistance;
-        this.setNeedSort();
+        this.setNeedPriorityUpdate();
     }
 
-    private void setNeedSort() {
-        this.toGenerateNeedSort = true;
-        this.toSendToClientNeedSort = true;
+    private void setNeedPriorityUpdate() {
+        this.toGenerateNeedPriorityUpdate = true;
+        this.toSendToClientNeedPriorityUpdate = true;
+    }
+
+    /**
+     * The priority of queued watchers, distance to the closest player in whole cubes
+     */
+    private static int distanceRing(double distanceSq) {
+        return (int) Math.sqrt(distanceSq) >> 4;
     }
 
     @Override
@@ -852,6 +893,29 @@ public class PlayerCubeMap extends PlayerChunkMap implements LightingManager.IHe
         return this.columnWatchers.get(pos.x, pos.z);
     }
 
+    /**
+     * Squared distance from the center of the given cube to the closest player watching it, used to order cube loads.
+     *
+     * @param pos the cube position
+     * @return the distance, or {@link Double#POSITIVE_INFINITY} if no player is watching the cube
+     */
+    public double getClosestWatchingPlayerDistance(CubePos pos) {
+        CubeWatcher watcher = this.getCubeWatcher(pos);
+        return watcher == null ? Double.POSITIVE_INFINITY : watcher.getClosestPlayerDistance();
+    }
+
+    /**
+     * Squared horizontal distance from the center of the given column to the closest player watching it, used to order
+     * column loads.
+     *
+     * @param pos the column position
+     * @return the distance, or {@link Double#POSITIVE_INFINITY} if no player is watching the column
+     */
+    public double getClosestWatchingPlayerDistance(ChunkPos pos) {
+        ColumnWatcher watcher = this.getColumnWatcher(pos);
+        return watcher == null ? Double.POSITIVE_INFINITY : watcher.getClosestPlayerDistance();
+    }
+
     public boolean contains(CubePos coords) {
         return this.cubeWatchers.get(coords.getX(), coords.getY(), coords.getZ()) != null;
     }
@@ -0,0 +1,412 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server;
+
+import io.github.opencubicchunks.cubicchunks.api.util.Box;
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Populates cubes over multiple ticks, instead of recursively loading and generating everything full population
+ * requires at once.
+ * <p>
+ * Requests form a dependency graph: full population of a cube waits for population of all cubes in its
+ * {@link io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator#getFullPopulationRequirements full population
+ * requirements}, and population of a cube waits for all cubes in its
+ * {@link io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator#getPopulationPregenerationRequirements
+ * pregeneration requirements} to be generated. Cubes are loaded asynchronously, and generation and population
+ * run in {@link #tick}, only once everything they need is there.
+ * <p>
+ * Requirements are checked again right before a job runs, so cubes unloaded in the meantime are simply requested again.
+ * A {@link #cancel cancelled} request drops every job and load that nothing else needs anymore.
+ * All methods must be called from the server thread.
+ */
+@MethodsReturnNonnullByDefault
+@ParametersAreNonnullByDefault
+class PopulationScheduler {
+
+    private final CubeAccess access;
+
+    // cubes that are being loaded or wait to be generated
+    private final Map<CubePos, CubeLoad> loads = new HashMap<>();
+    private final Map<CubePos, Job> populateJobs = new HashMap<>();
+    private final Map<CubePos, Job> fullPopulateJobs = new HashMap<>();
+
+    private final ArrayDeque<CubeLoad> toGenerate = new ArrayDeque<>();
+    private final ArrayDeque<Job> readyJobs = new ArrayDeque<>();
+
+    PopulationScheduler(CubeAccess access) {
+        this.access = access;
+    }
+
+    /**
+     * Requests full population of a cube.
+     *
+     * @param pos the cube position
+     * @param owner identifies the request for {@link #cancel}
+     * @param callback called from {@link #tick} once the cube is fully populated
+     */
+    void request(CubePos pos, Object owner, Runnable callback) {
+        Job job = this.fullPopulateJobs.get(pos);
+        if (job != null) {
+            job.callbacks.add(new Callback(owner, callback));
+            return;
+        }
+        job = new Job(pos, true);
+        job.callbacks.add(new Callback(owner, callback));
+        this.fullPopulateJobs.put(pos, job);
+        job.expand();
+    }
+
+    /**
+     * Cancels a request made with {@link #request}, its callback won't be called. Jobs and loads are dropped once no
+     * request needs them anymore, already loaded or populated cubes stay that way.
+     *
+     * @param pos the cube position
+     * @param owner the same owner that was passed to {@link #request}
+     * @return true if there was such a request
+     */
+    boolean cancel(CubePos pos, Object owner) {
+        Job job = this.fullPopulateJobs.get(pos);
+        if (job == null || !job.callbacks.removeIf(callback -> callback.owner == owner)) {
+            return false;
+        }
+        if (job.callbacks.isEmpty()) {
+            job.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * @return true if a pending request needs the cube to be loaded or generated
+     */
+    boolean isWaitingFor(CubePos pos) {
+        return this.loads.containsKey(pos);
+    }
+
+    int getPendingCount() {
+        return this.fullPopulateJobs.size();
+    }
+
+    /**
+     * Generates and populates cubes whose requirements are ready, until {@code timeUp} returns true. At least one step
+     * is always done, so that everything eventually finishes.
+     *
+     * @param timeUp returns true when no more work should be done this tick
+     */
+    void tick(BooleanSupplier timeUp) {
+        do {
+            // jobs first, they may finish requests, which is what players are waiting for
+            Job job = this.readyJobs.poll();
+            if (job != null) {
+                job.run();
+                continue;
+            }
+            CubeLoad load = this.toGenerate.poll();
+            if (load == null) {
+                return;
+            }
+            if (!this.access.isLoaded(load.pos)) {
+                this.access.generate(load.pos);
+            }
+            load.complete();
+        } while (!timeUp.getAsBoolean());
+    }
+
+    private void awaitGenerated(CubePos pos, Job job) {
+        CubeLoad load = this.loads.get(pos);
+        if (load == null) {
+            load = new CubeLoad(pos);
+            this.loads.put(pos, load);
+            load.waiting.add(job);
+            this.access.load(pos, load.onLoaded);
+        } else {
+            load.waiting.add(job);
+        }
+        job.awaiting.add(load);
+    }
+
+    private void awaitPopulated(CubePos pos, Job job) {
+        Job populate = this.populateJobs.get(pos);
+        if (populate == null) {
+            populate = new Job(pos, false);
+            populate.dependents.add(job);
+            this.populateJobs.put(pos, populate);
+            populate.expand();
+        } else {
+            populate.dependents.add(job);
+        }
+        job.awaiting.add(populate);
+    }
+
+    /**
+     * Something a job waits for.
+     */
+    private interface Dependency {
+
+        /**
+         * The job doesn't wait for this anymore. If nothing else does, this is cancelled too.
+         */
+        void removeWaiting(Job job);
+    }
+
+    private final class CubeLoad implements Dependency {
+
+        final CubePos pos;
+        final List<Job> waiting = new ArrayList<>(1);
+        // the same instance is needed to cancel the load
+        final Runnable onLoaded = this::onLoaded;
+        boolean loadDone;
+        boolean completed;
+        boolean cancelled;
+
+        CubeLoad(CubePos pos) {
+            this.pos = pos;
+        }
+
+        void onLoaded() {
+            if (this.loadDone || this.cancelled) {
+                return;
+            }
+            this.loadDone = true;
+            if (access.isLoaded(this.pos)) {
+                complete();
+            } else {
+                toGenerate.add(this);
+            }
+        }
+
+        void complete() {
+            this.completed = true;
+            loads.remove(this.pos, this);
+            for (Job job : this.waiting) {
+                job.dependencyDone();
+            }
+        }
+
+        @Override public void removeWaiting(Job job) {
+            this.waiting.remove(job);
+            if (!this.waiting.isEmpty() || this.completed || this.cancelled) {
+                return;
+            }
+            this.cancelled = true;
+            loads.remove(this.pos, this);
+            if (this.loadDone) {
+                toGenerate.remove(this);
+            } else {
+                access.cancelLoad(this.pos, this.onLoaded);
+            }
+        }
+    }
+
+    /**
+     * Population of a cube, or full population if {@link #full} is set.
+     */
+    private final class Job implements Dependency {
+
+        final CubePos pos;
+        final boolean full;
+        final List<Job> dependents = new ArrayList<>(1);
+        final List<Callback> callbacks = new ArrayList<>(1);
+        // everything this job registered with in the last expand()
+        final List<Dependency> awaiting = new ArrayList<>();
+        int missing;
+        boolean finished;
+        boolean cancelled;
+
+        Job(CubePos pos, boolean full) {
+            this.pos = pos;
+            this.full = full;
+        }
+
+        /**
+         * Registers this job with everything it still waits for.
+         */
+        void expand() {
+            // only called when everything from the last expand() is done
+            this.awaiting.clear();
+            // one extra for this method, so that dependencies completing right away don't queue the job early
+            this.missing = 1;
+            if (!access.isLoaded(this.pos)) {
+                // the requirements are only known once the cube exists
+                this.missing++;
+                awaitGenerated(this.pos, this);
+            } else if (!this.full && access.isPopulated(this.pos)) {
+                // already done, possibly while populating another cube
+            } else if (this.full) {
+                access.getFullPopulationRequirements(this.pos).forEachPoint((dx, dy, dz) -> {
+                    CubePos required = this.pos.add(dx, dy, dz);
+                    if (!access.isLoaded(required) || !access.isPopulated(required)) {
+                        this.missing++;
+                        awaitPopulated(required, this);
+                    }
+                });
+            } else {
+                access.getPopulationPregenerationRequirements(this.pos).forEachPoint((dx, dy, dz) -> {
+                    CubePos required = this.pos.add(dx, dy, dz);
+                    if (!access.isLoaded(required)) {
+                        this.missing++;
+                        awaitGenerated(required, this);
+                    }
+                });
+            }
+            dependencyDone();
+        }
+
+        void dependencyDone() {
+            if (--this.missing == 0 && !this.cancelled) {
+                readyJobs.add(this);
+            }
+        }
+
+        @Override public void removeWaiting(Job job) {
+            this.dependents.remove(job);
+            // population jobs have no callbacks, full population jobs are cancelled through cancel()
+            if (this.dependents.isEmpty() && this.callbacks.isEmpty()) {
+                cancel();
+            }
+        }
+
+        void cancel() {
+            if (this.finished || this.cancelled) {
+                return;
+            }
+            this.cancelled = true;
+            if (this.full) {
+                fullPopulateJobs.remove(this.pos, this);
+            } else {
+                populateJobs.remove(this.pos, this);
+            }
+            readyJobs.remove(this);
+            for (Dependency dependency : this.awaiting) {
+                dependency.removeWaiting(this);
+            }
+            this.awaiting.clear();
+        }
+
+        void run() {
+            // something may have been unloaded since, or the requirements weren't known yet
+            expand();
+            if (this.missing > 0) {
+                return;
+            }
+            // expand() queued it again
+            readyJobs.removeLastOccurrence(this);
+            this.finished = true;
+            if (this.full) {
+                if (!access.isFullyPopulated(this.pos)) {
+                    access.setFullyPopulated(this.pos);
+                }
+                fullPopulateJobs.remove(this.pos, this);
+            } else {
+                // populators may populate more than one cube at once (vanilla compatibility generator)
+                if (!access.isPopulated(this.pos)) {
+                    access.populate(this.pos);
+                }
+                populateJobs.remove(this.pos, this);
+            }
+            for (Job job : this.dependents) {
+                job.dependencyDone();
+            }
+            for (Callback callback : this.callbacks) {
+                callback.callback.run();
+            }
+        }
+    }
+
+    private static final class Callback {
+
+        final Object owner;
+        final Runnable callback;
+
+        Callback(Object owner, Runnable callback) {
+            this.owner = owner;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * The world the scheduler works on.
+     */
+    interface CubeAccess {
+
+        boolean isLoaded(CubePos pos);
+
+        /**
+         * Only called for loaded cubes
+         */
+        boolean isPopulated(CubePos pos);
+
+        /**
+         * Only called for loaded cubes
+         */
+        boolean isFullyPopulated(CubePos pos);
+
+        /**
+         * Loads the cube if it's saved, without generating it. {@code onDone} is called on the server thread once the
+         * attempt is done, whether or not the cube existed.
+         */
+        void load(CubePos pos, Runnable onDone);
+
+        /**
+         * Cancels a load started with {@link #load}, {@code onDone} won't be called anymore. The load itself only
+         * stops if nothing else waits for it.
+         *
+         * @param onDone the same instance that was passed to {@link #load}
+         */
+        void cancelLoad(CubePos pos, Runnable onDone);
+
+        void generate(CubePos pos);
+
+        /**
+         * Only called for loaded cubes
+         */
+        Box getFullPopulationRequirements(CubePos pos);
+
+        /**
+         * Only called for loaded cubes
+         */
+        Box getPopulationPregenerationRequirements(CubePos pos);
+
+        /**
+         * Populates the cube and marks it as populated. Only called for loaded cubes.
+         */
+        void populate(CubePos pos);
+
+        /**
+         * Only called for loaded cubes
+         */
+        void setFullyPopulated(CubePos pos);
+    }
+}
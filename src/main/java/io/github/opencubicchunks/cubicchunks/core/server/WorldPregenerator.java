@@ -0,0 +1,288 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server;
+
+import io.github.opencubicchunks.cubicchunks.core.CubicChunks;
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Generates all cubes in an area ahead of time, up to {@link io.github.opencubicchunks.cubicchunks.api.world.ICubeProviderServer.Requirement#LIGHT}.
+ * <p>
+ * Columns are done in square rings around the center, each from the bottom to the top of the Y range, with a limited
+ * number of cubes requested at once. Cubes are unloaded as soon as all columns next to theirs are done, so memory use
+ * doesn't grow with the size of the area. The cursor is the number of columns that are completely done, generation
+ * can be resumed from it.
+ * <p>
+ * All methods must be called from the server thread.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class WorldPregenerator {
+
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    private final String name;
+    private final Host host;
+    private final int centerX, centerZ, radius, minY, maxY;
+    private final long columnCount;
+    private final int cubesPerColumn;
+
+    // the next cube to request
+    private long nextColumn;
+    private int nextY;
+    // columns with requested cubes that aren't all done yet, in order
+    private final ArrayDeque<ColumnProgress> inProgress = new ArrayDeque<>();
+    // done columns that still have cubes loaded, in order
+    private final ArrayDeque<Long> toUnload = new ArrayDeque<>();
+    private long cursor;
+    private int inFlight;
+    private boolean stopped;
+
+    private final long startTime = System.nanoTime();
+    private final long startCubes;
+    private long doneCubes;
+    private long lastReportTime = startTime;
+
+    /**
+     * @param name name used when logging progress
+     * @param host the world to generate cubes in
+     * @param centerX X coordinate of the center column
+     * @param centerZ Z coordinate of the center column
+     * @param radius radius in cubes, the area is a square
+     * @param minY the lowest cube Y coordinate to generate
+     * @param maxY the highest cube Y coordinate to generate
+     * @param cursor the number of columns that are already done
+     */
+    public WorldPregenerator(String name, Host host, int centerX, int centerZ, int radius, int minY, int maxY, long cursor) {
+        if (radius < 0 || minY > maxY) {
+            throw new IllegalArgumentException("Invalid area: radius=" + radius + ", minY=" + minY + ", maxY=" + maxY);
+        }
+        this.name = name;
+        this.host = host;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+        this.minY = minY;
+        this.maxY = maxY;
+        long side = 2L * radius + 1;
+        this.columnCount = side * side;
+        this.cubesPerColumn = maxY - minY + 1;
+        this.cursor = Math.min(Math.max(cursor, 0), this.columnCount);
+        this.nextColumn = this.cursor;
+        this.nextY = minY;
+        this.startCubes = this.cursor * this.cubesPerColumn;
+        this.doneCubes = this.startCubes;
+    }
+
+    /**
+     * Requests more cubes until either {@code maxInFlight} of them are being generated or {@code timeUp} returns true,
+     * and unloads cubes that are done.
+     */
+    public void tick(BooleanSupplier timeUp, int maxInFlight) {
+        if (this.stopped) {
+            return;
+        }
+        while (this.inFlight < maxInFlight && this.nextColumn < this.columnCount && !timeUp.getAsBoolean()) {
+            if (this.nextY == this.minY) {
+                this.inProgress.add(new ColumnProgress(this.nextColumn));
+            }
+            ColumnProgress column = this.inProgress.getLast();
+            int y = this.nextY;
+            if (++this.nextY > this.maxY) {
+                this.nextY = this.minY;
+                this.nextColumn++;
+            }
+            this.inFlight++;
+            this.host.requestCube(columnX(column.index), y, columnZ(column.index), () -> onCubeDone(column));
+        }
+        while (!this.inProgress.isEmpty() && this.inProgress.getFirst().isDone()) {
+            long index = this.inProgress.removeFirst().index;
+            this.cursor = index + 1;
+            this.toUnload.add(index);
+        }
+        while (!this.toUnload.isEmpty() && canUnload(this.toUnload.getFirst())) {
+            long index = this.toUnload.removeFirst();
+            for (int y = this.minY; y <= this.maxY; y++) {
+                this.host.unloadCube(columnX(index), y, columnZ(index));
+            }
+        }
+        long now = System.nanoTime();
+        if (now - this.lastReportTime >= REPORT_INTERVAL || isFinished()) {
+            this.lastReportTime = now;
+            CubicChunks.LOGGER.info("Pre-generating {}: {}", this.name, getStatus());
+        }
+    }
+
+    private void onCubeDone(ColumnProgress column) {
+        if (this.stopped) {
+            return;
+        }
+        this.inFlight--;
+        this.doneCubes++;
+        column.done++;
+    }
+
+    /**
+     * Stops requesting cubes, cubes already requested are still generated.
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+    public boolean isFinished() {
+        return this.cursor == this.columnCount;
+    }
+
+    /**
+     * @return the number of columns that are completely done. Generation can be resumed from here.
+     */
+    public long getCursor() {
+        return this.cursor;
+    }
+
+    public long getDoneCubes() {
+        return this.doneCubes;
+    }
+
+    public long getTotalCubes() {
+        return this.columnCount * this.cubesPerColumn;
+    }
+
+    public int getInFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * @return cubes done per second since this generator was started
+     */
+    public double getCubesPerSecond() {
+        long elapsed = System.nanoTime() - this.startTime;
+        return elapsed <= 0 ? 0 : (this.doneCubes - this.startCubes) * 1e9 / elapsed;
+    }
+
+    public String getStatus() {
+        double rate = getCubesPerSecond();
+        long remaining = getTotalCubes() - this.doneCubes;
+        return String.format("%.1f%% (%d/%d cubes), %.1f cubes/s, %s remaining",
+                this.doneCubes * 100.0 / getTotalCubes(), this.doneCubes, getTotalCubes(), rate,
+                rate <= 0 ? "unknown time" : formatTime((long) (remaining / rate)));
+    }
+
+    private static String formatTime(long seconds) {
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    /**
+     * Cubes of a column are still needed to populate the columns next to it, so they are unloaded once the next ring
+     * is done.
+     */
+    private boolean canUnload(long index) {
+        long ring = ring(index);
+        long nextRingEnd = (2 * ring + 3) * (2 * ring + 3);
+        return this.cursor >= Math.min(nextRingEnd, this.columnCount);
+    }
+
+    private int columnX(long index) {
+        return this.centerX + ringOffset(index, true);
+    }
+
+    private int columnZ(long index) {
+        return this.centerZ + ringOffset(index, false);
+    }
+
+    /**
+     * Index of the square ring around the center the column is in. Ring r contains the columns from index
+     * (2r - 1)^2 up to (2r + 1)^2, exclusive.
+     */
+    static long ring(long index) {
+        long ring = (long) Math.ceil((Math.sqrt(index + 1) - 1) / 2);
+        while ((2 * ring + 1) * (2 * ring + 1) <= index) {
+            ring++;
+        }
+        while (ring > 0 && (2 * ring - 1) * (2 * ring - 1) > index) {
+            ring--;
+        }
+        return ring;
+    }
+
+    static int ringOffset(long index, boolean x) {
+        long ring = ring(index);
+        if (ring == 0) {
+            return 0;
+        }
+        long inRing = index - (2 * ring - 1) * (2 * ring - 1);
+        long edge = 2 * ring;
+        int side = (int) (inRing / edge);
+        int offset = (int) (inRing % edge);
+        int r = (int) ring;
+        switch (side) {
+            case 0:
+                return x ? -r + offset : -r;
+            case 1:
+                return x ? r : -r + offset;
+            case 2:
+                return x ? r - offset : r;
+            default:
+                return x ? -r : r - offset;
+        }
+    }
+
+    private final class ColumnProgress {
+
+        final long index;
+        int done;
+
+        ColumnProgress(long index) {
+            this.index = index;
+        }
+
+        boolean isDone() {
+            return this.done == cubesPerColumn;
+        }
+    }
+
+    /**
+     * The world cubes are generated in.
+     */
+    public interface Host {
+
+        /**
+         * Gets the cube generated up to {@link io.github.opencubicchunks.cubicchunks.api.world.ICubeProviderServer.Requirement#LIGHT},
+         * and calls {@code onDone} on the server thread once it's done.
+         */
+        void requestCube(int cubeX, int cubeY, int cubeZ, Runnable onDone);
+
+        /**
+         * Unloads the cube if it's loaded and nothing else holds it.
+         */
+        void unloadCube(int cubeX, int cubeY, int cubeZ);
+    }
+}
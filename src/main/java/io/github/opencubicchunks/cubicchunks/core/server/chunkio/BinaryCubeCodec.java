@@ -0,0 +1,453 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server.chunkio;
+
+import io.github.opencubicchunks.cubicchunks.api.util.Coords;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTSizeTracker;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.world.chunk.BlockStateContainer;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraftforge.common.util.Constants;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Binary cube record format, used by {@link LeveldbCubeIO} instead of writing the whole cube as NBT.
+ * <p>
+ * Layout of a record:
+ * <pre>
+ * byte    FORMAT_MAGIC
+ * byte    format version
+ * byte    flags (FLAG_HAS_BLOCKS, FLAG_HAS_SKY_LIGHT)
+ * blocks  only if FLAG_HAS_BLOCKS, see {@link #writeBlocks(ByteBuf, IntFunction, ToIntFunction)}
+ * light   block light and then sky light if FLAG_HAS_SKY_LIGHT, see {@link #writeLight(ByteBuf, byte[])}
+ * int     length of the NBT of the rest of the cube, without "Sections", "Entities" and "TileEntities"
+ * byte[]  uncompressed NBT
+ * int     length of the entity NBT, 0 if there are no entities
+ * byte[]  uncompressed NBT with the "Entities" list
+ * int     length of the tile entity NBT, 0 if there are no tile entities
+ * byte[]  uncompressed NBT with the "TileEntities" list
+ * </pre>
+ * Legacy records are plain NBT, which always starts with the compound tag id, so the two can be told apart by the
+ * first byte.
+ */
+@MethodsReturnNonnullByDefault
+@ParametersAreNonnullByDefault
+public class BinaryCubeCodec {
+
+    public static final byte FORMAT_MAGIC = (byte) 0xCB;
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final int FLAG_HAS_BLOCKS = 1;
+    private static final int FLAG_HAS_SKY_LIGHT = 1 << 1;
+
+    private static final int BLOCK_COUNT = Cube.SIZE * Cube.SIZE * Cube.SIZE;
+    private static final int LIGHT_BYTES = BLOCK_COUNT / 2;
+    private static final int LIGHT_RAW = 0xFF;
+    /**
+     * Palettes up to this size are searched linearly, larger ones use a hash map.
+     */
+    private static final int LINEAR_PALETTE_SIZE = 16;
+
+    static boolean isBinaryRecord(byte[] data) {
+        return data.length > 0 && data[0] == FORMAT_MAGIC;
+    }
+
+    // ---------------------------------------------- cube records ------------------------------------------------
+
+    /**
+     * Encodes the block storage of a cube. The rest of the record is assembled by {@link #writeRecord}.
+     *
+     * @param ebs the block storage, or null if the cube is empty
+     * @param hasSkyLight whether the world has sky light
+     * @return the encoded blocks and light
+     */
+    @SuppressWarnings("deprecation")
+    static byte[] encodeStorage(@Nullable ExtendedBlockStorage ebs, boolean hasSkyLight) {
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.heapBuffer(LIGHT_BYTES * 3);
+        try {
+            int flags = (ebs != null ? FLAG_HAS_BLOCKS : 0) | (hasSkyLight ? FLAG_HAS_SKY_LIGHT : 0);
+            buf.writeByte(flags);
+            if (ebs != null) {
+                BlockStateContainer data = ebs.getData();
+                writeBlocks(buf, i -> data.get(i & 15, i >> 8 & 15, i >> 4 & 15), Block.BLOCK_STATE_IDS::get);
+                writeLight(buf, ebs.getBlockLight().getData());
+                if (hasSkyLight) {
+                    writeLight(buf, ebs.getSkyLight().getData());
+                }
+            }
+            byte[] arr = new byte[buf.readableBytes()];
+            buf.readBytes(arr);
+            return arr;
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Decodes block storage encoded by {@link #encodeStorage}.
+     *
+     * @param storage the encoded storage
+     * @param cubeY the cube y coordinate
+     * @return the block storage, or null if the cube is empty
+     */
+    @Nullable
+    static ExtendedBlockStorage decodeStorage(byte[] storage, int cubeY) {
+        return decodeStorage(Unpooled.wrappedBuffer(storage), cubeY);
+    }
+
+    @Nullable
+    @SuppressWarnings("deprecation")
+    private static ExtendedBlockStorage decodeStorage(ByteBuf buf, int cubeY) {
+        int flags = buf.readUnsignedByte();
+        if ((flags & FLAG_HAS_BLOCKS) == 0) {
+            return null;
+        }
+        boolean hasSkyLight = (flags & FLAG_HAS_SKY_LIGHT) != 0;
+        ExtendedBlockStorage ebs = new ExtendedBlockStorage(Coords.cubeToMinBlock(cubeY), hasSkyLight);
+        BlockStateContainer data = ebs.getData();
+        IBlockState air = data.get(0, 0, 0);
+        readBlocks(buf, Block.BLOCK_STATE_IDS::getByValue, (state, i) -> data.set(i & 15, i >> 8 & 15, i >> 4 & 15, state), air);
+        ebs.setBlockLight(new NibbleArray(readLight(buf)));
+        if (hasSkyLight) {
+            ebs.setSkyLight(new NibbleArray(readLight(buf)));
+        }
+        ebs.recalculateRefCounts();
+        return ebs;
+    }
+
+    /**
+     * Assembles a full record.
+     *
+     * @param storage the block storage encoded by {@link #encodeStorage}
+     * @param nbt the cube NBT, without "Sections". Entities and tile entities are moved into separate blobs
+     * @return the record
+     */
+    static byte[] writeRecord(byte[] storage, NBTTagCompound nbt) throws IOException {
+        // the NBT may be shared with cube loads, so only modify copies of the compounds
+        NBTTagCompound rest = shallowCopy(nbt);
+        NBTTagCompound level = shallowCopy(nbt.getCompoundTag("Level"));
+        rest.setTag("Level", level);
+        NBTTagCompound entities = removeList(level, "Entities");
+        NBTTagCompound tileEntities = removeList(level, "TileEntities");
+
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.heapBuffer(1 << 14);
+        try {
+            buf.writeByte(FORMAT_MAGIC);
+            buf.writeByte(FORMAT_VERSION);
+            buf.writeBytes(storage);
+            writeNbt(buf, rest);
+            writeNbt(buf, entities);
+            writeNbt(buf, tileEntities);
+            byte[] arr = new byte[buf.readableBytes()];
+            buf.readBytes(arr);
+            return arr;
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Reads a record written by {@link #writeRecord}.
+     *
+     * @param data the record
+     * @param cubeY the cube y coordinate
+     * @return the cube NBT, with entities and tile entities merged back in, and the decoded block storage
+     */
+    static ICubeIO.CubeRecord readRecord(byte[] data, int cubeY) throws IOException {
+        ByteBuf buf = Unpooled.wrappedBuffer(data);
+        byte magic = buf.readByte();
+        byte version = buf.readByte();
+        if (magic != FORMAT_MAGIC || version != FORMAT_VERSION) {
+            throw new IOException("Unsupported cube record format " + magic + " version " + version);
+        }
+        ExtendedBlockStorage ebs = decodeStorage(buf, cubeY);
+        NBTTagCompound nbt = readNbt(buf);
+        if (nbt == null) {
+            throw new IOException("Cube record without cube data");
+        }
+        NBTTagCompound level = nbt.getCompoundTag("Level");
+        mergeList(level, readNbt(buf), "Entities");
+        mergeList(level, readNbt(buf), "TileEntities");
+        return new ICubeIO.CubeRecord(nbt, ebs);
+    }
+
+    static NBTTagCompound shallowCopy(NBTTagCompound nbt) {
+        NBTTagCompound copy = new NBTTagCompound();
+        for (String key : nbt.getKeySet()) {
+            copy.setTag(key, nbt.getTag(key));
+        }
+        return copy;
+    }
+
+    /**
+     * Removes a list from the given compound and returns it wrapped in its own compound, or null if it's empty.
+     */
+    @Nullable
+    private static NBTTagCompound removeList(NBTTagCompound level, String name) {
+        if (!level.hasKey(name, Constants.NBT.TAG_LIST)) {
+            return null;
+        }
+        NBTTagCompound wrapper = null;
+        if (level.getTagList(name, Constants.NBT.TAG_COMPOUND).tagCount() != 0) {
+            wrapper = new NBTTagCompound();
+            wrapper.setTag(name, level.getTag(name));
+        }
+        level.removeTag(name);
+        return wrapper;
+    }
+
+    private static void mergeList(NBTTagCompound level, @Nullable NBTTagCompound wrapper, String name) {
+        if (wrapper != null) {
+            level.setTag(name, wrapper.getTag(name));
+        } else {
+            level.setTag(name, new NBTTagList());
+        }
+    }
+
+    private static void writeNbt(ByteBuf buf, @Nullable NBTTagCompound nbt) throws IOException {
+        if (nbt == null) {
+            buf.writeInt(0);
+            return;
+        }
+        int lengthIndex = buf.writerIndex();
+        buf.writeInt(0);
+        CompressedStreamTools.write(nbt, new ByteBufOutputStream(buf));
+        buf.setInt(lengthIndex, buf.writerIndex() - lengthIndex - 4);
+    }
+
+    @Nullable
+    private static NBTTagCompound readNbt(ByteBuf buf) throws IOException {
+        int length = buf.readInt();
+        if (length == 0) {
+            return null;
+        }
+        return CompressedStreamTools.read(new ByteBufInputStream(buf.readSlice(length)), NBTSizeTracker.INFINITE);
+    }
+
+    // ---------------------------------------------- block data --------------------------------------------------
+
+    /**
+     * Writes the blocks of a cube as a palette of state ids followed by bit-packed palette indices. If there is only
+     * one state, the indices are omitted.
+     *
+     * @param buf the buffer to write to
+     * @param stateAt returns the state at a given index, in y, z, x order
+     * @param idOf returns the id of a state
+     * @param <T> type of the block states, compared by identity
+     */
+    public static <T> void writeBlocks(ByteBuf buf, IntFunction<T> stateAt, ToIntFunction<T> idOf) {
+        Object[] palette = new Object[LINEAR_PALETTE_SIZE];
+        Map<Object, Integer> paletteMap = null;
+        int paletteSize = 0;
+        int[] indices = new int[BLOCK_COUNT];
+
+        Object last = null;
+        int lastIndex = -1;
+        for (int i = 0; i < BLOCK_COUNT; i++) {
+            T state = stateAt.apply(i);
+            if (state != last || lastIndex < 0) {
+                int index = -1;
+                if (paletteMap == null) {
+                    for (int j = 0; j < paletteSize; j++) {
+                        if (palette[j] == state) {
+                            index = j;
+                            break;
+                        }
+                    }
+                } else {
+                    Integer mapped = paletteMap.get(state);
+                    index = mapped == null ? -1 : mapped;
+                }
+                if (index < 0) {
+                    index = paletteSize++;
+                    if (index == palette.length) {
+                        palette = Arrays.copyOf(palette, palette.length * 2);
+                    }
+                    palette[index] = state;
+                    if (paletteMap == null && paletteSize > LINEAR_PALETTE_SIZE) {
+                        paletteMap = new IdentityHashMap<>();
+                        for (int j = 0; j < paletteSize; j++) {
+                            paletteMap.put(palette[j], j);
+                        }
+                    } else if (paletteMap != null) {
+                        paletteMap.put(state, index);
+                    }
+                }
+                last = state;
+                lastIndex = index;
+            }
+            indices[i] = lastIndex;
+        }
+
+        writeVarInt(buf, paletteSize);
+        for (int i = 0; i < paletteSize; i++) {
+            @SuppressWarnings("unchecked")
+            T state = (T) palette[i];
+            writeVarInt(buf, idOf.applyAsInt(state));
+        }
+        if (paletteSize == 1) {
+            return;
+        }
+        int bits = bitsFor(paletteSize);
+        int perLong = 64 / bits;
+        long value = 0;
+        int inLong = 0;
+        for (int i = 0; i < BLOCK_COUNT; i++) {
+            value |= (long) indices[i] << (inLong * bits);
+            if (++inLong == perLong) {
+                buf.writeLong(value);
+                value = 0;
+                inLong = 0;
+            }
+        }
+        if (inLong != 0) {
+            buf.writeLong(value);
+        }
+    }
+
+    /**
+     * Reads blocks written by {@link #writeBlocks}. Each distinct id is translated to a state only once.
+     *
+     * @param buf the buffer to read from
+     * @param stateById returns the state for an id
+     * @param setState sets the state at a given index, in y, z, x order
+     * @param defaultState the state every position already has, positions with that state are not set
+     * @param <T> type of the block states
+     */
+    public static <T> void readBlocks(ByteBuf buf, IntFunction<T> stateById, ObjIntConsumer<T> setState, @Nullable T defaultState) {
+        int paletteSize = readVarInt(buf);
+        Object[] palette = new Object[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = stateById.apply(readVarInt(buf));
+        }
+        if (paletteSize == 1) {
+            @SuppressWarnings("unchecked")
+            T state = (T) palette[0];
+            if (state != defaultState) {
+                for (int i = 0; i < BLOCK_COUNT; i++) {
+                    setState.accept(state, i);
+                }
+            }
+            return;
+        }
+        int bits = bitsFor(paletteSize);
+        int perLong = 64 / bits;
+        long mask = (1L << bits) - 1;
+        long value = 0;
+        int inLong = perLong;
+        for (int i = 0; i < BLOCK_COUNT; i++) {
+            if (inLong == perLong) {
+                value = buf.readLong();
+                inLong = 0;
+            }
+            int index = (int) (value >>> (inLong++ * bits) & mask);
+            if (index >= paletteSize) {
+                throw new IllegalArgumentException("Palette index " + index + " out of bounds for palette of size " + paletteSize);
+            }
+            @SuppressWarnings("unchecked")
+            T state = (T) palette[index];
+            if (state != defaultState) {
+                setState.accept(state, i);
+            }
+        }
+    }
+
+    /**
+     * Writes a light nibble array, or just its value if all entries are equal.
+     */
+    public static void writeLight(ByteBuf buf, byte[] light) {
+        byte first = light[0];
+        boolean uniform = (first & 0xF) == (first >> 4 & 0xF);
+        for (int i = 1; uniform && i < light.length; i++) {
+            uniform = light[i] == first;
+        }
+        if (uniform) {
+            buf.writeByte(first & 0xF);
+        } else {
+            buf.writeByte(LIGHT_RAW);
+            buf.writeBytes(light);
+        }
+    }
+
+    public static byte[] readLight(ByteBuf buf) {
+        int header = buf.readUnsignedByte();
+        byte[] light = new byte[LIGHT_BYTES];
+        if (header == LIGHT_RAW) {
+            buf.readBytes(light);
+        } else if (header != 0) {
+            Arrays.fill(light, (byte) (header | header << 4));
+        }
+        return light;
+    }
+
+    private static int bitsFor(int paletteSize) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+    }
+
+    private static void writeVarInt(ByteBuf buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buf.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuf buf) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift >= 35) {
+                throw new IllegalArgumentException("VarInt too big");
+            }
+            b = buf.readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server.chunkio;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.Arrays;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Set of cube Y coordinates that exist in storage for a single column, stored as a sorted list of runs of consecutive
+ * coordinates. Cubes in a column are almost always generated in a few contiguous ranges, so this is usually just a
+ * couple of ints.
+ * <p>
+ * Instances are thread safe.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class ColumnCubeIndex {
+
+    private static final byte FORMAT_VERSION = 1;
+
+    /**
+     * Pairs of (first, last) cube Y of each run, both inclusive, sorted in ascending order. Runs never overlap or touch.
+     */
+    private int[] runs;
+    private int runCount;
+
+    public ColumnCubeIndex() {
+        this.runs = new int[4];
+        this.runCount = 0;
+    }
+
+    private ColumnCubeIndex(int[] runs, int runCount) {
+        this.runs = runs;
+        this.runCount = runCount;
+    }
+
+    /**
+     * Returns the index of the run containing the given cube Y, or {@code -(insertionPoint + 1)} if there is no such
+     * run, where insertionPoint is the index of the first run that starts above cubeY.
+     */
+    private int findRun(int cubeY) {
+        int low = 0;
+        int high = this.runCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (this.runs[mid * 2 + 1] < cubeY) {
+                low = mid + 1;
+            } else if (this.runs[mid * 2] > cubeY) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    public synchronized boolean contains(int cubeY) {
+        return this.findRun(cubeY) >= 0;
+    }
+
+    /**
+     * Adds the given cube Y to this index.
+     *
+     * @param cubeY the cube Y coordinate
+     * @return true if the index has changed
+     */
+    public synchronized boolean add(int cubeY) {
+        int run = this.findRun(cubeY);
+        if (run >= 0) {
+            return false;
+        }
+        int insert = -run - 1;
+        boolean extendsPrev = insert > 0 && this.runs[insert * 2 - 1] == cubeY - 1;
+        boolean extendsNext = insert < this.runCount && this.runs[insert * 2] == cubeY + 1;
+        if (extendsPrev && extendsNext) {
+            // merge the previous run with the next one
+            this.runs[insert * 2 - 1] = this.runs[insert * 2 + 1];
+            System.arraycopy(this.runs, (insert + 1) * 2, this.runs, insert * 2, (this.runCount - insert - 1) * 2);
+            this.runCount--;
+        } else if (extendsPrev) {
+            this.runs[insert * 2 - 1] = cubeY;
+        } else if (extendsNext) {
+            this.runs[insert * 2] = cubeY;
+        } else {
+            if (this.runs.length < (this.runCount + 1) * 2) {
+                this.runs = Arrays.copyOf(this.runs, this.runs.length * 2);
+            }
+            System.arraycopy(this.runs, insert * 2, this.runs, (insert + 1) * 2, (this.runCount - insert) * 2);
+            this.runs[insert * 2] = cubeY;
+            this.runs[insert * 2 + 1] = cubeY;
+            this.runCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Adds all cube Y coordinates contained in the given index to this index.
+     *
+     * @param other the index to add
+     * @return true if this index has changed
+     */
+    public boolean addAll(ColumnCubeIndex other) {
+        int[] otherRuns;
+        int otherRunCount;
+        synchronized (other) {
+            otherRuns = Arrays.copyOf(other.runs, other.runCount * 2);
+            otherRunCount = other.runCount;
+        }
+        synchronized (this) {
+            int[] merged = new int[(this.runCount + otherRunCount) * 2];
+            int mergedCount = 0;
+            int i = 0;
+            int j = 0;
+            while (i < this.runCount || j < otherRunCount) {
+                int start, end;
+                if (j >= otherRunCount || (i < this.runCount && this.runs[i * 2] <= otherRuns[j * 2])) {
+                    start = this.runs[i * 2];
+                    end = this.runs[i * 2 + 1];
+                    i++;
+                } else {
+                    start = otherRuns[j * 2];
+                    end = otherRuns[j * 2 + 1];
+                    j++;
+                }
+                // runs are sorted by start, so each one either extends the last merged run or starts a new one
+                if (mergedCount > 0 && (long) start <= (long) merged[mergedCount * 2 - 1] + 1) {
+                    merged[mergedCount * 2 - 1] = Math.max(merged[mergedCount * 2 - 1], end);
+                } else {
+                    merged[mergedCount * 2] = start;
+                    merged[mergedCount * 2 + 1] = end;
+                    mergedCount++;
+                }
+            }
+            if (mergedCount == this.runCount && Arrays.equals(
+                    Arrays.copyOf(merged, mergedCount * 2), Arrays.copyOf(this.runs, this.runCount * 2))) {
+                return false;
+            }
+            this.runs = merged.length < 4 ? Arrays.copyOf(merged, 4) : merged;
+            this.runCount = mergedCount;
+            return true;
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.runCount == 0;
+    }
+
+    public synchronized byte[] toBytes() {
+        ByteBuf buf = Unpooled.wrappedBuffer(new byte[1 + 4 + this.runCount * 8]).clear();
+        buf.writeByte(FORMAT_VERSION);
+        buf.writeInt(this.runCount);
+        for (int i = 0; i < this.runCount * 2; i++) {
+            buf.writeInt(this.runs[i]);
+        }
+        return buf.array();
+    }
+
+    public static ColumnCubeIndex fromBytes(byte[] data) {
+        ByteBuf buf = Unpooled.wrappedBuffer(data);
+        byte version = buf.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported cube index format version " + version);
+        }
+        int runCount = buf.readInt();
+        int[] runs = new int[Math.max(4, runCount * 2)];
+        for (int i = 0; i < runCount * 2; i++) {
+            runs[i] = buf.readInt();
+        }
+        return new ColumnCubeIndex(runs, runCount);
+    }
+}
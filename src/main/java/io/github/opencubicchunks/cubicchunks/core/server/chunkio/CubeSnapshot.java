@@ -0,0 +1,192 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server.chunkio;
+
+import io.github.opencubicchunks.cubicchunks.api.util.Coords;
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.BitArray;
+import net.minecraft.world.chunk.BlockStateContainer;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * The state of a cube at the moment it was saved. Taking a snapshot is cheap, so it's done on the server thread, and
+ * the expensive encoding of blocks into NBT or the binary format is done later on the I/O thread.
+ * <p>
+ * Blocks are copied in the same format they are sent to clients in, which is a copy of the palette and the backing
+ * array of the {@link BlockStateContainer}. Light is copied as is. Everything else, including entities and tile
+ * entities, is written to NBT right away, as it can't be accessed safely from another thread.
+ */
+@MethodsReturnNonnullByDefault
+@ParametersAreNonnullByDefault
+final class CubeSnapshot {
+
+    private static final int BLOCK_COUNT = Cube.SIZE * Cube.SIZE * Cube.SIZE;
+
+    private final CubePos pos;
+    private final NBTTagCompound nbt;
+    private final boolean hasSkyLight;
+    @Nullable private final byte[] blocks;
+    @Nullable private final byte[] blockLight;
+    @Nullable private final byte[] skyLight;
+
+    private CubeSnapshot(CubePos pos, NBTTagCompound nbt, boolean hasSkyLight,
+            @Nullable byte[] blocks, @Nullable byte[] blockLight, @Nullable byte[] skyLight) {
+        this.pos = pos;
+        this.nbt = nbt;
+        this.hasSkyLight = hasSkyLight;
+        this.blocks = blocks;
+        this.blockLight = blockLight;
+        this.skyLight = skyLight;
+    }
+
+    /**
+     * Takes a snapshot of the given cube. Must be called from the server thread.
+     *
+     * @param cube the cube
+     * @return the snapshot
+     */
+    static CubeSnapshot of(Cube cube) {
+        // uniform cubes have no storage, their block or light values are saved in the NBT
+        return of(cube.getCoords(), IONbtWriter.write(cube, false), cube.getStorage(), cube.getWorld().provider.hasSkyLight());
+    }
+
+    /**
+     * @param pos the cube position
+     * @param nbt the cube NBT without "Sections", must not be modified after this
+     * @param ebs the block storage to copy, or null if the cube is empty
+     * @param hasSkyLight whether the world has sky light
+     * @return the snapshot
+     */
+    static CubeSnapshot of(CubePos pos, NBTTagCompound nbt, @Nullable ExtendedBlockStorage ebs, boolean hasSkyLight) {
+        if (ebs == null) {
+            return new CubeSnapshot(pos, nbt, hasSkyLight, null, null, null);
+        }
+        return new CubeSnapshot(pos, nbt, hasSkyLight, copyBlocks(ebs.getData()),
+                ebs.getBlockLight().getData().clone(), hasSkyLight ? ebs.getSkyLight().getData().clone() : null);
+    }
+
+    CubePos getPos() {
+        return pos;
+    }
+
+    /**
+     * @return the cube NBT without "Sections". Must not be modified, it's shared with loads of the cube.
+     */
+    NBTTagCompound getNbt() {
+        return nbt;
+    }
+
+    /**
+     * Creates a new block storage with the contents of this snapshot. Each call returns a different instance, so the
+     * result can be given to a cube.
+     *
+     * @return the block storage, or null if the cube was empty
+     */
+    @Nullable
+    ExtendedBlockStorage createStorage() {
+        if (blocks == null) {
+            return null;
+        }
+        assert blockLight != null;
+        ExtendedBlockStorage ebs = new ExtendedBlockStorage(Coords.cubeToMinBlock(pos.getY()), hasSkyLight);
+        readBlocks(blocks, ebs.getData());
+        ebs.setBlockLight(new NibbleArray(blockLight.clone()));
+        if (skyLight != null) {
+            ebs.setSkyLight(new NibbleArray(skyLight.clone()));
+        }
+        ebs.recalculateRefCounts();
+        return ebs;
+    }
+
+    /**
+     * @return the full cube NBT, in the format written by {@link IONbtWriter#write(Cube)}
+     */
+    NBTTagCompound toNbt() {
+        ExtendedBlockStorage ebs = createStorage();
+        if (ebs == null) {
+            return nbt;
+        }
+        // the NBT may be shared with cube loads, so only modify copies of the compounds
+        NBTTagCompound copy = BinaryCubeCodec.shallowCopy(nbt);
+        NBTTagCompound level = BinaryCubeCodec.shallowCopy(nbt.getCompoundTag("Level"));
+        copy.setTag("Level", level);
+        IONbtWriter.writeBlocks(ebs, hasSkyLight, level);
+        return copy;
+    }
+
+    /**
+     * @return the block storage encoded by {@link BinaryCubeCodec#encodeStorage}
+     */
+    byte[] encodeStorage() {
+        return BinaryCubeCodec.encodeStorage(createStorage(), hasSkyLight);
+    }
+
+    private static byte[] copyBlocks(BlockStateContainer data) {
+        byte[] arr = new byte[data.getSerializedSize()];
+        ByteBuf buf = Unpooled.wrappedBuffer(arr);
+        buf.writerIndex(0);
+        data.write(new PacketBuffer(buf));
+        return arr;
+    }
+
+    // BlockStateContainer.read only exists on the client, so this reads the format of BlockStateContainer.write
+    @SuppressWarnings("deprecation")
+    private static void readBlocks(byte[] arr, BlockStateContainer data) {
+        PacketBuffer buf = new PacketBuffer(Unpooled.wrappedBuffer(arr));
+        int bits = buf.readUnsignedByte();
+        // the global palette writes no entries, local palettes always contain at least air
+        int paletteSize = buf.readVarInt();
+        IBlockState[] palette = new IBlockState[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = Block.BLOCK_STATE_IDS.getByValue(buf.readVarInt());
+        }
+        BitArray array = new BitArray(bits, BLOCK_COUNT);
+        long[] longs = array.getBackingLongArray();
+        int length = buf.readVarInt();
+        for (int i = 0; i < length; i++) {
+            longs[i] = buf.readLong();
+        }
+        IBlockState air = data.get(0, 0, 0);
+        for (int i = 0; i < BLOCK_COUNT; i++) {
+            int id = array.getAt(i);
+            IBlockState state = paletteSize == 0 ? Block.BLOCK_STATE_IDS.getByValue(id) : palette[id];
+            if (state != null && state != air) {
+                data.set(i & 15, i >> 8 & 15, i >> 4 & 15, state);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server.chunkio;
+
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.datafix.FixTypes;
+import net.minecraftforge.common.util.CompoundDataFixer;
+import net.minecraftforge.common.util.Constants;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Runs saved columns and cubes through the data fixer, skipping records that are already up to date.
+ * <p>
+ * Forge's fixer walks the whole record, including every entity and tile entity, even when there is nothing to fix. A
+ * record is up to date when its vanilla {@code DataVersion} and the versions of all mods with data fixes, stored in
+ * {@code ForgeDataVersion}, are at least the current ones, which is exactly what the fixer itself would check.
+ */
+@MethodsReturnNonnullByDefault
+@ParametersAreNonnullByDefault
+final class DataFixes {
+
+    private static final String DATA_VERSION = "DataVersion";
+    private static final String FORGE_DATA_VERSION = "ForgeDataVersion";
+
+    // mod versions of the last used fixer, mods can only register fixes before the server starts
+    @Nullable private static volatile CachedVersions cachedVersions;
+
+    private DataFixes() {
+        throw new Error();
+    }
+
+    /**
+     * Brings a column or cube record to the current data version.
+     *
+     * @param nbt the record as read from disk
+     * @return the fixed record, or the given one if it's already up to date
+     */
+    static NBTTagCompound fixChunk(NBTTagCompound nbt) {
+        CompoundDataFixer fixer = FMLCommonHandler.instance().getDataFixer();
+        if (isUpToDate(fixer, nbt)) {
+            return nbt;
+        }
+        return fixer.process(FixTypes.CHUNK, nbt);
+    }
+
+    /**
+     * @return true if the data fixer has nothing to fix in the given column or cube record
+     */
+    static boolean isUpToDate(NBTTagCompound nbt) {
+        return isUpToDate(FMLCommonHandler.instance().getDataFixer(), nbt);
+    }
+
+    private static boolean isUpToDate(CompoundDataFixer fixer, NBTTagCompound nbt) {
+        if (!nbt.hasKey(DATA_VERSION, Constants.NBT.TAG_ANY_NUMERIC) || nbt.getInteger(DATA_VERSION) < fixer.version) {
+            return false;
+        }
+        NBTTagCompound current = currentModVersions(fixer);
+        NBTTagCompound stored = nbt.getCompoundTag(FORGE_DATA_VERSION);
+        for (String mod : current.getKeySet()) {
+            if (!stored.hasKey(mod, Constants.NBT.TAG_ANY_NUMERIC) || stored.getInteger(mod) < current.getInteger(mod)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static NBTTagCompound currentModVersions(CompoundDataFixer fixer) {
+        CachedVersions cached = cachedVersions;
+        if (cached == null || cached.fixer != fixer) {
+            NBTTagCompound tag = new NBTTagCompound();
+            fixer.writeVersionData(tag);
+            cached = new CachedVersions(fixer, tag.getCompoundTag(FORGE_DATA_VERSION));
+            cachedVersions = cached;
+        }
+        return cached.modVersions;
+    }
+
+    private static final class CachedVersions {
+
+        final CompoundDataFixer fixer;
+        final NBTTagCompound modVersions;
+
+        CachedVersions(CompoundDataFixer fixer, NBTTagCompound modVersions) {
+            this.fixer = fixer;
+            this.modVersions = modVersions;
+        }
+    }
+}
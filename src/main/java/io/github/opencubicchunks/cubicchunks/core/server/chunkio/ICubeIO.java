@@ -26,6 +26,7 @@ package io.github.opencubicchunks.cubicchunks.core.server.chunkio;
 
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 import net.minecraft.world.storage.IThreadedFileIO;
 
 import java.io.IOException;
@@ -39,7 +40,30 @@ public interface ICubeIO extends IThreadedFileIO {
 
 	@Nullable Chunk loadColumn(int chunkX, int chunkZ) throws IOException;
 
-	@Nullable PartialCubeData loadCubeAsyncPart(Chunk column, int cubeY) throws IOException;
+	/**
+	 * Reads the stored data of a cube. This doesn't need the column of the cube to be loaded, so it can run before or
+	 * in parallel with the column load.
+	 *
+	 * @return the cube data, or null if the cube doesn't exist
+	 */
+	@Nullable CubeRecord loadCubeRecord(int cubeX, int cubeY, int cubeZ) throws IOException;
+
+	/**
+	 * Creates the cube from data returned by {@link #loadCubeRecord(int, int, int)}. This is the part of cube loading
+	 * that needs the column and can still be done outside of the main thread.
+	 */
+	@Nullable default PartialCubeData loadCubeAsyncPart(Chunk column, int cubeY, CubeRecord record) {
+		Cube cube = IONbtReader.readCubeAsyncPart(column, column.x, cubeY, column.z, record);
+		if (cube == null) {
+			return null;
+		}
+		return new PartialCubeData(cube, record.getNbt());
+	}
+
+	@Nullable default PartialCubeData loadCubeAsyncPart(Chunk column, int cubeY) throws IOException {
+		CubeRecord record = this.loadCubeRecord(column.x, cubeY, column.z);
+		return record == null ? null : this.loadCubeAsyncPart(column, cubeY, record);
+	}
 
 	void loadCubeSyncPart(PartialCubeData info);
 
@@ -55,6 +79,37 @@ public interface ICubeIO extends IThreadedFileIO {
 
     int getPendingCubeCount();
 
+	/**
+	 * Stored data of a cube, as read from disk. Depending on the storage format, the block storage may already be
+	 * decoded, otherwise it's read from the "Sections" tag of the NBT.
+	 */
+	class CubeRecord {
+		final NBTTagCompound nbt;
+		final boolean hasDecodedBlocks;
+		@Nullable final ExtendedBlockStorage blocks;
+
+		private CubeRecord(NBTTagCompound nbt, boolean hasDecodedBlocks, @Nullable ExtendedBlockStorage blocks) {
+			this.nbt = nbt;
+			this.hasDecodedBlocks = hasDecodedBlocks;
+			this.blocks = blocks;
+		}
+
+		public static CubeRecord ofNbt(NBTTagCompound nbt) {
+			return new CubeRecord(nbt, false, null);
+		}
+
+		/**
+		 * @param blocks the decoded block storage, null if the cube is empty
+		 */
+		public static CubeRecord withBlocks(NBTTagCompound nbt, @Nullable ExtendedBlockStorage blocks) {
+			return new CubeRecord(nbt, true, blocks);
+		}
+
+		public NBTTagCompound getNbt() {
+			return nbt;
+		}
+	}
+
     /**
 	 * Stores partially read cube, before sync read but after async read
 	 */
@@ -62,7 +117,7 @@ public interface ICubeIO extends IThreadedFileIO {
 		final NBTTagCompound nbt;
 		final Cube cube;
 
-		PartialCubeData(Cube cube, NBTTagCompound nbt) {
+		public PartialCubeData(Cube cube, NBTTagCompound nbt) {
 			this.cube = cube;
 			this.nbt = nbt;
 		}
@@ -35,8 +35,10 @@ import io.github.opencubicchunks.cubicchunks.core.lighting.LightingManager;
 import io.github.opencubicchunks.cubicchunks.core.world.ClientHeightMap;
 import io.github.opencubicchunks.cubicchunks.core.world.ServerHeightMap;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.UniformCubeStorage;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.tileentity.TileEntity;
@@ -111,18 +113,36 @@ public class IONbtReader {
     }
 
     @Nullable
-    static Cube readCubeAsyncPart(Chunk column, final int cubeX, final int cubeY, final int cubeZ, NBTTagCompound nbt) {
+    static Cube readCubeAsyncPart(Chunk column, final int cubeX, final int cubeY, final int cubeZ, ICubeIO.CubeRecord record) {
         if (column.x != cubeX || column.z != cubeZ) {
             throw new IllegalArgumentException(String.format("Invalid column (%d, %d) for cube at (%d, %d, %d)",
                     column.x, column.z, cubeX, cubeY, cubeZ));
         }
         World world = column.getWorld();
-        NBTTagCompound level = nbt.getCompoundTag("Level");
+        NBTTagCompound level = record.nbt.getCompoundTag("Level");
         Cube cube = readBaseCube(column, cubeX, cubeY, cubeZ, level, world);
         if (cube == null) {
             return null;
         }
-        readBlocks(level, world, cube);
+        if (record.hasDecodedBlocks) {
+            if (record.blocks != null) {
+                cube.setStorage(record.blocks);
+            }
+        } else {
+            ExtendedBlockStorage ebs = readBlocks(level, cubeY, world.provider.hasSkyLight());
+            if (ebs != null) {
+                cube.setStorage(ebs);
+            }
+        }
+        if (cube.getStorage() == null && level.hasKey("UniformLight", Constants.NBT.TAG_BYTE)) {
+            cube.setUniformStorage(UniformCubeStorage.unpack(level.getByte("UniformLight")));
+        }
+        if (cube.getStorage() == null && level.hasKey("UniformBlock", Constants.NBT.TAG_INT)) {
+            IBlockState state = Block.BLOCK_STATE_IDS.getByValue(level.getInteger("UniformBlock"));
+            if (state != null) {
+                cube.setUniformBlock(state);
+            }
+        }
 
         return cube;
     }
@@ -179,13 +199,15 @@ public class IONbtReader {
         return cube;
     }
 
-    @SuppressWarnings("deprecation") private static void readBlocks(NBTTagCompound nbt, World world, Cube cube) {
+    @Nullable
+    @SuppressWarnings("deprecation")
+    static ExtendedBlockStorage readBlocks(NBTTagCompound nbt, int cubeY, boolean hasSkyLight) {
         boolean isEmpty = !nbt.hasKey("Sections");// is this an empty cube?
         if (!isEmpty) {
             NBTTagList sectionList = nbt.getTagList("Sections", 10);
             nbt = sectionList.getCompoundTagAt(0);
 
-            ExtendedBlockStorage ebs = new ExtendedBlockStorage(Coords.cubeToMinBlock(cube.getY()), cube.getWorld().provider.hasSkyLight());
+            ExtendedBlockStorage ebs = new ExtendedBlockStorage(Coords.cubeToMinBlock(cubeY), hasSkyLight);
 
             byte[] abyte = nbt.getByteArray("Blocks");
             NibbleArray data = new NibbleArray(nbt.getByteArray("Data"));
@@ -205,13 +227,14 @@ public class IONbtReader {
 
             ebs.setBlockLight(new NibbleArray(nbt.getByteArray("BlockLight")));
 
-            if (world.provider.hasSkyLight()) {
+            if (hasSkyLight) {
                 ebs.setSkyLight(new NibbleArray(nbt.getByteArray("SkyLight")));
             }
 
             ebs.recalculateRefCounts();
-            cube.setStorage(ebs);
+            return ebs;
         }
+        return null;
     }
 
     private static void readEntities(NBTTagCompound nbt, World world, Cube cube) {// entities
@@ -33,11 +33,13 @@ import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
 import io.github.opencubicchunks.cubicchunks.core.world.ClientHeightMap;
 import io.github.opencubicchunks.cubicchunks.core.world.ServerHeightMap;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.UniformCubeStorage;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.PooledByteBufAllocator;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.nbt.CompressedStreamTools;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
@@ -84,6 +86,13 @@ class IONbtWriter {
     }
 
     static NBTTagCompound write(final Cube cube) {
+        return write(cube, true);
+    }
+
+    /**
+     * @param includeBlocks whether to write the block storage, which is left out when it's saved separately
+     */
+    static NBTTagCompound write(final Cube cube, boolean includeBlocks) {
         NBTTagCompound cubeNbt = new NBTTagCompound();
         //Added to preserve compatibility with vanilla NBT chunk format.
         NBTTagCompound level = new NBTTagCompound();
@@ -91,7 +100,9 @@ class IONbtWriter {
         cubeNbt.setInteger("DataVersion", FMLCommonHandler.instance().getDataFixer().version);
         FMLCommonHandler.instance().getDataFixer().writeVersionData(cubeNbt);
         writeBaseCube(cube, level);
-        writeBlocks(cube, level);
+        if (includeBlocks && cube.getStorage() != null) {
+            writeBlocks(cube.getStorage(), cube.getWorld().provider.hasSkyLight(), level);
+        }
         writeEntities(cube, level);
         writeTileEntities(cube, level);
         writeScheduledTicks(cube, level);
@@ -147,6 +158,16 @@ class IONbtWriter {
 
         cubeNbt.setBoolean("initLightDone", cube.isInitialLightingDone());
 
+        // written even when the blocks are saved separately, uniform cubes have no block storage to save
+        UniformCubeStorage uniform = cube.getUniformStorage();
+        if (uniform != null) {
+            cubeNbt.setByte("UniformLight", (byte) uniform.pack());
+        }
+        IBlockState uniformBlock = cube.getUniformBlock();
+        if (uniformBlock != null) {
+            cubeNbt.setInteger("UniformBlock", Block.BLOCK_STATE_IDS.get(uniformBlock));
+        }
+
         if (cube.getCapabilities() != null) {
             try {
                 cubeNbt.setTag("ForgeCaps", cube.getCapabilities().serializeNBT());
@@ -157,11 +178,7 @@ class IONbtWriter {
         }
     }
 
-    private static void writeBlocks(Cube cube, NBTTagCompound cubeNbt) {
-        ExtendedBlockStorage ebs = cube.getStorage();
-        if (ebs == null) {
-            return; // no data to save anyway
-        }
+    static void writeBlocks(ExtendedBlockStorage ebs, boolean hasSkyLight, NBTTagCompound cubeNbt) {
         NBTTagList sectionList = new NBTTagList();
         NBTTagCompound section = new NBTTagCompound();
         sectionList.appendTag(section);
@@ -211,7 +228,7 @@ class IONbtWriter {
 
         section.setByteArray("BlockLight", ebs.getBlockLight().getData());
 
-        if (cube.getWorld().provider.hasSkyLight()) {
+        if (hasSkyLight) {
             section.setByteArray("SkyLight", ebs.getSkyLight().getData());
         }
     }
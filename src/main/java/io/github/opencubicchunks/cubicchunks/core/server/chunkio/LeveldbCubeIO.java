@@ -40,17 +40,17 @@ import net.daporkchop.ldbjni.LevelDB;
 import net.minecraft.nbt.CompressedStreamTools;
 import net.minecraft.nbt.NBTSizeTracker;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.util.datafix.FixTypes;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldProvider;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.storage.IThreadedFileIO;
 import net.minecraft.world.storage.ThreadedFileIOBase;
-import net.minecraftforge.fml.common.FMLCommonHandler;
 import org.apache.logging.log4j.Logger;
 import org.iq80.leveldb.CompressionType;
 import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBIterator;
 import org.iq80.leveldb.Options;
 import org.iq80.leveldb.WriteBatch;
 import org.iq80.leveldb.WriteOptions;
@@ -58,16 +58,19 @@ import org.iq80.leveldb.WriteOptions;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 public class LeveldbCubeIO implements ICubeIO {
     public static LeveldbCubeIO OVERWORLD_INSTANCE;
@@ -84,6 +87,33 @@ public class LeveldbCubeIO implements ICubeIO {
 
     private static final WriteOptions SYNC_WRITE = new WriteOptions().sync(true);
 
+    /**
+     * Key in the column database marking that every column has an up-to-date cube index, see {@link ColumnCubeIndex}.
+     * Worlds without it get the index rebuilt from the cube database in the background.
+     */
+    private static final byte[] CUBE_INDEX_COMPLETE_KEY = "cubicchunks:cube_index_complete".getBytes(StandardCharsets.UTF_8);
+    /**
+     * Suffix of the cube index key, appended to the column key so that it can't collide with column records.
+     */
+    private static final byte CUBE_INDEX_KEY_SUFFIX = 'i';
+    private static final int CUBE_INDEX_CACHE_SIZE = 1 << 16;
+    /**
+     * Number of distinct columns collected by the index rebuild before the results are written out.
+     */
+    private static final int CUBE_INDEX_REBUILD_BATCH = 1 << 14;
+    /**
+     * Bounds of the number of columns and cubes written in one batch. Batches grow with the number of queued saves, so that a
+     * full world save needs fewer writes, while a single batch still doesn't keep the IO thread busy for too long.
+     */
+    private static final int MIN_COLUMN_BATCH_SIZE = 25;
+    private static final int MAX_COLUMN_BATCH_SIZE = 1024;
+    private static final int MIN_CUBE_BATCH_SIZE = 250;
+    private static final int MAX_CUBE_BATCH_SIZE = 8192;
+    /**
+     * Number of records checked in one step of {@link RecordUpgrade}.
+     */
+    private static final int UPGRADE_BATCH_SIZE = 256;
+
     private static final Logger LOGGER = CubicChunks.LOGGER;
 
     private static byte[] getColumnKey(int columnX, int columnZ) {
@@ -93,6 +123,14 @@ public class LeveldbCubeIO implements ICubeIO {
                 .array();
     }
 
+    private static byte[] getCubeIndexKey(int columnX, int columnZ) {
+        return Unpooled.wrappedBuffer(new byte[9]).clear()
+                .writeInt(columnX)
+                .writeInt(columnZ)
+                .writeByte(CUBE_INDEX_KEY_SUFFIX)
+                .array();
+    }
+
     private static byte[] getCubeKey(int cubeX, int cubeY, int cubeZ) {
         return Unpooled.wrappedBuffer(new byte[12]).clear()
                 .writeInt(cubeY)
@@ -118,14 +156,27 @@ public class LeveldbCubeIO implements ICubeIO {
     @Nonnull
     private ConcurrentMap<ChunkPos, NBTTagCompound> columnsToSave;
     @Nonnull
-    private ConcurrentMap<CubePos, NBTTagCompound> cubesToSave;
-    private final Cache<CubePos, NBTTagCompound> savedCubesCache = CacheBuilder.newBuilder()
+    private ConcurrentMap<CubePos, CubeSnapshot> cubesToSave;
+    private final Cache<CubePos, CubeSnapshot> savedCubesCache = CacheBuilder.newBuilder()
             .concurrencyLevel(1)
             .softValues()
             .expireAfterWrite(10L, TimeUnit.SECONDS)
             .build();
+    /**
+     * Recently used cube indices. Entries are only ever added while holding {@link #cubeIndexLock}, so that there is
+     * never more than one instance for a column that is being modified.
+     */
+    private final Cache<ChunkPos, ColumnCubeIndex> cubeIndexCache = CacheBuilder.newBuilder()
+            .maximumSize(CUBE_INDEX_CACHE_SIZE)
+            .build();
+    private final Object cubeIndexLock = new Object();
+    private volatile boolean cubeIndexComplete;
+    private volatile boolean stopCubeIndexRebuild;
+    @Nullable private Thread cubeIndexRebuildThread;
     public DB columnDb;
     public DB cubeDb;
+    @Nullable private LeveldbDurability durability;
+    @Nullable private RecordUpgrade recordUpgrade;
 
     public LeveldbCubeIO(World world) throws IOException {
         this.world = world;
@@ -181,17 +232,163 @@ public class LeveldbCubeIO implements ICubeIO {
 
         this.columnDb = LevelDB.PROVIDER.open(part2d.toFile(), COLUMN_DB_OPTIONS);
         this.cubeDb = LevelDB.PROVIDER.open(part3d.toFile(), CUBE_DB_OPTIONS);
+        this.durability = new LeveldbDurability(LeveldbConfig.syncPolicy, LeveldbConfig.syncIntervalMs, this.columnDb, this.cubeDb);
+        this.durability.start("CubicChunks LevelDB sync DIM" + this.world.provider.getDimension());
+
+        this.cubeIndexComplete = this.columnDb.get(CUBE_INDEX_COMPLETE_KEY) != null;
+        if (!this.cubeIndexComplete) {
+            this.startCubeIndexRebuild(this.columnDb, this.cubeDb);
+        }
+    }
+
+    private void startCubeIndexRebuild(DB columnDb, DB cubeDb) {
+        if (LeveldbConfig.readOnly) {
+            return;
+        }
+        this.stopCubeIndexRebuild = false;
+        Thread thread = new Thread(() -> this.rebuildCubeIndex(columnDb, cubeDb),
+                "CubicChunks cube index rebuild DIM" + this.world.provider.getDimension());
+        thread.setDaemon(true);
+        thread.start();
+        this.cubeIndexRebuildThread = thread;
+    }
+
+    private void stopCubeIndexRebuild() {
+        Thread thread = this.cubeIndexRebuildThread;
+        if (thread == null) {
+            return;
+        }
+        this.stopCubeIndexRebuild = true;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.cubeIndexRebuildThread = null;
+    }
+
+    /**
+     * Builds the cube index of all columns by scanning every key in the cube database. Cubes saved while this runs are
+     * added to the index by {@link #writeNextIO()}, so the result is only merged into the existing indices.
+     */
+    private void rebuildCubeIndex(DB columnDb, DB cubeDb) {
+        LOGGER.info("Building cube index for DIM{}, this may take a while for large worlds", this.world.provider.getDimension());
+        long startTime = System.nanoTime();
+        long cubeCount = 0;
+        Map<ChunkPos, ColumnCubeIndex> found = new HashMap<>();
+        try (DBIterator itr = cubeDb.iterator()) {
+            for (itr.seekToFirst(); itr.hasNext(); ) {
+                if (this.stopCubeIndexRebuild) {
+                    LOGGER.info("Cube index rebuild for DIM{} interrupted, it will be restarted next time", this.world.provider.getDimension());
+                    return;
+                }
+                byte[] key = itr.next().getKey();
+                if (key.length != 12) {
+                    continue;
+                }
+                ByteBuf buf = Unpooled.wrappedBuffer(key);
+                int cubeY = buf.readInt();
+                int cubeX = buf.readInt();
+                int cubeZ = buf.readInt();
+                found.computeIfAbsent(new ChunkPos(cubeX, cubeZ), pos -> new ColumnCubeIndex()).add(cubeY);
+                cubeCount++;
+                if (found.size() >= CUBE_INDEX_REBUILD_BATCH) {
+                    this.mergeCubeIndices(columnDb, found);
+                    found.clear();
+                }
+            }
+            this.mergeCubeIndices(columnDb, found);
+            columnDb.put(CUBE_INDEX_COMPLETE_KEY, new byte[0], SYNC_WRITE);
+            this.cubeIndexComplete = true;
+            LOGGER.info("Built cube index for DIM{} ({} cubes) in {} ms", this.world.provider.getDimension(), cubeCount,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        } catch (Throwable t) {
+            LOGGER.error("Exception occurred when building cube index", t);
+        }
+    }
+
+    private void mergeCubeIndices(DB columnDb, Map<ChunkPos, ColumnCubeIndex> indices) throws IOException {
+        this.mergeCubeIndices(columnDb, indices, false);
+    }
+
+    /**
+     * @param sync whether to sync the indices to disk regardless of the sync policy, only done if any index changed
+     */
+    private void mergeCubeIndices(DB columnDb, Map<ChunkPos, ColumnCubeIndex> indices, boolean sync) throws IOException {
+        synchronized (this.cubeIndexLock) {
+            try (WriteBatch batch = columnDb.createWriteBatch()) {
+                boolean changed = false;
+                for (Map.Entry<ChunkPos, ColumnCubeIndex> entry : indices.entrySet()) {
+                    ChunkPos pos = entry.getKey();
+                    ColumnCubeIndex index = this.getCubeIndexLocked(columnDb, pos);
+                    if (index.addAll(entry.getValue())) {
+                        batch.put(getCubeIndexKey(pos.x, pos.z), index.toBytes());
+                        changed = true;
+                    }
+                }
+                if (!changed) {
+                    return;
+                }
+                if (sync) {
+                    columnDb.write(batch, SYNC_WRITE);
+                } else {
+                    columnDb.write(batch, this.durability().writeOptions());
+                    this.durability().onWrite();
+                }
+            }
+        }
+    }
+
+    private LeveldbDurability durability() {
+        assert this.durability != null;
+        return this.durability;
+    }
+
+    private ColumnCubeIndex getCubeIndexLocked(DB columnDb, ChunkPos pos) {
+        assert Thread.holdsLock(this.cubeIndexLock);
+        ColumnCubeIndex index = this.cubeIndexCache.getIfPresent(pos);
+        if (index == null) {
+            byte[] arr = columnDb.get(getCubeIndexKey(pos.x, pos.z));
+            index = arr == null ? new ColumnCubeIndex() : ColumnCubeIndex.fromBytes(arr);
+            this.cubeIndexCache.put(pos, index);
+        }
+        return index;
+    }
+
+    private ColumnCubeIndex getCubeIndex(int columnX, int columnZ) throws IOException {
+        ChunkPos pos = new ChunkPos(columnX, columnZ);
+        ColumnCubeIndex index = this.cubeIndexCache.getIfPresent(pos);
+        if (index == null) {
+            DB db = this.getColumnDb();
+            synchronized (this.cubeIndexLock) {
+                index = this.getCubeIndexLocked(db, pos);
+            }
+        }
+        return index;
     }
 
     @Override
     public void flush() throws IOException {
+        RecordUpgrade upgrade = this.recordUpgrade;
+        if (upgrade != null) {
+            upgrade.stopped = true;
+        }
         try {
             ThreadedFileIOBase.getThreadedIOInstance().waitForFinish();
         } catch (InterruptedException iex) {
             iex.printStackTrace();
         }
+        this.stopCubeIndexRebuild();
+        this.cubeIndexCache.invalidateAll();
 
         try {
+            if (this.durability != null) {
+                try {
+                    this.durability.close();
+                } finally {
+                    this.durability = null;
+                }
+            }
             if (this.columnDb != null) {
                 try {
                     this.columnDb.close();
@@ -227,36 +424,33 @@ public class LeveldbCubeIO implements ICubeIO {
             if (arr == null) {
                 return null;
             }
-            nbt = FMLCommonHandler.instance().getDataFixer().process(FixTypes.CHUNK,
+            nbt = DataFixes.fixChunk(
                     CompressedStreamTools.read(new ByteBufInputStream(Unpooled.wrappedBuffer(arr)), NBTSizeTracker.INFINITE));
         }
+        // cube existence checks are usually done for cubes of loaded columns, so load the index with the column
+        this.getCubeIndex(chunkX, chunkZ);
         return IONbtReader.readColumn(this.world, chunkX, chunkZ, nbt);
     }
 
     @Override
     @Nullable
-    public PartialCubeData loadCubeAsyncPart(Chunk column, int cubeY) throws IOException {
-        DB db = this.getCubeDb();
-        NBTTagCompound nbt;
-        NBTTagCompound saveEntry;
-        if ((saveEntry = this.savedCubesCache.getIfPresent(new CubePos(column.x, cubeY, column.z))) != null) {
-            nbt = saveEntry;
-        } else {
-            // does the database have the cube?
-            byte[] arr = db.get(getCubeKey(column.x, cubeY, column.z));
-            if (arr == null) {
-                return null;
-            }
-            nbt = FMLCommonHandler.instance().getDataFixer().process(FixTypes.CHUNK,
-                    CompressedStreamTools.read(new ByteBufInputStream(Unpooled.wrappedBuffer(arr)), NBTSizeTracker.INFINITE));
+    public CubeRecord loadCubeRecord(int cubeX, int cubeY, int cubeZ) throws IOException {
+        CubeSnapshot snapshot;
+        if ((snapshot = this.savedCubesCache.getIfPresent(new CubePos(cubeX, cubeY, cubeZ))) != null) {
+            return CubeRecord.withBlocks(snapshot.getNbt(), snapshot.createStorage());
         }
-
-        // restore the cube - async part
-        Cube cube = IONbtReader.readCubeAsyncPart(column, column.x, cubeY, column.z, nbt);
-        if (cube == null) {
+        // does the database have the cube?
+        byte[] arr = this.getCubeDb().get(getCubeKey(cubeX, cubeY, cubeZ));
+        if (arr == null) {
             return null;
         }
-        return new PartialCubeData(cube, nbt);
+        if (BinaryCubeCodec.isBinaryRecord(arr)) {
+            CubeRecord record = BinaryCubeCodec.readRecord(arr, cubeY);
+            return CubeRecord.withBlocks(DataFixes.fixChunk(record.getNbt()), record.blocks);
+        }
+        // cubes saved in the old format are converted the next time they are saved
+        return CubeRecord.ofNbt(DataFixes.fixChunk(
+                CompressedStreamTools.read(new ByteBufInputStream(Unpooled.wrappedBuffer(arr)), NBTSizeTracker.INFINITE)));
     }
 
     @Override
@@ -291,11 +485,12 @@ public class LeveldbCubeIO implements ICubeIO {
             cube.markSaved();
         } else {
             // NOTE: this function blocks the world thread, so make it fast
+            // only take a snapshot here, the blocks are encoded on the IO thread
 
-            NBTTagCompound compound = IONbtWriter.write(cube);
+            CubeSnapshot entry = CubeSnapshot.of(cube);
             cube.markSaved();
-            this.cubesToSave.put(cube.getCoords(), compound);
-            this.savedCubesCache.put(cube.getCoords(), compound);
+            this.cubesToSave.put(cube.getCoords(), entry);
+            this.savedCubesCache.put(cube.getCoords(), entry);
 
             // signal the IO thread to process the save queue
             ThreadedFileIOBase.getThreadedIOInstance().queueIO(this);
@@ -316,7 +511,14 @@ public class LeveldbCubeIO implements ICubeIO {
     @Override
     public boolean cubeExists(int cubeX, int cubeY, int cubeZ) {
         try {
-            //this is needlessly inefficient
+            // cubes are added to the index right before they are written to the database, while still in cubesToSave
+            if (this.cubesToSave.containsKey(new CubePos(cubeX, cubeY, cubeZ)) || this.getCubeIndex(cubeX, cubeZ).contains(cubeY)) {
+                return true;
+            }
+            if (this.cubeIndexComplete) {
+                return false;
+            }
+            // the index is still being built, it can't be trusted to be complete
             return this.getCubeDb().get(getCubeKey(cubeX, cubeY, cubeZ)) != null;
         } catch (IOException e) {
             CubicChunks.LOGGER.catching(e);
@@ -339,8 +541,8 @@ public class LeveldbCubeIO implements ICubeIO {
         try {
             // NOTE: return true to redo this call (used for batching)
 
-            final int ColumnsBatchSize = 25;
-            final int CubesBatchSize = 250;
+            final int ColumnsBatchSize = batchSize(this.columnsToSave.size(), MIN_COLUMN_BATCH_SIZE, MAX_COLUMN_BATCH_SIZE);
+            final int CubesBatchSize = batchSize(this.cubesToSave.size(), MIN_CUBE_BATCH_SIZE, MAX_CUBE_BATCH_SIZE);
 
             int numColumnsSaved = 0;
             int numCubesSaved = 0;
@@ -363,7 +565,8 @@ public class LeveldbCubeIO implements ICubeIO {
 
                 if (!included.isEmpty()) {
                     //write entire batch of columns
-                    columnDb.write(batch, SYNC_WRITE);
+                    columnDb.write(batch, this.durability().writeOptions());
+                    this.durability().onWrite();
 
                     //remove columns from "to save" map
                     for (Map.Entry<ChunkPos, NBTTagCompound> entry : included) {
@@ -375,13 +578,13 @@ public class LeveldbCubeIO implements ICubeIO {
             //save a batch of cubes
             DB cubeDb = this.getCubeDb();
             try (WriteBatch batch = cubeDb.createWriteBatch()) {
-                Collection<Map.Entry<CubePos, NBTTagCompound>> included = new ArrayList<>();
+                Collection<Map.Entry<CubePos, CubeSnapshot>> included = new ArrayList<>();
 
                 //encode cubes to bytes and add them to the batch
-                for (Iterator<Map.Entry<CubePos, NBTTagCompound>> itr = this.cubesToSave.entrySet().iterator(); itr.hasNext() && numCubesSaved < CubesBatchSize; numCubesSaved++) {
-                    Map.Entry<CubePos, NBTTagCompound> entry = itr.next();
+                for (Iterator<Map.Entry<CubePos, CubeSnapshot>> itr = this.cubesToSave.entrySet().iterator(); itr.hasNext() && numCubesSaved < CubesBatchSize; numCubesSaved++) {
+                    Map.Entry<CubePos, CubeSnapshot> entry = itr.next();
                     try {
-                        batch.put(getCubeKey(entry.getKey().getX(), entry.getKey().getY(), entry.getKey().getZ()), writeUncompressedNbtBytes(entry.getValue()));
+                        batch.put(getCubeKey(entry.getKey().getX(), entry.getKey().getY(), entry.getKey().getZ()), encodeCube(entry.getValue()));
                         included.add(entry);
                     } catch (Throwable t) {
                         LOGGER.error(String.format("Unable to encode cube %d, %d, %d", entry.getKey().getX(), entry.getKey().getY(), entry.getKey().getZ()), t);
@@ -389,11 +592,22 @@ public class LeveldbCubeIO implements ICubeIO {
                 }
 
                 if (!included.isEmpty()) {
+                    //add the cubes to the index before they are written and removed from the queue, so that cubeExists can't
+                    //miss them. The index is in a different database, so it's synced first: after a crash, the index
+                    //may list a cube that wasn't written, but never miss one that was
+                    Map<ChunkPos, ColumnCubeIndex> savedCubes = new HashMap<>();
+                    for (Map.Entry<CubePos, CubeSnapshot> entry : included) {
+                        CubePos pos = entry.getKey();
+                        savedCubes.computeIfAbsent(pos.chunkPos(), p -> new ColumnCubeIndex()).add(pos.getY());
+                    }
+                    this.mergeCubeIndices(columnDb, savedCubes, true);
+
                     //write entire batch of cubes
-                    cubeDb.write(batch, SYNC_WRITE);
+                    cubeDb.write(batch, this.durability().writeOptions());
+                    this.durability().onWrite();
 
                     //remove cubes from "to save" map
-                    for (Map.Entry<CubePos, NBTTagCompound> entry : included) {
+                    for (Map.Entry<CubePos, CubeSnapshot> entry : included) {
                         this.cubesToSave.remove(entry.getKey(), entry.getValue());
                     }
                 }
@@ -403,4 +617,168 @@ public class LeveldbCubeIO implements ICubeIO {
         }
         return !this.columnsToSave.isEmpty() || !this.cubesToSave.isEmpty();
     }
+
+    /**
+     * Starts rewriting all saved columns and cubes that would be changed by the data fixer, so that loading them later can
+     * skip it. The upgrade runs on the IO thread in small steps between regular saves, and stops when the world is
+     * unloaded.
+     *
+     * @param onFinished called on the IO thread with the number of upgraded records, or -1 if the upgrade didn't finish
+     * @return false if an upgrade of this world is already running
+     */
+    public synchronized boolean startRecordUpgrade(IntConsumer onFinished) {
+        if (this.recordUpgrade != null) {
+            return false;
+        }
+        this.recordUpgrade = new RecordUpgrade(onFinished);
+        ThreadedFileIOBase.getThreadedIOInstance().queueIO(this.recordUpgrade);
+        return true;
+    }
+
+    private synchronized void finishRecordUpgrade() {
+        this.recordUpgrade = null;
+    }
+
+    // about a quarter of the queue per batch, so that a large queue is written in a few big batches
+    private static int batchSize(int queued, int min, int max) {
+        return Math.max(min, Math.min(max, queued / 4));
+    }
+
+    /**
+     * Encodes a cube for the database, in the binary format or as NBT depending on {@link LeveldbConfig#binaryCubeFormat}.
+     * This is the expensive part of saving a cube, done on the IO thread.
+     */
+    private static byte[] encodeCube(CubeSnapshot snapshot) throws IOException {
+        return LeveldbConfig.binaryCubeFormat
+                ? BinaryCubeCodec.writeRecord(snapshot.encodeStorage(), snapshot.getNbt())
+                : writeUncompressedNbtBytes(snapshot.toNbt());
+    }
+
+    /**
+     * Walks the keys of both databases and rewrites the records that aren't up to date. Regular saves run on the same
+     * thread, so every record is read again right before it's rewritten to not overwrite a newer save.
+     */
+    private final class RecordUpgrade implements IThreadedFileIO {
+
+        private final IntConsumer onFinished;
+        volatile boolean stopped;
+        @Nullable private DBIterator columns;
+        @Nullable private DBIterator cubes;
+        private int upgraded;
+
+        RecordUpgrade(IntConsumer onFinished) {
+            this.onFinished = onFinished;
+        }
+
+        @Override
+        public boolean writeNextIO() {
+            try {
+                if (this.stopped) {
+                    LOGGER.info("Record upgrade for DIM{} interrupted after {} records", world.provider.getDimension(), this.upgraded);
+                    this.finish(-1);
+                    return false;
+                }
+                DB columnDb = getColumnDb();
+                if (this.columns == null) {
+                    this.columns = columnDb.iterator();
+                    this.columns.seekToFirst();
+                }
+                if (this.columns.hasNext()) {
+                    this.upgradeColumns(columnDb, this.columns);
+                    return true;
+                }
+                DB cubeDb = getCubeDb();
+                if (this.cubes == null) {
+                    this.cubes = cubeDb.iterator();
+                    this.cubes.seekToFirst();
+                }
+                if (this.cubes.hasNext()) {
+                    this.upgradeCubes(cubeDb, this.cubes);
+                    return true;
+                }
+                LOGGER.info("Upgraded {} records of DIM{}", this.upgraded, world.provider.getDimension());
+                this.finish(this.upgraded);
+            } catch (Throwable t) {
+                LOGGER.error("Exception occurred when upgrading saved records", t);
+                this.finish(-1);
+            }
+            return false;
+        }
+
+        private void upgradeColumns(DB db, DBIterator itr) throws IOException {
+            try (WriteBatch batch = db.createWriteBatch()) {
+                boolean changed = false;
+                for (int i = 0; i < UPGRADE_BATCH_SIZE && itr.hasNext(); i++) {
+                    byte[] key = itr.next().getKey();
+                    byte[] arr;
+                    // cube indices and marker keys have a different length
+                    if (key.length != 8 || (arr = db.get(key)) == null) {
+                        continue;
+                    }
+                    NBTTagCompound nbt = CompressedStreamTools.read(new ByteBufInputStream(Unpooled.wrappedBuffer(arr)), NBTSizeTracker.INFINITE);
+                    if (DataFixes.isUpToDate(nbt)) {
+                        continue;
+                    }
+                    batch.put(key, writeUncompressedNbtBytes(DataFixes.fixChunk(nbt)));
+                    changed = true;
+                    this.upgraded++;
+                }
+                if (changed) {
+                    db.write(batch, durability().writeOptions());
+                    durability().onWrite();
+                }
+            }
+        }
+
+        private void upgradeCubes(DB db, DBIterator itr) throws IOException {
+            boolean hasSkyLight = world.provider.hasSkyLight();
+            try (WriteBatch batch = db.createWriteBatch()) {
+                boolean changed = false;
+                for (int i = 0; i < UPGRADE_BATCH_SIZE && itr.hasNext(); i++) {
+                    byte[] key = itr.next().getKey();
+                    byte[] arr;
+                    if (key.length != 12 || (arr = db.get(key)) == null) {
+                        continue;
+                    }
+                    // cubes keep the format they were saved in
+                    if (BinaryCubeCodec.isBinaryRecord(arr)) {
+                        CubeRecord record = BinaryCubeCodec.readRecord(arr, Unpooled.wrappedBuffer(key).readInt());
+                        if (DataFixes.isUpToDate(record.getNbt())) {
+                            continue;
+                        }
+                        batch.put(key, BinaryCubeCodec.writeRecord(BinaryCubeCodec.encodeStorage(record.blocks, hasSkyLight),
+                                DataFixes.fixChunk(record.getNbt())));
+                    } else {
+                        NBTTagCompound nbt = CompressedStreamTools.read(new ByteBufInputStream(Unpooled.wrappedBuffer(arr)), NBTSizeTracker.INFINITE);
+                        if (DataFixes.isUpToDate(nbt)) {
+                            continue;
+                        }
+                        batch.put(key, writeUncompressedNbtBytes(DataFixes.fixChunk(nbt)));
+                    }
+                    changed = true;
+                    this.upgraded++;
+                }
+                if (changed) {
+                    db.write(batch, durability().writeOptions());
+                    durability().onWrite();
+                }
+            }
+        }
+
+        private void finish(int result) {
+            try {
+                if (this.columns != null) {
+                    this.columns.close();
+                }
+                if (this.cubes != null) {
+                    this.cubes.close();
+                }
+            } catch (IOException e) {
+                LOGGER.catching(e);
+            } finally {
+                finishRecordUpgrade();
+                this.onFinished.accept(result);
+            }
+        }
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server.chunkio;
+
+import io.github.opencubicchunks.cubicchunks.core.CubicChunks;
+import io.github.opencubicchunks.cubicchunks.core.LeveldbConfig;
+import mcp.MethodsReturnNonnullByDefault;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.WriteOptions;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Syncs writes to LevelDB databases to disk as configured by {@link LeveldbConfig#syncPolicy}.
+ * <p>
+ * LevelDB has no separate sync operation, but a synced write also makes all writes before it durable, so a sync is
+ * done by writing a marker key with {@link WriteOptions#sync(boolean)} set.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+final class LeveldbDurability {
+
+    private static final WriteOptions SYNC_WRITE = new WriteOptions().sync(true);
+    private static final WriteOptions NO_SYNC_WRITE = new WriteOptions().sync(false);
+    /**
+     * Key written to sync a database. It doesn't have the length of a column, cube or cube index key.
+     */
+    static final byte[] SYNC_MARKER_KEY = "cubicchunks:sync".getBytes(StandardCharsets.UTF_8);
+
+    private final LeveldbConfig.SyncPolicy policy;
+    private final long syncIntervalMs;
+    private final DB[] dbs;
+    private final Object stopLock = new Object();
+    private volatile boolean hasUnsyncedWrites;
+    private boolean stopped;
+    @Nullable private Thread syncThread;
+
+    LeveldbDurability(LeveldbConfig.SyncPolicy policy, long syncIntervalMs, DB... dbs) {
+        this.policy = policy;
+        this.syncIntervalMs = syncIntervalMs;
+        this.dbs = dbs;
+    }
+
+    /**
+     * Starts syncing in the background, if the policy needs it.
+     *
+     * @param threadName name of the background thread
+     */
+    void start(String threadName) {
+        if (this.policy != LeveldbConfig.SyncPolicy.SYNC_EVERY_N_MS) {
+            return;
+        }
+        Thread thread = new Thread(this::runSyncLoop, threadName);
+        thread.setDaemon(true);
+        thread.start();
+        this.syncThread = thread;
+    }
+
+    /**
+     * @return the options for writing a batch, which only syncs for {@link LeveldbConfig.SyncPolicy#SYNC_EVERY_BATCH}
+     */
+    WriteOptions writeOptions() {
+        return this.policy == LeveldbConfig.SyncPolicy.SYNC_EVERY_BATCH ? SYNC_WRITE : NO_SYNC_WRITE;
+    }
+
+    /**
+     * Must be called after every write done with {@link #writeOptions()}.
+     */
+    void onWrite() {
+        if (this.policy != LeveldbConfig.SyncPolicy.SYNC_EVERY_BATCH) {
+            this.hasUnsyncedWrites = true;
+        }
+    }
+
+    /**
+     * Syncs all writes done so far to disk, if there are any that aren't synced yet.
+     */
+    synchronized void sync() {
+        if (!this.hasUnsyncedWrites) {
+            return;
+        }
+        // cleared before writing, so that a write that happens concurrently is either synced now or by the next sync
+        this.hasUnsyncedWrites = false;
+        for (DB db : this.dbs) {
+            db.put(SYNC_MARKER_KEY, new byte[0], SYNC_WRITE);
+        }
+    }
+
+    /**
+     * Stops background syncing and syncs everything written so far. Must be called before the databases are closed.
+     */
+    void close() {
+        synchronized (this.stopLock) {
+            this.stopped = true;
+            this.stopLock.notifyAll();
+        }
+        Thread thread = this.syncThread;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.syncThread = null;
+        }
+        this.sync();
+    }
+
+    // the thread is never interrupted, an interrupt during a write can close the database files in the Java implementation
+    private void runSyncLoop() {
+        while (true) {
+            synchronized (this.stopLock) {
+                if (this.stopped) {
+                    return;
+                }
+                try {
+                    this.stopLock.wait(this.syncIntervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (this.stopped) {
+                    return;
+                }
+            }
+            try {
+                this.sync();
+            } catch (Throwable t) {
+                CubicChunks.LOGGER.error("Exception occurred when syncing saved cubes to disk", t);
+            }
+        }
+    }
+}
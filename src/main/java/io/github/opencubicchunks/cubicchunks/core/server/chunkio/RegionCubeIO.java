@@ -33,14 +33,12 @@ import io.github.opencubicchunks.cubicchunks.core.CubicChunks;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
 import net.minecraft.nbt.CompressedStreamTools;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.util.datafix.FixTypes;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldProvider;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.storage.ThreadedFileIOBase;
-import net.minecraftforge.fml.common.FMLCommonHandler;
 import org.apache.logging.log4j.Logger;
 
 import java.io.ByteArrayInputStream;
@@ -65,7 +63,7 @@ public class RegionCubeIO implements ICubeIO {
     @Nonnull private World world;
     private SaveCubeColumns save;
     @Nonnull private ConcurrentMap<ChunkPos, SaveEntry<EntryLocation2D>> columnsToSave;
-    @Nonnull private ConcurrentMap<CubePos, SaveEntry<EntryLocation3D>> cubesToSave;
+    @Nonnull private ConcurrentMap<CubePos, CubeSnapshot> cubesToSave;
 
     public RegionCubeIO(World world) throws IOException {
         this.world = world;
@@ -142,32 +140,23 @@ public class RegionCubeIO implements ICubeIO {
             if (!buf.isPresent()) {
                 return null;
             }
-            nbt = FMLCommonHandler.instance().getDataFixer().process(FixTypes.CHUNK, CompressedStreamTools.readCompressed(new ByteArrayInputStream(buf.get().array())));
+            nbt = DataFixes.fixChunk(CompressedStreamTools.readCompressed(new ByteArrayInputStream(buf.get().array())));
         }
         return IONbtReader.readColumn(world, chunkX, chunkZ, nbt);
     }
 
-    @Override @Nullable public ICubeIO.PartialCubeData loadCubeAsyncPart(Chunk column, int cubeY) throws IOException {
-        SaveCubeColumns save = this.getSave();
-        NBTTagCompound nbt;
-        SaveEntry<EntryLocation3D> saveEntry;
-        if ((saveEntry = this.cubesToSave.get(new CubePos(column.x, cubeY, column.z))) != null) {
-            nbt = saveEntry.nbt;
-        } else {
-            // does the database have the cube?
-            Optional<ByteBuffer> buf = save.load(new EntryLocation3D(column.x, cubeY, column.z), true);
-            if (!buf.isPresent()) {
-                return null;
-            }
-            nbt = FMLCommonHandler.instance().getDataFixer().process(FixTypes.CHUNK, CompressedStreamTools.readCompressed(new ByteArrayInputStream(buf.get().array())));
+    @Override @Nullable public CubeRecord loadCubeRecord(int cubeX, int cubeY, int cubeZ) throws IOException {
+        CubeSnapshot snapshot;
+        if ((snapshot = this.cubesToSave.get(new CubePos(cubeX, cubeY, cubeZ))) != null) {
+            return CubeRecord.withBlocks(snapshot.getNbt(), snapshot.createStorage());
         }
-
-        // restore the cube - async part
-        Cube cube = IONbtReader.readCubeAsyncPart(column, column.x, cubeY, column.z, nbt);
-        if (cube == null) {
+        // does the database have the cube?
+        Optional<ByteBuffer> buf = this.getSave().load(new EntryLocation3D(cubeX, cubeY, cubeZ), true);
+        if (!buf.isPresent()) {
             return null;
         }
-        return new ICubeIO.PartialCubeData(cube, nbt);
+        return CubeRecord.ofNbt(DataFixes.fixChunk(
+                CompressedStreamTools.readCompressed(new ByteArrayInputStream(buf.get().array()))));
     }
 
     @Override public void loadCubeSyncPart(ICubeIO.PartialCubeData info) {
@@ -191,8 +180,9 @@ public class RegionCubeIO implements ICubeIO {
 
     @Override public void saveCube(Cube cube) {
         // NOTE: this function blocks the world thread, so make it fast
+        // only take a snapshot here, the blocks are written to NBT on the IO thread
 
-        this.cubesToSave.put(cube.getCoords(), new SaveEntry<>(new EntryLocation3D(cube.getX(), cube.getY(), cube.getZ()), IONbtWriter.write(cube)));
+        this.cubesToSave.put(cube.getCoords(), CubeSnapshot.of(cube));
         cube.markSaved();
 
         // signal the IO thread to process the save queue
@@ -256,16 +246,17 @@ public class RegionCubeIO implements ICubeIO {
 
             boolean hasMoreColumns = colIt.hasNext();
 
-            Iterator<SaveEntry<EntryLocation3D>> cubeIt = cubesToSave.values().iterator();
+            Iterator<CubeSnapshot> cubeIt = cubesToSave.values().iterator();
             // save a batch of cubes
 
-            for (SaveEntry<EntryLocation3D> entry; cubeIt.hasNext() && numCubesSaved < CubesBatchSize; numCubesSaved++) {
+            for (CubeSnapshot entry; cubeIt.hasNext() && numCubesSaved < CubesBatchSize; numCubesSaved++) {
                 entry = cubeIt.next();
+                CubePos pos = entry.getPos();
                 try {
                     // save the cube
-                    byte[] data = IONbtWriter.writeNbtBytes(entry.nbt);
+                    byte[] data = IONbtWriter.writeNbtBytes(entry.toNbt());
                     try {
-                        save.save3d(entry.pos, ByteBuffer.wrap(data));
+                        save.save3d(new EntryLocation3D(pos.getX(), pos.getY(), pos.getZ()), ByteBuffer.wrap(data));
                     } finally {
                         //cube can be removed from toSave queue only after writing to disk
                         //to avoid race conditions
@@ -273,7 +264,7 @@ public class RegionCubeIO implements ICubeIO {
                     }
                 } catch (Throwable t) {
                     LOGGER.error(
-                            String.format("Unable to write cube %d, %d, %d", entry.pos.getEntryX(), entry.pos.getEntryY(), entry.pos.getEntryZ()), t);
+                            String.format("Unable to write cube %d, %d, %d", pos.getX(), pos.getY(), pos.getZ()), t);
                 }
             }
             boolean hasMoreCubes = cubeIt.hasNext();
@@ -64,6 +64,10 @@ class AsyncColumnIOProvider extends AsyncIOProvider<Chunk> {
         return column;
     }
 
+    QueuedColumn getColumnInfo() {
+        return this.colInfo;
+    }
+
     @Override public void run() {
         synchronized (this) {
             try {
@@ -75,5 +79,6 @@ class AsyncColumnIOProvider extends AsyncIOProvider<Chunk> {
             this.finished = true;
             this.notifyAll();
         }
+        AsyncWorldIOExecutor.onLoadFinished(this);
     }
 }
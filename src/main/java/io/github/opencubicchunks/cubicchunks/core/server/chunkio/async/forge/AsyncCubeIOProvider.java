@@ -27,18 +27,23 @@ import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraftforge.common.MinecraftForge;
-import net.minecraftforge.event.world.ChunkDataEvent;
 
-import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 /**
- * Async loading of cubes
+ * Async loading of cubes.
+ * <p>
+ * Loading is split into two stages that never wait for each other: reading the cube data (this task's {@link #run()})
+ * starts as soon as the task is executed, and creating the cube from it is chained onto both the data and the column
+ * being available. Either stage may also be run directly on the main thread by {@link #loadNow()}.
  */
 @MethodsReturnNonnullByDefault
 @ParametersAreNonnullByDefault
@@ -47,35 +52,102 @@ class AsyncCubeIOProvider extends AsyncIOProvider<Cube> {
     @Nonnull private final QueuedCube cubeInfo;
     @Nonnull private final ICubeIO loader;
 
-    @Nonnull private CompletableFuture<Chunk> futureColumn = new CompletableFuture<>();
+    @Nonnull private final CompletableFuture<ICubeIO.CubeRecord> futureRecord = new CompletableFuture<>();
+    @Nonnull private final CompletableFuture<Chunk> futureColumn = new CompletableFuture<>();
+    @Nonnull private final CompletableFuture<ICubeIO.PartialCubeData> futureCube = new CompletableFuture<>();
+    // each stage is run by whichever thread claims it first, the other one only waits for the result if needed
+    private final AtomicBoolean readClaimed = new AtomicBoolean();
+    private final AtomicBoolean createClaimed = new AtomicBoolean();
     @Nullable private ICubeIO.PartialCubeData cubeData;
+    /**
+     * Passed to the column load this task waits for, the same instance is needed to drop it again.
+     */
+    final Consumer<Chunk> columnCallback = this::setColumn;
 
-    AsyncCubeIOProvider(QueuedCube cube, ICubeIO loader) {
+    AsyncCubeIOProvider(QueuedCube cube, ICubeIO loader, Executor executor) {
         this.cubeInfo = cube;
         this.loader = loader;
+        this.futureRecord.thenAcceptBoth(this.futureColumn, (record, column) -> {
+            // this runs on the thread that provided the last dependency, don't create the cube on the main thread
+            if (AsyncWorldIOExecutor.isIOThread()) {
+                this.createCube();
+            } else {
+                executor.execute(this::createCube);
+            }
+        });
+        this.futureCube.whenComplete((data, t) -> {
+            synchronized (this) {
+                this.finished = true;
+                this.notifyAll();
+            }
+            AsyncWorldIOExecutor.onLoadFinished(this);
+        });
     }
 
+    /**
+     * Reads the cube data, unless it has already been claimed by another thread.
+     */
     @Override
-    public synchronized void run() {
+    public void run() {
+        if (!this.readClaimed.compareAndSet(false, true)) {
+            return;
+        }
         try {
-            cubeData = this.loader.loadCubeAsyncPart(futureColumn.get(), this.cubeInfo.y);
-        } catch (IOException e) {
+            this.futureRecord.complete(this.loader.loadCubeRecord(this.cubeInfo.x, this.cubeInfo.y, this.cubeInfo.z));
+        } catch (Throwable t) {
             CubicChunks.LOGGER
-                    .error("Could not load cube in {} @ ({}, {}, {})", this.cubeInfo.world, this.cubeInfo.x, this.cubeInfo.y, this.cubeInfo.z, e);
-        } catch (InterruptedException e) {
-            throw new Error(e);
-        } catch (ExecutionException e) {
-            throw new RuntimeException(e);
-        } finally {
-            this.finished = true;
-            this.notifyAll();
+                    .error("Could not load cube in {} @ ({}, {}, {})", this.cubeInfo.world, this.cubeInfo.x, this.cubeInfo.y, this.cubeInfo.z, t);
+            this.futureRecord.complete(null);
+        }
+    }
+
+    /**
+     * Creates the cube once both the data and the column are available, unless it has already been claimed by
+     * another thread.
+     */
+    private void createCube() {
+        if (!this.createClaimed.compareAndSet(false, true)) {
+            return;
+        }
+        ICubeIO.CubeRecord record = this.futureRecord.getNow(null);
+        Chunk column = this.futureColumn.getNow(null);
+        try {
+            this.futureCube.complete(record == null || column == null ? null : this.loader.loadCubeAsyncPart(column, this.cubeInfo.y, record));
+        } catch (Throwable t) {
+            CubicChunks.LOGGER
+                    .error("Could not load cube in {} @ ({}, {}, {})", this.cubeInfo.world, this.cubeInfo.x, this.cubeInfo.y, this.cubeInfo.z, t);
+            this.futureCube.complete(null);
+        }
+    }
+
+    /**
+     * Finishes the async part of loading in the current thread. Only waits for stages that are already running on
+     * another thread. The column must have been set before.
+     */
+    void loadNow() {
+        if (!this.futureColumn.isDone()) {
+            throw new IllegalStateException("Column of " + this.cubeInfo + " is not set");
         }
+        this.run();
+        this.futureRecord.join();
+        this.createCube();
+        this.futureCube.join();
+    }
+
+    @Override
+    boolean isFinished() {
+        return this.futureCube.isDone();
     }
 
     // sync stuff
     @Override
     public void runSynchronousPart() {
-
+        try {
+            this.cubeData = this.futureCube.join();
+        } catch (CompletionException e) {
+            CubicChunks.LOGGER
+                    .error("Could not load cube in {} @ ({}, {}, {})", this.cubeInfo.world, this.cubeInfo.x, this.cubeInfo.y, this.cubeInfo.z, e);
+        }
         if (cubeData != null) {
             this.loader.loadCubeSyncPart(cubeData);
             assert cubeData != null;
@@ -95,7 +167,15 @@ class AsyncCubeIOProvider extends AsyncIOProvider<Cube> {
         return cubeData == null ? null : cubeData.getCube();
     }
 
+    QueuedCube getCubeInfo() {
+        return this.cubeInfo;
+    }
+
     public void setColumn(@Nullable Chunk chunk) {
         this.futureColumn.complete(chunk);
     }
+
+    boolean hasColumn() {
+        return this.futureColumn.isDone();
+    }
 }
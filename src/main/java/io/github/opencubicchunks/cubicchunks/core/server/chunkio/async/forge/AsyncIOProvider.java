@@ -37,6 +37,11 @@ abstract class AsyncIOProvider<T> implements Runnable {
 
     private final ConcurrentLinkedQueue<Consumer<T>> callbacks = new ConcurrentLinkedQueue<>();
     volatile boolean finished = false;
+    /**
+     * Position of this task in the I/O queue, lower values are loaded first, see {@link PrioritizedTaskQueue}. Only
+     * changed while the task isn't queued.
+     */
+    double priority = Double.MAX_VALUE;
 
     /**
      * Add a callback to this access group, to be executed when the load finishes
@@ -23,16 +23,24 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
 import io.github.opencubicchunks.cubicchunks.api.world.ICubeProviderServer;
 import io.github.opencubicchunks.cubicchunks.core.CubicChunks;
+import io.github.opencubicchunks.cubicchunks.core.CubicChunksConfig;
 import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
 import io.github.opencubicchunks.cubicchunks.core.server.CubeProviderServer;
+import io.github.opencubicchunks.cubicchunks.core.server.PlayerCubeMap;
 import io.github.opencubicchunks.cubicchunks.core.server.chunkio.ICubeIO;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
 import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.management.PlayerChunkMap;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.PlayerEvent;
@@ -41,10 +49,10 @@ import net.minecraftforge.fml.common.gameevent.TickEvent;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
-import java.util.Iterator;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -61,31 +69,45 @@ public class AsyncWorldIOExecutor {
 
     private static final int BASE_THREADS = 1;
     private static final int PLAYERS_PER_THREAD = 50;
+    /**
+     * How often queued loads are reordered by the current player positions.
+     */
+    private static final long REPRIORITIZE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
 
     private static final Map<QueuedCube, AsyncCubeIOProvider> cubeTasks = new ConcurrentHashMap<>(20000, 0.8f, 1);
     private static final Map<QueuedColumn, AsyncColumnIOProvider> columnTasks = Maps.newConcurrentMap();
+    // loads are added by the thread that finished them and removed on the main thread
+    private static final Queue<AsyncIOProvider<?>> finishedTasks = new ConcurrentLinkedQueue<>();
+    // metrics, only written on the main thread
+    private static volatile long lastTickSyncNanos;
+    private static volatile long totalSyncNanos;
+    private static volatile long totalSyncParts;
 
     private static final AtomicInteger threadCounter = new AtomicInteger();
+    private static final PrioritizedTaskQueue cubeQueue = new PrioritizedTaskQueue();
+    private static final PrioritizedTaskQueue columnQueue = new PrioritizedTaskQueue();
+    private static long lastReprioritizeTime = System.nanoTime();
+
     private static final ThreadPoolExecutor cubeThreadPool = new ThreadPoolExecutor(BASE_THREADS, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(),
+            cubeQueue,
 
             // Sponge start: Use lambda
             r -> {
-                Thread thread = new Thread(r, "Cube I/O Thread #" + threadCounter.incrementAndGet());
+                Thread thread = new IOThread(r, "Cube I/O Thread #" + threadCounter.incrementAndGet());
                 thread.setDaemon(true);
                 return thread;
             }
             // Sponge end
     );
 
-    // use separate thread pool for cubes and columns to avoid situation where only cube tasks are being executed
-    // all waiting for their columns
+    // use separate thread pool for cubes and columns so that column loads don't have to wait behind a lot of cube loads,
+    // cube tasks themselves never wait for their column, the column dependent part is chained onto the column load
     private static final ThreadPoolExecutor columnThreadPool = new ThreadPoolExecutor(BASE_THREADS, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(),
+            columnQueue,
 
             // Sponge start: Use lambda
             r -> {
-                Thread thread = new Thread(r, "Column I/O Thread #" + threadCounter.incrementAndGet());
+                Thread thread = new IOThread(r, "Column I/O Thread #" + threadCounter.incrementAndGet());
                 thread.setDaemon(true);
                 return thread;
             }
@@ -115,12 +137,13 @@ public class AsyncWorldIOExecutor {
         QueuedCube key = new QueuedCube(cubeX, cubeY, cubeZ, world);
         AsyncCubeIOProvider task = cubeTasks.remove(key); // Remove task because we will call the sync callbacks directly
         if (task != null) {
-            runTask(task);
+            cubeThreadPool.remove(task); // If it's still queued, it will be run in this thread instead
+            loadingCubesColumnMap.remove(new QueuedColumn(cubeX, cubeZ, world), key);
         } else {
-            task = new AsyncCubeIOProvider(key, loader);
-            task.setColumn(column);
-            task.run();
+            task = new AsyncCubeIOProvider(key, loader, cubeThreadPool);
         }
+        task.setColumn(column);
+        task.loadNow();
         task.runSynchronousPart();
         return task.get();
     }
@@ -148,13 +171,6 @@ public class AsyncWorldIOExecutor {
         return task.get();
     }
 
-    /**
-     * Runs the async part in current thread or blocks until already running async part is finished
-     */
-    private static void runTask(AsyncCubeIOProvider task) {
-        runTask(cubeThreadPool, task);
-    }
-
     /**
      * Runs the async part in current thread or blocks until already running async part is finished
      */
@@ -213,9 +229,9 @@ public class AsyncWorldIOExecutor {
         loadingCubesColumnMap.put(columnKey, key);
 
         if (task == null) {
-            task = new AsyncCubeIOProvider(key, loader);
+            task = new AsyncCubeIOProvider(key, loader, cubeThreadPool);
             task.addCallback(runnable); // Add before calling execute for thread safety
-            task.addCallback(c -> loadingCubesColumnMap.remove(columnKey, key));// add only the first time
+            task.priority = initialPriority(world, new CubePos(x, y, z));
             cubeTasks.put(key, task);
             cubeThreadPool.execute(task);
         } else {
@@ -224,7 +240,7 @@ public class AsyncWorldIOExecutor {
 
         Chunk loadedIColumn;
         if ((loadedIColumn = cache.getLoadedColumn(x, z)) == null) {
-            cache.asyncGetColumn(x, z, ICubeProviderServer.Requirement.LIGHT, task::setColumn);
+            cache.asyncGetColumn(x, z, ICubeProviderServer.Requirement.LIGHT, task.columnCallback);
         } else {
             //it's already there, tell the task to use it
             task.setColumn(loadedIColumn);
@@ -247,6 +263,7 @@ public class AsyncWorldIOExecutor {
         if (task == null) {
             task = new AsyncColumnIOProvider(key, loader, ((ICubicWorldInternal.Server) world).getCubeCache().getCubeGenerator());
             task.addCallback(runnable); // Add before calling execute for thread safety
+            task.priority = initialPriority(world, new ChunkPos(x, z));
             columnTasks.put(key, task);
             columnThreadPool.execute(task);
         } else {
@@ -275,8 +292,20 @@ public class AsyncWorldIOExecutor {
 
         // TODO this is not threadsafe
         if (!task.hasCallbacks()) {
-            cubeTasks.remove(key);
             cubeThreadPool.remove(task);
+            cancelCubeTask(key, task);
+        }
+    }
+
+    /**
+     * Forgets a cube load that won't be finished anymore. If it still waits for its column, the column load is given up
+     * too, so that it's cancelled once nothing else needs that column.
+     */
+    private static void cancelCubeTask(QueuedCube key, AsyncCubeIOProvider task) {
+        cubeTasks.remove(key, task);
+        loadingCubesColumnMap.remove(new QueuedColumn(key.x, key.z, key.world), key);
+        if (!task.hasColumn()) {
+            ((ICubicWorldInternal.Server) key.world).getCubeCache().dropAsyncGetColumn(key.x, key.z, task.columnCallback);
         }
     }
 
@@ -307,28 +336,183 @@ public class AsyncWorldIOExecutor {
     }
 
     /**
-     * Run a synchronous tick, finishing the loading process for load tasks that are ready
+     * Priority of a new cube load. The watcher requesting it may not be registered yet, so if there is none, the distance
+     * to the closest player in the world is used.
      */
-    public static void tick() {
-        Iterator<AsyncCubeIOProvider> cubeItr = cubeTasks.values().iterator();
-        while (cubeItr.hasNext()) {
-            AsyncCubeIOProvider task = cubeItr.next();
-            if (task.isFinished()) {
-                task.runSynchronousPart();
+    private static double initialPriority(World world, CubePos pos) {
+        PlayerCubeMap playerCubeMap = getPlayerCubeMap(world);
+        if (playerCubeMap == null) {
+            return Double.MAX_VALUE;
+        }
+        double distance = playerCubeMap.getClosestWatchingPlayerDistance(pos);
+        if (distance == Double.POSITIVE_INFINITY) {
+            distance = getClosestPlayerDistance(world, pos.getXCenter(), pos.getYCenter(), pos.getZCenter());
+        }
+        return distance;
+    }
+
+    private static double initialPriority(World world, ChunkPos pos) {
+        PlayerCubeMap playerCubeMap = getPlayerCubeMap(world);
+        if (playerCubeMap == null) {
+            return Double.MAX_VALUE;
+        }
+        double distance = playerCubeMap.getClosestWatchingPlayerDistance(pos);
+        if (distance == Double.POSITIVE_INFINITY) {
+            distance = getClosestPlayerDistance(world, pos.getXStart() + 8, Double.NaN, pos.getZStart() + 8);
+        }
+        return distance;
+    }
+
+    /**
+     * @param y the y coordinate, or NaN for the horizontal distance
+     */
+    private static double getClosestPlayerDistance(World world, double x, double y, double z) {
+        double min = Double.MAX_VALUE;
+        for (EntityPlayer player : world.playerEntities) {
+            double dx = x - player.posX;
+            double dy = Double.isNaN(y) ? 0 : y - player.posY;
+            double dz = z - player.posZ;
+            min = Math.min(min, dx * dx + dy * dy + dz * dz);
+        }
+        return min;
+    }
+
+    private static boolean isPopulationWaitingFor(World world, CubePos pos) {
+        return world instanceof ICubicWorldInternal.Server
+                && ((ICubicWorldInternal.Server) world).getCubeCache().isPopulationWaitingFor(pos);
+    }
 
-                cubeItr.remove();
+    @Nullable
+    private static PlayerCubeMap getPlayerCubeMap(World world) {
+        if (!(world instanceof WorldServer)) {
+            return null;
+        }
+        PlayerChunkMap playerChunkMap = ((WorldServer) world).getPlayerChunkMap();
+        return playerChunkMap instanceof PlayerCubeMap ? (PlayerCubeMap) playerChunkMap : null;
+    }
+
+    /**
+     * Reorders queued loads by the distance to the closest player watching them. Loads nobody watches are cancelled
+     * only if no callback waits for them anymore, loads requested by something else than a watcher keep their priority.
+     * Column loads are also kept as long as a queued cube load depends on them, and go no later than the closest of
+     * these cubes.
+     */
+    private static void reprioritize() {
+        int cancelled = cubeQueue.reprioritize(task -> {
+            QueuedCube key = ((AsyncCubeIOProvider) task).getCubeInfo();
+            PlayerCubeMap playerCubeMap = getPlayerCubeMap(key.world);
+            if (playerCubeMap == null) {
+                return task.priority;
             }
+            CubePos pos = new CubePos(key.x, key.y, key.z);
+            double distance = playerCubeMap.getClosestWatchingPlayerDistance(pos);
+            if (distance == Double.POSITIVE_INFINITY && isPopulationWaitingFor(key.world, pos)) {
+                // a neighbor of a watched cube needed to populate it
+                distance = getClosestPlayerDistance(key.world, pos.getXCenter(), pos.getYCenter(), pos.getZCenter());
+            }
+            if (distance == Double.POSITIVE_INFINITY) {
+                if (task.hasCallbacks()) {
+                    return task.priority;
+                }
+                cancelCubeTask(key, (AsyncCubeIOProvider) task);
+                return PrioritizedTaskQueue.CANCELLED;
+            }
+            return distance;
+        });
+        cancelled += columnQueue.reprioritize(task -> {
+            QueuedColumn key = ((AsyncColumnIOProvider) task).getColumnInfo();
+            PlayerCubeMap playerCubeMap = getPlayerCubeMap(key.world);
+            if (playerCubeMap == null) {
+                return task.priority;
+            }
+            double distance = playerCubeMap.getClosestWatchingPlayerDistance(new ChunkPos(key.x, key.z));
+            boolean needed = distance != Double.POSITIVE_INFINITY || task.hasCallbacks();
+            for (QueuedCube cube : loadingCubesColumnMap.get(key)) {
+                AsyncCubeIOProvider cubeTask = cubeTasks.get(cube);
+                if (cubeTask != null) {
+                    distance = Math.min(distance, cubeTask.priority);
+                }
+                needed = true;
+            }
+            if (!needed) {
+                columnTasks.remove(key, task);
+                return PrioritizedTaskQueue.CANCELLED;
+            }
+            return distance == Double.POSITIVE_INFINITY ? task.priority : distance;
+        });
+        if (cancelled > 0) {
+            CubicChunks.LOGGER.debug("Cancelled {} queued loads that are no longer watched", cancelled);
         }
+    }
 
-        Iterator<AsyncColumnIOProvider> columnIter = columnTasks.values().iterator();
-        while (columnIter.hasNext()) {
-            AsyncColumnIOProvider task = columnIter.next();
-            if (task.isFinished()) {
-                task.runSynchronousPart();
+    /**
+     * Called by a load task once its async part is done, from whichever thread finished it.
+     */
+    static void onLoadFinished(AsyncIOProvider<?> task) {
+        finishedTasks.add(task);
+    }
 
-                columnIter.remove();
+    /**
+     * Run a synchronous tick, finishing the loading process for load tasks that are ready, in all worlds. Called once
+     * per server tick. Stops after {@link CubicChunksConfig#asyncLoadMaxTimePerTick}, the remaining loads are finished
+     * in the next tick.
+     */
+    public static void tick() {
+        long startTime = System.nanoTime();
+        if (startTime - lastReprioritizeTime > REPRIORITIZE_INTERVAL_NANOS) {
+            lastReprioritizeTime = startTime;
+            reprioritize();
+        }
+        long syncStartTime = System.nanoTime();
+        long deadline = syncStartTime + TimeUnit.MILLISECONDS.toNanos(CubicChunksConfig.asyncLoadMaxTimePerTick);
+        long time = syncStartTime;
+        AsyncIOProvider<?> task;
+        while ((task = finishedTasks.poll()) != null) {
+            // tasks loaded synchronously or dropped in the meantime are no longer in the maps
+            if (task instanceof AsyncCubeIOProvider) {
+                QueuedCube key = ((AsyncCubeIOProvider) task).getCubeInfo();
+                if (cubeTasks.get(key) == task) {
+                    task.runSynchronousPart();
+                    cubeTasks.remove(key, task);
+                    loadingCubesColumnMap.remove(new QueuedColumn(key.x, key.z, key.world), key);
+                    totalSyncParts++;
+                }
+            } else {
+                QueuedColumn key = ((AsyncColumnIOProvider) task).getColumnInfo();
+                if (columnTasks.get(key) == task) {
+                    task.runSynchronousPart();
+                    columnTasks.remove(key, task);
+                    totalSyncParts++;
+                }
+            }
+            time = System.nanoTime();
+            if (time >= deadline) {
+                break;
             }
         }
+        lastTickSyncNanos = time - syncStartTime;
+        totalSyncNanos += lastTickSyncNanos;
+    }
+
+    /**
+     * @return the number of loads that are done in the background and wait for their main thread part
+     */
+    public static int getFinishedLoadCount() {
+        return finishedTasks.size();
+    }
+
+    /**
+     * @return the time spent finishing loads on the main thread in the last tick, in nanoseconds
+     */
+    public static long getLastTickSyncTime() {
+        return lastTickSyncNanos;
+    }
+
+    /**
+     * @return the average time spent finishing one load on the main thread, in nanoseconds
+     */
+    public static long getAverageSyncTime() {
+        return totalSyncParts == 0 ? 0 : totalSyncNanos / totalSyncParts;
     }
 
     /**
@@ -344,6 +528,10 @@ public class AsyncWorldIOExecutor {
         return !loadingCubesColumnMap.containsKey(new QueuedColumn(x, z, world));
     }
 
+    static boolean isIOThread() {
+        return Thread.currentThread() instanceof IOThread;
+    }
+
     // Resize thread pool based on player count
     @SubscribeEvent
     public static void onPlayerLoggedIn(@Nonnull PlayerEvent.PlayerLoggedInEvent evt) {
@@ -361,11 +549,21 @@ public class AsyncWorldIOExecutor {
         }
     }
 
-    // Sync completion of loading
+    // Sync completion of loading, the queue is shared by all worlds so it's done once per server tick and not per world
     @SubscribeEvent
-    public static void onWorldTick(TickEvent.WorldTickEvent evt) {
+    public static void onServerTick(TickEvent.ServerTickEvent evt) {
         if (evt.phase == TickEvent.Phase.END) {
+            MinecraftServer server = FMLCommonHandler.instance().getMinecraftServerInstance();
+            server.profiler.startSection("cubicChunksAsyncLoads");
             tick();
+            server.profiler.endSection();
+        }
+    }
+
+    private static final class IOThread extends Thread {
+
+        IOThread(Runnable target, String name) {
+            super(target, name);
         }
     }
 }
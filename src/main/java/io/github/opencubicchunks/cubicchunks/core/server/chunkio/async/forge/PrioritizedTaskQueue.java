@@ -0,0 +1,90 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server.chunkio.async.forge;
+
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.function.ToDoubleFunction;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Work queue of the I/O thread pools. Loads are ordered by {@link AsyncIOProvider#priority}, the distance to the closest
+ * player, so that when a player moves fast, cubes close to them don't wait behind cubes they already left behind.
+ * <p>
+ * Other tasks, which continue a load that has already been started, always go first.
+ */
+@MethodsReturnNonnullByDefault
+@ParametersAreNonnullByDefault
+class PrioritizedTaskQueue extends PriorityBlockingQueue<Runnable> {
+
+    /**
+     * Priority returned by the function passed to {@link #reprioritize} for tasks that aren't needed anymore.
+     */
+    static final double CANCELLED = Double.NaN;
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Comparator<Runnable> ORDER = Comparator.comparingDouble(PrioritizedTaskQueue::priorityOf);
+
+    PrioritizedTaskQueue() {
+        super(64, ORDER);
+    }
+
+    private static double priorityOf(Runnable task) {
+        return task instanceof AsyncIOProvider ? ((AsyncIOProvider<?>) task).priority : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Updates the priority of all queued loads. Loads taken by an I/O thread in the meantime are not affected.
+     *
+     * @param priority gives the new priority of a load, or {@link #CANCELLED} to remove it from the queue
+     * @return the number of cancelled loads
+     */
+    int reprioritize(ToDoubleFunction<AsyncIOProvider<?>> priority) {
+        List<Runnable> tasks = new ArrayList<>(this.size());
+        this.drainTo(tasks);
+        List<Runnable> kept = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            if (!(task instanceof AsyncIOProvider)) {
+                kept.add(task);
+                continue;
+            }
+            AsyncIOProvider<?> load = (AsyncIOProvider<?>) task;
+            double newPriority = priority.applyAsDouble(load);
+            if (Double.isNaN(newPriority)) {
+                continue;
+            }
+            load.priority = newPriority;
+            kept.add(load);
+        }
+        this.addAll(kept);
+        return tasks.size() - kept.size();
+    }
+}
@@ -32,6 +32,7 @@ import io.github.opencubicchunks.cubicchunks.core.lighting.ILightBlockAccess;
 import io.github.opencubicchunks.cubicchunks.core.server.CubeProviderServer;
 import io.github.opencubicchunks.cubicchunks.core.world.ICubeProviderInternal;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.UniformCubeStorage;
 import io.github.opencubicchunks.cubicchunks.api.util.Coords;
 import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
 import io.github.opencubicchunks.cubicchunks.api.world.ICubeProvider;
@@ -67,6 +68,8 @@ public class FastCubeBlockAccess implements ILightBlockAccess {
     private final int originX, originY, originZ;
     private final int dx, dy, dz;
     @Nonnull private final World world;
+    // only used for calling block state methods that need a position, so that light propagation doesn't allocate
+    @Nonnull private final BlockPos.MutableBlockPos mutablePos = new BlockPos.MutableBlockPos();
 
     public FastCubeBlockAccess(ICubeProviderInternal cache, ICube cube, int radius) {
         this(cube.getWorld(), cache,
@@ -139,30 +142,31 @@ public class FastCubeBlockAccess implements ILightBlockAccess {
         return this.cubes[cubeX][cubeY][cubeZ];
     }
 
-    private IBlockState getBlockState(BlockPos pos) {
-        return this.getBlockState(pos.getX(), pos.getY(), pos.getZ());
-    }
-
     private IBlockState getBlockState(int blockX, int blockY, int blockZ) {
         ExtendedBlockStorage ebs = this.getStorage(blockX, blockY, blockZ);
         if (ebs != null) {
             return ebs.get(blockToLocal(blockX), blockToLocal(blockY), blockToLocal(blockZ));
         }
+        Cube cube = getCube(blockX, blockY, blockZ);
+        IBlockState uniformBlock = cube == null ? null : cube.getUniformBlock();
+        if (uniformBlock != null) {
+            return uniformBlock;
+        }
         return Blocks.AIR.getDefaultState();
     }
 
     @Override
-    public int getBlockLightOpacity(BlockPos pos) {
-        return this.getBlockState(pos.getX(), pos.getY(), pos.getZ()).getLightOpacity((World) world, pos);
+    public int getBlockLightOpacity(int blockX, int blockY, int blockZ) {
+        return this.getBlockState(blockX, blockY, blockZ).getLightOpacity((World) world, mutablePos.setPos(blockX, blockY, blockZ));
     }
 
     @Override 
-    public int getLightFor(EnumSkyBlock lightType, BlockPos pos) {
-        ExtendedBlockStorage ebs = this.getStorage(pos.getX(), pos.getY(), pos.getZ());
+    public int getLightFor(EnumSkyBlock lightType, int blockX, int blockY, int blockZ) {
+        ExtendedBlockStorage ebs = this.getStorage(blockX, blockY, blockZ);
         if (ebs != null) {
-            int localX = blockToLocal(pos.getX());
-            int localY = blockToLocal(pos.getY());
-            int localZ = blockToLocal(pos.getZ());
+            int localX = blockToLocal(blockX);
+            int localY = blockToLocal(blockY);
+            int localZ = blockToLocal(blockZ);
 
             if (lightType == EnumSkyBlock.SKY) {
                 return ebs.getSkyLight(localX, localY, localZ);
@@ -170,16 +174,24 @@ public class FastCubeBlockAccess implements ILightBlockAccess {
                 return ebs.getBlockLight(localX, localY, localZ);
             }
         }
+        Cube cube = getCube(blockX, blockY, blockZ);
+        UniformCubeStorage uniform = cube == null ? null : cube.getUniformStorage();
+        if (uniform != null) {
+            return uniform.getLightFor(lightType);
+        }
+        if (cube != null && cube.getUniformBlock() != null) {
+            return 0;
+        }
         return lightType.defaultLightValue;
     }
 
     @Override 
-    public boolean setLightFor(EnumSkyBlock lightType, BlockPos pos, int val) {
-        ExtendedBlockStorage ebs = this.getStorage(pos.getX(), pos.getY(), pos.getZ());
+    public boolean setLightFor(EnumSkyBlock lightType, int blockX, int blockY, int blockZ, int val) {
+        ExtendedBlockStorage ebs = this.getStorage(blockX, blockY, blockZ);
         if (ebs != null) {
-            int localX = blockToLocal(pos.getX());
-            int localY = blockToLocal(pos.getY());
-            int localZ = blockToLocal(pos.getZ());
+            int localX = blockToLocal(blockX);
+            int localY = blockToLocal(blockY);
+            int localZ = blockToLocal(blockZ);
 
             if (lightType == EnumSkyBlock.SKY) {
                 ebs.setSkyLight(localX, localY, localZ, val);
@@ -188,19 +200,16 @@ public class FastCubeBlockAccess implements ILightBlockAccess {
             }
             return true;
         }
-        Cube cube = getCube(pos.getX(), pos.getY(), pos.getZ());
+        Cube cube = getCube(blockX, blockY, blockZ);
         if (cube != null) {
-            cube.setLightFor(lightType, pos, val);
-            setStorage(pos.getX(), pos.getY(), pos.getZ(), cube.getStorage());
+            cube.setLightFor(lightType, new BlockPos(blockX, blockY, blockZ), val);
+            setStorage(blockX, blockY, blockZ, cube.getStorage());
             return true;
         }
         return false;
     }
 
-    @Override public boolean canSeeSky(BlockPos pos) {
-        int blockX = pos.getX();
-        int blockY = pos.getY();
-        int blockZ = pos.getZ();
+    @Override public boolean canSeeSky(int blockX, int blockY, int blockZ) {
         int cubeX = Coords.blockToCube(blockX);
         int cubeZ = Coords.blockToCube(blockZ);
         if (cubeX < originX || cubeZ < originZ)
@@ -216,12 +225,12 @@ public class FastCubeBlockAccess implements ILightBlockAccess {
         return height <= blockY;
     }
 
-    @Override public int getEmittedLight(BlockPos pos, EnumSkyBlock type) {
+    @Override public int getEmittedLight(int blockX, int blockY, int blockZ, EnumSkyBlock type) {
         switch (type) {
             case BLOCK:
-                return getBlockState(pos).getLightValue((IBlockAccess) world, pos);
+                return getBlockState(blockX, blockY, blockZ).getLightValue((IBlockAccess) world, mutablePos.setPos(blockX, blockY, blockZ));
             case SKY:
-                return canSeeSky(pos) ? 15 : 0;
+                return canSeeSky(blockX, blockY, blockZ) ? 15 : 0;
             default:
                 throw new AssertionError();
         }
@@ -261,12 +270,9 @@ public class FastCubeBlockAccess implements ILightBlockAccess {
     }
 
     @Override
-    public void markEdgeNeedLightUpdate(BlockPos pos, EnumSkyBlock type) {
+    public void markEdgeNeedLightUpdate(int x, int y, int z, EnumSkyBlock type) {
         if (type == EnumSkyBlock.BLOCK)
             return;
-        int x = pos.getX();
-        int y = pos.getY();
-        int z = pos.getZ();
         Cube cube = this.getCube(x, y, z);
         if (cube == null)
             return;
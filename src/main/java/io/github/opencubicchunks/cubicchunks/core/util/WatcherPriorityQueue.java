@@ -0,0 +1,338 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.util;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Queue of watchers ordered by priority buckets. Unlike a sorted list, it doesn't need to sort all elements when
+ * priorities change. Elements with lower priority values come first, elements in the same bucket
+ * are in the order they were added.
+ * <p>
+ * The priority of an element is computed when it's added, and again only when {@link #updatePriority},
+ * {@link #updateDirtyPriorities()} or {@link #updateAllPriorities()} is called, so the owner has to call these when
+ * something the priority depends on changes.
+ * <p>
+ * Elements may be added, removed and moved between buckets while iterating. Removed elements are never returned by an
+ * iterator, elements added or moved behind the current position of an iterator may or may not be returned by it.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+@SuppressWarnings("unchecked")
+public class WatcherPriorityQueue<T> implements Iterable<T> {
+
+    private final ToIntFunction<T> priority;
+    private final Node<T>[] heads;
+    private final Node<T>[] tails;
+    private final Object2ObjectOpenHashMap<T, Node<T>> nodes = new Object2ObjectOpenHashMap<>();
+    private final ArrayList<Node<T>> dirty = new ArrayList<>();
+    /**
+     * Set when most elements are marked dirty, it's then faster to update all of them without tracking which ones are
+     */
+    private boolean allDirty;
+
+    /**
+     * @param priority the priority of an element, values outside of {@code [0, maxPriority]} are clamped
+     * @param maxPriority the highest priority value, which is also the number of buckets minus one
+     */
+    public WatcherPriorityQueue(ToIntFunction<T> priority, int maxPriority) {
+        this.priority = priority;
+        this.heads = new Node[maxPriority + 1];
+        this.tails = new Node[maxPriority + 1];
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * @param element element to check
+     * @return {@code true} if this queue contains the element.
+     */
+    public boolean contains(T element) {
+        return nodes.containsKey(element);
+    }
+
+    /**
+     * Adds an element before all other elements of its bucket.
+     *
+     * @param element element to add
+     * @throws NullPointerException in attempt to add {@code null}.
+     * @throws IllegalArgumentException if this queue already contains the element.
+     */
+    public void appendToStart(T element) {
+        add(element, true);
+    }
+
+    /**
+     * Adds an element after all other elements of its bucket.
+     *
+     * @param element element to add
+     * @throws NullPointerException in attempt to add {@code null}.
+     * @throws IllegalArgumentException if this queue already contains the element.
+     */
+    public void appendToEnd(T element) {
+        add(element, false);
+    }
+
+    private void add(T element, boolean first) {
+        if (element == null) {
+            throw new NullPointerException("This queue does not allow null elements.");
+        }
+        if (nodes.containsKey(element)) {
+            throw new IllegalArgumentException("Element " + element + " is already in this queue");
+        }
+        nodes.put(element, link(element, bucketOf(element), first));
+    }
+
+    /**
+     * Removes an element if this queue contains it.
+     *
+     * @param element element to remove
+     */
+    public void remove(T element) {
+        Node<T> node = nodes.remove(element);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * Removes all elements matching the predicate.
+     *
+     * @param predicate a predicate matching elements to remove
+     */
+    public void removeIf(Predicate<T> predicate) {
+        for (Iterator<T> it = iterator(); it.hasNext(); ) {
+            if (predicate.test(it.next())) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Moves an element to the bucket of its current priority, if this queue contains it. Elements that stay in the same
+     * bucket keep their position.
+     *
+     * @param element the element
+     */
+    public void updatePriority(T element) {
+        Node<T> node = nodes.get(element);
+        if (node != null) {
+            updatePriority(node);
+        }
+    }
+
+    private void updatePriority(Node<T> node) {
+        int bucket = bucketOf(node.value);
+        if (bucket != node.bucket) {
+            unlink(node);
+            // a new node, iterators currently at the old one continue in the old bucket
+            nodes.put(node.value, link(node.value, bucket, false));
+        }
+    }
+
+    /**
+     * Marks the priority of an element as changed, if this queue contains it. Unlike {@link #updatePriority}, the
+     * priority is computed only once in {@link #updateDirtyPriorities()}, no matter how many times this is called.
+     *
+     * @param element the element
+     */
+    public void markDirty(T element) {
+        if (allDirty) {
+            return;
+        }
+        Node<T> node = nodes.get(element);
+        if (node != null && !node.dirty) {
+            node.dirty = true;
+            dirty.add(node);
+            allDirty = dirty.size() > nodes.size() / 2;
+        }
+    }
+
+    /**
+     * Moves all elements marked by {@link #markDirty} to the bucket of their current priority.
+     */
+    public void updateDirtyPriorities() {
+        if (allDirty) {
+            updateAllPriorities();
+            return;
+        }
+        for (Node<T> node : dirty) {
+            node.dirty = false;
+            if (!node.removed) {
+                updatePriority(node);
+            }
+        }
+        dirty.clear();
+    }
+
+    /**
+     * Computes the priority of all elements again.
+     */
+    public void updateAllPriorities() {
+        for (Node<T> node : nodes.values().toArray(new Node[0])) {
+            node.dirty = false;
+            updatePriority(node);
+        }
+        dirty.clear();
+        allDirty = false;
+    }
+
+    private int bucketOf(T element) {
+        int p = priority.applyAsInt(element);
+        return p < 0 ? 0 : Math.min(p, heads.length - 1);
+    }
+
+    private Node<T> link(T element, int bucket, boolean first) {
+        Node<T> node = new Node<>(element, bucket);
+        if (heads[bucket] == null) {
+            heads[bucket] = tails[bucket] = node;
+        } else if (first) {
+            node.next = heads[bucket];
+            heads[bucket].prev = node;
+            heads[bucket] = node;
+        } else {
+            node.prev = tails[bucket];
+            tails[bucket].next = node;
+            tails[bucket] = node;
+        }
+        return node;
+    }
+
+    /**
+     * Removes a node from its bucket. Its next pointer is kept, so that iterators at this node can continue.
+     */
+    private void unlink(Node<T> node) {
+        node.removed = true;
+        int bucket = node.bucket;
+        if (node.prev == null) {
+            heads[bucket] = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tails[bucket] = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+    }
+
+    /**
+     * Returns an iterator over the elements in priority order. {@link Iterator#remove()} removes the last returned
+     * element from this queue.
+     *
+     * @return iterator over elements
+     */
+    @Nonnull @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+
+            int bucket = 0;
+            // the last visited node in the current bucket, null when at the start of the bucket
+            @Nullable Node<T> cursor = null;
+            @Nullable Node<T> next = null;
+            @Nullable Node<T> lastReturned = null;
+
+            private void peekNext() {
+                if (next != null && !next.removed) {
+                    return;
+                }
+                next = null;
+                while (bucket < heads.length) {
+                    Node<T> node = cursor == null ? heads[bucket] : cursor.next;
+                    while (node != null && node.removed) {
+                        node = node.next;
+                    }
+                    if (node != null) {
+                        next = node;
+                        return;
+                    }
+                    bucket++;
+                    cursor = null;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                peekNext();
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                peekNext();
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = cursor = next;
+                next = null;
+                return lastReturned.value;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                if (!lastReturned.removed) {
+                    WatcherPriorityQueue.this.remove(lastReturned.value);
+                }
+                lastReturned = null;
+            }
+        };
+    }
+
+    private static final class Node<T> {
+
+        final T value;
+        final int bucket;
+        @Nullable Node<T> prev;
+        @Nullable Node<T> next;
+        boolean removed;
+        boolean dirty;
+
+        Node(T value, int bucket) {
+            this.value = value;
+            this.bucket = bucket;
+        }
+    }
+}
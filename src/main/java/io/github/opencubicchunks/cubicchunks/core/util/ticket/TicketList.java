@@ -57,13 +57,19 @@ public class TicketList {
         if (cube == null) {
             return;
         }
-        if (tickets.remove(ticket) && ticket.shouldTick()) {
+        if (!tickets.remove(ticket)) {
+            return;
+        }
+        if (ticket.shouldTick()) {
             tickRefs--;
             assert tickRefs >= 0;
             if (tickRefs == 0) {
                 ((ICubicWorldInternal.Server) cube.getWorld()).removeForcedCube(cube);
             }
         }
+        if (tickets.isEmpty() && !cube.getWorld().isRemote) {
+            ((ICubicWorldInternal.Server) cube.getWorld()).getCubeCache().queueCubeUnload(cube);
+        }
     }
 
     /**
@@ -78,6 +84,9 @@ public class TicketList {
         if (tickets.contains(ticket)) {
             return; // we already have that ticket
         }
+        if (tickets.isEmpty() && !cube.getWorld().isRemote) {
+            ((ICubicWorldInternal.Server) cube.getWorld()).getCubeCache().cancelCubeUnload(cube);
+        }
         tickets.add(ticket);
         tickRefs += ticket.shouldTick() ? 1 : 0; // keep track of the number of tickets that want to tick
         if (ticket.shouldTick()) {
@@ -0,0 +1,143 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.world;
+
+import static io.github.opencubicchunks.cubicchunks.api.util.Coords.blockToCube;
+import static io.github.opencubicchunks.cubicchunks.api.util.Coords.blockToLocal;
+import static io.github.opencubicchunks.cubicchunks.api.util.Coords.cubeToMaxBlock;
+import static io.github.opencubicchunks.cubicchunks.api.util.Coords.cubeToMinBlock;
+
+import io.github.opencubicchunks.cubicchunks.core.block.state.FullBlockStateImplementation;
+import io.github.opencubicchunks.cubicchunks.core.block.state.NonCollidingBlockStateImplementation;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.Entity;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Cubic chunks implementation of the block part of {@link World#getCollisionBoxes(Entity, AxisAlignedBB)}.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public final class BlockCollisionBoxes {
+
+    private BlockCollisionBoxes() {
+        throw new Error();
+    }
+
+    /**
+     * Adds collision boxes of all blocks intersecting {@code aabb} to {@code aabbList}. Doesn't post
+     * {@link net.minecraftforge.event.world.GetCollisionBoxesEvent}, like in vanilla it's posted only once by
+     * {@link World#getCollisionBoxes(Entity, AxisAlignedBB)} for the complete list.
+     *
+     * @param world the world
+     * @param cubes cube provider to get the blocks from, only already loaded cubes are used
+     * @param entity the entity to get collision boxes for
+     * @param aabb the area to get collision boxes in
+     * @param stopOnFirst stop as soon as any collision box is found
+     * @param minHeight the minimum block y coordinate in the world
+     * @param maxHeight the maximum block y coordinate in the world, exclusive
+     * @param aabbList the list to add collision boxes to
+     */
+    public static void collect(World world, ICubeProviderInternal cubes, @Nullable Entity entity, AxisAlignedBB aabb,
+            boolean stopOnFirst, int minHeight, int maxHeight, List<AxisAlignedBB> aabbList) {
+        int x1 = MathHelper.floor(aabb.minX) - 1;
+        int y1 = MathHelper.floor(aabb.minY) - 1;
+        int z1 = MathHelper.floor(aabb.minZ) - 1;
+        int x2 = MathHelper.ceil(aabb.maxX);
+        int y2 = MathHelper.ceil(aabb.maxY);
+        int z2 = MathHelper.ceil(aabb.maxZ);
+        // blocks outside of world height are never checked
+        int minY = Math.max(y1, minHeight);
+        int maxY = Math.min(y2, maxHeight - 1);
+        if (minY > maxY) {
+            return;
+        }
+        IBlockState air = Blocks.AIR.getDefaultState();
+        BlockPos.PooledMutableBlockPos pos = BlockPos.PooledMutableBlockPos.retain();
+        try {
+            for (int cx = blockToCube(x1); cx <= blockToCube(x2); cx++) {
+                for (int cy = blockToCube(minY); cy <= blockToCube(maxY); cy++) {
+                    for (int cz = blockToCube(z1); cz <= blockToCube(z2); cz++) {
+                        Cube cube = cubes.getLoadedCube(cx, cy, cz);
+                        if (cube == null) {
+                            continue;
+                        }
+                        ExtendedBlockStorage storage = cube.getReadOnlyStorage();
+                        if (storage == null || storage.isEmpty()) {
+                            continue; // only air, nothing to collide with
+                        }
+                        int minBlockX = Math.max(cubeToMinBlock(cx), x1);
+                        int minBlockY = Math.max(cubeToMinBlock(cy), minY);
+                        int minBlockZ = Math.max(cubeToMinBlock(cz), z1);
+                        int maxBlockX = Math.min(cubeToMaxBlock(cx), x2);
+                        int maxBlockY = Math.min(cubeToMaxBlock(cy), maxY);
+                        int maxBlockZ = Math.min(cubeToMaxBlock(cz), z2);
+                        for (int x = minBlockX; x <= maxBlockX; x++) {
+                            boolean isXboundary = x == x1 || x == x2;
+                            for (int z = minBlockZ; z <= maxBlockZ; z++) {
+                                boolean isZboundary = z == z1 || z == z2;
+                                if (isXboundary && isZboundary) {
+                                    continue;
+                                }
+                                for (int y = minBlockY; y <= maxBlockY; y++) {
+                                    boolean isYboundary = y == y2;
+                                    if (isYboundary && (isZboundary || isXboundary)) {
+                                        continue;
+                                    }
+                                    IBlockState state = storage.get(blockToLocal(x), blockToLocal(y), blockToLocal(z));
+                                    if (state == air || state instanceof NonCollidingBlockStateImplementation) {
+                                        continue;
+                                    }
+                                    if (state instanceof FullBlockStateImplementation) {
+                                        FullBlockStateImplementation.addCollisionBox(x, y, z, aabb, aabbList);
+                                    } else {
+                                        state.addCollisionBoxToList(world, pos.setPos(x, y, z), aabb, aabbList, entity, false);
+                                    }
+                                    if (stopOnFirst && !aabbList.isEmpty()) {
+                                        return;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            pos.release();
+        }
+    }
+}
@@ -26,12 +26,15 @@ package io.github.opencubicchunks.cubicchunks.core.world;
 
 import com.google.common.base.Throwables;
 import io.github.opencubicchunks.cubicchunks.api.util.Coords;
+import io.github.opencubicchunks.cubicchunks.api.world.IColumn;
+import io.github.opencubicchunks.cubicchunks.api.world.ICube;
 import io.github.opencubicchunks.cubicchunks.api.world.IHeightMap;
 import io.github.opencubicchunks.cubicchunks.core.lighting.LightingManager;
 import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
 import mcp.MethodsReturnNonnullByDefault;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -48,6 +51,10 @@ public class ClientHeightMap implements IHeightMap {
     private final Chunk column;
     private final HeightMap hmap;
     private int heightMapLowest = Coords.NO_HEIGHT;
+    /**
+     * Whether the heights are computed from cubes by {@link #updateFromCube}, instead of being sent by the server.
+     */
+    private boolean computedFromCubes;
 
     public ClientHeightMap(Chunk column, int[] heightmap) {
         this.column = column;
@@ -65,6 +72,31 @@ public class ClientHeightMap implements IHeightMap {
         writeNewTopBlockY(localX, blockY, localZ, opacity, getTopBlockY(localX, localZ));
     }
 
+    @Override
+    public void onOpacityChange(int localX, int localZ, int minBlockY, int[] opacity) {
+        int oldTopY = getTopBlockY(localX, localZ);
+        int maxBlockY = minBlockY + opacity.length - 1;
+        // the highest opaque block of the section, it's the new top if it's above the old one
+        int y = opacity.length - 1;
+        while (y >= 0 && opacity[y] == 0) {
+            y--;
+        }
+        if (y >= 0 && minBlockY + y > oldTopY) {
+            this.setHeight(localX, localZ, minBlockY + y);
+            return;
+        }
+        if (oldTopY < minBlockY || oldTopY > maxBlockY || opacity[oldTopY - minBlockY] != 0) {
+            // the top block is not in this section or is still opaque
+            return;
+        }
+        if (y >= 0) {
+            // the old top block is gone, the next one down is still in this section
+            this.setHeight(localX, localZ, minBlockY + y);
+        } else {
+            writeNewTopBlockY(localX, oldTopY, localZ, 0, oldTopY);
+        }
+    }
+
     private void writeNewTopBlockY(int localX, int changeY, int localZ, int newOpacity, int oldTopY) {
         //to avoid unnecessary delay when breaking blocks client needs to figure out new height before
         //server tells the client what it is
@@ -157,6 +189,72 @@ public class ClientHeightMap implements IHeightMap {
         }
     }
 
+    /**
+     * Updates the heights from the blocks of a cube received from the server, used when the server doesn't send
+     * heightmaps. Heights only depend on the cubes the client has received, so blocks in cubes above the loaded ones
+     * aren't seen. If the top block of a column was in this cube and is gone, the loaded cubes below are searched for
+     * the next one.
+     *
+     * @param cubeY y coordinate of the cube
+     * @param storage block storage of the cube
+     */
+    public void updateFromCube(int cubeY, ExtendedBlockStorage storage) {
+        if (!this.computedFromCubes) {
+            // the initial values come from the vanilla heightmap array and don't mean anything in cubic chunks
+            for (int i = 0; i < Cube.SIZE * Cube.SIZE; i++) {
+                hmap.set(i, Coords.NO_HEIGHT);
+            }
+            this.computedFromCubes = true;
+        }
+        int minBlockY = Coords.cubeToMinBlock(cubeY);
+        int maxBlockY = Coords.cubeToMaxBlock(cubeY);
+        for (int localZ = 0; localZ < Cube.SIZE; localZ++) {
+            for (int localX = 0; localX < Cube.SIZE; localX++) {
+                int index = getIndex(localX, localZ);
+                int currentTop = hmap.get(index);
+                if (currentTop > maxBlockY) {
+                    continue;
+                }
+                int localTop = getTopOpaqueLocalY(storage, localX, localZ);
+                if (localTop >= 0) {
+                    hmap.set(index, minBlockY + localTop);
+                } else if (currentTop >= minBlockY) {
+                    // the top block was in this cube and is gone now, the next one is somewhere below
+                    hmap.set(index, findTopBlockBelow(localX, localZ, cubeY));
+                }
+            }
+        }
+        heightMapLowest = Coords.NO_HEIGHT;
+    }
+
+    /**
+     * @return the highest opaque block in the loaded cubes below the given cube, or {@link Coords#NO_HEIGHT} if there
+     * is none
+     */
+    private int findTopBlockBelow(int localX, int localZ, int cubeY) {
+        for (ICube cube : ((IColumn) column).getLoadedCubes(cubeY - 1, Integer.MIN_VALUE)) {
+            ExtendedBlockStorage storage = cube.getStorage();
+            if (storage == null || storage.isEmpty()) {
+                continue;
+            }
+            int localTop = getTopOpaqueLocalY(storage, localX, localZ);
+            if (localTop >= 0) {
+                return Coords.cubeToMinBlock(cube.getY()) + localTop;
+            }
+        }
+        return Coords.NO_HEIGHT;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int getTopOpaqueLocalY(ExtendedBlockStorage storage, int localX, int localZ) {
+        for (int localY = Cube.SIZE - 1; localY >= 0; localY--) {
+            if (storage.get(localX, localY, localZ).getLightOpacity() != 0) {
+                return localY;
+            }
+        }
+        return -1;
+    }
+
     private static int getIndex(int localX, int localZ) {
         return (localZ << 4) | localX;
     }
@@ -38,12 +38,24 @@ public class ServerHeightMap implements IHeightMap {
     public ServerHeightMap(int[] heightmap) {
     }
 
+    /**
+     * Whether the heights reported by this heightmap are real. Heights aren't tracked at the moment, so clients that
+     * support it compute their own heightmaps instead of receiving these.
+     */
+    public static boolean isAuthoritative() {
+        return false;
+    }
+
     // Interface: IHeightMap ----------------------------------------------------------------------------------------
 
     @Override
     public void onOpacityChange(int localX, int blockY, int localZ, int opacity) {
     }
 
+    @Override
+    public void onOpacityChange(int localX, int localZ, int minBlockY, int[] opacity) {
+    }
+
     @Override
     public boolean isOccluded(int localX, int blockY, int localZ) {
         return false;
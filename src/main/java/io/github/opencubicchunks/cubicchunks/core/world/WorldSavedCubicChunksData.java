@@ -37,6 +37,11 @@ public class WorldSavedCubicChunksData extends WorldSavedData {
     public int minHeight = 0, maxHeight = 256;
     public ResourceLocation compatibilityGeneratorType = VanillaCompatibilityGeneratorProviderBase.DEFAULT;
 
+    // unfinished pre-generation, in cube coordinates, see WorldPregenerator
+    public boolean pregenerating = false;
+    public int pregenCenterX, pregenCenterZ, pregenRadius, pregenMinY, pregenMaxY;
+    public long pregenCursor;
+
     public WorldSavedCubicChunksData(String name) {
         super(name);
     }
@@ -60,6 +65,16 @@ public class WorldSavedCubicChunksData extends WorldSavedData {
             compatibilityGeneratorType = new ResourceLocation(nbt.getString("compatibilityGeneratorType"));
         else
             compatibilityGeneratorType = VanillaCompatibilityGeneratorProviderBase.DEFAULT;
+        pregenerating = nbt.hasKey("pregeneration");
+        if (pregenerating) {
+            NBTTagCompound pregen = nbt.getCompoundTag("pregeneration");
+            pregenCenterX = pregen.getInteger("centerX");
+            pregenCenterZ = pregen.getInteger("centerZ");
+            pregenRadius = pregen.getInteger("radius");
+            pregenMinY = pregen.getInteger("minY");
+            pregenMaxY = pregen.getInteger("maxY");
+            pregenCursor = pregen.getLong("cursor");
+        }
     }
 
     @Override
@@ -68,6 +83,16 @@ public class WorldSavedCubicChunksData extends WorldSavedData {
         compound.setInteger("maxHeight", maxHeight);
         compound.setBoolean("isCubicChunks", isCubicChunks);
         compound.setString("compatibilityGeneratorType", compatibilityGeneratorType.toString());
+        if (pregenerating) {
+            NBTTagCompound pregen = new NBTTagCompound();
+            pregen.setInteger("centerX", pregenCenterX);
+            pregen.setInteger("centerZ", pregenCenterZ);
+            pregen.setInteger("radius", pregenRadius);
+            pregen.setInteger("minY", pregenMinY);
+            pregen.setInteger("maxY", pregenMaxY);
+            pregen.setLong("cursor", pregenCursor);
+            compound.setTag("pregeneration", pregen);
+        }
         return compound;
     }
 
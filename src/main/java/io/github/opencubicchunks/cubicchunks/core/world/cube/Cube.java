@@ -33,6 +33,7 @@ import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorld;
 import io.github.opencubicchunks.cubicchunks.api.world.IHeightMap;
 import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
 import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.UniformCubePrimer;
 import io.github.opencubicchunks.cubicchunks.core.CubicChunks;
 import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
 import io.github.opencubicchunks.cubicchunks.core.lighting.LightingManager;
@@ -57,6 +58,7 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.EnumSkyBlock;
 import net.minecraft.world.World;
 import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.BlockStateContainer;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 import net.minecraftforge.common.MinecraftForge;
@@ -68,10 +70,12 @@ import net.minecraftforge.event.world.ChunkEvent;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.BooleanSupplier;
 
@@ -88,6 +92,10 @@ public class Cube implements ICube {
 
     @Nullable
     protected static final ExtendedBlockStorage NULL_STORAGE = null;
+    /**
+     * Read-only storages of uniform cubes, see {@link #getReadOnlyStorage()}
+     */
+    private static final Map<IBlockState, ExtendedBlockStorage> UNIFORM_BLOCK_STORAGES = new ConcurrentHashMap<>();
 
     @Nullable
     private byte[] blockBiomeArray = null;
@@ -139,6 +147,17 @@ public class Cube implements ICube {
      */
     @Nullable
     private ExtendedBlockStorage storage;
+    /**
+     * Light values of this cube while it's all air and has no storage, see {@link UniformCubeStorage}
+     */
+    @Nullable
+    private UniformCubeStorage uniformStorage;
+    /**
+     * The block at every position of this cube while it has no storage, see {@link #getUniformBlock()}. Only set for
+     * blocks that {@link #canBeUniform(IBlockState) can be uniform}, never air.
+     */
+    @Nullable
+    private IBlockState uniformBlock;
     /**
      * Entities in this cube
      */
@@ -221,12 +240,38 @@ public class Cube implements ICube {
      * @param cubeY  cube y position
      * @param primer primer containing the blocks for this cube
      */
-    @SuppressWarnings("deprecation") // when a block is generated, does it really have any extra
-    // information it could give us about its opacity by knowing its location?
     public Cube(Chunk column, int cubeY, CubePrimer primer) {
         this(column, cubeY);
 
-        int miny = cubeToMinBlock(cubeY);
+        IBlockState uniform = primer instanceof UniformCubePrimer ? ((UniformCubePrimer) primer).getUniformState() : null;
+        char[] ids = primer.getBlockStateIds();
+        if (uniform != null) {
+            fillBlocks(uniform);
+        } else if (ids != null) {
+            copyBlocks(ids);
+        } else {
+            copyBlocks(primer);
+        }
+        if (primer.hasBiomes()) {
+            for (int biomeX = 0; biomeX < 8; biomeX++) {
+                for (int biomeZ = 0; biomeZ < 8; biomeZ++) {
+                    int primerBiomeX = biomeX / 2;
+                    int primerBiomeZ = biomeZ / 2;
+                    setBiome(biomeX, biomeZ, primer.getBiome(primerBiomeX, 0, primerBiomeZ));
+                }
+            }
+        }
+        isSurfaceTracked = true;
+        isModified = true;
+    }
+
+    /**
+     * Copies blocks from a primer that doesn't expose its block state ids, one block state lookup per block.
+     */
+    @SuppressWarnings("deprecation") // when a block is generated, does it really have any extra
+    // information it could give us about its opacity by knowing its location?
+    private void copyBlocks(CubePrimer primer) {
+        int miny = cubeToMinBlock(getY());
         IHeightMap opindex = ((IColumn) column).getOpacityIndex();
 
         for (int y = Cube.SIZE - 1; y >= 0; y--) {
@@ -248,19 +293,154 @@ public class Cube implements ICube {
                 }
             }
         }
-        if (primer.hasBiomes()) {
-            for (int biomeX = 0; biomeX < 8; biomeX++) {
-                for (int biomeZ = 0; biomeZ < 8; biomeZ++) {
-                    int primerBiomeX = biomeX / 2;
-                    int primerBiomeZ = biomeZ / 2;
-                    setBiome(biomeX, biomeZ, primer.getBiome(primerBiomeX, 0, primerBiomeZ));
+    }
+
+    /**
+     * Copies blocks from the state ids of a primer. Each distinct id is looked up only once, blocks are written
+     * directly to the block state container, and the opacity index is updated one 16 block column at a time.
+     *
+     * @param ids the block state ids, in y, z, x order
+     */
+    @SuppressWarnings("deprecation")
+    private void copyBlocks(char[] ids) {
+        if (isAllAir(ids)) {
+            return; // keep the empty storage
+        }
+        // distinct ids seen so far and what they translate to. Air and other blocks of air material map to null
+        char[] paletteIds = new char[16];
+        IBlockState[] paletteStates = new IBlockState[16];
+        int[] paletteOpacity = new int[16];
+        int paletteSize = 0;
+
+        BlockStateContainer data = null;
+        int[] opacity = new int[Cube.SIZE];
+        int miny = cubeToMinBlock(getY());
+        IHeightMap opindex = ((IColumn) column).getOpacityIndex();
+        boolean hasOpaque = false;
+
+        char lastId = 0;
+        int lastIndex = -1;
+        for (int z = 0; z < Cube.SIZE; z++) {
+            for (int x = 0; x < Cube.SIZE; x++) {
+                boolean columnHasOpaque = false;
+                for (int y = Cube.SIZE - 1; y >= 0; y--) {
+                    char id = ids[y << 8 | z << 4 | x];
+                    if (id == 0) {
+                        opacity[y] = 0;
+                        continue;
+                    }
+                    int index = lastIndex;
+                    if (id != lastId || index < 0) {
+                        index = -1;
+                        for (int i = 0; i < paletteSize; i++) {
+                            if (paletteIds[i] == id) {
+                                index = i;
+                                break;
+                            }
+                        }
+                        if (index < 0) {
+                            if (paletteSize == paletteIds.length) {
+                                paletteIds = Arrays.copyOf(paletteIds, paletteSize * 2);
+                                paletteStates = Arrays.copyOf(paletteStates, paletteSize * 2);
+                                paletteOpacity = Arrays.copyOf(paletteOpacity, paletteSize * 2);
+                            }
+                            IBlockState state = Block.BLOCK_STATE_IDS.getByValue(id);
+                            if (state == null || state.getMaterial() == Material.AIR) {
+                                state = null;
+                            }
+                            index = paletteSize++;
+                            paletteIds[index] = id;
+                            paletteStates[index] = state;
+                            paletteOpacity[index] = state == null ? 0 : state.getLightOpacity();
+                        }
+                        lastId = id;
+                        lastIndex = index;
+                    }
+                    IBlockState state = paletteStates[index];
+                    if (state == null) {
+                        opacity[y] = 0;
+                        continue;
+                    }
+                    if (data == null) {
+                        newStorage();
+                        data = storage.getData();
+                    }
+                    data.set(x, y, z, state);
+                    opacity[y] = paletteOpacity[index];
+                    columnHasOpaque |= opacity[y] != 0;
+                }
+                if (columnHasOpaque) {
+                    hasOpaque = true;
+                    opindex.onOpacityChange(x, z, miny, opacity);
                 }
             }
         }
-        isSurfaceTracked = true;
-        isModified = true;
+        if (data != null) {
+            storage.recalculateRefCounts();
+        }
+        if (hasOpaque) {
+            column.setModified(true);
+        }
     }
 
+    /**
+     * Fills this cube with one block. Blocks that {@link #canBeUniform(IBlockState) can be uniform} are only kept in
+     * {@link #uniformBlock}, anything else is written to a new storage right away.
+     */
+    @SuppressWarnings("deprecation")
+    private void fillBlocks(IBlockState state) {
+        if (state.getMaterial() == Material.AIR) {
+            return;
+        }
+        if (canBeUniform(state)) {
+            this.uniformBlock = state;
+        } else {
+            newStorage();
+            fillStorage(storage, state);
+        }
+        int opacity = state.getLightOpacity();
+        if (opacity == 0) {
+            return;
+        }
+        int[] columnOpacity = new int[Cube.SIZE];
+        Arrays.fill(columnOpacity, opacity);
+        int miny = cubeToMinBlock(getY());
+        IHeightMap opindex = ((IColumn) column).getOpacityIndex();
+        for (int z = 0; z < Cube.SIZE; z++) {
+            for (int x = 0; x < Cube.SIZE; x++) {
+                opindex.onOpacityChange(x, z, miny, columnOpacity);
+            }
+        }
+        column.setModified(true);
+    }
+
+    /**
+     * A cube made of a single block doesn't need a storage if its light values are all 0, which is the case for blocks
+     * that let no light through and emit none. Blocks that tick randomly or have tile entities always get a storage,
+     * as the code handling them expects one.
+     */
+    @SuppressWarnings("deprecation")
+    private static boolean canBeUniform(IBlockState state) {
+        return state.getLightOpacity() >= 15 && state.getLightValue() == 0
+                && !state.getBlock().getTickRandomly() && !state.getBlock().hasTileEntity(state);
+    }
+
+    private static void fillStorage(ExtendedBlockStorage ebs, IBlockState state) {
+        BlockStateContainer data = ebs.getData();
+        for (int i = 0; i < Cube.SIZE * Cube.SIZE * Cube.SIZE; i++) {
+            data.set(i & 15, i >> 8 & 15, i >> 4 & 15, state);
+        }
+        ebs.recalculateRefCounts();
+    }
+
+    private static boolean isAllAir(char[] ids) {
+        for (char id : ids) {
+            if (id != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 
     /**
      * Constructor to be used from subclasses to provide all field values
@@ -311,6 +491,9 @@ public class Cube implements ICube {
 
     @Override
     public IBlockState getBlockState(int blockX, int localOrBlockY, int blockZ) {
+        if (uniformBlock != null) {
+            return uniformBlock;
+        }
         if (storage == NULL_STORAGE) {
             return Blocks.AIR.getDefaultState();
         }
@@ -463,7 +646,7 @@ public class Cube implements ICube {
 
     @Override
     public boolean isEmpty() {
-        return storage == null || this.storage.isEmpty();
+        return uniformBlock == null && (storage == null || this.storage.isEmpty());
     }
 
     @Override
@@ -512,18 +695,129 @@ public class Cube implements ICube {
                 && this.coords.getZ() == blockToCube(blockPos.getZ());
     }
 
+    /**
+     * @return the block storage of this cube, or null if it has none. A cube without storage is air, or all
+     * {@link #getUniformBlock()} if that is set
+     */
     @Override
     @Nullable
     public ExtendedBlockStorage getStorage() {
         return this.storage;
     }
 
+    /**
+     * Returns the block storage of this cube, first creating it if the cube is all {@link #getUniformBlock()}. Code
+     * that modifies the storage must use this instead of {@link #getStorage()}.
+     *
+     * @return the block storage, or null if the cube is air and has none
+     */
+    @Override
+    @Nullable
+    public ExtendedBlockStorage getStorageForWrite() {
+        if (this.uniformBlock != null) {
+            IBlockState state = this.uniformBlock;
+            this.uniformBlock = null;
+            newStorage();
+            fillStorage(this.storage, state);
+            this.isModified = true;
+        }
+        return this.storage;
+    }
+
+    /**
+     * Returns a storage with the contents of this cube, for code that can only read from an
+     * {@link ExtendedBlockStorage}. For uniform cubes this is a storage shared by all cubes with the same contents,
+     * which must never be modified.
+     *
+     * @return the block storage, a shared read-only storage, or null if the cube is air without light data
+     */
+    @Override
+    @Nullable
+    public ExtendedBlockStorage getReadOnlyStorage() {
+        if (this.storage != NULL_STORAGE) {
+            return this.storage;
+        }
+        if (this.uniformBlock != null) {
+            return UNIFORM_BLOCK_STORAGES.computeIfAbsent(this.uniformBlock, state -> {
+                ExtendedBlockStorage ebs = new ExtendedBlockStorage(0, true);
+                fillStorage(ebs, state);
+                return ebs;
+            });
+        }
+        if (this.uniformStorage != null) {
+            return this.uniformStorage.getReadOnlyStorage();
+        }
+        return null;
+    }
+
+    /**
+     * @return the block at every position of this cube if it has no storage and isn't air, otherwise null. All light
+     * values of such a cube are 0.
+     */
+    @Nullable
+    public IBlockState getUniformBlock() {
+        return this.uniformBlock;
+    }
+
+    /**
+     * Replaces the blocks of this cube with the given block, without updating the opacity index. Used when loading
+     * cubes, the saved column already knows about the blocks. If the block can't be uniform (which can happen when
+     * a mod changes its properties), the cube gets a storage filled with it.
+     *
+     * @param state the block
+     */
+    public void setUniformBlock(IBlockState state) {
+        this.uniformStorage = null;
+        this.isModified = true;
+        if (canBeUniform(state)) {
+            this.storage = NULL_STORAGE;
+            this.uniformBlock = state;
+        } else {
+            this.uniformBlock = null;
+            newStorage();
+            fillStorage(this.storage, state);
+        }
+    }
+
+    /**
+     * Sets the block storage of this cube. If the cube currently has uniform storage, the new storage is assumed to be
+     * newly created and its light values are initialized from the uniform storage, so that creating a storage on the
+     * first write doesn't change the light of the cube.
+     *
+     * @param ebs the new block storage
+     * @return the new block storage
+     */
     @Nullable
     public ExtendedBlockStorage setStorage(@Nullable ExtendedBlockStorage ebs) {
+        if (ebs != null && this.uniformStorage != null) {
+            this.uniformStorage.initialize(ebs);
+        }
+        this.uniformStorage = null;
+        this.uniformBlock = null;
         this.isModified = true;
         return this.storage = ebs;
     }
 
+    /**
+     * @return the uniform storage of this cube, or null if it has a block storage or no light data at all
+     */
+    @Nullable
+    public UniformCubeStorage getUniformStorage() {
+        return this.uniformStorage;
+    }
+
+    /**
+     * Removes the block storage of this cube and makes it uniform air with the given light values.
+     *
+     * @param uniformStorage the new uniform storage, or null to make the cube empty without light data
+     */
+    public void setUniformStorage(@Nullable UniformCubeStorage uniformStorage) {
+        this.storage = NULL_STORAGE;
+        this.uniformStorage = uniformStorage;
+        this.uniformBlock = null;
+        this.isModified = true;
+    }
+
     private void newStorage() {
         storage = new ExtendedBlockStorage(cubeToMinBlock(getY()), world.provider.hasSkyLight());
     }
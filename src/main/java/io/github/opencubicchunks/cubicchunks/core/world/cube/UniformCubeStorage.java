@@ -0,0 +1,134 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.world.cube;
+
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.world.EnumSkyBlock;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Contents of a cube that is all air, with the same block light and sky light everywhere. Cubes above the terrain
+ * are like this, and keeping a full {@link ExtendedBlockStorage} for each of them costs several kilobytes per cube.
+ * <p>
+ * Instances are shared between all cubes with the same light values, so they are immutable. A cube replaces its
+ * uniform storage with a real one on the first write, see {@link Cube#setStorage(ExtendedBlockStorage)}.
+ * <p>
+ * Only air is supported: vanilla code treats a cube without storage as air, so any other block would need a real
+ * storage for every block access anyway.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public final class UniformCubeStorage {
+
+    private static final UniformCubeStorage[] INSTANCES = new UniformCubeStorage[256];
+
+    static {
+        for (int i = 0; i < INSTANCES.length; i++) {
+            INSTANCES[i] = new UniformCubeStorage(i >>> 4, i & 0xF);
+        }
+    }
+
+    /**
+     * Air fully lit by the sky, which is what every cube above the terrain is after skylight initialization
+     */
+    public static final UniformCubeStorage SKY_LIT_AIR = of(0, 15);
+
+    private final int blockLight;
+    private final int skyLight;
+    @Nullable private volatile ExtendedBlockStorage readOnlyStorage;
+
+    private UniformCubeStorage(int blockLight, int skyLight) {
+        this.blockLight = blockLight;
+        this.skyLight = skyLight;
+    }
+
+    public static UniformCubeStorage of(int blockLight, int skyLight) {
+        return INSTANCES[(blockLight & 0xF) << 4 | (skyLight & 0xF)];
+    }
+
+    /**
+     * @param packed light values in the format returned by {@link #pack()}
+     * @return the uniform storage with the given light values
+     */
+    public static UniformCubeStorage unpack(int packed) {
+        return INSTANCES[packed & 0xFF];
+    }
+
+    /**
+     * @return block light in the high 4 bits and sky light in the low 4 bits of a byte
+     */
+    public int pack() {
+        return blockLight << 4 | skyLight;
+    }
+
+    public int getBlockLight() {
+        return blockLight;
+    }
+
+    public int getSkyLight() {
+        return skyLight;
+    }
+
+    public int getLightFor(EnumSkyBlock type) {
+        return type == EnumSkyBlock.SKY ? skyLight : blockLight;
+    }
+
+    /**
+     * Sets all light values in a newly created storage to the values of this uniform storage.
+     *
+     * @param ebs the storage to initialize, expected to contain only air
+     */
+    public void initialize(ExtendedBlockStorage ebs) {
+        Arrays.fill(ebs.getBlockLight().getData(), (byte) (blockLight << 4 | blockLight));
+        if (ebs.getSkyLight() != null) {
+            Arrays.fill(ebs.getSkyLight().getData(), (byte) (skyLight << 4 | skyLight));
+        }
+    }
+
+    /**
+     * Returns a storage with the same contents as this uniform storage, shared by all users of it. It exists for code
+     * that can only read from an {@link ExtendedBlockStorage}, and must never be modified.
+     *
+     * @return the shared read-only storage
+     */
+    public ExtendedBlockStorage getReadOnlyStorage() {
+        ExtendedBlockStorage ebs = readOnlyStorage;
+        if (ebs == null) {
+            ebs = new ExtendedBlockStorage(0, true);
+            initialize(ebs);
+            readOnlyStorage = ebs;
+        }
+        return ebs;
+    }
+
+    @Override public String toString() {
+        return "UniformCubeStorage{blockLight=" + blockLight + ", skyLight=" + skyLight + '}';
+    }
+}
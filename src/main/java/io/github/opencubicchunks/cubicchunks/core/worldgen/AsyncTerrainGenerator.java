@@ -0,0 +1,169 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.worldgen;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
+import io.github.opencubicchunks.cubicchunks.core.CubicChunks;
+import mcp.MethodsReturnNonnullByDefault;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Generates the terrain of cubes that are likely to be needed soon on worker threads, for generators that report
+ * {@link ICubeGenerator#isThreadSafeTerrainGeneration()}. Only {@link ICubeGenerator#generateCube} is called off the
+ * server thread, the cube itself is still created, populated and lit on the server thread.
+ * <p>
+ * All methods except the generation itself must be called from the server thread.
+ */
+@MethodsReturnNonnullByDefault
+@ParametersAreNonnullByDefault
+public class AsyncTerrainGenerator {
+
+    /**
+     * Maximum number of cubes generated ahead per world, further requests are ignored until some of them are used.
+     */
+    private static final int MAX_PENDING = 2048;
+    /**
+     * Ticks after which terrain that was generated ahead but not used is dropped.
+     */
+    private static final long EXPIRE_TICKS = 20 * 30;
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2 - 1),
+            r -> {
+                Thread thread = new Thread(r, "Cube terrain generation #" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final ICubeGenerator generator;
+    private final Map<CubePos, Task> pending = new HashMap<>();
+
+    public AsyncTerrainGenerator(ICubeGenerator generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * Starts generating the terrain of a cube on a worker thread, if it's not already being generated.
+     *
+     * @param pos the cube position
+     * @param worldTime the current world time
+     */
+    public void prefetch(CubePos pos, long worldTime) {
+        if (!this.generator.isThreadSafeTerrainGeneration() || this.pending.size() >= MAX_PENDING || this.pending.containsKey(pos)) {
+            return;
+        }
+        Task task = new Task(pos, worldTime);
+        this.pending.put(pos, task);
+        executor.execute(task);
+    }
+
+    /**
+     * Gets the terrain of a cube, either the one generated ahead on a worker thread, waiting for it if it's still being
+     * generated, or by generating it right away.
+     *
+     * @param cubeX the cube's X coordinate
+     * @param cubeY the cube's Y coordinate
+     * @param cubeZ the cube's Z coordinate
+     * @return the generated terrain
+     */
+    public CubePrimer generateCube(int cubeX, int cubeY, int cubeZ) {
+        if (this.pending.isEmpty()) {
+            return this.generator.generateCube(cubeX, cubeY, cubeZ);
+        }
+        Task task = this.pending.remove(new CubePos(cubeX, cubeY, cubeZ));
+        if (task == null || task.claimed.compareAndSet(false, true)) {
+            return this.generator.generateCube(cubeX, cubeY, cubeZ);
+        }
+        try {
+            return task.result.join();
+        } catch (CompletionException e) {
+            CubicChunks.LOGGER.error("Generating cube {} on a worker thread failed, generating it again", task.pos, e.getCause());
+            return this.generator.generateCube(cubeX, cubeY, cubeZ);
+        }
+    }
+
+    /**
+     * Drops terrain that was generated ahead, but hasn't been used for a while.
+     *
+     * @param worldTime the current world time
+     */
+    public void tick(long worldTime) {
+        if (this.pending.isEmpty()) {
+            return;
+        }
+        Iterator<Task> it = this.pending.values().iterator();
+        while (it.hasNext()) {
+            Task task = it.next();
+            if (worldTime - task.requestTime < EXPIRE_TICKS) {
+                continue;
+            }
+            if (task.claimed.compareAndSet(false, true)) {
+                it.remove();
+            } else if (task.result.isDone()) {
+                it.remove();
+                task.result.thenAccept(CubePrimer::close);
+            }
+        }
+    }
+
+    private final class Task implements Runnable {
+
+        final CubePos pos;
+        final long requestTime;
+        // the task is run by whichever thread claims it first, the worker thread or the server thread
+        final AtomicBoolean claimed = new AtomicBoolean();
+        final CompletableFuture<CubePrimer> result = new CompletableFuture<>();
+
+        Task(CubePos pos, long requestTime) {
+            this.pos = pos;
+            this.requestTime = requestTime;
+        }
+
+        @Override public void run() {
+            if (!this.claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                this.result.complete(generator.generateCube(this.pos.getX(), this.pos.getY(), this.pos.getZ()));
+            } catch (Throwable t) {
+                this.result.completeExceptionally(t);
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.worldgen;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.world.ICube;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.populator.CubicPopulatorList;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.populator.ICubicPopulator;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.populator.PopulatorProfiling;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.Biome;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Measures time spent in each populator and cube generator population, per biome, and how many cubes they caused to
+ * be loaded or generated. Only installed while profiling, see {@link PopulatorProfiling}, so that it costs nothing
+ * otherwise.
+ * <p>
+ * Total time includes nested measured calls, for example populators run by a cube generator, self time doesn't.
+ * {@link CubicPopulatorList}s are not measured themselves, only the populators in them.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class PopulatorProfiler implements PopulatorProfiling.Profiler {
+
+    @Nullable private static volatile PopulatorProfiler latest;
+
+    private final long startTime = System.nanoTime();
+    private volatile long stopTime;
+    private final Map<Key, Stats> stats = new HashMap<>();
+    private final ThreadLocal<ArrayDeque<Frame>> frames = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * Starts profiling with a new profiler.
+     *
+     * @return the new profiler, or null if profiling is already running
+     */
+    @Nullable
+    public static PopulatorProfiler start() {
+        if (getActive() != null) {
+            return null;
+        }
+        PopulatorProfiler profiler = new PopulatorProfiler();
+        latest = profiler;
+        PopulatorProfiling.setProfiler(profiler);
+        return profiler;
+    }
+
+    /**
+     * @return the profiler that was stopped, or null if profiling wasn't running
+     */
+    @Nullable
+    public static PopulatorProfiler stop() {
+        PopulatorProfiler profiler = getActive();
+        if (profiler != null) {
+            PopulatorProfiling.setProfiler(null);
+            profiler.stopTime = System.nanoTime();
+        }
+        return profiler;
+    }
+
+    @Nullable
+    public static PopulatorProfiler getActive() {
+        PopulatorProfiling.Profiler profiler = PopulatorProfiling.getProfiler();
+        return profiler instanceof PopulatorProfiler ? (PopulatorProfiler) profiler : null;
+    }
+
+    /**
+     * @return the running profiler, or the last one if profiling has been stopped. Null if profiling was never started
+     */
+    @Nullable
+    public static PopulatorProfiler getLatest() {
+        return latest;
+    }
+
+    /**
+     * Populates a cube with the given generator, measured if profiling is running.
+     */
+    public static void populate(ICubeGenerator generator, ICube cube) {
+        PopulatorProfiler profiler = getActive();
+        if (profiler == null) {
+            generator.populate(cube);
+        } else {
+            profiler.measure(generator.getClass(), cube.getBiome(cube.getCoords().getCenterBlockPos()), () -> generator.populate(cube));
+        }
+    }
+
+    /**
+     * Called when a cube that wasn't loaded is requested, counted for the innermost populator running on this thread.
+     */
+    public static void onCubeLoad() {
+        PopulatorProfiler profiler = getActive();
+        if (profiler != null) {
+            Frame frame = profiler.frames.get().peek();
+            if (frame != null) {
+                frame.cubesLoaded++;
+            }
+        }
+    }
+
+    @Override
+    public void generate(ICubicPopulator populator, World world, Random random, CubePos pos, Biome biome) {
+        if (populator instanceof CubicPopulatorList) {
+            populator.generate(world, random, pos, biome);
+            return;
+        }
+        measure(populator.getClass(), biome, () -> populator.generate(world, random, pos, biome));
+    }
+
+    private void measure(Class<?> type, @Nullable Biome biome, Runnable action) {
+        ArrayDeque<Frame> stack = frames.get();
+        Frame frame = new Frame();
+        stack.push(frame);
+        long start = System.nanoTime();
+        try {
+            action.run();
+        } finally {
+            long time = System.nanoTime() - start;
+            stack.pop();
+            Frame parent = stack.peek();
+            if (parent != null) {
+                parent.childNanos += time;
+            }
+            record(new Key(type, biome), time, time - frame.childNanos, frame.cubesLoaded);
+        }
+    }
+
+    private synchronized void record(Key key, long totalNanos, long selfNanos, int cubesLoaded) {
+        Stats s = stats.computeIfAbsent(key, k -> new Stats());
+        s.calls++;
+        s.totalNanos += totalNanos;
+        s.selfNanos += selfNanos;
+        s.maxNanos = Math.max(s.maxNanos, totalNanos);
+        s.cubesLoaded += cubesLoaded;
+    }
+
+    /**
+     * @return how long this profiler has been running, or was running if it has been stopped, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        long stop = stopTime;
+        return (stop == 0 ? System.nanoTime() : stop) - startTime;
+    }
+
+    /**
+     * @param limit maximum number of entries
+     * @return descriptions of the entries with the highest self time
+     */
+    public List<String> getTopEntries(int limit) {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<Key, Stats> e : sortedEntries()) {
+            if (lines.size() == limit) {
+                break;
+            }
+            Stats s = e.getValue();
+            lines.add(String.format("%s (%s): %.1f ms self, %.1f ms total, %d calls, %.2f ms max, %d cubes loaded",
+                    e.getKey().type.getSimpleName(), e.getKey().getBiomeName(), millis(s.selfNanos), millis(s.totalNanos),
+                    s.calls, millis(s.maxNanos), s.cubesLoaded));
+        }
+        return lines;
+    }
+
+    /**
+     * Writes all entries as CSV, ordered by self time.
+     */
+    public void writeCsv(Writer out) throws IOException {
+        out.write("populator,biome,calls,total_ms,self_ms,max_ms,cubes_loaded\n");
+        for (Map.Entry<Key, Stats> e : sortedEntries()) {
+            Stats s = e.getValue();
+            out.write(String.format(Locale.ROOT, "%s,%s,%d,%.3f,%.3f,%.3f,%d\n", e.getKey().type.getName(), e.getKey().getBiomeName(),
+                    s.calls, millis(s.totalNanos), millis(s.selfNanos), millis(s.maxNanos), s.cubesLoaded));
+        }
+    }
+
+    private synchronized List<Map.Entry<Key, Stats>> sortedEntries() {
+        List<Map.Entry<Key, Stats>> entries = new ArrayList<>();
+        stats.forEach((key, s) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(key, s.copy())));
+        entries.sort(Comparator.comparingLong((Map.Entry<Key, Stats> e) -> e.getValue().selfNanos).reversed());
+        return entries;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static final class Key {
+
+        final Class<?> type;
+        @Nullable final Biome biome;
+
+        Key(Class<?> type, @Nullable Biome biome) {
+            this.type = type;
+            this.biome = biome;
+        }
+
+        String getBiomeName() {
+            return biome == null ? "none" : String.valueOf(biome.getRegistryName());
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return type == key.type && biome == key.biome;
+        }
+
+        @Override public int hashCode() {
+            return 31 * type.hashCode() + Objects.hashCode(biome);
+        }
+    }
+
+    private static final class Stats {
+
+        long calls;
+        long totalNanos;
+        long selfNanos;
+        long maxNanos;
+        long cubesLoaded;
+
+        Stats copy() {
+            Stats s = new Stats();
+            s.calls = calls;
+            s.totalNanos = totalNanos;
+            s.selfNanos = selfNanos;
+            s.maxNanos = maxNanos;
+            s.cubesLoaded = cubesLoaded;
+            return s;
+        }
+    }
+
+    private static final class Frame {
+
+        long childNanos;
+        int cubesLoaded;
+    }
+}
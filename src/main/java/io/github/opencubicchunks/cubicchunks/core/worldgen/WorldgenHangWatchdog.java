@@ -25,25 +25,49 @@
 package io.github.opencubicchunks.cubicchunks.core.worldgen;
 
 import io.github.opencubicchunks.cubicchunks.core.CubicChunks;
+import io.github.opencubicchunks.cubicchunks.core.CubicChunksConfig;
 import io.github.opencubicchunks.cubicchunks.core.util.CompatHandler;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Detects world generation that hangs and stops it, so that the server crashes with a report of what was going on
+ * instead of freezing.
+ * <p>
+ * {@link #startWorldGen()} and {@link #endWorldGen()} are called for every generated cube, so they only count
+ * generation calls in a per-thread entry, without reading the clock. The watchdog thread times each call from when
+ * it first sees it, which is at most {@link #SAMPLE_INTERVAL_MS} late, and only takes stack traces of threads that
+ * have been generating for longer than {@link CubicChunksConfig#worldGenWatchdogSampleThreshold}.
+ */
 public class WorldgenHangWatchdog {
 
     public static final boolean ENABLED = "true".equalsIgnoreCase(System.getProperty("cubicchunks.wgen_hang_watchdog", "true"));
 
+    private static final long SAMPLE_INTERVAL_MS = 100;
+    private static final long MAX_GENERATION_TIME = TimeUnit.SECONDS.toNanos(10);
+    private static final int HOT_FRAMES = 15;
+
     private static final WorldgenHangWatchdog INSTANCE = new WorldgenHangWatchdog();
 
     private static final Thread thread = init();
 
-    private final WeakHashMap<Thread, Entry> entries = new WeakHashMap<>();
+    /**
+     * Entries of all threads that have generated anything. Threads only add their entry once, entries of threads that
+     * are no longer alive are removed by the watchdog thread.
+     */
+    private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Entry> threadEntry = ThreadLocal.withInitial(this::register);
 
     private static volatile String crashInfo = null;
 
@@ -58,30 +82,31 @@ public class WorldgenHangWatchdog {
     }
 
     public static void startWorldGen() {
-        synchronized (INSTANCE.entries) {
-            INSTANCE.entries.compute(Thread.currentThread(), (t, old) -> {
-                if (old == null) {
-                    return new Entry();
-                }
-                old.count++;
-                return old;
-            });
+        if (!ENABLED) {
+            return;
+        }
+        Entry e = INSTANCE.threadEntry.get();
+        if (e.depth++ == 0) {
+            e.generation++;
         }
     }
 
     public static void endWorldGen() {
-        synchronized (INSTANCE.entries) {
-            Entry e = INSTANCE.entries.get(Thread.currentThread());
-            if (e != null) {
-                if (e.count <= 0) {
-                    INSTANCE.entries.remove(Thread.currentThread());
-                } else {
-                    e.count--;
-                }
-            }
+        if (!ENABLED) {
+            return;
+        }
+        Entry e = INSTANCE.threadEntry.get();
+        if (e.depth > 0 && --e.depth == 0) {
+            e.generation++;
         }
     }
 
+    private Entry register() {
+        Entry e = new Entry(Thread.currentThread());
+        entries.add(e);
+        return e;
+    }
+
     private static Thread init() {
         Thread t = new Thread(INSTANCE::run);
         t.setName("WorldGen hang watchdog thread");
@@ -90,66 +115,136 @@ public class WorldgenHangWatchdog {
         return t;
     }
 
-    @SuppressWarnings("deprecation")
     private void run() {
         if (!ENABLED) {
             return;
         }
         while (true) {
             try {
-                Thread.sleep(500);
+                Thread.sleep(SAMPLE_INTERVAL_MS);
             } catch (InterruptedException e) {
                 e.printStackTrace();
             }
-            synchronized (entries) {
-                for (Iterator<Map.Entry<Thread, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext(); ) {
-                    Map.Entry<Thread, Entry> entry = iterator.next();
-                    Thread t = entry.getKey();
-                    Entry e = entry.getValue();
-
-                    e.samples.add(t.getStackTrace());
-
-                    long currentTime = System.nanoTime();
-
-                    long dt = currentTime - e.startTime;
-
-                    if (dt > TimeUnit.SECONDS.toNanos(10)) {
-                        StringBuilder sb = new StringBuilder();
-                        sb.append("World generation taking ").append(dt / (double) TimeUnit.SECONDS.toNanos(1))
-                                .append(" seconds, should be less than 50ms. Stopping the server.\n");
-
-                        sb.append("Samples collected during world generation:\n");
-                        int i = 1;
-                        for (StackTraceElement[] stacktrace : e.samples) {
-                            sb.append("--------------------------------------------\n");
-
-                            Set<String> likelyModsInvolved = CompatHandler.getModsForStacktrace(stacktrace);
-                            sb.append("SAMPLE #").append(i).append(", likely mods involved: ").append(String.join(", ", likelyModsInvolved))
-                                    .append('\n');
-                            for (StackTraceElement traceElement : stacktrace) {
-                                sb.append("\tat ").append(traceElement).append('\n');
-                            }
-                            i++;
-                        }
-                        String msg = sb.toString();
-                        crashInfo = msg;
-                        CubicChunks.LOGGER.fatal(msg);
-                        t.stop();
-                        iterator.remove();
-                    }
+            long sampleThreshold = TimeUnit.MILLISECONDS.toNanos(CubicChunksConfig.worldGenWatchdogSampleThreshold);
+            for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext(); ) {
+                Entry e = iterator.next();
+                Thread t = e.thread.get();
+                if (t == null || !t.isAlive()) {
+                    iterator.remove();
+                    continue;
                 }
+                check(t, e, sampleThreshold);
             }
         }
     }
 
-    private static class Entry {
+    @SuppressWarnings("deprecation")
+    private void check(Thread t, Entry e, long sampleThreshold) {
+        int generation = e.generation;
+        long currentTime = System.nanoTime();
+        if (generation != e.seenGeneration) {
+            if (!e.samples.isEmpty() && !e.stopped) {
+                CubicChunks.LOGGER.warn("World generation on thread {} took over {} ms. Most common stack frames:\n{}", t.getName(),
+                        TimeUnit.NANOSECONDS.toMillis(e.lastSampleTime - e.seenTime), hotFrames(e.samples));
+            }
+            e.samples.clear();
+            e.stopped = false;
+            e.seenGeneration = generation;
+            e.seenTime = currentTime;
+        }
+        if ((generation & 1) == 0 || e.stopped) {
+            return;
+        }
+        long dt = currentTime - e.seenTime;
+        if (dt < sampleThreshold) {
+            return;
+        }
+        StackTraceElement[] stacktrace = t.getStackTrace();
+        if (e.generation != generation) {
+            return; // finished while taking the stack trace, it's of something else
+        }
+        e.samples.add(stacktrace);
+        e.lastSampleTime = currentTime;
+
+        if (dt > MAX_GENERATION_TIME) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("World generation taking ").append(dt / (double) TimeUnit.SECONDS.toNanos(1))
+                    .append(" seconds, should be less than 50ms. Stopping the server.\n");
+
+            sb.append("Most common stack frames:\n").append(hotFrames(e.samples));
+            sb.append("Samples collected during world generation:\n");
+            int i = 1;
+            for (StackTraceElement[] sample : e.samples) {
+                sb.append("--------------------------------------------\n");
+
+                Set<String> likelyModsInvolved = CompatHandler.getModsForStacktrace(sample);
+                sb.append("SAMPLE #").append(i).append(", likely mods involved: ").append(String.join(", ", likelyModsInvolved))
+                        .append('\n');
+                for (StackTraceElement traceElement : sample) {
+                    sb.append("\tat ").append(traceElement).append('\n');
+                }
+                i++;
+            }
+            String msg = sb.toString();
+            crashInfo = msg;
+            CubicChunks.LOGGER.fatal(msg);
+            e.stopped = true;
+            t.stop();
+        }
+    }
 
-        long startTime;
-        int count;
-        List<StackTraceElement[]> samples = new ArrayList<>();
+    /**
+     * Lists the stack frames that appear in the most samples, each with the fraction of samples it appears in.
+     */
+    private static String hotFrames(List<StackTraceElement[]> samples) {
+        Map<StackTraceElement, Integer> counts = new LinkedHashMap<>();
+        Set<StackTraceElement> inSample = new HashSet<>();
+        for (StackTraceElement[] sample : samples) {
+            inSample.clear();
+            for (StackTraceElement frame : sample) {
+                // recursive calls count once per sample
+                if (inSample.add(frame)) {
+                    counts.merge(frame, 1, Integer::sum);
+                }
+            }
+        }
+        List<Map.Entry<StackTraceElement, Integer>> sorted = new ArrayList<>(counts.entrySet());
+        // the sort is stable, so with equal counts the innermost frames of the earliest samples come first
+        Collections.sort(sorted, (a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(HOT_FRAMES, sorted.size()); i++) {
+            Map.Entry<StackTraceElement, Integer> entry = sorted.get(i);
+            Set<String> mods = CompatHandler.getModsForStacktrace(new StackTraceElement[]{entry.getKey()});
+            sb.append(String.format("\t%3d/%d at %s", entry.getValue(), samples.size(), entry.getKey()));
+            if (!mods.isEmpty()) {
+                sb.append(" [").append(String.join(", ", mods)).append(']');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static class Entry {
 
-        Entry() {
-            startTime = System.nanoTime();
+        final WeakReference<Thread> thread;
+
+        // only accessed by the generating thread
+        int depth;
+        /**
+         * Incremented when the outermost generation call starts and when it ends, so it's odd while generating. Only
+         * written by the generating thread.
+         */
+        volatile int generation;
+
+        // only accessed by the watchdog thread
+        int seenGeneration;
+        long seenTime;
+        long lastSampleTime;
+        boolean stopped;
+        final List<StackTraceElement[]> samples = new ArrayList<>();
+
+        Entry(Thread thread) {
+            this.thread = new WeakReference<>(thread);
         }
     }
 }
@@ -0,0 +1,142 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.worldgen.generator.flat;
+
+import io.github.opencubicchunks.cubicchunks.api.util.Box;
+import io.github.opencubicchunks.cubicchunks.api.util.Coords;
+import io.github.opencubicchunks.cubicchunks.api.world.ICube;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.EnumCreatureType;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.Chunk;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * A generator of flat layers, infinite downwards, in a single biome. It has no state other than its immutable
+ * configuration, so it supports {@link #isThreadSafeTerrainGeneration() generating terrain on other threads}, and is
+ * meant as the reference for generators that do.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class FlatCubeGenerator implements ICubeGenerator {
+
+    private final Biome biome;
+    private final int minY;
+    private final IBlockState[] layers;
+
+    /**
+     * @param biome the biome of the whole world
+     * @param minY the y coordinate of the lowest layer, all blocks below are the same as that layer
+     * @param layers the block of each layer, from the bottom. Blocks above the top layer are air
+     */
+    public FlatCubeGenerator(Biome biome, int minY, IBlockState... layers) {
+        if (layers.length == 0) {
+            throw new IllegalArgumentException("At least one layer is required");
+        }
+        this.biome = biome;
+        this.minY = minY;
+        this.layers = layers.clone();
+    }
+
+    @Override
+    public CubePrimer generateCube(int cubeX, int cubeY, int cubeZ) {
+        CubePrimer primer = new CubePrimer();
+        int minBlockY = Coords.cubeToMinBlock(cubeY);
+        for (int localY = 0; localY < Cube.SIZE; localY++) {
+            IBlockState state = this.getLayer(minBlockY + localY);
+            if (state == CubePrimer.DEFAULT_STATE) {
+                continue;
+            }
+            for (int localZ = 0; localZ < Cube.SIZE; localZ++) {
+                for (int localX = 0; localX < Cube.SIZE; localX++) {
+                    primer.setBlockState(localX, localY, localZ, state);
+                }
+            }
+        }
+        return primer;
+    }
+
+    private IBlockState getLayer(int blockY) {
+        // long to avoid overflow far from minY
+        long layer = (long) blockY - this.minY;
+        if (layer < 0) {
+            return this.layers[0];
+        }
+        return layer < this.layers.length ? this.layers[(int) layer] : Blocks.AIR.getDefaultState();
+    }
+
+    @Override
+    public boolean isThreadSafeTerrainGeneration() {
+        return true;
+    }
+
+    @Override
+    public void generateColumn(Chunk column) {
+        Arrays.fill(column.getBiomeArray(), (byte) Biome.getIdForBiome(this.biome));
+    }
+
+    @Override
+    public void populate(ICube cube) {
+    }
+
+    @Override
+    public Box getFullPopulationRequirements(ICube cube) {
+        return NO_REQUIREMENT;
+    }
+
+    @Override
+    public Box getPopulationPregenerationRequirements(ICube cube) {
+        return NO_REQUIREMENT;
+    }
+
+    @Override
+    public void recreateStructures(ICube cube) {
+    }
+
+    @Override
+    public void recreateStructures(Chunk column) {
+    }
+
+    @Override
+    public List<Biome.SpawnListEntry> getPossibleCreatures(EnumCreatureType type, BlockPos pos) {
+        return this.biome.getSpawnableList(type);
+    }
+
+    @Nullable @Override
+    public BlockPos getClosestStructure(String name, BlockPos pos, boolean findUnexplored) {
+        return null;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.worldgen.generator.vanilla;
+
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Chunks generated by a vanilla generator for {@link VanillaCompatibilityGenerator}, so that cubes of a column requested
+ * between cubes of other columns don't make the whole chunk generate again.
+ * <p>
+ * The least recently used chunk is evicted when the cache is full. A chunk is also evicted as soon as all of its cubes
+ * were copied from it, as it won't be needed again.
+ *
+ * @param <T> the chunk type
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+final class VanillaChunkCache<T> {
+
+    // access order, the first entry is the least recently used one
+    private final LinkedHashMap<Long, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Gets the chunk at the given position, generating it if it's not cached.
+     *
+     * @param maxSize maximum number of cached chunks
+     */
+    T get(int chunkX, int chunkZ, int maxSize, Generator<T> generator) {
+        long key = ChunkPos.asLong(chunkX, chunkZ);
+        Entry<T> entry = this.entries.get(key);
+        if (entry == null) {
+            entry = new Entry<>(generator.generate(chunkX, chunkZ));
+            this.entries.put(key, entry);
+            Iterator<Entry<T>> it = this.entries.values().iterator();
+            while (this.entries.size() > Math.max(1, maxSize)) {
+                it.next();
+                it.remove();
+            }
+        }
+        return entry.chunk;
+    }
+
+    /**
+     * Adds an already generated chunk.
+     */
+    void put(int chunkX, int chunkZ, T chunk) {
+        this.entries.put(ChunkPos.asLong(chunkX, chunkZ), new Entry<>(chunk));
+    }
+
+    /**
+     * Marks a cube as copied from the chunk at the given position, and evicts the chunk once all of its cubes are.
+     *
+     * @param cubesPerChunk number of cubes copied from each chunk
+     */
+    void onCubeCopied(int chunkX, int chunkZ, int cubeY, int cubesPerChunk) {
+        long key = ChunkPos.asLong(chunkX, chunkZ);
+        Entry<T> entry = this.entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        entry.copiedCubes.set(cubeY);
+        if (entry.copiedCubes.cardinality() >= cubesPerChunk) {
+            this.entries.remove(key);
+        }
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    private static final class Entry<T> {
+
+        final T chunk;
+        final BitSet copiedCubes = new BitSet();
+
+        Entry(T chunk) {
+            this.chunk = chunk;
+        }
+    }
+
+    @FunctionalInterface
+    interface Generator<T> {
+
+        T generate(int chunkX, int chunkZ);
+    }
+}
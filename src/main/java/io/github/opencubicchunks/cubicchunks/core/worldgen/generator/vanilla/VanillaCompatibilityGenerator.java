@@ -31,6 +31,7 @@ import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorld;
 import io.github.opencubicchunks.cubicchunks.api.worldgen.CubeGeneratorsRegistry;
 import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
 import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.UniformCubePrimer;
 import io.github.opencubicchunks.cubicchunks.core.CubicChunks;
 import io.github.opencubicchunks.cubicchunks.core.CubicChunksConfig;
 import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
@@ -83,13 +84,9 @@ public class VanillaCompatibilityGenerator implements ICubeGenerator {
     @Nonnull private final IChunkGenerator vanilla;
     @Nonnull private final World world;
     /**
-     * Last chunk that was generated from the vanilla world gen
+     * Chunks generated from the vanilla world gen that still have cubes to copy
      */
-    private Chunk lastChunk;
-    /**
-     * We generate all the chunks in the vanilla range at once. This variable prevents infinite recursion
-     */
-    private boolean optimizationHack;
+    private final VanillaChunkCache<Chunk> chunkCache = new VanillaChunkCache<>();
     private Biome[] biomes;
     /**
      * Detected block for filling cubes below the world
@@ -137,14 +134,15 @@ public class VanillaCompatibilityGenerator implements ICubeGenerator {
         }
         isInit = true;
         // heuristics TODO: add a config that overrides this
-        lastChunk = vanilla.generateChunk(0, 0); // lets scan the chunk at 0, 0
+        Chunk scannedChunk = vanilla.generateChunk(0, 0); // lets scan the chunk at 0, 0
+        chunkCache.put(0, 0, scannedChunk);
 
         int worldHeightBlocks = ((ICubicWorld) world).getMaxGenerationHeight();
         worldHeightCubes = worldHeightBlocks / Cube.SIZE;
         Map<IBlockState, Integer> blockHistogramBottom = new HashMap<>();
         Map<IBlockState, Integer> blockHistogramTop = new HashMap<>();
 
-        ExtendedBlockStorage bottomEBS = lastChunk.getBlockStorageArray()[0];
+        ExtendedBlockStorage bottomEBS = scannedChunk.getBlockStorageArray()[0];
         for (int x = 0; x < Cube.SIZE; x++) {
             for (int z = 0; z < Cube.SIZE; z++) {
                 // Scan three layers top / bottom each to guard against bedrock walls
@@ -158,7 +156,7 @@ public class VanillaCompatibilityGenerator implements ICubeGenerator {
 
                 for (int y = worldHeightBlocks - 1; y > worldHeightBlocks - 4; y--) {
                     int localY = Coords.blockToLocal(y);
-                    ExtendedBlockStorage ebs = lastChunk.getBlockStorageArray()[Coords.blockToCube(y)];
+                    ExtendedBlockStorage ebs = scannedChunk.getBlockStorageArray()[Coords.blockToCube(y)];
 
                     IBlockState blockState = ebs == null ? Blocks.AIR.getDefaultState() : ebs.get(x, localY, z);
 
@@ -226,6 +224,10 @@ public class VanillaCompatibilityGenerator implements ICubeGenerator {
         try {
             WorldgenHangWatchdog.startWorldGen();
             tryInit(vanilla, world);
+            if ((cubeY < 0 || cubeY >= worldHeightCubes) && !mayReplaceWithBedrock(cubeY)) {
+                // nothing to randomize, the whole cube is the extension block
+                return new UniformCubePrimer(cubeY < 0 ? extensionBlockBottom : extensionBlockTop);
+            }
             CubePrimer primer = new CubePrimer();
 
             Random rand = new Random(world.getSeed());
@@ -246,42 +248,20 @@ public class VanillaCompatibilityGenerator implements ICubeGenerator {
                 }
             } else {
                 // Make vanilla generate a chunk for us to copy
-                if (lastChunk.x != cubeX || lastChunk.z != cubeZ) {
-                    if (CubicChunksConfig.optimizedCompatibilityGenerator&&false) {
-                        try (ICubicWorldInternal.CompatGenerationScope ignored =
-                                     ((ICubicWorldInternal.Server) world).doCompatibilityGeneration()) {
-                            lastChunk = vanilla.generateChunk(cubeX, cubeZ);
-                            ChunkPrimer chunkPrimer = ((IColumnInternal) lastChunk).getCompatGenerationPrimer();
-                            replaceBedrock(chunkPrimer);
-                        }
-                    } else {
-                        lastChunk = vanilla.generateChunk(cubeX, cubeZ);
-                    }
-                }
-
-                if (!optimizationHack) {
-                    optimizationHack = true;
-                    // Recusrive generation
-                    for (int y = worldHeightCubes - 1; y >= 0; y--) {
-                        if (y == cubeY) {
-                            continue;
-                        }
-                        ((ICubicWorld) world).getCubeFromCubeCoords(cubeX, y, cubeZ);
-                    }
-                    optimizationHack = false;
-                }
+                Chunk chunk = chunkCache.get(cubeX, cubeZ, CubicChunksConfig.compatibilityGeneratorChunkCacheSize, this::generateVanillaChunk);
+                chunkCache.onCubeCopied(cubeX, cubeZ, cubeY, worldHeightCubes);
 
                 // Copy from vanilla, replacing bedrock as appropriate
-                ChunkPrimer chunkPrimer = ((IColumnInternal) lastChunk).getCompatGenerationPrimer();
+                ChunkPrimer chunkPrimer = ((IColumnInternal) chunk).getCompatGenerationPrimer();
                 if (chunkPrimer != null) {
                     return new CubePrimerWrapper(chunkPrimer, cubeY);
                 }
-                ExtendedBlockStorage storage = lastChunk.getBlockStorageArray()[cubeY];
+                ExtendedBlockStorage storage = chunk.getBlockStorageArray()[cubeY];
                 if (((ICubicWorld) world).getMaxHeight() == 16) {
                     if (cubeY != 0) {
                         storage = null;
                     } else {
-                        storage = lastChunk.getBlockStorageArray()[4];
+                        storage = chunk.getBlockStorageArray()[4];
                     }
                 }
                 if (storage != null && !storage.isEmpty()) {
@@ -316,6 +296,33 @@ public class VanillaCompatibilityGenerator implements ICubeGenerator {
         }
     }
 
+    /**
+     * Whether {@link WorldGenUtils#getRandomBedrockReplacement} could place bedrock in the given cube, which only
+     * happens in the bottom and top block layer of the world.
+     */
+    private boolean mayReplaceWithBedrock(int cubeY) {
+        int minBlockY = Coords.cubeToMinBlock(cubeY);
+        int maxBlockY = Coords.cubeToMaxBlock(cubeY);
+        return (hasBottomBedrock && minBlockY <= ((ICubicWorld) world).getMinHeight())
+                || (hasTopBedrock && maxBlockY >= ((ICubicWorld) world).getMaxHeight() - 1);
+    }
+
+    private Chunk generateVanillaChunk(int chunkX, int chunkZ) {
+        if (!CubicChunksConfig.optimizedCompatibilityGenerator) {
+            return vanilla.generateChunk(chunkX, chunkZ);
+        }
+        // keeps the ChunkPrimer around, so that cubes can be copied from it directly
+        try (ICubicWorldInternal.CompatGenerationScope ignored =
+                     ((ICubicWorldInternal.Server) world).doCompatibilityGeneration()) {
+            Chunk chunk = vanilla.generateChunk(chunkX, chunkZ);
+            ChunkPrimer chunkPrimer = ((IColumnInternal) chunk).getCompatGenerationPrimer();
+            if (chunkPrimer != null) {
+                replaceBedrock(chunkPrimer);
+            }
+            return chunk;
+        }
+    }
+
     private void replaceBedrock(ChunkPrimer chunkPrimer) {
         for (int y = 0; y < 8; y++) {
             replaceBedrockAtLayer(chunkPrimer, y);
@@ -0,0 +1,426 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.google.common.collect.Sets;
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.world.ICubeProviderServer;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
+import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
+import io.github.opencubicchunks.cubicchunks.core.server.CubeProviderServer;
+import io.github.opencubicchunks.cubicchunks.core.server.PlayerCubeMap;
+import io.github.opencubicchunks.cubicchunks.core.server.chunkio.ICubeIO;
+import io.github.opencubicchunks.cubicchunks.core.server.chunkio.async.forge.AsyncWorldIOExecutor;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import mcp.MethodsReturnNonnullByDefault;
+import net.daporkchop.ldbjni.LevelDB;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTSizeTracker;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.Options;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Stress test for {@link AsyncWorldIOExecutor} against a temporary LevelDB. Column loads are held back until every
+ * queued cube has been read from the database, so this only finishes if cube reads never wait for their column.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestAsyncWorldIOExecutor {
+
+    private static final int RADIUS = 8;
+    private static final int HEIGHT = 16;
+
+    private Path dir;
+    private DB db;
+
+    @Before
+    public void setUp() throws IOException {
+        this.dir = Files.createTempDirectory("cubicchunks-async-io-test");
+        this.db = LevelDB.PROVIDER.open(this.dir.toFile(), new Options());
+        for (int x = -RADIUS; x < RADIUS; x++) {
+            for (int z = -RADIUS; z < RADIUS; z++) {
+                this.db.put(key(x, Integer.MIN_VALUE, z), new byte[1]);
+                for (int y = 0; y < HEIGHT; y++) {
+                    NBTTagCompound nbt = new NBTTagCompound();
+                    nbt.setInteger("x", x);
+                    nbt.setInteger("y", y);
+                    nbt.setInteger("z", z);
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    CompressedStreamTools.write(nbt, new DataOutputStream(out));
+                    this.db.put(key(x, y, z), out.toByteArray());
+                }
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.db.close();
+        try (Stream<Path> files = Files.walk(this.dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testInterleavedLoads() throws InterruptedException {
+        List<CubePos> cubes = new ArrayList<>();
+        for (int x = -RADIUS; x < RADIUS; x++) {
+            for (int z = -RADIUS; z < RADIUS; z++) {
+                for (int y = 0; y < HEIGHT; y++) {
+                    cubes.add(new CubePos(x, y, z));
+                }
+            }
+        }
+        Random random = new Random(42);
+        Collections.shuffle(cubes, random);
+        // the last few cubes are loaded synchronously once everything else is done
+        List<CubePos> syncCubes = new ArrayList<>(cubes.subList(cubes.size() - 64, cubes.size()));
+        List<CubePos> asyncCubes = cubes.subList(0, cubes.size() - 64);
+
+        TestCubeIO loader = new TestCubeIO(asyncCubes.size());
+        Map<ChunkPos, Chunk> loadedColumns = new ConcurrentHashMap<>();
+        World world = mock(World.class, withSettings().extraInterfaces(ICubicWorldInternal.Server.class));
+        CubeProviderServer cache = mock(CubeProviderServer.class);
+        when(((ICubicWorldInternal.Server) world).getCubeCache()).thenReturn(cache);
+        when(cache.getCubeGenerator()).thenReturn(mock(ICubeGenerator.class));
+        when(cache.getLoadedColumn(anyInt(), anyInt())).thenAnswer(inv ->
+                loadedColumns.get(new ChunkPos((Integer) inv.getArguments()[0], (Integer) inv.getArguments()[1])));
+        doAnswer(inv -> {
+            int x = (Integer) inv.getArguments()[0];
+            int z = (Integer) inv.getArguments()[1];
+            @SuppressWarnings("unchecked")
+            Consumer<Chunk> callback = (Consumer<Chunk>) inv.getArguments()[3];
+            AsyncWorldIOExecutor.queueColumnLoad(world, loader, x, z, col -> {
+                loadedColumns.put(new ChunkPos(x, z), col);
+                callback.accept(col);
+            });
+            return null;
+        }).when(cache).asyncGetColumn(anyInt(), anyInt(), any(ICubeProviderServer.Requirement.class), any());
+        when(cache.getColumn(anyInt(), anyInt(), any(ICubeProviderServer.Requirement.class))).thenAnswer(inv -> {
+            int x = (Integer) inv.getArguments()[0];
+            int z = (Integer) inv.getArguments()[1];
+            return loadedColumns.computeIfAbsent(new ChunkPos(x, z), p -> AsyncWorldIOExecutor.syncColumnLoad(world, loader, x, z));
+        });
+
+        Map<CubePos, Cube> loaded = new ConcurrentHashMap<>();
+        AtomicInteger callbacks = new AtomicInteger();
+        int expectedCallbacks = 0;
+        for (CubePos pos : asyncCubes) {
+            // request some cubes more than once, and some columns on their own
+            int requests = random.nextInt(8) == 0 ? 2 : 1;
+            for (int i = 0; i < requests; i++) {
+                expectedCallbacks++;
+                AsyncWorldIOExecutor.queueCubeLoad(world, loader, cache, pos.getX(), pos.getY(), pos.getZ(), cube -> {
+                    assertNotNull("Cube " + pos + " was not loaded", cube);
+                    assertSame(cube, loader.createdCubes.get(pos));
+                    loaded.put(pos, cube);
+                    callbacks.incrementAndGet();
+                });
+            }
+            if (random.nextInt(16) == 0) {
+                cache.asyncGetColumn(pos.getX(), pos.getZ(), ICubeProviderServer.Requirement.LIGHT, col -> {});
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (callbacks.get() < expectedCallbacks) {
+            assertTrue("Timed out, " + callbacks.get() + "/" + expectedCallbacks + " cube callbacks done", System.nanoTime() < deadline);
+            AsyncWorldIOExecutor.tick();
+            Thread.sleep(1);
+        }
+
+        for (CubePos pos : syncCubes) {
+            Cube cube = AsyncWorldIOExecutor.syncCubeLoad(world, loader, cache, pos.getX(), pos.getY(), pos.getZ());
+            assertNotNull("Cube " + pos + " was not loaded", cube);
+            assertSame(cube, loader.createdCubes.get(pos));
+            loaded.put(pos, cube);
+        }
+
+        assertFalse("A column load waited for cube reads that didn't happen", loader.columnWaitTimedOut.get());
+        assertEquals(cubes.size(), loaded.size());
+        assertEquals(cubes.size(), loader.createdCubes.size());
+        assertEquals(cubes.size(), loader.cubeReads.get());
+    }
+
+    @Test
+    public void testUnwatchedLoadKeepsCallbacks() throws InterruptedException {
+        CubePos blocker = new CubePos(0, 0, 0);
+        CubePos target = new CubePos(1, 0, 0);
+        CountDownLatch blockerStarted = new CountDownLatch(1);
+        CountDownLatch releaseBlocker = new CountDownLatch(1);
+        // holds the only cube I/O thread, so that the target load stays queued while the loads are reordered
+        TestCubeIO loader = new TestCubeIO(0) {
+            @Nullable @Override public CubeRecord loadCubeRecord(int cubeX, int cubeY, int cubeZ) throws IOException {
+                if (blocker.equals(new CubePos(cubeX, cubeY, cubeZ))) {
+                    blockerStarted.countDown();
+                    try {
+                        releaseBlocker.await(30, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return super.loadCubeRecord(cubeX, cubeY, cubeZ);
+            }
+        };
+        WorldServer world = mock(WorldServer.class, withSettings().extraInterfaces(ICubicWorldInternal.Server.class));
+        CubeProviderServer cache = mock(CubeProviderServer.class);
+        PlayerCubeMap playerCubeMap = mock(PlayerCubeMap.class);
+        when(((ICubicWorldInternal.Server) world).getCubeCache()).thenReturn(cache);
+        when(world.getPlayerChunkMap()).thenReturn(playerCubeMap);
+        // the load is requested with a player close by, who leaves before it starts
+        when(playerCubeMap.getClosestWatchingPlayerDistance(any(CubePos.class))).thenReturn(0.0, 0.0, Double.POSITIVE_INFINITY);
+        Chunk column = loader.loadColumn(0, 0);
+        Chunk column1 = loader.loadColumn(1, 0);
+        when(cache.getLoadedColumn(0, 0)).thenReturn(column);
+        when(cache.getLoadedColumn(1, 0)).thenReturn(column1);
+
+        AtomicInteger blockerCallbacks = new AtomicInteger();
+        AtomicInteger targetCallbacks = new AtomicInteger();
+        AsyncWorldIOExecutor.queueCubeLoad(world, loader, cache, blocker.getX(), blocker.getY(), blocker.getZ(),
+                cube -> blockerCallbacks.incrementAndGet());
+        assertTrue(blockerStarted.await(30, TimeUnit.SECONDS));
+        // not a watcher, for example world pregeneration
+        AsyncWorldIOExecutor.queueCubeLoad(world, loader, cache, target.getX(), target.getY(), target.getZ(),
+                cube -> targetCallbacks.incrementAndGet());
+
+        // queued loads are reordered at most every 500ms
+        Thread.sleep(600);
+        AsyncWorldIOExecutor.tick();
+        releaseBlocker.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (targetCallbacks.get() == 0 || blockerCallbacks.get() == 0) {
+            assertTrue("Callback of an unwatched load was dropped", System.nanoTime() < deadline);
+            AsyncWorldIOExecutor.tick();
+            Thread.sleep(1);
+        }
+        assertEquals(1, targetCallbacks.get());
+        assertNotNull(loader.createdCubes.get(target));
+    }
+
+    @Test
+    public void testDroppedLoadIsCancelled() throws InterruptedException {
+        ChunkPos blocker = new ChunkPos(0, 0);
+        ChunkPos target = new ChunkPos(1, 0);
+        ChunkPos after = new ChunkPos(2, 0);
+        CubePos targetCube = new CubePos(1, 0, 0);
+        CountDownLatch blockerStarted = new CountDownLatch(1);
+        CountDownLatch releaseBlocker = new CountDownLatch(1);
+        Set<ChunkPos> columnReads = Sets.newConcurrentHashSet();
+        // holds the only column I/O thread, so that the target column load stays queued until it's dropped
+        TestCubeIO loader = new TestCubeIO(0) {
+            @Nullable @Override public Chunk loadColumn(int chunkX, int chunkZ) throws IOException {
+                columnReads.add(new ChunkPos(chunkX, chunkZ));
+                if (blocker.equals(new ChunkPos(chunkX, chunkZ))) {
+                    blockerStarted.countDown();
+                    try {
+                        releaseBlocker.await(30, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return super.loadColumn(chunkX, chunkZ);
+            }
+        };
+        WorldServer world = mock(WorldServer.class, withSettings().extraInterfaces(ICubicWorldInternal.Server.class));
+        CubeProviderServer cache = mock(CubeProviderServer.class);
+        PlayerCubeMap playerCubeMap = mock(PlayerCubeMap.class);
+        when(((ICubicWorldInternal.Server) world).getCubeCache()).thenReturn(cache);
+        when(world.getPlayerChunkMap()).thenReturn(playerCubeMap);
+        when(cache.getCubeGenerator()).thenReturn(mock(ICubeGenerator.class));
+        // columns further in +x go later, so the target would be read before the column after it if it was still queued
+        when(playerCubeMap.getClosestWatchingPlayerDistance(any(ChunkPos.class)))
+                .thenAnswer(inv -> ((ChunkPos) inv.getArguments()[0]).x * 100.0);
+        // like CubeProviderServer, but without post processing the column
+        doAnswer(inv -> {
+            @SuppressWarnings("unchecked")
+            Consumer<Chunk> callback = (Consumer<Chunk>) inv.getArguments()[3];
+            AsyncWorldIOExecutor.queueColumnLoad(world, loader, (Integer) inv.getArguments()[0], (Integer) inv.getArguments()[1], callback);
+            return null;
+        }).when(cache).asyncGetColumn(anyInt(), anyInt(), any(ICubeProviderServer.Requirement.class), any());
+        doAnswer(inv -> {
+            @SuppressWarnings("unchecked")
+            Consumer<Chunk> callback = (Consumer<Chunk>) inv.getArguments()[2];
+            AsyncWorldIOExecutor.dropQueuedColumnLoad(world, (Integer) inv.getArguments()[0], (Integer) inv.getArguments()[1], callback);
+            return null;
+        }).when(cache).dropAsyncGetColumn(anyInt(), anyInt(), any());
+
+        AtomicInteger blockerCallbacks = new AtomicInteger();
+        AsyncWorldIOExecutor.queueColumnLoad(world, loader, blocker.x, blocker.z, col -> blockerCallbacks.incrementAndGet());
+        assertTrue(blockerStarted.await(30, TimeUnit.SECONDS));
+
+        // a column watcher and a cube watcher wait for the target column, then their players leave
+        AtomicInteger droppedCallbacks = new AtomicInteger();
+        Consumer<Chunk> columnCallback = col -> droppedCallbacks.incrementAndGet();
+        Consumer<Cube> cubeCallback = cube -> droppedCallbacks.incrementAndGet();
+        cache.asyncGetColumn(target.x, target.z, ICubeProviderServer.Requirement.LIGHT, columnCallback);
+        AsyncWorldIOExecutor.queueCubeLoad(world, loader, cache, targetCube.getX(), targetCube.getY(), targetCube.getZ(), cubeCallback);
+        cache.dropAsyncGetColumn(target.x, target.z, columnCallback);
+        AsyncWorldIOExecutor.dropQueuedCubeLoad(world, targetCube.getX(), targetCube.getY(), targetCube.getZ(), cubeCallback);
+
+        AtomicInteger afterCallbacks = new AtomicInteger();
+        AsyncWorldIOExecutor.queueColumnLoad(world, loader, after.x, after.z, col -> afterCallbacks.incrementAndGet());
+        releaseBlocker.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (afterCallbacks.get() == 0 || blockerCallbacks.get() == 0) {
+            assertTrue("Timed out waiting for the column loads that are still needed", System.nanoTime() < deadline);
+            AsyncWorldIOExecutor.tick();
+            Thread.sleep(1);
+        }
+        assertFalse("Column load that nothing waits for anymore was not cancelled", columnReads.contains(target));
+        assertEquals(0, droppedCallbacks.get());
+        assertNull(loader.createdCubes.get(targetCube));
+    }
+
+    private static byte[] key(int x, int y, int z) {
+        return ByteBuffer.allocate(12).putInt(y).putInt(x).putInt(z).array();
+    }
+
+    private class TestCubeIO implements ICubeIO {
+
+        final CountDownLatch pendingCubeReads;
+        final AtomicBoolean columnWaitTimedOut = new AtomicBoolean();
+        final AtomicInteger cubeReads = new AtomicInteger();
+        final Map<Chunk, ChunkPos> columnPositions = new ConcurrentHashMap<>();
+        final Map<CubePos, Cube> createdCubes = new ConcurrentHashMap<>();
+
+        TestCubeIO(int asyncCubes) {
+            this.pendingCubeReads = new CountDownLatch(asyncCubes);
+        }
+
+        @Nullable @Override public Chunk loadColumn(int chunkX, int chunkZ) throws IOException {
+            try {
+                if (!this.pendingCubeReads.await(30, TimeUnit.SECONDS)) {
+                    this.columnWaitTimedOut.set(true);
+                }
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (db.get(key(chunkX, Integer.MIN_VALUE, chunkZ)) == null) {
+                return null;
+            }
+            Chunk column = mock(Chunk.class);
+            this.columnPositions.put(column, new ChunkPos(chunkX, chunkZ));
+            return column;
+        }
+
+        @Nullable @Override public CubeRecord loadCubeRecord(int cubeX, int cubeY, int cubeZ) throws IOException {
+            byte[] data = db.get(key(cubeX, cubeY, cubeZ));
+            this.cubeReads.incrementAndGet();
+            this.pendingCubeReads.countDown();
+            if (data == null) {
+                return null;
+            }
+            return CubeRecord.ofNbt(CompressedStreamTools.read(new DataInputStream(new ByteArrayInputStream(data)), NBTSizeTracker.INFINITE));
+        }
+
+        @Nullable @Override public PartialCubeData loadCubeAsyncPart(Chunk column, int cubeY, CubeRecord record) {
+            NBTTagCompound nbt = record.getNbt();
+            ChunkPos columnPos = this.columnPositions.get(column);
+            CubePos pos = new CubePos(nbt.getInteger("x"), nbt.getInteger("y"), nbt.getInteger("z"));
+            assertEquals(columnPos, pos.chunkPos());
+            assertEquals(cubeY, pos.getY());
+            Cube cube = mock(Cube.class);
+            assertNull("Cube " + pos + " created twice", this.createdCubes.put(pos, cube));
+            return new PartialCubeData(cube, nbt);
+        }
+
+        @Override public void loadCubeSyncPart(PartialCubeData info) {
+        }
+
+        @Override public void flush() {
+        }
+
+        @Override public void saveColumn(Chunk column) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public void saveCube(Cube cube) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override public boolean cubeExists(int cubeX, int cubeY, int cubeZ) {
+            return false;
+        }
+
+        @Override public boolean columnExists(int columnX, int columnZ) {
+            return false;
+        }
+
+        @Override public int getPendingColumnCount() {
+            return 0;
+        }
+
+        @Override public int getPendingCubeCount() {
+            return 0;
+        }
+
+        @Override public boolean writeNextIO() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks;
+
+import static org.junit.Assert.*;
+
+import io.github.opencubicchunks.cubicchunks.core.server.chunkio.BinaryCubeCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import mcp.MethodsReturnNonnullByDefault;
+import org.junit.Test;
+import java.util.Arrays;
+import java.util.Random;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestBinaryCubeCodec {
+
+    private static final int BLOCKS = 4096;
+
+    // distinct objects, the codec compares states by identity
+    private static final State[] STATES = new State[1000];
+
+    static {
+        for (int i = 0; i < STATES.length; i++) {
+            STATES[i] = new State(i * 16 + 3);
+        }
+    }
+
+    @Test
+    public void testSingleState() {
+        State[] blocks = new State[BLOCKS];
+        Arrays.fill(blocks, STATES[5]);
+        ByteBuf buf = Unpooled.buffer();
+        BinaryCubeCodec.writeBlocks(buf, i -> blocks[i], s -> s.id);
+        // palette size and one id, no indices
+        assertEquals(2, buf.readableBytes());
+        assertArrayEquals(blocks, readBlocks(buf, null));
+    }
+
+    @Test
+    public void testDefaultStateIsNotSet() {
+        State[] blocks = new State[BLOCKS];
+        Arrays.fill(blocks, STATES[0]);
+        blocks[100] = STATES[1];
+        ByteBuf buf = Unpooled.buffer();
+        BinaryCubeCodec.writeBlocks(buf, i -> blocks[i], s -> s.id);
+        int[] setCount = new int[1];
+        BinaryCubeCodec.readBlocks(buf, id -> STATES[(id - 3) / 16], (state, i) -> {
+            assertSame(STATES[1], state);
+            assertEquals(100, i);
+            setCount[0]++;
+        }, STATES[0]);
+        assertEquals(1, setCount[0]);
+    }
+
+    @Test
+    public void testPaletteSizes() {
+        Random random = new Random(42);
+        for (int paletteSize : new int[]{2, 3, 15, 16, 17, 33, 100, 1000}) {
+            State[] blocks = new State[BLOCKS];
+            for (int i = 0; i < BLOCKS; i++) {
+                blocks[i] = i < paletteSize ? STATES[i] : STATES[random.nextInt(paletteSize)];
+            }
+            ByteBuf buf = Unpooled.buffer();
+            BinaryCubeCodec.writeBlocks(buf, i -> blocks[i], s -> s.id);
+            assertArrayEquals("palette size " + paletteSize, blocks, readBlocks(buf, null));
+            assertEquals(0, buf.readableBytes());
+        }
+    }
+
+    @Test
+    public void testLight() {
+        Random random = new Random(42);
+        byte[] raw = new byte[BLOCKS / 2];
+        random.nextBytes(raw);
+        byte[] uniform = new byte[BLOCKS / 2];
+        Arrays.fill(uniform, (byte) 0xFF);
+        byte[] mixedNibbles = new byte[BLOCKS / 2];
+        Arrays.fill(mixedNibbles, (byte) 0xF0);
+
+        ByteBuf buf = Unpooled.buffer();
+        for (byte[] light : new byte[][]{raw, uniform, mixedNibbles, new byte[BLOCKS / 2]}) {
+            buf.clear();
+            BinaryCubeCodec.writeLight(buf, light);
+            assertArrayEquals(light, BinaryCubeCodec.readLight(buf));
+            assertEquals(0, buf.readableBytes());
+        }
+        buf.clear();
+        BinaryCubeCodec.writeLight(buf, uniform);
+        assertEquals(1, buf.readableBytes());
+    }
+
+    private static State[] readBlocks(ByteBuf buf, State defaultState) {
+        State[] read = new State[BLOCKS];
+        BinaryCubeCodec.readBlocks(buf, id -> STATES[(id - 3) / 16], (state, i) -> read[i] = state, defaultState);
+        return read;
+    }
+
+    private static final class State {
+        final int id;
+
+        State(int id) {
+            this.id = id;
+        }
+    }
+}
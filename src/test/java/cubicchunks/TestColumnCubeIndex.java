@@ -0,0 +1,109 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks;
+
+import static org.junit.Assert.*;
+
+import io.github.opencubicchunks.cubicchunks.core.server.chunkio.ColumnCubeIndex;
+import mcp.MethodsReturnNonnullByDefault;
+import org.junit.Test;
+import java.util.Random;
+import java.util.TreeSet;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestColumnCubeIndex {
+
+    @Test
+    public void testAddAndContains() {
+        Random random = new Random(42);
+        ColumnCubeIndex index = new ColumnCubeIndex();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 2000; i++) {
+            int y = random.nextInt(200) - 100;
+            assertEquals(expected.add(y), index.add(y));
+        }
+        for (int y = -110; y < 110; y++) {
+            assertEquals(String.valueOf(y), expected.contains(y), index.contains(y));
+        }
+    }
+
+    @Test
+    public void testExtremeCoordinates() {
+        ColumnCubeIndex index = new ColumnCubeIndex();
+        index.add(Integer.MAX_VALUE);
+        index.add(Integer.MIN_VALUE);
+        index.add(Integer.MAX_VALUE - 1);
+        assertTrue(index.contains(Integer.MAX_VALUE));
+        assertTrue(index.contains(Integer.MAX_VALUE - 1));
+        assertTrue(index.contains(Integer.MIN_VALUE));
+        assertFalse(index.contains(Integer.MIN_VALUE + 1));
+        assertFalse(index.contains(0));
+    }
+
+    @Test
+    public void testAddAll() {
+        Random random = new Random(42);
+        for (int round = 0; round < 100; round++) {
+            ColumnCubeIndex a = new ColumnCubeIndex();
+            ColumnCubeIndex b = new ColumnCubeIndex();
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int i = 0; i < 30; i++) {
+                int y = random.nextInt(60);
+                a.add(y);
+                expected.add(y);
+                int y2 = random.nextInt(60);
+                b.add(y2);
+            }
+            TreeSet<Integer> before = new TreeSet<>(expected);
+            for (int y = 0; y < 60; y++) {
+                if (b.contains(y)) {
+                    expected.add(y);
+                }
+            }
+            assertEquals(!before.equals(expected), a.addAll(b));
+            assertFalse(a.addAll(b));
+            for (int y = -1; y < 61; y++) {
+                assertEquals(expected.contains(y), a.contains(y));
+            }
+        }
+    }
+
+    @Test
+    public void testSerialization() {
+        Random random = new Random(42);
+        ColumnCubeIndex index = new ColumnCubeIndex();
+        for (int i = 0; i < 500; i++) {
+            index.add(random.nextInt(1000) - 500);
+        }
+        ColumnCubeIndex read = ColumnCubeIndex.fromBytes(index.toBytes());
+        for (int y = -510; y < 510; y++) {
+            assertEquals(index.contains(y), read.contains(y));
+        }
+        assertArrayEquals(index.toBytes(), read.toBytes());
+        assertTrue(ColumnCubeIndex.fromBytes(new ColumnCubeIndex().toBytes()).isEmpty());
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.populator.CubicPopulatorList;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.populator.ICubicPopulator;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.populator.PopulatorProfiling;
+import io.github.opencubicchunks.cubicchunks.core.worldgen.PopulatorProfiler;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.init.Biomes;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.Biome;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestPopulatorProfiler {
+
+    private static final CubePos POS = new CubePos(0, 0, 0);
+
+    private static World world;
+
+    @BeforeClass
+    public static void setupClass() {
+        Bootstrap.register();
+        world = mock(World.class);
+    }
+
+    @After
+    public void stopProfiling() {
+        PopulatorProfiler.stop();
+    }
+
+    @Test
+    public void testNotProfiling() {
+        Counting populator = new Counting();
+        PopulatorProfiling.generate(populator, world, new Random(), POS, Biomes.PLAINS);
+        assertEquals(1, populator.calls);
+        assertNull(PopulatorProfiler.getActive());
+    }
+
+    @Test
+    public void testStartTwice() {
+        assertNotNull(PopulatorProfiler.start());
+        assertNull(PopulatorProfiler.start());
+        assertNotNull(PopulatorProfiler.stop());
+        assertNull(PopulatorProfiler.stop());
+    }
+
+    @Test
+    public void testSelfTimeExcludesNestedPopulators() throws IOException {
+        PopulatorProfiler profiler = PopulatorProfiler.start();
+        assertNotNull(profiler);
+        Outer outer = new Outer(new CubicPopulatorList(Collections.singletonList(new Sleeping())));
+        generate(outer, Biomes.PLAINS);
+        generate(outer, Biomes.PLAINS);
+
+        Map<String, String[]> rows = readCsv(profiler);
+        assertEquals(2, rows.size()); // the list itself isn't measured
+        String[] sleeping = rows.get(Sleeping.class.getName() + ",minecraft:plains");
+        String[] outerRow = rows.get(Outer.class.getName() + ",minecraft:plains");
+        assertEquals("2", sleeping[2]);
+        assertEquals("2", outerRow[2]);
+
+        double sleepingTotal = Double.parseDouble(sleeping[3]);
+        double outerTotal = Double.parseDouble(outerRow[3]);
+        double outerSelf = Double.parseDouble(outerRow[4]);
+        assertTrue(sleepingTotal >= 2 * Sleeping.MILLIS);
+        assertTrue(outerTotal >= sleepingTotal + 2 * Outer.MILLIS);
+        assertTrue(outerSelf >= 2 * Outer.MILLIS);
+        assertTrue(outerSelf <= outerTotal - sleepingTotal + 0.001);
+    }
+
+    @Test
+    public void testCubeLoadsAndBiomes() throws IOException {
+        PopulatorProfiler.onCubeLoad(); // not profiling, ignored
+        PopulatorProfiler profiler = PopulatorProfiler.start();
+        assertNotNull(profiler);
+        PopulatorProfiler.onCubeLoad(); // outside of any populator, ignored
+        Loading loading = new Loading();
+        generate(loading, Biomes.PLAINS);
+        generate(loading, Biomes.DESERT);
+        generate(loading, Biomes.DESERT);
+
+        Map<String, String[]> rows = readCsv(profiler);
+        assertEquals(2, rows.size());
+        assertEquals("3", rows.get(Loading.class.getName() + ",minecraft:plains")[6]);
+        assertEquals("6", rows.get(Loading.class.getName() + ",minecraft:desert")[6]);
+        assertFalse(profiler.getTopEntries(1).isEmpty());
+    }
+
+    private void generate(ICubicPopulator populator, Biome biome) {
+        PopulatorProfiling.generate(populator, world, new Random(), POS, biome);
+    }
+
+    private static Map<String, String[]> readCsv(PopulatorProfiler profiler) throws IOException {
+        StringWriter out = new StringWriter();
+        profiler.writeCsv(out);
+        String[] lines = out.toString().split("\n");
+        assertEquals("populator,biome,calls,total_ms,self_ms,max_ms,cubes_loaded", lines[0]);
+        Map<String, String[]> rows = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            String[] row = lines[i].split(",");
+            rows.put(row[0] + "," + row[1], row);
+        }
+        return rows;
+    }
+
+    private static void sleep(int millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static class Counting implements ICubicPopulator {
+
+        int calls;
+
+        @Override public void generate(World world, Random random, CubePos pos, Biome biome) {
+            calls++;
+        }
+    }
+
+    private static class Sleeping implements ICubicPopulator {
+
+        static final int MILLIS = 20;
+
+        @Override public void generate(World world, Random random, CubePos pos, Biome biome) {
+            sleep(MILLIS);
+        }
+    }
+
+    private static class Outer implements ICubicPopulator {
+
+        static final int MILLIS = 10;
+
+        private final ICubicPopulator nested;
+
+        Outer(ICubicPopulator nested) {
+            this.nested = nested;
+        }
+
+        @Override public void generate(World world, Random random, CubePos pos, Biome biome) {
+            PopulatorProfiling.generate(nested, world, random, pos, biome);
+            sleep(MILLIS);
+        }
+    }
+
+    private static class Loading implements ICubicPopulator {
+
+        @Override public void generate(World world, Random random, CubePos pos, Biome biome) {
+            for (int i = 0; i < 3; i++) {
+                PopulatorProfiler.onCubeLoad();
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks;
+
+import static org.junit.Assert.*;
+
+import io.github.opencubicchunks.cubicchunks.core.util.WatcherPriorityQueue;
+import mcp.MethodsReturnNonnullByDefault;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestWatcherPriorityQueue {
+
+    private static final class Entry {
+        final String name;
+        int priority;
+
+        Entry(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        @Override public String toString() {
+            return name;
+        }
+    }
+
+    private static WatcherPriorityQueue<Entry> newQueue() {
+        return new WatcherPriorityQueue<>(e -> e.priority, 15);
+    }
+
+    private static List<String> names(WatcherPriorityQueue<Entry> queue) {
+        List<String> names = new ArrayList<>();
+        queue.forEach(e -> names.add(e.name));
+        return names;
+    }
+
+    @Test
+    public void testOrder() {
+        WatcherPriorityQueue<Entry> queue = newQueue();
+        queue.appendToEnd(new Entry("a", 3));
+        queue.appendToEnd(new Entry("b", 1));
+        queue.appendToEnd(new Entry("c", 3));
+        queue.appendToStart(new Entry("d", 3));
+        queue.appendToEnd(new Entry("e", 100));
+        queue.appendToEnd(new Entry("f", 15));
+        assertEquals(Arrays.asList("b", "d", "a", "c", "e", "f"), names(queue));
+        assertEquals(6, queue.size());
+    }
+
+    @Test
+    public void testUpdatePriority() {
+        WatcherPriorityQueue<Entry> queue = newQueue();
+        Entry a = new Entry("a", 1);
+        Entry b = new Entry("b", 2);
+        Entry c = new Entry("c", 2);
+        queue.appendToEnd(a);
+        queue.appendToEnd(b);
+        queue.appendToEnd(c);
+
+        b.priority = 0;
+        queue.updatePriority(b);
+        assertEquals(Arrays.asList("b", "a", "c"), names(queue));
+
+        a.priority = 5;
+        c.priority = 4;
+        queue.updateAllPriorities();
+        assertEquals(Arrays.asList("b", "c", "a"), names(queue));
+    }
+
+    @Test
+    public void testRemove() {
+        WatcherPriorityQueue<Entry> queue = newQueue();
+        Entry a = new Entry("a", 1);
+        Entry b = new Entry("b", 1);
+        Entry c = new Entry("c", 2);
+        queue.appendToEnd(a);
+        queue.appendToEnd(b);
+        queue.appendToEnd(c);
+
+        queue.remove(b);
+        assertFalse(queue.contains(b));
+        assertEquals(Arrays.asList("a", "c"), names(queue));
+
+        queue.removeIf(e -> e == c);
+        assertEquals(Arrays.asList("a"), names(queue));
+
+        Iterator<Entry> it = queue.iterator();
+        assertSame(a, it.next());
+        it.remove();
+        assertFalse(it.hasNext());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testModifyWhileIterating() {
+        WatcherPriorityQueue<Entry> queue = newQueue();
+        Entry a = new Entry("a", 1);
+        Entry b = new Entry("b", 1);
+        Entry c = new Entry("c", 1);
+        Entry d = new Entry("d", 2);
+        queue.appendToEnd(a);
+        queue.appendToEnd(b);
+        queue.appendToEnd(c);
+        queue.appendToEnd(d);
+
+        List<String> seen = new ArrayList<>();
+        for (Iterator<Entry> it = queue.iterator(); it.hasNext(); ) {
+            Entry e = it.next();
+            seen.add(e.name);
+            if (e == a) {
+                // removing the current and the next element must not break the iterator
+                it.remove();
+                queue.remove(b);
+                // moved behind the iterator, shouldn't be returned again
+                c.priority = 0;
+                queue.updatePriority(c);
+            }
+        }
+        assertEquals(Arrays.asList("a", "d"), seen);
+        assertEquals(Arrays.asList("c", "d"), names(queue));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package cubicchunks;
+
+import static org.junit.Assert.*;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.util.PackedXYZMap;
+import io.github.opencubicchunks.cubicchunks.api.util.XYZAddressable;
+import io.github.opencubicchunks.cubicchunks.api.util.XYZMap;
+import mcp.MethodsReturnNonnullByDefault;
+import org.junit.Test;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestXYZMap {
+
+    @Test
+    public void testChainedMap() {
+        this.checkRandomOperations(new XYZMap<>(0.7f, 16));
+    }
+
+    @Test
+    public void testPackedMap() {
+        this.checkRandomOperations(new PackedXYZMap<>(0.7f, 16));
+    }
+
+    @Test
+    public void testPackedMapFullLoadFactor() {
+        this.checkRandomOperations(new PackedXYZMap<>(1.0f, 2));
+    }
+
+    @Test
+    public void testPackedIteratorRemove() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            // small coordinate range and small map so that probe sequences wrap around the end of the array
+            PackedXYZMap<Entry> map = new PackedXYZMap<>(0.9f, 64);
+            Set<CubePos> expected = new HashSet<>();
+            for (int i = 0; i < 50; i++) {
+                Entry e = new Entry(random.nextInt(8), random.nextInt(8), random.nextInt(8));
+                map.put(e);
+                expected.add(e.pos());
+            }
+            Set<CubePos> seen = new HashSet<>();
+            Iterator<Entry> it = map.iterator();
+            while (it.hasNext()) {
+                Entry e = it.next();
+                assertTrue("Returned twice: " + e.pos(), seen.add(e.pos()));
+                if (random.nextBoolean()) {
+                    it.remove();
+                    expected.remove(e.pos());
+                }
+            }
+            assertEquals(map.getSize(), expected.size());
+            for (CubePos pos : expected) {
+                assertTrue(map.contains(pos.getX(), pos.getY(), pos.getZ()));
+            }
+            assertEquals(expected, this.collect(map.iterator()));
+        }
+    }
+
+    @Test
+    public void testRandomWrappedIterator() {
+        XYZMap<Entry> chained = new XYZMap<>(0.7f, 16);
+        XYZMap<Entry> packed = new PackedXYZMap<>(0.7f, 16);
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            Entry e = new Entry(random.nextInt(100), random.nextInt(100), random.nextInt(100));
+            chained.put(e);
+            packed.put(e);
+        }
+        Set<CubePos> expected = this.collect(chained.iterator());
+        for (int seed = 0; seed < 10; seed++) {
+            int s = random.nextInt();
+            assertEquals(expected, this.collect(chained.randomWrappedIterator(s)));
+            assertEquals(expected, this.collect(packed.randomWrappedIterator(s)));
+        }
+    }
+
+    private void checkRandomOperations(XYZMap<Entry> map) {
+        Map<CubePos, Entry> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            int x = random.nextInt(64) - 32;
+            int y = random.nextInt(64) - 32;
+            int z = random.nextInt(64) - 32;
+            CubePos pos = new CubePos(x, y, z);
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    Entry e = new Entry(x, y, z);
+                    assertSame(reference.put(pos, e), map.put(e));
+                    break;
+                case 2:
+                    assertSame(reference.remove(pos), map.remove(x, y, z));
+                    break;
+                default:
+                    assertSame(reference.get(pos), map.get(x, y, z));
+                    assertEquals(reference.containsKey(pos), map.contains(x, y, z));
+            }
+            assertEquals(reference.size(), map.getSize());
+        }
+        assertEquals(reference.keySet(), this.collect(map.iterator()));
+        map.clear();
+        assertEquals(0, map.getSize());
+        assertFalse(map.iterator().hasNext());
+    }
+
+    private Set<CubePos> collect(Iterator<Entry> it) {
+        Set<CubePos> set = new HashSet<>();
+        while (it.hasNext()) {
+            assertTrue(set.add(it.next().pos()));
+        }
+        return set;
+    }
+
+    private static final class Entry implements XYZAddressable {
+
+        private final int x, y, z;
+
+        Entry(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        CubePos pos() {
+            return new CubePos(x, y, z);
+        }
+
+        @Override public int getX() {
+            return x;
+        }
+
+        @Override public int getY() {
+            return y;
+        }
+
+        @Override public int getZ() {
+            return z;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.api.worldgen.structure.feature;
+
+import static org.junit.Assert.assertEquals;
+
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.util.math.Vec3i;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+import net.minecraft.world.gen.structure.StructureStart;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestStructureStartIndex {
+
+    private final Random random = new Random(42);
+    private final List<StructureStart> starts = new ArrayList<>();
+    private final StructureStartIndex index = new StructureStartIndex();
+
+    private void addRandomStarts(int count, int maxSize) {
+        for (int i = 0; i < count; i++) {
+            int x = random.nextInt(4000) - 2000;
+            int y = random.nextInt(4000) - 2000;
+            int z = random.nextInt(4000) - 2000;
+            StructureStart start = new TestStart(new StructureBoundingBox(x, y, z,
+                    x + random.nextInt(maxSize), y + random.nextInt(maxSize), z + random.nextInt(maxSize)));
+            starts.add(start);
+            index.add(start);
+        }
+    }
+
+    @Test
+    public void testPointQueriesMatchLinearScan() {
+        addRandomStarts(500, 400);
+        addRandomStarts(5, 3000);
+        for (int i = 0; i < 20000; i++) {
+            StructureStart near = starts.get(random.nextInt(starts.size()));
+            StructureBoundingBox box = near.getBoundingBox();
+            // mostly near some structure, so that there are both hits and misses
+            int x = box.minX + random.nextInt(box.getXSize() + 20) - 10;
+            int y = box.minY + random.nextInt(box.getYSize() + 20) - 10;
+            int z = box.minZ + random.nextInt(box.getZSize() + 20) - 10;
+
+            Set<StructureStart> expected = newIdentitySet();
+            for (StructureStart start : starts) {
+                if (start.getBoundingBox().isVecInside(new Vec3i(x, y, z))) {
+                    expected.add(start);
+                }
+            }
+            List<StructureStart> found = new ArrayList<>();
+            index.findFirst(x, y, z, x, y, z, start -> {
+                found.add(start);
+                return false;
+            });
+            assertEquals(expected.isEmpty(), index.findFirst(x, y, z, x, y, z, start -> true) == null);
+            assertEquals(expected, toIdentitySet(found));
+            assertEquals("found the same structure twice", expected.size(), found.size());
+        }
+    }
+
+    @Test
+    public void testBoxQueriesMatchLinearScan() {
+        addRandomStarts(500, 600);
+        addRandomStarts(5, 3000);
+        for (int i = 0; i < 20000; i++) {
+            int x = random.nextInt(5000) - 2500;
+            int y = random.nextInt(5000) - 2500;
+            int z = random.nextInt(5000) - 2500;
+            StructureBoundingBox query = new StructureBoundingBox(x, y, z, x + 15, y + 15, z + 15);
+
+            Set<StructureStart> expected = newIdentitySet();
+            for (StructureStart start : starts) {
+                if (start.getBoundingBox().intersectsWith(query)) {
+                    expected.add(start);
+                }
+            }
+            List<StructureStart> found = index.getIntersecting(query);
+            assertEquals(expected, toIdentitySet(found));
+            assertEquals("found the same structure twice", expected.size(), found.size());
+        }
+    }
+
+    private static Set<StructureStart> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private static Set<StructureStart> toIdentitySet(List<StructureStart> list) {
+        Set<StructureStart> set = newIdentitySet();
+        set.addAll(list);
+        return set;
+    }
+
+    private static class TestStart extends StructureStart {
+
+        TestStart(StructureBoundingBox box) {
+            this.boundingBox = box;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.lighting;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.EnumSkyBlock;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Compares {@link LightPropagator} with the implementation it replaced, which walked the blocks using {@link BlockPos}.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestLightPropagator {
+
+    private static final int SIZE = 40;
+
+    @Test
+    public void testRandomLayouts() {
+        Random random = new Random(123);
+        for (int layout = 0; layout < 20; layout++) {
+            BlockAccess expected = new BlockAccess();
+            for (int i = 0; i < expected.opacity.length; i++) {
+                int r = random.nextInt(100);
+                expected.opacity[i] = (byte) (r < 25 ? 255 : r < 35 ? random.nextInt(15) : 0);
+            }
+            List<BlockPos> sources = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(8); i++) {
+                sources.add(new BlockPos(random.nextInt(17) - 8, random.nextInt(17) - 8, random.nextInt(17) - 8));
+            }
+            BlockAccess actual = expected.copy();
+
+            LightPropagator propagator = new LightPropagator();
+            ReferenceLightPropagator reference = new ReferenceLightPropagator();
+            for (int step = 0; step < 4; step++) {
+                // toggle random light sources on and off
+                for (BlockPos pos : sources) {
+                    boolean on = random.nextBoolean();
+                    expected.source[index(pos)] = on;
+                    actual.source[index(pos)] = on;
+                }
+                List<BlockPos> expectedUpdates = new ArrayList<>();
+                List<BlockPos> actualUpdates = new ArrayList<>();
+                reference.propagateLight(BlockPos.ORIGIN, sources, expected, EnumSkyBlock.BLOCK, expectedUpdates::add);
+                propagator.propagateLight(BlockPos.ORIGIN, sources, actual, EnumSkyBlock.BLOCK, actualUpdates::add);
+
+                assertArrayEquals("layout " + layout + ", step " + step, expected.light, actual.light);
+                assertEquals("layout " + layout + ", step " + step, expectedUpdates, actualUpdates);
+                assertEquals("layout " + layout + ", step " + step, expected.edgeUpdates, actual.edgeUpdates);
+            }
+        }
+    }
+
+    private static boolean inVolume(int x, int y, int z) {
+        int half = SIZE / 2;
+        return x >= -half && x < half && y >= -half && y < half && z >= -half && z < half;
+    }
+
+    private static int index(BlockPos pos) {
+        return index(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    private static int index(int x, int y, int z) {
+        int half = SIZE / 2;
+        return ((y + half) * SIZE + z + half) * SIZE + x + half;
+    }
+
+    private static final class BlockAccess implements ILightBlockAccess {
+
+        byte[] light = new byte[SIZE * SIZE * SIZE];
+        byte[] opacity = new byte[SIZE * SIZE * SIZE];
+        boolean[] source = new boolean[SIZE * SIZE * SIZE];
+        List<BlockPos> edgeUpdates = new ArrayList<>();
+
+        BlockAccess copy() {
+            BlockAccess copy = new BlockAccess();
+            copy.light = light.clone();
+            copy.opacity = opacity.clone();
+            copy.source = source.clone();
+            return copy;
+        }
+
+        @Override public int getBlockLightOpacity(int x, int y, int z) {
+            return inVolume(x, y, z) ? opacity[index(x, y, z)] & 0xFF : 255;
+        }
+
+        @Override public int getLightFor(EnumSkyBlock lightType, int x, int y, int z) {
+            return inVolume(x, y, z) ? light[index(x, y, z)] : 0;
+        }
+
+        @Override public boolean setLightFor(EnumSkyBlock lightType, int x, int y, int z, int val) {
+            if (!inVolume(x, y, z)) {
+                return false;
+            }
+            light[index(x, y, z)] = (byte) val;
+            return true;
+        }
+
+        @Override public boolean canSeeSky(int x, int y, int z) {
+            return false;
+        }
+
+        @Override public int getEmittedLight(int x, int y, int z, EnumSkyBlock type) {
+            return inVolume(x, y, z) && source[index(x, y, z)] ? 15 : 0;
+        }
+
+        @Override public void markEdgeNeedLightUpdate(int x, int y, int z, EnumSkyBlock type) {
+            edgeUpdates.add(new BlockPos(x, y, z));
+        }
+    }
+
+    /**
+     * LightPropagator before it was changed to use primitive coordinates.
+     */
+    private static final class ReferenceLightPropagator {
+
+        private final LightUpdateQueue queue = new LightUpdateQueue();
+
+        void propagateLight(BlockPos centerPos, Iterable<BlockPos> coords, ILightBlockAccess blocks, EnumSkyBlock type,
+                Consumer<BlockPos> setLightCallback) {
+            queue.begin(centerPos);
+            try {
+                coords.forEach(pos -> {
+                    int emitted = blocks.getEmittedLight(pos, type);
+                    if (blocks.getLightFor(type, pos) > emitted) {
+                        queue.put(pos, emitted, LightUpdateQueue.MAX_DISTANCE);
+                    }
+                });
+                while (queue.next()) {
+                    BlockPos pos = queue.getPos();
+                    int distance = queue.getDistance();
+
+                    int currentValue = blocks.getLightFor(type, pos);
+                    int lightFromNeighbors = getExpectedLight(blocks, type, pos);
+                    if (lightFromNeighbors <= currentValue - 1) {
+                        if (!blocks.setLightFor(type, pos, 0)) {
+                            markNeighborEdgeNeedLightUpdate(pos, blocks, type);
+                            continue;
+                        }
+                        setLightCallback.accept(pos);
+                        if (distance <= LightUpdateQueue.MIN_DISTANCE) {
+                            continue;
+                        }
+                        for (EnumFacing direction : EnumFacing.values()) {
+                            BlockPos offset = pos.offset(direction);
+                            queue.put(offset, blocks.getEmittedLight(offset, type), distance - 1);
+                        }
+                    }
+                }
+
+                queue.resetIndex();
+
+                coords.forEach(pos -> {
+                    int emitted = blocks.getEmittedLight(pos, type);
+                    if (emitted > blocks.getLightFor(type, pos)) {
+                        queue.put(pos, emitted, LightUpdateQueue.MAX_DISTANCE);
+                        if (blocks.setLightFor(type, pos, emitted)) {
+                            setLightCallback.accept(pos);
+                        } else {
+                            markNeighborEdgeNeedLightUpdate(pos, blocks, type);
+                        }
+                    }
+                });
+                while (queue.next()) {
+                    BlockPos pos = queue.getPos();
+                    int distance = queue.isBeforeReset() ? LightUpdateQueue.MAX_DISTANCE : queue.getDistance();
+
+                    for (EnumFacing direction : EnumFacing.values()) {
+                        BlockPos nextPos = pos.offset(direction);
+                        int newLight = getExpectedLight(blocks, type, nextPos);
+                        if (newLight <= blocks.getLightFor(type, nextPos)) {
+                            continue;
+                        }
+                        if (blocks.setLightFor(type, nextPos, newLight)) {
+                            setLightCallback.accept(nextPos);
+                        } else {
+                            blocks.markEdgeNeedLightUpdate(pos, type);
+                            continue;
+                        }
+                        if (distance - 1 <= LightUpdateQueue.MIN_DISTANCE) {
+                            continue;
+                        }
+                        queue.put(nextPos, newLight, distance - 1);
+                    }
+                }
+            } finally {
+                queue.end();
+            }
+        }
+
+        private int getExpectedLight(ILightBlockAccess blocks, EnumSkyBlock type, BlockPos pos) {
+            int max = 0;
+            for (EnumFacing direction : EnumFacing.values()) {
+                int light = blocks.getLightFor(type, pos.offset(direction));
+                if (light > max) {
+                    max = light;
+                }
+            }
+            int fromNeighbors = Math.max(0, max - Math.max(1, blocks.getBlockLightOpacity(pos)));
+            return Math.max(blocks.getEmittedLight(pos, type), fromNeighbors);
+        }
+
+        private void markNeighborEdgeNeedLightUpdate(BlockPos pos, ILightBlockAccess blocks, EnumSkyBlock type) {
+            for (EnumFacing direction : EnumFacing.values()) {
+                blocks.markEdgeNeedLightUpdate(pos.offset(direction), type);
+            }
+        }
+    }
+}
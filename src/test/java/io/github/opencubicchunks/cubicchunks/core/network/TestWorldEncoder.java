@@ -0,0 +1,259 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.google.common.collect.Lists;
+import io.github.opencubicchunks.cubicchunks.api.util.Coords;
+import io.github.opencubicchunks.cubicchunks.api.world.IColumn;
+import io.github.opencubicchunks.cubicchunks.api.world.ICubicWorld;
+import io.github.opencubicchunks.cubicchunks.core.world.ClientHeightMap;
+import io.github.opencubicchunks.cubicchunks.core.world.ServerHeightMap;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.netty.buffer.Unpooled;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProvider;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestWorldEncoder {
+
+    private static final int CUBES = 8;
+    private static final int SURFACE_CUBE_Y = 3;
+    private static final int HEIGHTMAP_BYTES = Cube.SIZE * Cube.SIZE * Integer.BYTES;
+
+    @BeforeClass
+    public static void setupClass() {
+        Bootstrap.register();
+    }
+
+    @Test
+    public void testSkippingHeightMapsSavesBytes() throws Exception {
+        List<Cube> cubes = surfaceCubes();
+        int nonEmpty = (int) cubes.stream().filter(cube -> !cube.isEmpty()).count();
+        assertEquals(SURFACE_CUBE_Y + 1, nonEmpty);
+
+        byte[] withHeightMaps = encode(cubes, true);
+        byte[] withoutHeightMaps = encode(cubes, false);
+        assertEquals(nonEmpty * HEIGHTMAP_BYTES, withHeightMaps.length - withoutHeightMaps.length);
+    }
+
+    @Test
+    public void testClientComputesHeightMap() throws Exception {
+        byte[] data = encode(surfaceCubes(), false);
+        ClientHeightMap heightMap = decode(data);
+        for (int localX = 0; localX < Cube.SIZE; localX++) {
+            for (int localZ = 0; localZ < Cube.SIZE; localZ++) {
+                assertEquals(surfaceY(localX, localZ), heightMap.getTopBlockY(localX, localZ));
+            }
+        }
+    }
+
+    @Test
+    public void testHeightMapsFromServer() throws Exception {
+        byte[] data = encode(surfaceCubes(), true);
+        ClientHeightMap heightMap = decode(data);
+        // the server doesn't track heights, but the bytes must still be consumed and applied
+        assertEquals(Integer.MIN_VALUE, heightMap.getTopBlockY(0, 0));
+    }
+
+    @Test
+    public void testUniformCubesSendOnlyTheBlock() throws Exception {
+        byte[] withStorage = encode(surfaceCubes(false), false);
+        byte[] uniform = encode(surfaceCubes(true), false);
+        assertTrue(uniform.length < withStorage.length);
+
+        List<Cube> decoded = new ArrayList<>();
+        ClientHeightMap heightMap = decode(uniform, decoded);
+        for (int localX = 0; localX < Cube.SIZE; localX++) {
+            for (int localZ = 0; localZ < Cube.SIZE; localZ++) {
+                assertEquals(surfaceY(localX, localZ), heightMap.getTopBlockY(localX, localZ));
+            }
+        }
+        for (int cubeY = 0; cubeY < SURFACE_CUBE_Y; cubeY++) {
+            ExtendedBlockStorage storage = decoded.get(cubeY).getStorage();
+            assertNotNull(storage);
+            assertSame(Blocks.STONE.getDefaultState(), storage.get(3, 4, 5));
+            assertEquals(0, storage.getSkyLight(3, 4, 5));
+        }
+    }
+
+    @Test
+    public void testRemovedTopBlockFoundInCubesBelow() throws Exception {
+        List<Cube> cubes = surfaceCubes();
+        World world = mockWorld();
+        Chunk column = mockColumn(world, null);
+        ClientHeightMap heightMap = new ClientHeightMap(column, new int[Cube.SIZE * Cube.SIZE]);
+        for (int cubeY = 0; cubeY <= SURFACE_CUBE_Y; cubeY++) {
+            heightMap.updateFromCube(cubeY, cubes.get(cubeY).getStorage());
+        }
+        doReturn(Lists.reverse(cubes.subList(0, SURFACE_CUBE_Y)))
+                .when((IColumn) column).getLoadedCubes(SURFACE_CUBE_Y - 1, Integer.MIN_VALUE);
+
+        // the surface cube is sent again without its blocks, the cube below it is all stone
+        ExtendedBlockStorage air = new ExtendedBlockStorage(Coords.cubeToMinBlock(SURFACE_CUBE_Y), true);
+        heightMap.updateFromCube(SURFACE_CUBE_Y, air);
+        assertEquals(Coords.cubeToMaxBlock(SURFACE_CUBE_Y - 1), heightMap.getTopBlockY(0, 0));
+        assertEquals(Coords.cubeToMaxBlock(SURFACE_CUBE_Y - 1), heightMap.getTopBlockY(15, 15));
+    }
+
+    @Test
+    public void testRemovedTopBlockWithoutCubesBelow() throws Exception {
+        List<Cube> cubes = surfaceCubes();
+        World world = mockWorld();
+        Chunk column = mockColumn(world, null);
+        ClientHeightMap heightMap = new ClientHeightMap(column, new int[Cube.SIZE * Cube.SIZE]);
+        heightMap.updateFromCube(SURFACE_CUBE_Y, cubes.get(SURFACE_CUBE_Y).getStorage());
+        doReturn(Collections.emptyList()).when((IColumn) column).getLoadedCubes(SURFACE_CUBE_Y - 1, Integer.MIN_VALUE);
+
+        ExtendedBlockStorage air = new ExtendedBlockStorage(Coords.cubeToMinBlock(SURFACE_CUBE_Y), true);
+        heightMap.updateFromCube(SURFACE_CUBE_Y, air);
+        assertEquals(Coords.NO_HEIGHT, heightMap.getTopBlockY(0, 0));
+    }
+
+    private static int surfaceY(int localX, int localZ) {
+        return Coords.cubeToMinBlock(SURFACE_CUBE_Y) + (localX + localZ) % Cube.SIZE;
+    }
+
+    /**
+     * Stone up to a sloped surface in cube {@link #SURFACE_CUBE_Y}, air above.
+     */
+    private static List<Cube> surfaceCubes() throws Exception {
+        return surfaceCubes(false);
+    }
+
+    /**
+     * @param uniformBelow whether cubes below the surface are uniform stone cubes without storage
+     */
+    private static List<Cube> surfaceCubes(boolean uniformBelow) throws Exception {
+        World world = mockWorld();
+        Chunk column = mockColumn(world, new ServerHeightMap(new int[Cube.SIZE * Cube.SIZE]));
+        List<Cube> cubes = new ArrayList<>();
+        for (int cubeY = 0; cubeY < CUBES; cubeY++) {
+            ExtendedBlockStorage storage = new ExtendedBlockStorage(Coords.cubeToMinBlock(cubeY), true);
+            for (int localX = 0; localX < Cube.SIZE; localX++) {
+                for (int localZ = 0; localZ < Cube.SIZE; localZ++) {
+                    for (int localY = 0; localY < Cube.SIZE; localY++) {
+                        if (Coords.localToBlock(cubeY, localY) <= surfaceY(localX, localZ)) {
+                            storage.set(localX, localY, localZ, Blocks.STONE.getDefaultState());
+                        }
+                    }
+                }
+            }
+            storage.recalculateRefCounts();
+
+            Cube cube = mock(Cube.class);
+            when(cube.getY()).thenReturn(cubeY);
+            when(cube.getWorld()).thenReturn(world);
+            when(cube.getColumn()).thenReturn(column);
+            if (uniformBelow && cubeY < SURFACE_CUBE_Y) {
+                when(cube.getStorage()).thenReturn(null);
+                when(cube.getUniformBlock()).thenReturn(Blocks.STONE.getDefaultState());
+            } else {
+                when(cube.getStorage()).thenReturn(storage.isEmpty() ? null : storage);
+            }
+            when(cube.isEmpty()).thenReturn(storage.isEmpty());
+            cubes.add(cube);
+        }
+        return cubes;
+    }
+
+    private static byte[] encode(List<Cube> cubes, boolean sendHeightMaps) {
+        byte[] data = new byte[WorldEncoder.getEncodedSize(cubes, sendHeightMaps)];
+        PacketBuffer out = new PacketBuffer(WorldEncoder.createByteBufForWrite(data));
+        WorldEncoder.encodeCubes(out, cubes, sendHeightMaps);
+        assertEquals(data.length, out.writerIndex());
+        return data;
+    }
+
+    private static ClientHeightMap decode(byte[] data) throws Exception {
+        return decode(data, new ArrayList<>());
+    }
+
+    private static ClientHeightMap decode(byte[] data, List<Cube> cubes) throws Exception {
+        World world = mockWorld();
+        Chunk column = mockColumn(world, null);
+        ClientHeightMap heightMap = new ClientHeightMap(column, new int[Cube.SIZE * Cube.SIZE]);
+        when(((IColumn) column).getOpacityIndex()).thenReturn(heightMap);
+
+        for (int cubeY = 0; cubeY < CUBES; cubeY++) {
+            Cube cube = mock(Cube.class);
+            ExtendedBlockStorage[] storage = new ExtendedBlockStorage[1];
+            when(cube.getY()).thenReturn(cubeY);
+            when(cube.getWorld()).thenReturn(world);
+            when(cube.getColumn()).thenReturn(column);
+            doAnswer(invocation -> storage[0] = (ExtendedBlockStorage) invocation.getArguments()[0]).when(cube).setStorage(any());
+            when(cube.getStorage()).thenAnswer(invocation -> storage[0]);
+            cubes.add(cube);
+        }
+        PacketBuffer in = new PacketBuffer(Unpooled.wrappedBuffer(data));
+        WorldEncoder.decodeCube(in, cubes);
+        assertEquals(0, in.readableBytes());
+        return heightMap;
+    }
+
+    private static World mockWorld() throws Exception {
+        World world = mock(World.class, withSettings().extraInterfaces(ICubicWorld.class));
+        WorldProvider provider = mock(WorldProvider.class);
+        when(provider.hasSkyLight()).thenReturn(true);
+        Field field = World.class.getDeclaredField("provider");
+        field.setAccessible(true);
+        field.set(world, provider);
+        return world;
+    }
+
+    private static Chunk mockColumn(World world, @Nullable ServerHeightMap heightMap) {
+        Chunk column = mock(Chunk.class, withSettings().extraInterfaces(IColumn.class));
+        when(column.getWorld()).thenReturn(world);
+        when(((IColumn) column).getOpacityIndex()).thenReturn(heightMap);
+        return column;
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.github.opencubicchunks.cubicchunks.api.util.Box;
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import mcp.MethodsReturnNonnullByDefault;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Deterministic simulation of a player flying through a world that is generated as they go. Loads finish with a delay,
+ * cubes the player left behind are unloaded, and some random cubes are unloaded while population still needs them.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestPopulationScheduler {
+
+    private static final int VIEW_DISTANCE = 3;
+    private static final int TICKS = 400;
+    // 80 blocks per second
+    private static final int TICKS_PER_CUBE = 4;
+    private static final int LOADS_PER_TICK = 200;
+    // generated or populated cubes per tick, stands in for the time budget
+    private static final int STEPS_PER_TICK = 64;
+
+    // like ChunkGc, cubes that nothing holds are unloaded after a while
+    private static final int UNLOAD_DELAY = 20;
+
+    static final Box FULL_POPULATION = new Box(-1, -1, -1, 0, 0, 0);
+    static final Box PREGENERATION = new Box(0, 0, 0, 1, 1, 1);
+
+    @Test
+    public void testFlight() {
+        fly(false);
+    }
+
+    @Test
+    public void testFlightCancellingCubesLeftBehind() {
+        fly(true);
+    }
+
+    /**
+     * @param cancelLeftBehind whether requests for cubes the player left are cancelled, like when a cube stops being
+     * watched
+     */
+    private static void fly(boolean cancelLeftBehind) {
+        SimulatedWorld world = new SimulatedWorld();
+        PopulationScheduler scheduler = new PopulationScheduler(world);
+        Map<CubePos, Integer> finished = new HashMap<>();
+        Map<CubePos, Runnable> requested = new HashMap<>();
+        Set<CubePos> cancelled = new HashSet<>();
+        Random rand = new Random(42);
+
+        int worstSteps = 0;
+        for (int tick = 0; tick < TICKS * 2 && (tick < TICKS || scheduler.getPendingCount() > 0); tick++) {
+            int playerX = Math.min(tick, TICKS) / TICKS_PER_CUBE;
+            for (int x = playerX - VIEW_DISTANCE; x <= playerX + VIEW_DISTANCE; x++) {
+                for (int y = -VIEW_DISTANCE; y <= VIEW_DISTANCE; y++) {
+                    for (int z = -VIEW_DISTANCE; z <= VIEW_DISTANCE; z++) {
+                        CubePos pos = new CubePos(x, y, z);
+                        if (!requested.containsKey(pos)) {
+                            Runnable callback = () -> {
+                                assertTrue(world.fullyPopulated.contains(pos));
+                                assertFalse("Cancelled request of " + pos + " finished", cancelled.contains(pos));
+                                finished.merge(pos, 1, Integer::sum);
+                            };
+                            requested.put(pos, callback);
+                            scheduler.request(pos, callback, callback);
+                        }
+                    }
+                }
+            }
+            if (cancelLeftBehind) {
+                for (Map.Entry<CubePos, Runnable> entry : requested.entrySet()) {
+                    CubePos pos = entry.getKey();
+                    if (pos.getX() < playerX - VIEW_DISTANCE && !finished.containsKey(pos) && cancelled.add(pos)) {
+                        assertTrue(scheduler.cancel(pos, entry.getValue()));
+                    }
+                }
+            }
+            world.tick = tick;
+            world.unloadBehind(playerX - VIEW_DISTANCE - 1);
+            world.unloadRandom(rand);
+            world.finishLoads();
+
+            world.steps = 0;
+            scheduler.tick(() -> world.steps >= STEPS_PER_TICK);
+            worstSteps = Math.max(worstSteps, world.steps);
+        }
+
+        assertEquals(0, scheduler.getPendingCount());
+        assertEquals(requested.size(), finished.size() + cancelled.size());
+        assertEquals(cancelLeftBehind, !cancelled.isEmpty());
+        for (Map.Entry<CubePos, Integer> entry : finished.entrySet()) {
+            assertEquals("Callbacks of " + entry.getKey(), 1, (int) entry.getValue());
+        }
+        for (CubePos pos : requested.keySet()) {
+            assertFalse("Still waiting for " + pos, scheduler.isWaitingFor(pos));
+        }
+        assertTrue("Too much work in one tick: " + worstSteps, worstSteps <= STEPS_PER_TICK);
+    }
+
+    @Test
+    public void testAlreadyPopulated() {
+        SimulatedWorld world = new SimulatedWorld();
+        PopulationScheduler scheduler = new PopulationScheduler(world);
+        CubePos pos = new CubePos(0, 0, 0);
+        FULL_POPULATION.forEachPoint((x, y, z) -> {
+            world.loaded.put(pos.add(x, y, z), 0);
+            world.populated.add(pos.add(x, y, z));
+        });
+        List<CubePos> done = new ArrayList<>();
+        Runnable callback = () -> done.add(pos);
+        scheduler.request(pos, callback, callback);
+        scheduler.tick(() -> true);
+        assertEquals(1, done.size());
+        assertEquals(0, world.generatedCount);
+        assertEquals(0, world.populatedCount);
+    }
+
+    @Test
+    public void testCancelBeforeLoaded() {
+        SimulatedWorld world = new SimulatedWorld();
+        PopulationScheduler scheduler = new PopulationScheduler(world);
+        CubePos pos = new CubePos(0, 0, 0);
+        Runnable callback = () -> fail("Cancelled request finished");
+        scheduler.request(pos, callback, callback);
+        assertTrue(scheduler.isWaitingFor(pos));
+
+        scheduler.cancel(pos, callback);
+        assertEquals(0, scheduler.getPendingCount());
+        assertEquals(false, scheduler.isWaitingFor(pos));
+        assertTrue(world.pendingLoads.isEmpty());
+        for (int tick = 0; tick < 10; tick++) {
+            world.finishLoads();
+            scheduler.tick(() -> false);
+        }
+        assertEquals(0, world.generatedCount);
+    }
+
+    @Test
+    public void testCancelDropsOnlyUnneededWork() {
+        SimulatedWorld world = new SimulatedWorld();
+        PopulationScheduler scheduler = new PopulationScheduler(world);
+        CubePos cancelled = new CubePos(0, 0, 0);
+        CubePos kept = new CubePos(1, 0, 0);
+        Runnable cancelledCallback = () -> fail("Cancelled request finished");
+        List<CubePos> done = new ArrayList<>();
+        Runnable keptCallback = () -> done.add(kept);
+        scheduler.request(cancelled, cancelledCallback, cancelledCallback);
+        scheduler.request(kept, keptCallback, keptCallback);
+        // a second request for the same cube keeps it going
+        Runnable otherCallback = () -> done.add(cancelled);
+        scheduler.request(cancelled, otherCallback, otherCallback);
+        scheduler.cancel(cancelled, otherCallback);
+        assertEquals(2, scheduler.getPendingCount());
+
+        // let the cubes load and generate, but stop before population finishes
+        world.finishLoads();
+        world.steps = 0;
+        scheduler.tick(() -> world.steps >= 2);
+        scheduler.cancel(cancelled, cancelledCallback);
+        assertEquals(1, scheduler.getPendingCount());
+
+        for (int tick = 0; tick < 20 && scheduler.getPendingCount() > 0; tick++) {
+            world.finishLoads();
+            scheduler.tick(() -> false);
+        }
+        assertEquals(0, scheduler.getPendingCount());
+        assertEquals(1, done.size());
+        assertTrue(world.fullyPopulated.contains(kept));
+        assertEquals(false, world.fullyPopulated.contains(cancelled));
+        // the cube at (-1, -1, -1) was only needed by the cancelled request
+        assertEquals(false, world.populated.contains(new CubePos(-1, -1, -1)));
+        world.loaded.keySet().forEach(pos -> assertEquals(false, scheduler.isWaitingFor(pos)));
+    }
+
+    static class SimulatedWorld implements PopulationScheduler.CubeAccess {
+
+        final Set<CubePos> saved = new HashSet<>();
+        // loaded cubes, mapped to the tick they were loaded in
+        final Map<CubePos, Integer> loaded = new HashMap<>();
+        final Set<CubePos> populated = new HashSet<>();
+        final Set<CubePos> fullyPopulated = new HashSet<>();
+        final Queue<PendingLoad> pendingLoads = new ArrayDeque<>();
+        int tick;
+        int steps;
+        int generatedCount;
+        int populatedCount;
+
+        void finishLoads() {
+            for (int i = 0; i < LOADS_PER_TICK && !pendingLoads.isEmpty(); i++) {
+                PendingLoad load = pendingLoads.poll();
+                if (saved.contains(load.pos)) {
+                    loaded.putIfAbsent(load.pos, tick);
+                }
+                load.onDone.run();
+            }
+        }
+
+        void unloadBehind(int minX) {
+            loaded.entrySet().removeIf(entry -> entry.getKey().getX() < minX && tick - entry.getValue() >= UNLOAD_DELAY);
+        }
+
+        void unloadRandom(Random rand) {
+            List<CubePos> all = new ArrayList<>(loaded.keySet());
+            if (all.isEmpty()) {
+                return;
+            }
+            CubePos pos = all.get(rand.nextInt(all.size()));
+            loaded.remove(pos);
+        }
+
+        @Override public boolean isLoaded(CubePos pos) {
+            return loaded.containsKey(pos);
+        }
+
+        @Override public boolean isPopulated(CubePos pos) {
+            assertTrue(loaded.containsKey(pos));
+            return populated.contains(pos);
+        }
+
+        @Override public boolean isFullyPopulated(CubePos pos) {
+            assertTrue(loaded.containsKey(pos));
+            return fullyPopulated.contains(pos);
+        }
+
+        @Override public void load(CubePos pos, Runnable onDone) {
+            pendingLoads.add(new PendingLoad(pos, onDone));
+        }
+
+        @Override public void cancelLoad(CubePos pos, Runnable onDone) {
+            pendingLoads.removeIf(load -> load.onDone == onDone);
+        }
+
+        @Override public void generate(CubePos pos) {
+            if (saved.contains(pos)) {
+                fail("Generating " + pos + " again");
+            }
+            steps++;
+            generatedCount++;
+            loaded.put(pos, tick);
+            saved.add(pos);
+        }
+
+        @Override public Box getFullPopulationRequirements(CubePos pos) {
+            assertTrue(loaded.containsKey(pos));
+            return FULL_POPULATION;
+        }
+
+        @Override public Box getPopulationPregenerationRequirements(CubePos pos) {
+            assertTrue(loaded.containsKey(pos));
+            return PREGENERATION;
+        }
+
+        @Override public void populate(CubePos pos) {
+            PREGENERATION.forEachPoint((x, y, z) -> assertTrue("Populating " + pos + " without its neighbors",
+                    loaded.containsKey(pos.add(x, y, z))));
+            if (!populated.add(pos)) {
+                fail("Populating " + pos + " twice");
+            }
+            steps++;
+            populatedCount++;
+        }
+
+        @Override public void setFullyPopulated(CubePos pos) {
+            FULL_POPULATION.forEachPoint((x, y, z) -> assertTrue(populated.contains(pos.add(x, y, z))));
+            fullyPopulated.add(pos);
+        }
+    }
+
+    static final class PendingLoad {
+
+        final CubePos pos;
+        final Runnable onDone;
+
+        PendingLoad(CubePos pos, Runnable onDone) {
+            this.pos = pos;
+            this.onDone = onDone;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
+import io.github.opencubicchunks.cubicchunks.core.worldgen.generator.flat.FlatCubeGenerator;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Biomes;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Pre-generates areas of a simulated world using {@link PopulationScheduler} and {@link FlatCubeGenerator}, see
+ * {@link TestPopulationScheduler.SimulatedWorld}.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestWorldPregenerator {
+
+    private static final int MIN_Y = -2;
+    private static final int MAX_Y = 1;
+    private static final int MAX_IN_FLIGHT = 64;
+    private static final int STEPS_PER_TICK = 256;
+    // like ChunkGc, only used for the cubes around the area here
+    private static final int UNLOAD_DELAY = 20;
+
+    private static ICubeGenerator generator;
+
+    @BeforeClass
+    public static void setupClass() {
+        Bootstrap.register();
+        generator = new FlatCubeGenerator(Biomes.PLAINS, 0,
+                Blocks.STONE.getDefaultState(), Blocks.DIRT.getDefaultState(), Blocks.GRASS.getDefaultState());
+    }
+
+    @Test
+    public void testRingOrder() {
+        Set<Long> seen = new HashSet<>();
+        int radius = 5;
+        int side = 2 * radius + 1;
+        for (long i = 0; i < side * side; i++) {
+            int x = WorldPregenerator.ringOffset(i, true);
+            int z = WorldPregenerator.ringOffset(i, false);
+            assertEquals(WorldPregenerator.ring(i), Math.max(Math.abs(x), Math.abs(z)));
+            assertTrue(seen.add(((long) x << 32) | (z & 0xFFFFFFFFL)));
+        }
+    }
+
+    @Test
+    public void testPregenerate() {
+        Simulation sim = new Simulation(null);
+        WorldPregenerator pregen = sim.start(0);
+        int maxLoaded = sim.run(pregen);
+        assertTrue(pregen.isFinished());
+        assertEquals(pregen.getTotalCubes(), pregen.getDoneCubes());
+        sim.assertAllGenerated();
+        assertEquals("Cubes left loaded", 0, sim.world.loaded.keySet().stream().filter(sim::isInArea).count());
+
+        // memory use grows with the size of the ring being generated, not with the area
+        Simulation larger = new Simulation(null);
+        larger.radius = 2 * sim.radius;
+        int maxLoadedLarger = larger.run(larger.start(0));
+        assertTrue("Loaded cubes: " + maxLoaded + " and " + maxLoadedLarger, maxLoadedLarger < 2 * maxLoaded);
+    }
+
+    @Test
+    public void testResume() {
+        Simulation sim = new Simulation(null);
+        WorldPregenerator pregen = sim.start(0);
+        while (pregen.getCursor() < pregen.getTotalCubes() / (MAX_Y - MIN_Y + 1) / 2) {
+            sim.tick(pregen);
+        }
+        long cursor = pregen.getCursor();
+
+        // restart, everything loaded or in progress is lost, the saved world stays
+        Simulation resumed = new Simulation(sim.world);
+        WorldPregenerator resumedPregen = resumed.start(cursor);
+        assertEquals(cursor * (MAX_Y - MIN_Y + 1), resumedPregen.getDoneCubes());
+        resumed.run(resumedPregen);
+        assertTrue(resumedPregen.isFinished());
+        resumed.assertAllGenerated();
+    }
+
+    private static class Simulation {
+
+        final PregenWorld world;
+        final PopulationScheduler scheduler;
+        int radius = 8;
+
+        Simulation(@Nullable PregenWorld saved) {
+            this.world = new PregenWorld();
+            if (saved != null) {
+                this.world.saved.addAll(saved.saved);
+                this.world.populated.addAll(saved.populated);
+                this.world.fullyPopulated.addAll(saved.fullyPopulated);
+                this.world.bottomBlocks.putAll(saved.bottomBlocks);
+            }
+            this.scheduler = new PopulationScheduler(world);
+        }
+
+        WorldPregenerator start(long cursor) {
+            WorldPregenerator.Host host = new WorldPregenerator.Host() {
+                @Override public void requestCube(int cubeX, int cubeY, int cubeZ, Runnable onDone) {
+                    scheduler.request(new CubePos(cubeX, cubeY, cubeZ), onDone, onDone);
+                }
+
+                @Override public void unloadCube(int cubeX, int cubeY, int cubeZ) {
+                    world.loaded.remove(new CubePos(cubeX, cubeY, cubeZ));
+                }
+            };
+            return new WorldPregenerator("test", host, 0, 0, radius, MIN_Y, MAX_Y, cursor);
+        }
+
+        /**
+         * @return the most cubes loaded at once
+         */
+        int run(WorldPregenerator pregen) {
+            int maxLoaded = 0;
+            while (!pregen.isFinished()) {
+                assertTrue("Pre-generation is stuck", world.tick < 100000);
+                tick(pregen);
+                maxLoaded = Math.max(maxLoaded, world.loaded.size());
+            }
+            return maxLoaded;
+        }
+
+        void tick(WorldPregenerator pregen) {
+            world.tick++;
+            world.loaded.entrySet().removeIf(entry -> !isInArea(entry.getKey()) && world.tick - entry.getValue() >= UNLOAD_DELAY);
+            world.finishLoads();
+            world.steps = 0;
+            scheduler.tick(() -> world.steps >= STEPS_PER_TICK);
+            pregen.tick(() -> false, MAX_IN_FLIGHT);
+            assertTrue(pregen.getInFlight() <= MAX_IN_FLIGHT);
+        }
+
+        boolean isInArea(CubePos pos) {
+            return Math.abs(pos.getX()) <= radius && Math.abs(pos.getZ()) <= radius && pos.getY() >= MIN_Y && pos.getY() <= MAX_Y;
+        }
+
+        void assertAllGenerated() {
+            for (int x = -radius; x <= radius; x++) {
+                for (int z = -radius; z <= radius; z++) {
+                    for (int y = MIN_Y; y <= MAX_Y; y++) {
+                        CubePos pos = new CubePos(x, y, z);
+                        assertTrue(pos + " is not fully populated", world.fullyPopulated.contains(pos));
+                        IBlockState expected = y <= 0 ? Blocks.STONE.getDefaultState() : Blocks.AIR.getDefaultState();
+                        assertSame(expected, world.bottomBlocks.get(pos));
+                    }
+                }
+            }
+        }
+    }
+
+    private static class PregenWorld extends TestPopulationScheduler.SimulatedWorld {
+
+        // block at local 0, 0, 0 of each generated cube
+        final Map<CubePos, IBlockState> bottomBlocks = new HashMap<>();
+
+        @Override public void generate(CubePos pos) {
+            super.generate(pos);
+            try (CubePrimer primer = generator.generateCube(pos.getX(), pos.getY(), pos.getZ())) {
+                bottomBlocks.put(pos, primer.getBlockState(0, 0, 0));
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server.chunkio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import io.github.opencubicchunks.cubicchunks.api.util.Coords;
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestCubeSnapshot {
+
+    private static final CubePos POS = new CubePos(3, -5, 7);
+
+    @BeforeClass
+    public static void setupClass() {
+        Bootstrap.register();
+    }
+
+    @Test
+    public void testEmptyCube() {
+        NBTTagCompound nbt = new NBTTagCompound();
+        CubeSnapshot snapshot = CubeSnapshot.of(POS, nbt, null, true);
+        assertNull(snapshot.createStorage());
+        assertSame(nbt, snapshot.toNbt());
+        assertNull(BinaryCubeCodec.decodeStorage(snapshot.encodeStorage(), POS.getY()));
+    }
+
+    @Test
+    public void testSnapshotWithFewStates() {
+        testSnapshotIgnoresLaterChanges(4);
+    }
+
+    @Test
+    public void testSnapshotWithManyStates() {
+        testSnapshotIgnoresLaterChanges(64);
+    }
+
+    @Test
+    public void testSnapshotWithGlobalPalette() {
+        testSnapshotIgnoresLaterChanges(1000);
+    }
+
+    private void testSnapshotIgnoresLaterChanges(int stateCount) {
+        List<IBlockState> states = states(stateCount);
+        ExtendedBlockStorage live = new ExtendedBlockStorage(Coords.cubeToMinBlock(POS.getY()), true);
+        fill(live, states, new Random(42));
+        ExtendedBlockStorage expected = copyOf(live);
+
+        NBTTagCompound nbt = new NBTTagCompound();
+        nbt.setTag("Level", new NBTTagCompound());
+        CubeSnapshot snapshot = CubeSnapshot.of(POS, nbt, live, true);
+
+        // the cube keeps changing on the server thread after it's saved
+        fill(live, states, new Random(1337));
+
+        assertSameContents(expected, snapshot.createStorage());
+        assertNotSame(snapshot.createStorage(), snapshot.createStorage());
+
+        NBTTagCompound level = snapshot.toNbt().getCompoundTag("Level");
+        assertSameContents(expected, IONbtReader.readBlocks(level, POS.getY(), true));
+        assertFalse("snapshot NBT was modified", nbt.getCompoundTag("Level").hasKey("Sections"));
+
+        assertSameContents(expected, BinaryCubeCodec.decodeStorage(snapshot.encodeStorage(), POS.getY()));
+    }
+
+    @SuppressWarnings("deprecation")
+    private static List<IBlockState> states(int count) {
+        List<IBlockState> states = new ArrayList<>();
+        states.add(Blocks.AIR.getDefaultState());
+        for (IBlockState state : Block.BLOCK_STATE_IDS) {
+            if (states.size() >= count) {
+                break;
+            }
+            if (state != null && !states.contains(state)) {
+                states.add(state);
+            }
+        }
+        assertEquals(count, states.size());
+        return states;
+    }
+
+    private static void fill(ExtendedBlockStorage ebs, List<IBlockState> states, Random rand) {
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    ebs.set(x, y, z, states.get(rand.nextInt(states.size())));
+                    ebs.setBlockLight(x, y, z, rand.nextInt(16));
+                    ebs.setSkyLight(x, y, z, rand.nextInt(16));
+                }
+            }
+        }
+    }
+
+    private static ExtendedBlockStorage copyOf(ExtendedBlockStorage ebs) {
+        ExtendedBlockStorage copy = new ExtendedBlockStorage(ebs.getYLocation(), true);
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    copy.set(x, y, z, ebs.get(x, y, z));
+                    copy.setBlockLight(x, y, z, ebs.getBlockLight(x, y, z));
+                    copy.setSkyLight(x, y, z, ebs.getSkyLight(x, y, z));
+                }
+            }
+        }
+        return copy;
+    }
+
+    private static void assertSameContents(ExtendedBlockStorage expected, @Nullable ExtendedBlockStorage actual) {
+        assertNotNull(actual);
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    assertSame(expected.get(x, y, z), actual.get(x, y, z));
+                    assertEquals(expected.getBlockLight(x, y, z), actual.getBlockLight(x, y, z));
+                    assertEquals(expected.getSkyLight(x, y, z), actual.getSkyLight(x, y, z));
+                }
+            }
+        }
+    }
+}
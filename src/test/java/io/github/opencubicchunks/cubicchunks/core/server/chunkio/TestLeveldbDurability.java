@@ -0,0 +1,168 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server.chunkio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import io.github.opencubicchunks.cubicchunks.core.LeveldbConfig;
+import mcp.MethodsReturnNonnullByDefault;
+import net.daporkchop.ldbjni.LevelDB;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteBatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Crash-consistency test for {@link LeveldbDurability}. A separate process keeps writing batches and syncs every few
+ * of them, the way {@link LeveldbCubeIO#flush()} does. It's killed in the middle of writing, and everything written
+ * before the last completed sync must still be in the database.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestLeveldbDurability {
+
+    private static final int ENTRIES_PER_BATCH = 100;
+    private static final int BATCHES_PER_SYNC = 20;
+    private static final int SYNCS_BEFORE_KILL = 5;
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        this.dir = Files.createTempDirectory("cubicchunks-leveldb-durability-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testSyncOnFlushSurvivesKill() throws Exception {
+        testSyncedWritesSurviveKill(LeveldbConfig.SyncPolicy.SYNC_ON_FLUSH);
+    }
+
+    @Test
+    public void testSyncEveryNMsSurvivesKill() throws Exception {
+        testSyncedWritesSurviveKill(LeveldbConfig.SyncPolicy.SYNC_EVERY_N_MS);
+    }
+
+    private void testSyncedWritesSurviveKill(LeveldbConfig.SyncPolicy policy) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                Writer.class.getName(), this.dir.toString(), policy.name())
+                .redirectErrorStream(true)
+                .start();
+        int lastSyncedBatch = -1;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            int syncs = 0;
+            String line;
+            while (syncs < SYNCS_BEFORE_KILL && (line = reader.readLine()) != null) {
+                if (line.startsWith("synced ")) {
+                    lastSyncedBatch = Integer.parseInt(line.substring("synced ".length()));
+                    syncs++;
+                }
+            }
+        } finally {
+            process.destroyForcibly();
+            assertTrue("Writer process didn't exit", process.waitFor(30, TimeUnit.SECONDS));
+        }
+        assertTrue("Writer process exited before syncing", lastSyncedBatch >= 0);
+
+        DB db = LevelDB.PROVIDER.open(this.dir.toFile(), new Options());
+        try {
+            for (int batch = 0; batch <= lastSyncedBatch; batch++) {
+                for (int i = 0; i < ENTRIES_PER_BATCH; i++) {
+                    byte[] value = db.get(key(batch, i));
+                    assertNotNull("Missing entry " + i + " of batch " + batch + ", last synced batch " + lastSyncedBatch, value);
+                    assertArrayEquals(value(batch, i), value);
+                }
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    private static byte[] key(int batch, int i) {
+        return ByteBuffer.allocate(8).putInt(batch).putInt(i).array();
+    }
+
+    private static byte[] value(int batch, int i) {
+        byte[] value = new byte[256];
+        for (int j = 0; j < value.length; j++) {
+            value[j] = (byte) (batch * 31 + i * 7 + j);
+        }
+        return value;
+    }
+
+    /**
+     * Writes batches until it's killed, printing the last batch of each completed sync.
+     */
+    public static final class Writer {
+
+        public static void main(String[] args) throws IOException {
+            DB db = LevelDB.PROVIDER.open(new File(args[0]), new Options());
+            LeveldbDurability durability = new LeveldbDurability(LeveldbConfig.SyncPolicy.valueOf(args[1]), 10, db);
+            durability.start("LevelDB sync");
+            for (int batch = 0; batch < 1_000_000; batch++) {
+                try (WriteBatch writeBatch = db.createWriteBatch()) {
+                    for (int i = 0; i < ENTRIES_PER_BATCH; i++) {
+                        writeBatch.put(key(batch, i), value(batch, i));
+                    }
+                    db.write(writeBatch, durability.writeOptions());
+                    durability.onWrite();
+                }
+                if (batch % BATCHES_PER_SYNC == BATCHES_PER_SYNC - 1) {
+                    durability.sync();
+                    System.out.println("synced " + batch);
+                    System.out.flush();
+                }
+            }
+            durability.close();
+            db.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.server.chunkio.async.forge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import mcp.MethodsReturnNonnullByDefault;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Deterministic simulation of a player flying in a straight line faster than the I/O threads can keep up with. Every
+ * tick, the cubes entering the view distance are queued and a fixed number of queued loads is run. The result is the
+ * number of ticks the cube the player is in wasn't loaded yet.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestPrioritizedTaskQueue {
+
+    private static final int VIEW_DISTANCE = 4;
+    private static final int CUBES_PER_TICK = 1;
+    private static final int LOADS_PER_TICK = 60;
+    private static final int TICKS = 200;
+    // 500ms
+    private static final int REPRIORITIZE_INTERVAL = 10;
+
+    @Test
+    public void testFirstVisibleCubeLatency() {
+        int fifo = simulate(false);
+        int prioritized = simulate(true);
+        assertTrue("Loads don't keep up in the simulation, FIFO missed the player cube " + fifo + " times", fifo > TICKS / 2);
+        assertEquals("Player cube wasn't loaded in time", 0, prioritized);
+    }
+
+    @Test
+    public void testCancelledLoadsAreRemoved() {
+        PrioritizedTaskQueue queue = new PrioritizedTaskQueue();
+        SimulatedLoad near = new SimulatedLoad(0, 0, 0);
+        SimulatedLoad far = new SimulatedLoad(100, 0, 0);
+        Runnable continuation = () -> {};
+        near.priority = 0;
+        far.priority = 100 * 100;
+        queue.add(far);
+        queue.add(near);
+        queue.add(continuation);
+
+        int cancelled = queue.reprioritize(task -> task == near ? PrioritizedTaskQueue.CANCELLED : 1);
+        assertEquals(1, cancelled);
+        assertEquals(continuation, queue.poll());
+        assertEquals(far, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(1, far.priority, 0);
+    }
+
+    /**
+     * @return the number of ticks the cube the player is in wasn't loaded at the end of the tick
+     */
+    private static int simulate(boolean prioritize) {
+        PrioritizedTaskQueue queue = new PrioritizedTaskQueue();
+        Map<Long, SimulatedLoad> queued = new HashMap<>();
+        Set<Long> loaded = new HashSet<>();
+        long sequence = 0;
+        int missed = 0;
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            int playerX = tick * CUBES_PER_TICK;
+            for (int x = playerX - VIEW_DISTANCE; x <= playerX + VIEW_DISTANCE; x++) {
+                for (int y = -VIEW_DISTANCE; y <= VIEW_DISTANCE; y++) {
+                    for (int z = -VIEW_DISTANCE; z <= VIEW_DISTANCE; z++) {
+                        long key = key(x, y, z);
+                        if (loaded.contains(key) || queued.containsKey(key)) {
+                            continue;
+                        }
+                        SimulatedLoad load = new SimulatedLoad(x, y, z);
+                        // without priorities, the queue degrades to insertion order
+                        load.priority = prioritize ? load.distanceSq(playerX) : sequence++;
+                        queued.put(key, load);
+                        queue.add(load);
+                    }
+                }
+            }
+            if (prioritize && tick % REPRIORITIZE_INTERVAL == 0) {
+                queue.reprioritize(task -> {
+                    SimulatedLoad load = (SimulatedLoad) task;
+                    if (Math.abs(load.x - playerX) > VIEW_DISTANCE) {
+                        queued.remove(key(load.x, load.y, load.z));
+                        return PrioritizedTaskQueue.CANCELLED;
+                    }
+                    return load.distanceSq(playerX);
+                });
+            }
+            for (int i = 0; i < LOADS_PER_TICK; i++) {
+                SimulatedLoad load = (SimulatedLoad) queue.poll();
+                if (load == null) {
+                    break;
+                }
+                load.run();
+                long key = key(load.x, load.y, load.z);
+                queued.remove(key);
+                loaded.add(key);
+            }
+            if (!loaded.contains(key(playerX, 0, 0))) {
+                missed++;
+            }
+        }
+        return missed;
+    }
+
+    private static long key(int x, int y, int z) {
+        return ((long) x << 40) ^ ((long) (y & 0xFFFFF) << 20) ^ (z & 0xFFFFF);
+    }
+
+    private static final class SimulatedLoad extends AsyncIOProvider<Void> {
+
+        final int x, y, z;
+
+        SimulatedLoad(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        double distanceSq(int playerX) {
+            double dx = (this.x - playerX) * 16;
+            double dy = this.y * 16;
+            double dz = this.z * 16;
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        @Override public void run() {
+            this.finished = true;
+        }
+
+        @Override void runSynchronousPart() {
+        }
+
+        @Nullable @Override Void get() {
+            return null;
+        }
+    }
+}
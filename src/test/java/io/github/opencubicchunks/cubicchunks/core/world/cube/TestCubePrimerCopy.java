@@ -0,0 +1,269 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.world.cube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.github.opencubicchunks.cubicchunks.api.world.IColumn;
+import io.github.opencubicchunks.cubicchunks.api.world.IHeightMap;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.UniformCubePrimer;
+import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
+import io.github.opencubicchunks.cubicchunks.core.lighting.LightingManager;
+import io.github.opencubicchunks.cubicchunks.core.world.ServerHeightMap;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProvider;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Random;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Cubes created from primers through the bulk and uniform paths must be the same as when copying block by block.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestCubePrimerCopy {
+
+    private static World world;
+    private static Chunk column;
+
+    @BeforeClass
+    public static void setupClass() throws Exception {
+        Bootstrap.register();
+        world = mock(World.class, withSettings().extraInterfaces(ICubicWorldInternal.class));
+        WorldProvider provider = mock(WorldProvider.class);
+        when(provider.hasSkyLight()).thenReturn(true);
+        Field field = World.class.getDeclaredField("provider");
+        field.setAccessible(true);
+        field.set(world, provider);
+        when(((ICubicWorldInternal) world).getLightingManager()).thenReturn(mock(LightingManager.class));
+
+        column = mock(Chunk.class, withSettings().extraInterfaces(IColumn.class));
+        when(column.getWorld()).thenReturn(world);
+        when(((IColumn) column).getOpacityIndex()).thenReturn(new ServerHeightMap(new int[Cube.SIZE * Cube.SIZE]));
+    }
+
+    @Test
+    public void testTerrain() {
+        Random random = new Random(42);
+        CubePrimer primer = new CubePrimer();
+        CubePrimer perBlock = new PerBlockPrimer();
+        for (int y = 0; y < Cube.SIZE; y++) {
+            for (int z = 0; z < Cube.SIZE; z++) {
+                for (int x = 0; x < Cube.SIZE; x++) {
+                    IBlockState state = randomState(random, y);
+                    primer.setBlockState(x, y, z, state);
+                    perBlock.setBlockState(x, y, z, state);
+                }
+            }
+        }
+        assertSameBlocks(new Cube(column, 0, perBlock), new Cube(column, 0, primer));
+    }
+
+    @Test
+    public void testAllAir() {
+        Cube cube = new Cube(column, 0, new CubePrimer());
+        assertEquals(true, cube.isEmpty());
+        assertNull(cube.getStorage());
+
+        cube = new Cube(column, 0, new UniformCubePrimer(Blocks.AIR.getDefaultState()));
+        assertEquals(true, cube.isEmpty());
+        assertNull(cube.getStorage());
+    }
+
+    @Test
+    public void testUniform() {
+        IBlockState stone = Blocks.STONE.getDefaultState();
+        CubePrimer perBlock = new PerBlockPrimer();
+        fill(perBlock, stone);
+
+        Cube cube = new Cube(column, 0, new UniformCubePrimer(stone));
+        assertEquals(false, cube.isEmpty());
+        assertSame(stone, cube.getUniformBlock());
+        assertSame(stone, cube.getBlockState(3, 4, 5));
+        assertSame(stone, cube.getReadOnlyStorage().get(3, 4, 5));
+        // reading doesn't create the storage
+        assertNull(cube.getStorage());
+
+        assertNotNull(cube.getStorageForWrite());
+        assertNull(cube.getUniformBlock());
+        assertSameBlocks(new Cube(column, 0, perBlock), cube);
+    }
+
+    @Test
+    public void testUniformLightBlockGetsStorage() {
+        // glass lets light through, so the light values of the cube have to be stored
+        IBlockState glass = Blocks.GLASS.getDefaultState();
+        CubePrimer perBlock = new PerBlockPrimer();
+        fill(perBlock, glass);
+
+        Cube cube = new Cube(column, 0, new UniformCubePrimer(glass));
+        assertNull(cube.getUniformBlock());
+        assertSameBlocks(new Cube(column, 0, perBlock), cube);
+    }
+
+    @Test
+    public void testUniformOpacityUpdatedPerColumn() {
+        int[] columnUpdates = new int[1];
+        IHeightMap heightMap = new ServerHeightMap(new int[Cube.SIZE * Cube.SIZE]) {
+            @Override public void onOpacityChange(int localX, int blockY, int localZ, int opacity) {
+                throw new AssertionError("Opacity updated block by block");
+            }
+
+            @Override public void onOpacityChange(int localX, int localZ, int minBlockY, int[] opacity) {
+                columnUpdates[0]++;
+                for (int y = 0; y < Cube.SIZE; y++) {
+                    assertEquals(Blocks.STONE.getDefaultState().getLightOpacity(), opacity[y]);
+                }
+            }
+        };
+        Chunk column = mock(Chunk.class, withSettings().extraInterfaces(IColumn.class));
+        when(column.getWorld()).thenReturn(world);
+        when(((IColumn) column).getOpacityIndex()).thenReturn(heightMap);
+
+        new Cube(column, 0, new UniformCubePrimer(Blocks.STONE.getDefaultState()));
+        assertEquals(Cube.SIZE * Cube.SIZE, columnUpdates[0]);
+    }
+
+    @Test
+    public void testUniformWithOverrides() {
+        IBlockState stone = Blocks.STONE.getDefaultState();
+        UniformCubePrimer primer = new UniformCubePrimer(stone);
+        CubePrimer perBlock = new PerBlockPrimer();
+        fill(perBlock, stone);
+
+        primer.setBlockState(1, 2, 3, stone);
+        assertSame(stone, primer.getUniformState());
+        for (CubePrimer p : new CubePrimer[]{primer, perBlock}) {
+            p.setBlockState(1, 2, 3, Blocks.BEDROCK.getDefaultState());
+            p.setBlockState(15, 15, 15, Blocks.AIR.getDefaultState());
+        }
+        assertNull(primer.getUniformState());
+        assertNotNull(primer.getBlockStateIds());
+        assertSameBlocks(new Cube(column, 0, perBlock), new Cube(column, 0, primer));
+    }
+
+    @Test
+    public void testOpacityUpdatedPerColumn() {
+        CubePrimer primer = new CubePrimer();
+        for (int z = 0; z < Cube.SIZE; z++) {
+            for (int x = 0; x < Cube.SIZE; x++) {
+                primer.setBlockState(x, 3, z, Blocks.STONE.getDefaultState());
+                primer.setBlockState(x, 7, z, Blocks.GLASS.getDefaultState());
+            }
+        }
+        int[] columnUpdates = new int[1];
+        IHeightMap heightMap = new ServerHeightMap(new int[Cube.SIZE * Cube.SIZE]) {
+            @Override public void onOpacityChange(int localX, int blockY, int localZ, int opacity) {
+                throw new AssertionError("Opacity updated block by block");
+            }
+
+            @Override public void onOpacityChange(int localX, int localZ, int minBlockY, int[] opacity) {
+                columnUpdates[0]++;
+                assertEquals(Cube.SIZE, minBlockY);
+                assertEquals(Blocks.STONE.getDefaultState().getLightOpacity(), opacity[3]);
+                assertEquals(0, opacity[7]);
+            }
+        };
+        Chunk column = mock(Chunk.class, withSettings().extraInterfaces(IColumn.class));
+        when(column.getWorld()).thenReturn(world);
+        when(((IColumn) column).getOpacityIndex()).thenReturn(heightMap);
+
+        new Cube(column, 1, primer);
+        assertEquals(Cube.SIZE * Cube.SIZE, columnUpdates[0]);
+    }
+
+    private static IBlockState randomState(Random random, int y) {
+        if (y > 10) {
+            return Blocks.AIR.getDefaultState();
+        }
+        switch (random.nextInt(8)) {
+            case 0:
+                return Blocks.DIRT.getDefaultState();
+            case 1:
+                return Blocks.COAL_ORE.getDefaultState();
+            case 2:
+                return Blocks.GLASS.getDefaultState();
+            default:
+                return Blocks.STONE.getDefaultState();
+        }
+    }
+
+    private static void fill(CubePrimer primer, IBlockState state) {
+        for (int y = 0; y < Cube.SIZE; y++) {
+            for (int z = 0; z < Cube.SIZE; z++) {
+                for (int x = 0; x < Cube.SIZE; x++) {
+                    primer.setBlockState(x, y, z, state);
+                }
+            }
+        }
+    }
+
+    private static void assertSameBlocks(Cube expected, Cube actual) {
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        for (int y = 0; y < Cube.SIZE; y++) {
+            for (int z = 0; z < Cube.SIZE; z++) {
+                for (int x = 0; x < Cube.SIZE; x++) {
+                    assertSame(expected.getBlockState(x, y, z), actual.getBlockState(x, y, z));
+                }
+            }
+        }
+        ExtendedBlockStorage expectedStorage = expected.getStorage();
+        ExtendedBlockStorage actualStorage = actual.getStorage();
+        assertNotNull(expectedStorage);
+        assertNotNull(actualStorage);
+        assertEquals(expectedStorage.isEmpty(), actualStorage.isEmpty());
+        assertEquals(expectedStorage.needsRandomTick(), actualStorage.needsRandomTick());
+        for (int y = 0; y < Cube.SIZE; y++) {
+            for (int z = 0; z < Cube.SIZE; z++) {
+                for (int x = 0; x < Cube.SIZE; x++) {
+                    assertSame(expectedStorage.get(x, y, z), actualStorage.get(x, y, z));
+                }
+            }
+        }
+    }
+
+    /**
+     * Doesn't expose its block state ids, so cubes are created from it one block at a time.
+     */
+    private static class PerBlockPrimer extends CubePrimer {
+    }
+}
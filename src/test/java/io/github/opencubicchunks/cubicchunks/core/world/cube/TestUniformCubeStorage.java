@@ -0,0 +1,187 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.world.cube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.github.opencubicchunks.cubicchunks.api.world.IColumn;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
+import io.github.opencubicchunks.cubicchunks.core.lighting.FirstLightProcessor;
+import io.github.opencubicchunks.cubicchunks.core.lighting.LightingManager;
+import io.github.opencubicchunks.cubicchunks.core.server.CubeProviderServer;
+import io.github.opencubicchunks.cubicchunks.core.server.PlayerCubeMap;
+import io.github.opencubicchunks.cubicchunks.core.world.ServerHeightMap;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.EnumSkyBlock;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProvider;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestUniformCubeStorage {
+
+    private static final int CUBES = 1000;
+
+    @BeforeClass
+    public static void setupClass() {
+        Bootstrap.register();
+    }
+
+    @Test
+    public void testInstancesAreShared() {
+        assertSame(UniformCubeStorage.SKY_LIT_AIR, UniformCubeStorage.of(0, 15));
+        for (int blockLight = 0; blockLight < 16; blockLight++) {
+            for (int skyLight = 0; skyLight < 16; skyLight++) {
+                UniformCubeStorage uniform = UniformCubeStorage.of(blockLight, skyLight);
+                assertSame(uniform, UniformCubeStorage.unpack(uniform.pack()));
+                assertEquals(blockLight, uniform.getLightFor(EnumSkyBlock.BLOCK));
+                assertEquals(skyLight, uniform.getLightFor(EnumSkyBlock.SKY));
+            }
+        }
+    }
+
+    @Test
+    public void testInitializedStorageMatchesUniform() {
+        UniformCubeStorage uniform = UniformCubeStorage.of(3, 14);
+        ExtendedBlockStorage ebs = new ExtendedBlockStorage(0, true);
+        uniform.initialize(ebs);
+        assertStorageMatches(uniform, ebs);
+        assertStorageMatches(uniform, uniform.getReadOnlyStorage());
+        assertSame(uniform.getReadOnlyStorage(), uniform.getReadOnlyStorage());
+    }
+
+    @Test
+    public void testSkyLitCubesUseLessHeap() {
+        WorldServer world = mockWorld();
+        Chunk column = mock(Chunk.class, withSettings().extraInterfaces(IColumn.class));
+        when(column.getWorld()).thenReturn(world);
+        // nothing in the column, all cubes are open to the sky
+        when(((IColumn) column).getOpacityIndex()).thenReturn(new ServerHeightMap(new int[Cube.SIZE * Cube.SIZE]));
+        FirstLightProcessor processor = new FirstLightProcessor(world);
+
+        // all cubes are created up front so that only what skylight initialization keeps is measured
+        Cube[] uniformCubes = new Cube[CUBES];
+        Cube[] storageCubes = new Cube[CUBES];
+        for (int i = 0; i < CUBES; i++) {
+            uniformCubes[i] = new Cube(column, i, new CubePrimer());
+            storageCubes[i] = new Cube(column, i, new CubePrimer());
+        }
+
+        long start = usedHeap();
+        for (Cube cube : uniformCubes) {
+            processor.initializeSkylight(cube);
+        }
+        long uniformBytes = usedHeap() - start;
+
+        start = usedHeap();
+        for (Cube cube : storageCubes) {
+            initializeSkylightWithStorage(cube);
+        }
+        long storageBytes = usedHeap() - start;
+
+        for (Cube cube : uniformCubes) {
+            assertNull(cube.getStorage());
+            assertSame(UniformCubeStorage.SKY_LIT_AIR, cube.getUniformStorage());
+        }
+        for (Cube cube : storageCubes) {
+            assertNotNull(cube.getStorage());
+        }
+        // each storage has at least the block data and two nibble arrays
+        assertTrue("storage bytes: " + storageBytes, storageBytes >= CUBES * 3L * 2048);
+        assertTrue("uniform bytes: " + uniformBytes + ", storage bytes: " + storageBytes, uniformBytes * 10 < storageBytes);
+    }
+
+    /**
+     * Skylight initialization of an empty cube open to the sky before uniform storage, a new storage with full skylight.
+     */
+    private static void initializeSkylightWithStorage(Cube cube) {
+        ExtendedBlockStorage ebs = cube.setStorage(new ExtendedBlockStorage(cube.getY() << 4, true));
+        for (int localX = 0; localX < Cube.SIZE; ++localX) {
+            for (int localZ = 0; localZ < Cube.SIZE; ++localZ) {
+                for (int localY = Cube.SIZE - 1; localY >= 0; --localY) {
+                    ebs.setSkyLight(localX, localY, localZ, 15);
+                }
+            }
+        }
+    }
+
+    private static WorldServer mockWorld() {
+        WorldServer world = mock(WorldServer.class, withSettings().extraInterfaces(ICubicWorldInternal.Server.class));
+        WorldProvider provider = mock(WorldProvider.class);
+        when(provider.hasSkyLight()).thenReturn(true);
+        try {
+            Field field = World.class.getDeclaredField("provider");
+            field.setAccessible(true);
+            field.set(world, provider);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+        when(((ICubicWorldInternal) world).getLightingManager()).thenReturn(mock(LightingManager.class));
+        when(world.getChunkProvider()).thenReturn(mock(CubeProviderServer.class));
+        when(world.getPlayerChunkMap()).thenReturn(mock(PlayerCubeMap.class));
+        return world;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        // a few times, a single call doesn't always collect everything
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void assertStorageMatches(UniformCubeStorage uniform, ExtendedBlockStorage ebs) {
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    assertSame(Blocks.AIR.getDefaultState(), ebs.get(x, y, z));
+                    assertEquals(uniform.getBlockLight(), ebs.getBlockLight(x, y, z));
+                    assertEquals(uniform.getSkyLight(), ebs.getSkyLight(x, y, z));
+                }
+            }
+        }
+        assertTrue(ebs.isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.worldgen;
+
+import static org.junit.Assert.assertSame;
+
+import io.github.opencubicchunks.cubicchunks.api.util.CubePos;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.CubePrimer;
+import io.github.opencubicchunks.cubicchunks.api.worldgen.ICubeGenerator;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import io.github.opencubicchunks.cubicchunks.core.worldgen.generator.flat.FlatCubeGenerator;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.init.Biomes;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestAsyncTerrainGenerator {
+
+    private static final int RADIUS = 3;
+
+    @BeforeClass
+    public static void setupClass() {
+        Bootstrap.register();
+    }
+
+    @Test
+    public void testPrefetchedTerrainMatchesSynchronous() {
+        // layers crossing a cube boundary, so cubes above, below and at the surface differ
+        ICubeGenerator generator = new FlatCubeGenerator(Biomes.PLAINS, -4,
+                Blocks.BEDROCK.getDefaultState(), Blocks.STONE.getDefaultState(), Blocks.STONE.getDefaultState(),
+                Blocks.DIRT.getDefaultState(), Blocks.DIRT.getDefaultState(), Blocks.GRASS.getDefaultState());
+        AsyncTerrainGenerator terrainGen = new AsyncTerrainGenerator(generator);
+
+        for (int x = -RADIUS; x <= RADIUS; x++) {
+            for (int y = -RADIUS; y <= RADIUS; y++) {
+                for (int z = -RADIUS; z <= RADIUS; z++) {
+                    terrainGen.prefetch(new CubePos(x, y, z), 0);
+                }
+            }
+        }
+        for (int x = -RADIUS; x <= RADIUS; x++) {
+            for (int y = -RADIUS; y <= RADIUS; y++) {
+                for (int z = -RADIUS; z <= RADIUS; z++) {
+                    assertPrimersEqual(generator.generateCube(x, y, z), terrainGen.generateCube(x, y, z));
+                }
+            }
+        }
+        // not prefetched, generated right away
+        assertPrimersEqual(generator.generateCube(0, 100, 0), terrainGen.generateCube(0, 100, 0));
+    }
+
+    private static void assertPrimersEqual(CubePrimer expected, CubePrimer actual) {
+        for (int x = 0; x < Cube.SIZE; x++) {
+            for (int y = 0; y < Cube.SIZE; y++) {
+                for (int z = 0; z < Cube.SIZE; z++) {
+                    assertSame(expected.getBlockState(x, y, z), actual.getBlockState(x, y, z));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.worldgen.generator.vanilla;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import mcp.MethodsReturnNonnullByDefault;
+import org.junit.Test;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestVanillaChunkCache {
+
+    private static final int CUBES_PER_CHUNK = 16;
+    // players in different columns, their cubes arrive interleaved
+    private static final int COLUMNS = 8;
+
+    @Test
+    public void testInterleavedColumnsGenerateOnce() {
+        // a single chunk, like the previous lastChunk field
+        assertEquals(COLUMNS * CUBES_PER_CHUNK, countGenerated(1));
+        assertEquals(COLUMNS, countGenerated(COLUMNS));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        VanillaChunkCache<String> cache = new VanillaChunkCache<>();
+        int[] generated = new int[1];
+        VanillaChunkCache.Generator<String> generator = (x, z) -> {
+            generated[0]++;
+            return x + "," + z;
+        };
+        cache.get(0, 0, 2, generator);
+        cache.get(1, 0, 2, generator);
+        cache.get(0, 0, 2, generator);
+        cache.get(2, 0, 2, generator); // evicts 1, 0
+        assertEquals(3, generated[0]);
+        assertEquals("0,0", cache.get(0, 0, 2, generator));
+        assertEquals(3, generated[0]);
+        cache.get(1, 0, 2, generator);
+        assertEquals(4, generated[0]);
+    }
+
+    @Test
+    public void testCopiedChunksAreEvicted() {
+        VanillaChunkCache<Object> cache = new VanillaChunkCache<>();
+        Object chunk = new Object();
+        cache.put(0, 0, chunk);
+        for (int y = 0; y < CUBES_PER_CHUNK; y++) {
+            assertSame(chunk, cache.get(0, 0, 1, (x, z) -> new Object()));
+            assertEquals(1, cache.size());
+            cache.onCubeCopied(0, 0, y, CUBES_PER_CHUNK);
+        }
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * @return how many times the vanilla generator is called when the cubes of {@link #COLUMNS} columns are requested
+     * round-robin
+     */
+    private static int countGenerated(int cacheSize) {
+        VanillaChunkCache<Object> cache = new VanillaChunkCache<>();
+        int[] generated = new int[1];
+        for (int y = 0; y < CUBES_PER_CHUNK; y++) {
+            for (int x = 0; x < COLUMNS; x++) {
+                cache.get(x, 0, cacheSize, (chunkX, chunkZ) -> {
+                    generated[0]++;
+                    return new Object();
+                });
+                cache.onCubeCopied(x, 0, y, CUBES_PER_CHUNK);
+            }
+        }
+        return generated[0];
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *  This file is part of Cubic Chunks Mod, licensed under the MIT License (MIT).
+ *
+ *  Copyright (c) 2015-2019 OpenCubicChunks
+ *  Copyright (c) 2015-2019 contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package io.github.opencubicchunks.cubicchunks.core.worldgen.generator.vanilla;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.github.opencubicchunks.cubicchunks.core.CubicChunksConfig;
+import io.github.opencubicchunks.cubicchunks.core.asm.mixin.ICubicWorldInternal;
+import io.github.opencubicchunks.cubicchunks.core.world.IColumnInternal;
+import io.github.opencubicchunks.cubicchunks.core.world.cube.Cube;
+import mcp.MethodsReturnNonnullByDefault;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraft.world.gen.IChunkGenerator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Counts the calls to the wrapped vanilla generator when cubes of several columns are generated interleaved.
+ */
+@ParametersAreNonnullByDefault
+@MethodsReturnNonnullByDefault
+public class TestVanillaCompatibilityGenerator {
+
+    private static final int HEIGHT_CUBES = 16;
+    private static final int COLUMNS = 8;
+
+    @BeforeClass
+    public static void setupClass() {
+        Bootstrap.register();
+    }
+
+    @Test
+    public void testEachChunkGeneratedOnce() {
+        IChunkGenerator vanilla = generateInterleaved();
+        for (int x = 0; x < COLUMNS; x++) {
+            verify(vanilla, times(1)).generateChunk(x, 0);
+        }
+        verify(vanilla, times(COLUMNS)).generateChunk(anyInt(), anyInt());
+    }
+
+    @Test
+    public void testEachChunkGeneratedOnceOptimized() {
+        boolean optimized = CubicChunksConfig.optimizedCompatibilityGenerator;
+        CubicChunksConfig.optimizedCompatibilityGenerator = true;
+        try {
+            IChunkGenerator vanilla = generateInterleaved();
+            verify(vanilla, times(COLUMNS)).generateChunk(anyInt(), anyInt());
+        } finally {
+            CubicChunksConfig.optimizedCompatibilityGenerator = optimized;
+        }
+    }
+
+    /**
+     * Generates all cubes in the vanilla height range of {@link #COLUMNS} columns, requested round-robin.
+     *
+     * @return the mocked vanilla generator
+     */
+    private static IChunkGenerator generateInterleaved() {
+        World world = mock(World.class, withSettings().extraInterfaces(ICubicWorldInternal.Server.class));
+        when(((ICubicWorldInternal.Server) world).getMaxGenerationHeight()).thenReturn(HEIGHT_CUBES * Cube.SIZE);
+        when(((ICubicWorldInternal.Server) world).getMaxHeight()).thenReturn(HEIGHT_CUBES * Cube.SIZE);
+
+        IChunkGenerator vanilla = mock(IChunkGenerator.class);
+        when(vanilla.generateChunk(anyInt(), anyInt())).thenAnswer(invocation -> emptyChunk());
+
+        VanillaCompatibilityGenerator generator = new VanillaCompatibilityGenerator(vanilla, world);
+        for (int y = 0; y < HEIGHT_CUBES; y++) {
+            for (int x = 0; x < COLUMNS; x++) {
+                generator.generateCube(x, y, 0);
+            }
+        }
+        return vanilla;
+    }
+
+    private static Chunk emptyChunk() {
+        Chunk chunk = mock(Chunk.class, withSettings().extraInterfaces(IColumnInternal.class));
+        when(chunk.getBlockStorageArray()).thenReturn(new ExtendedBlockStorage[HEIGHT_CUBES]);
+        return chunk;
+    }
+}